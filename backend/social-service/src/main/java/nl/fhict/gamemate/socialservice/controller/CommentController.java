@@ -2,6 +2,7 @@ package nl.fhict.gamemate.socialservice.controller;
 
 import lombok.AllArgsConstructor;
 import nl.fhict.gamemate.socialservice.dto.*;
+import nl.fhict.gamemate.socialservice.ratelimit.RateLimit;
 import nl.fhict.gamemate.socialservice.service.CommentService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -18,6 +19,7 @@ import java.util.UUID;
 public class CommentController {
     private final CommentService commentService;
 
+    @RateLimit(name = "comments", capacity = 30, refillPeriod = "PT1M")
     @PostMapping("/post/{postId}/comment")
     public ResponseEntity<CommentResponse> createComment(
             @PathVariable UUID postId,
@@ -2,6 +2,7 @@ package nl.fhict.gamemate.socialservice.controller;
 
 import lombok.AllArgsConstructor;
 import nl.fhict.gamemate.socialservice.dto.*;
+import nl.fhict.gamemate.socialservice.ratelimit.RateLimit;
 import nl.fhict.gamemate.socialservice.service.PostService;
 import org.springframework.data.domain.Page;
 import org.springframework.http.ResponseEntity;
@@ -17,6 +18,7 @@ import java.util.UUID;
 public class PostController {
     private final PostService postService;
 
+    @RateLimit(name = "posts", capacity = 30, refillPeriod = "PT1H")
     @PostMapping("/post")
     public ResponseEntity<PostResponse> createPost(
             @RequestBody PostRequest request,
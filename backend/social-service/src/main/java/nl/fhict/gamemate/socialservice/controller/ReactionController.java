@@ -5,6 +5,7 @@ import nl.fhict.gamemate.socialservice.dto.ReactionCountResponse;
 import nl.fhict.gamemate.socialservice.dto.ReactionResponse;
 import nl.fhict.gamemate.socialservice.dto.UserReactionResponse;
 import nl.fhict.gamemate.socialservice.model.ReactionType;
+import nl.fhict.gamemate.socialservice.ratelimit.RateLimit;
 import nl.fhict.gamemate.socialservice.service.ReactionService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -20,6 +21,7 @@ import java.util.UUID;
 public class ReactionController {
     private ReactionService reactionService;
 
+    @RateLimit(name = "reactions", capacity = 120, refillPeriod = "PT1M")
     @PostMapping("/reaction")
     public ResponseEntity<UserReactionResponse> addOrUpdateReaction(
             @PathVariable UUID postId,
@@ -0,0 +1,102 @@
+package nl.fhict.gamemate.socialservice.ratelimit;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets held by this instance only. Buckets are guarded by their own monitor, so only requests for the same
+ * key contend. A bucket that has filled up again is indistinguishable from a new one and is dropped by a sweep that
+ * runs on the calling thread at most once a minute.
+ */
+@Component
+@ConditionalOnProperty(name = "gamemate.rate-limit.store", havingValue = "memory", matchIfMissing = true)
+@Slf4j
+public class InMemoryRateLimitStore implements RateLimitStore {
+    private static final long SWEEP_INTERVAL_MILLIS = 60_000;
+
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweep;
+    private final Clock clock;
+
+    @Autowired
+    public InMemoryRateLimitStore() {
+        this(Clock.systemUTC());
+    }
+
+    public InMemoryRateLimitStore(Clock clock) {
+        this.clock = clock;
+        this.nextSweep = new AtomicLong(clock.millis() + SWEEP_INTERVAL_MILLIS);
+    }
+
+    @Override
+    public long tryConsume(String key, long capacity, Duration refillPeriod) {
+        long now = clock.millis();
+        double perMilli = (double) capacity / refillPeriod.toMillis();
+        sweepIfDue(now);
+        while (true) {
+            Bucket bucket = buckets.get(key);
+            if (bucket == null) bucket = buckets.computeIfAbsent(key, k -> new Bucket(capacity, now));
+            synchronized (bucket) {
+                // Lost a race with the sweep; the map no longer holds this bucket.
+                if (bucket.evicted) continue;
+                return bucket.take(now, capacity, perMilli);
+            }
+        }
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    private void sweepIfDue(long now) {
+        long due = nextSweep.get();
+        if (now < due || !nextSweep.compareAndSet(due, now + SWEEP_INTERVAL_MILLIS)) return;
+        int evicted = 0;
+        for (Iterator<Bucket> it = buckets.values().iterator(); it.hasNext(); ) {
+            Bucket bucket = it.next();
+            synchronized (bucket) {
+                if (bucket.fullAt <= now) {
+                    bucket.evicted = true;
+                    it.remove();
+                    evicted++;
+                }
+            }
+        }
+        if (evicted > 0) log.debug("Evicted {} full rate limit buckets, {} active", evicted, buckets.size());
+    }
+
+    private static final class Bucket {
+        private double tokens;
+        private long updatedAt;
+        private long fullAt;
+        private boolean evicted;
+
+        Bucket(long capacity, long now) {
+            tokens = capacity;
+            updatedAt = now;
+            fullAt = now;
+        }
+
+        long take(long now, long capacity, double perMilli) {
+            if (now > updatedAt) {
+                tokens = Math.min(capacity, tokens + (now - updatedAt) * perMilli);
+                updatedAt = now;
+            }
+            if (tokens < 1) {
+                return (long) Math.ceil((1 - tokens) / perMilli);
+            }
+            tokens -= 1;
+            fullAt = now + (long) Math.ceil((capacity - tokens) / perMilli);
+            return 0;
+        }
+    }
+}
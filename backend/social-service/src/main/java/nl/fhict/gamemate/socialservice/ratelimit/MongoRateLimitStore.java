@@ -0,0 +1,77 @@
+package nl.fhict.gamemate.socialservice.ratelimit;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Token buckets in the {@code rate_limit_buckets} collection, shared by every instance. Refill and take happen in one
+ * pipeline update against the server clock, so concurrent requests on different instances cannot both spend the last
+ * token. Each bucket carries the time it will be full again, and a TTL index removes it from then on, since a full
+ * bucket behaves exactly like a missing one.
+ */
+@Component
+@ConditionalOnProperty(name = "gamemate.rate-limit.store", havingValue = "mongo")
+@RequiredArgsConstructor
+public class MongoRateLimitStore implements RateLimitStore {
+    private static final String COLLECTION = "rate_limit_buckets";
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final MongoTemplate mongoTemplate;
+
+    @PostConstruct
+    void createTtlIndex() {
+        mongoTemplate.indexOps(COLLECTION)
+                .ensureIndex(new Index().on("expiresAt", Sort.Direction.ASC).expire(Duration.ZERO));
+    }
+
+    @Override
+    public long tryConsume(String key, long capacity, Duration refillPeriod) {
+        double perMilli = (double) capacity / refillPeriod.toMillis();
+        Document bucket;
+        try {
+            bucket = take(key, capacity, perMilli);
+        } catch (MongoException e) {
+            // Two first requests for the same key both tried to insert; the loser now finds the bucket.
+            if (e.getCode() != DUPLICATE_KEY) throw e;
+            bucket = take(key, capacity, perMilli);
+        }
+        if (bucket.getBoolean("allowed")) return 0;
+        double tokens = bucket.get("tokens", Number.class).doubleValue();
+        return Math.max(1, (long) Math.ceil((1 - tokens) / perMilli));
+    }
+
+    private Document take(String key, long capacity, double perMilli) {
+        Document available = new Document("$min", List.of(capacity, new Document("$add", List.of(
+                new Document("$ifNull", List.of("$tokens", capacity)),
+                new Document("$multiply", List.of(
+                        new Document("$subtract", List.of("$$NOW", new Document("$ifNull", List.of("$updatedAt", "$$NOW")))),
+                        perMilli))))));
+        Document enough = new Document("$gte", List.of("$available", 1));
+        List<Bson> pipeline = List.of(
+                new Document("$set", new Document("available", available)),
+                new Document("$set", new Document("allowed", enough)
+                        .append("tokens", new Document("$cond", List.of(enough,
+                                new Document("$subtract", List.of("$available", 1)), "$available")))
+                        .append("updatedAt", "$$NOW")),
+                new Document("$set", new Document("expiresAt", new Document("$add", List.of("$$NOW",
+                        new Document("$ceil", new Document("$divide", List.of(
+                                new Document("$subtract", List.of(capacity, "$tokens")), perMilli))))))),
+                new Document("$unset", "available"));
+        return mongoTemplate.getCollection(COLLECTION).findOneAndUpdate(
+                new Document("_id", key), pipeline,
+                new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER));
+    }
+}
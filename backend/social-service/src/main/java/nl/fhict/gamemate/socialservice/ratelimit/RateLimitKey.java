@@ -0,0 +1,13 @@
+package nl.fhict.gamemate.socialservice.ratelimit;
+
+/**
+ * Who a {@link RateLimit} bucket belongs to.
+ */
+public enum RateLimitKey {
+    /** The JWT subject; anonymous requests fall back to the client IP. */
+    SUBJECT,
+    /** The client IP, as seen through the configured number of trusted proxies. */
+    IP,
+    /** One bucket per subject and IP pair. */
+    SUBJECT_AND_IP
+}
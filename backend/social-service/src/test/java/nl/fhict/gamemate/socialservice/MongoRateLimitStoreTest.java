@@ -0,0 +1,199 @@
+package nl.fhict.gamemate.socialservice;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import nl.fhict.gamemate.socialservice.ratelimit.MongoRateLimitStore;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MongoRateLimitStoreTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private MongoCollection<Document> collection;
+
+    private FakeBuckets buckets;
+    private MongoRateLimitStore store;
+
+    @BeforeEach
+    void setUp() {
+        buckets = new FakeBuckets(Instant.parse("2025-01-01T00:00:00Z"));
+        when(mongoTemplate.getCollection("rate_limit_buckets")).thenReturn(collection);
+        when(collection.findOneAndUpdate(any(Bson.class), anyList(), any(FindOneAndUpdateOptions.class)))
+                .thenAnswer(inv -> buckets.findOneAndUpdate(inv.getArgument(0), inv.getArgument(1), inv.getArgument(2)));
+        store = new MongoRateLimitStore(mongoTemplate);
+    }
+
+    @Test
+    void tryConsume_takesTokensUntilEmptyAndReportsWait() {
+        assertEquals(0, store.tryConsume("posts:sub:alice", 2, Duration.ofMinutes(1)));
+        assertEquals(0, store.tryConsume("posts:sub:alice", 2, Duration.ofMinutes(1)));
+
+        assertEquals(30_000, store.tryConsume("posts:sub:alice", 2, Duration.ofMinutes(1)));
+        assertEquals(0, store.tryConsume("posts:sub:bob", 2, Duration.ofMinutes(1)));
+    }
+
+    @Test
+    void tryConsume_refillsWithServerTimeAndStopsAtCapacity() {
+        store.tryConsume("posts:sub:alice", 2, Duration.ofMinutes(1));
+        store.tryConsume("posts:sub:alice", 2, Duration.ofMinutes(1));
+
+        buckets.advance(Duration.ofSeconds(20));
+        assertEquals(10_000, store.tryConsume("posts:sub:alice", 2, Duration.ofMinutes(1)));
+
+        buckets.advance(Duration.ofSeconds(10));
+        assertEquals(0, store.tryConsume("posts:sub:alice", 2, Duration.ofMinutes(1)));
+
+        buckets.advance(Duration.ofHours(1));
+        assertEquals(0, store.tryConsume("posts:sub:alice", 2, Duration.ofMinutes(1)));
+        assertEquals(0, store.tryConsume("posts:sub:alice", 2, Duration.ofMinutes(1)));
+        assertTrue(store.tryConsume("posts:sub:alice", 2, Duration.ofMinutes(1)) > 0);
+    }
+
+    @Test
+    void tryConsume_expiresBucketWhenItWouldBeFullAgain() {
+        store.tryConsume("posts:sub:alice", 4, Duration.ofMinutes(1));
+
+        Document bucket = buckets.get("posts:sub:alice");
+        assertEquals(Date.from(buckets.now.plusSeconds(15)), bucket.get("expiresAt"));
+        assertFalse(bucket.containsKey("available"));
+    }
+
+    @Test
+    void tryConsume_concurrentRequestsNeverSpendMoreThanCapacity() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Callable<Long>> requests = new ArrayList<>();
+        for (int i = 0; i < 80; i++) {
+            requests.add(() -> store.tryConsume("reactions:sub:alice", 20, Duration.ofMinutes(1)));
+        }
+        try {
+            long allowed = 0;
+            for (Future<Long> result : pool.invokeAll(requests)) {
+                if (result.get() == 0) allowed++;
+            }
+            assertEquals(20, allowed);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void tryConsume_retriesOnceWhenConcurrentInsertWins() {
+        buckets.failNext(new MongoException(11000, "E11000 duplicate key error"));
+
+        assertEquals(0, store.tryConsume("posts:sub:alice", 2, Duration.ofMinutes(1)));
+        assertEquals(1.0, buckets.get("posts:sub:alice").get("tokens", Number.class).doubleValue());
+    }
+
+    @Test
+    void tryConsume_propagatesOtherMongoErrors() {
+        buckets.failNext(new MongoException(13, "Unauthorized"));
+
+        assertThrows(MongoException.class, () -> store.tryConsume("posts:sub:alice", 2, Duration.ofMinutes(1)));
+    }
+
+    /**
+     * Stands in for the server: applies an update pipeline to one document under a lock, which is the atomicity
+     * findOneAndUpdate gives on a single document, and evaluates just the operators the store uses.
+     */
+    private static final class FakeBuckets {
+        private final Map<Object, Document> documents = new HashMap<>();
+        private Instant now;
+        private MongoException nextFailure;
+
+        FakeBuckets(Instant now) {
+            this.now = now;
+        }
+
+        synchronized void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        synchronized void failNext(MongoException failure) {
+            nextFailure = failure;
+        }
+
+        synchronized Document get(Object id) {
+            return documents.get(id);
+        }
+
+        synchronized Document findOneAndUpdate(Bson filter, List<Document> pipeline, FindOneAndUpdateOptions options) {
+            if (nextFailure != null) {
+                MongoException failure = nextFailure;
+                nextFailure = null;
+                throw failure;
+            }
+            Object id = ((Document) filter).get("_id");
+            if (!documents.containsKey(id) && !options.isUpsert()) return null;
+            Document document = new Document(documents.getOrDefault(id, new Document("_id", id)));
+            for (Document stage : pipeline) {
+                if (stage.containsKey("$unset")) {
+                    document.remove(stage.getString("$unset"));
+                    continue;
+                }
+                // Every expression in a stage sees the document as it was before the stage.
+                Document values = new Document();
+                stage.get("$set", Document.class).forEach((field, expression) -> values.put(field, eval(expression, document)));
+                document.putAll(values);
+            }
+            documents.put(id, document);
+            return new Document(document);
+        }
+
+        private Object eval(Object expression, Document document) {
+            if ("$$NOW".equals(expression)) return Date.from(now);
+            if (expression instanceof String field && field.startsWith("$")) return document.get(field.substring(1));
+            if (!(expression instanceof Document operator)) return expression;
+            String name = operator.keySet().iterator().next();
+            List<Object> args = new ArrayList<>();
+            if (operator.get(name) instanceof List<?> list) {
+                for (Object arg : list) args.add(eval(arg, document));
+            } else {
+                args.add(eval(operator.get(name), document));
+            }
+            return switch (name) {
+                case "$ifNull" -> args.get(0) != null ? args.get(0) : args.get(1);
+                case "$min" -> Math.min(number(args.get(0)), number(args.get(1)));
+                case "$add" -> args.get(0) instanceof Date date
+                        ? new Date(date.getTime() + (long) number(args.get(1)))
+                        : number(args.get(0)) + number(args.get(1));
+                case "$subtract" -> number(args.get(0)) - number(args.get(1));
+                case "$multiply" -> number(args.get(0)) * number(args.get(1));
+                case "$divide" -> number(args.get(0)) / number(args.get(1));
+                case "$ceil" -> Math.ceil(number(args.get(0)));
+                case "$gte" -> number(args.get(0)) >= number(args.get(1));
+                case "$cond" -> Boolean.TRUE.equals(args.get(0)) ? args.get(1) : args.get(2);
+                default -> throw new IllegalArgumentException("Unsupported operator " + name);
+            };
+        }
+
+        private static double number(Object value) {
+            return value instanceof Date date ? date.getTime() : ((Number) value).doubleValue();
+        }
+    }
+}
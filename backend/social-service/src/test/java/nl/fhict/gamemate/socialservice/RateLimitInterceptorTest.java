@@ -0,0 +1,145 @@
+package nl.fhict.gamemate.socialservice;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.fhict.gamemate.socialservice.config.RateLimitConfig;
+import nl.fhict.gamemate.socialservice.config.RateLimitProperties;
+import nl.fhict.gamemate.socialservice.controller.CommentController;
+import nl.fhict.gamemate.socialservice.controller.PostController;
+import nl.fhict.gamemate.socialservice.controller.ReactionController;
+import nl.fhict.gamemate.socialservice.exception.GlobalExceptionHandler;
+import nl.fhict.gamemate.socialservice.ratelimit.InMemoryRateLimitStore;
+import nl.fhict.gamemate.socialservice.ratelimit.RateLimitInterceptor;
+import nl.fhict.gamemate.socialservice.service.ReactionService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.security.web.method.annotation.AuthenticationPrincipalArgumentResolver;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+class RateLimitInterceptorTest {
+    private final UUID postId = UUID.randomUUID();
+
+    @Mock
+    private ReactionService reactionService;
+
+    private RateLimitProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private RateLimitInterceptor interceptor;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        properties = new RateLimitProperties();
+        RateLimitProperties.Limit override = new RateLimitProperties.Limit();
+        override.setCapacity(2L);
+        properties.getLimits().put("reactions", override);
+        meterRegistry = new SimpleMeterRegistry();
+        interceptor = new RateLimitInterceptor(new InMemoryRateLimitStore(), properties, meterRegistry);
+        mockMvc = MockMvcBuilders.standaloneSetup(new ReactionController(reactionService))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .setCustomArgumentResolvers(new AuthenticationPrincipalArgumentResolver())
+                .addInterceptors(interceptor)
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void rateLimitConfig_registersInterceptor() {
+        ExposedRegistry registry = new ExposedRegistry();
+
+        new RateLimitConfig(interceptor).addInterceptors(registry);
+
+        assertEquals(List.of(interceptor), registry.interceptors());
+    }
+
+    @Test
+    void validate_acceptsEveryControllerAndRejectsUnknownOverride() {
+        List<Method> handlers = Stream.of(PostController.class, CommentController.class, ReactionController.class)
+                .flatMap(controller -> Arrays.stream(controller.getDeclaredMethods()))
+                .toList();
+
+        assertDoesNotThrow(() -> interceptor.validate(handlers));
+
+        properties.getLimits().put("post", new RateLimitProperties.Limit());
+        assertThrows(IllegalStateException.class, () -> interceptor.validate(handlers));
+    }
+
+    @Test
+    void react_rejectsWith429AndRetryAfterOnceBucketIsEmpty() throws Exception {
+        authenticate("auth0|alice");
+
+        mockMvc.perform(react()).andExpect(status().isOk());
+        mockMvc.perform(react()).andExpect(status().isOk());
+        mockMvc.perform(react())
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "30"));
+
+        assertEquals(1.0, meterRegistry.get("gamemate.rate_limit.rejected").tag("limit", "reactions").counter().count());
+    }
+
+    @Test
+    void react_keepsSubjectsApartAndLeavesUnannotatedEndpointsAlone() throws Exception {
+        authenticate("auth0|alice");
+        mockMvc.perform(react());
+        mockMvc.perform(react());
+
+        mockMvc.perform(get("/api/social/post/{postId}/reactions", postId)).andExpect(status().isOk());
+
+        authenticate("auth0|bob");
+        mockMvc.perform(react()).andExpect(status().isOk());
+    }
+
+    @Test
+    void react_disabledLetsEverythingThrough() throws Exception {
+        properties.setEnabled(false);
+        authenticate("auth0|alice");
+
+        for (int i = 0; i < 5; i++) {
+            mockMvc.perform(react()).andExpect(status().isOk());
+        }
+    }
+
+    private RequestBuilder react() {
+        return post("/api/social/post/{postId}/reaction", postId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("\"LIKE\"");
+    }
+
+    private static void authenticate(String subject) {
+        Jwt jwt = Jwt.withTokenValue("token").header("alg", "none").subject(subject).build();
+        SecurityContextHolder.getContext().setAuthentication(new JwtAuthenticationToken(jwt));
+    }
+
+    private static final class ExposedRegistry extends InterceptorRegistry {
+        List<Object> interceptors() {
+            return getInterceptors();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package nl.fhict.gamemate.userservice;
+
+import nl.fhict.gamemate.userservice.service.UploadRateLimiter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contended throughput of {@link UploadRateLimiter#tryAcquire}: every thread hammering one key, and threads spread
+ * over many keys. The window is short enough that most calls are rejections, the common case under abuse.
+ * Run with {@code ./gradlew jmh}; add {@code -prof gc} to the JMH args to confirm the check allocates nothing.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class UploadRateLimiterBenchmark {
+    @Param({"1", "1024"})
+    int keyCount;
+
+    private UploadRateLimiter limiter;
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        limiter = new UploadRateLimiter(10, Duration.ofMillis(50), Clock.systemUTC());
+        keys = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = "user-" + i;
+            limiter.tryAcquire(keys[i]);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean uncontended() {
+        return limiter.tryAcquire(keys[ThreadLocalRandom.current().nextInt(keyCount)]);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean contended() {
+        return limiter.tryAcquire(keys[ThreadLocalRandom.current().nextInt(keyCount)]);
+    }
+}
@@ -4,6 +4,8 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
 @Configuration
 @ConfigurationProperties(prefix = "do.spaces")
 @Data
@@ -13,5 +15,8 @@ public class DOStorageProperties {
     private String region;
     private String endpoint;
     private String bucket;
+    private long maxAvatarBytes = 10 * 1024 * 1024;
+    private Duration uploadUrlTtl = Duration.ofMinutes(5);
+    private int maxConcurrentUploads = 32;
 }
 
@@ -2,6 +2,9 @@ package nl.fhict.gamemate.userservice.config;
 
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.amqp.core.AnonymousQueue;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
 import org.springframework.amqp.core.TopicExchange;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
@@ -12,12 +15,44 @@ import org.springframework.context.annotation.Primary;
 @Configuration
 public class RabbitMQConfig {
     public static final String EXCHANGE = "user.events.exchange";
+    public static final String PROFILE_CACHE_ROUTING_KEY = "user.profile.cache.invalidate";
+    public static final String NICKNAME_ROUTING_KEY = "user.nickname.changed";
 
     @Bean
     public TopicExchange exchange() {
         return new TopicExchange(EXCHANGE, true, false);
     }
 
+    /**
+     * One auto-deleted queue per instance so every instance sees each cache invalidation.
+     */
+    @Bean
+    public AnonymousQueue profileCacheInvalidationQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding bindProfileCacheInvalidationQueue() {
+        return BindingBuilder.bind(profileCacheInvalidationQueue())
+                .to(exchange())
+                .with(PROFILE_CACHE_ROUTING_KEY);
+    }
+
+    /**
+     * One auto-deleted queue per instance so every instance's nickname index sees each change.
+     */
+    @Bean
+    public AnonymousQueue nicknameChangeQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding bindNicknameChangeQueue() {
+        return BindingBuilder.bind(nicknameChangeQueue())
+                .to(exchange())
+                .with(NICKNAME_ROUTING_KEY);
+    }
+
     @Bean
     public MessageConverter jsonMessageConverter() {
         return new Jackson2JsonMessageConverter();
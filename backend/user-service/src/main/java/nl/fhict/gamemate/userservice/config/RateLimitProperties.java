@@ -0,0 +1,34 @@
+package nl.fhict.gamemate.userservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Configuration
+@ConfigurationProperties(prefix = "gamemate.rate-limit")
+@Data
+public class RateLimitProperties {
+    private boolean enabled = true;
+    /**
+     * {@code memory}, {@code postgres}, or {@code custom} for a store bean registered elsewhere.
+     */
+    private String store = "memory";
+    /**
+     * Number of proxies in front of the service that append to X-Forwarded-For; 0 uses the socket address.
+     */
+    private int trustedProxies = 0;
+    /**
+     * Per-name overrides of the values declared on {@code @RateLimit}.
+     */
+    private Map<String, Limit> limits = new HashMap<>();
+
+    @Data
+    public static class Limit {
+        private Long capacity;
+        private Duration refillPeriod;
+    }
+}
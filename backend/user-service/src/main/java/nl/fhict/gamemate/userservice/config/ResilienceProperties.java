@@ -0,0 +1,54 @@
+package nl.fhict.gamemate.userservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Configuration
+@ConfigurationProperties(prefix = "gamemate.resilience")
+@Data
+public class ResilienceProperties {
+    /**
+     * Policies per outbound dependency, keyed by the name its guard is created with.
+     */
+    private Map<String, Policy> dependencies = new HashMap<>();
+
+    public Policy policy(String dependency) {
+        return dependencies.getOrDefault(dependency, new Policy());
+    }
+
+    @Data
+    public static class Policy {
+        /**
+         * Threads for blocking calls; callers beyond threads plus queue are rejected.
+         */
+        private int threads = 8;
+        private int queueCapacity = 16;
+        /**
+         * In-flight limit for non-blocking calls.
+         */
+        private int maxConcurrentCalls = 64;
+        private Duration timeout = Duration.ofSeconds(10);
+        /**
+         * Attempts per idempotent call, including the first.
+         */
+        private int maxAttempts = 3;
+        private Duration initialBackoff = Duration.ofMillis(100);
+        private Duration maxBackoff = Duration.ofSeconds(2);
+        /**
+         * Number of recent calls the failure rate is taken over.
+         */
+        private int slidingWindowSize = 20;
+        private int minimumCalls = 10;
+        private int failureRateThreshold = 50;
+        private Duration openDuration = Duration.ofSeconds(30);
+        /**
+         * Trial calls let through when half-open; all must succeed to close the circuit.
+         */
+        private int halfOpenProbes = 3;
+    }
+}
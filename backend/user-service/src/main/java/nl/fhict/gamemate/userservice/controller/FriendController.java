@@ -1,28 +1,42 @@
 package nl.fhict.gamemate.userservice.controller;
 
 import lombok.RequiredArgsConstructor;
-import nl.fhict.gamemate.userservice.dto.ProfilePreviewDto;
-import nl.fhict.gamemate.userservice.mapper.ProfileMapper;
+import nl.fhict.gamemate.userservice.dto.FriendPageDto;
+import nl.fhict.gamemate.userservice.dto.FriendRequestPageDto;
+import nl.fhict.gamemate.userservice.dto.FriendRequestResultDto;
+import nl.fhict.gamemate.userservice.dto.FriendStatusRequest;
+import nl.fhict.gamemate.userservice.dto.FriendSuggestionDto;
+import nl.fhict.gamemate.userservice.dto.RelationshipDto;
+import nl.fhict.gamemate.userservice.ratelimit.RateLimit;
 import nl.fhict.gamemate.userservice.service.FriendService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/user/friends")
 @RequiredArgsConstructor
 public class FriendController {
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
     private final FriendService friendService;
 
     @PostMapping("/request")
-    public ResponseEntity<Void> sendRequest(@AuthenticationPrincipal Jwt jwt, @RequestParam UUID receiverProfileId) {
+    @RateLimit(name = "friend-requests", capacity = 30, refillPeriod = "PT1H")
+    public ResponseEntity<FriendRequestResultDto> sendRequest(
+            @AuthenticationPrincipal Jwt jwt,
+            @RequestParam UUID receiverProfileId,
+            @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey) {
         String userId = jwt.getSubject();
-        friendService.sendFriendRequest(userId, receiverProfileId);
-        return ResponseEntity.ok().build();
+        return ResponseEntity.ok(friendService.sendFriendRequest(userId, receiverProfileId, idempotencyKey));
     }
 
     @PostMapping("/request/{id}/respond")
@@ -51,10 +65,69 @@ public class FriendController {
         return ResponseEntity.noContent().build();
     }
 
+    @GetMapping("/requests/received")
+    public ResponseEntity<FriendRequestPageDto> getReceivedRequests(
+            @AuthenticationPrincipal Jwt jwt,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String cursor) {
+        String userId = jwt.getSubject();
+        return ResponseEntity.ok(friendService.listReceivedRequests(userId, limit, cursor));
+    }
+
+    @GetMapping("/requests/sent")
+    public ResponseEntity<FriendRequestPageDto> getSentRequests(
+            @AuthenticationPrincipal Jwt jwt,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String cursor) {
+        String userId = jwt.getSubject();
+        return ResponseEntity.ok(friendService.listSentRequests(userId, limit, cursor));
+    }
+
+    @GetMapping("/requests/unread")
+    public ResponseEntity<Map<String, Long>> getUnreadRequestCount(@AuthenticationPrincipal Jwt jwt) {
+        String userId = jwt.getSubject();
+        return ResponseEntity.ok(Map.of("unread", friendService.countUnreadRequests(userId)));
+    }
+
+    @PostMapping("/requests/seen")
+    public ResponseEntity<Void> markRequestsSeen(@AuthenticationPrincipal Jwt jwt) {
+        String userId = jwt.getSubject();
+        friendService.markRequestsSeen(userId);
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/status")
+    public ResponseEntity<Map<UUID, RelationshipDto>> getStatuses(@AuthenticationPrincipal Jwt jwt,
+                                                                  @RequestBody FriendStatusRequest request) {
+        String userId = jwt.getSubject();
+        return ResponseEntity.ok(friendService.getRelationshipStatuses(userId, request.getIds()));
+    }
+
+    @GetMapping("/suggestions")
+    public ResponseEntity<List<FriendSuggestionDto>> getSuggestions(@AuthenticationPrincipal Jwt jwt,
+                                                                    @RequestParam(defaultValue = "10") int limit) {
+        String userId = jwt.getSubject();
+        return ResponseEntity.ok(friendService.suggestFriends(userId, limit));
+    }
+
     @GetMapping
-    public ResponseEntity<List<ProfilePreviewDto>> getFriends(@AuthenticationPrincipal Jwt jwt) {
+    public ResponseEntity<FriendPageDto> getFriends(
+            @AuthenticationPrincipal Jwt jwt,
+            @RequestParam(defaultValue = "nickname") String sort,
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean includeTotal,
+            WebRequest request) {
         String userId = jwt.getSubject();
-        return ResponseEntity.ok(ProfileMapper.toPreviewList(friendService.listFriends(userId)));
+        // Read before the list: a change landing in between only costs the client one extra full response.
+        String eTag = friendService.getFriendsETag(userId);
+        if (request.checkNotModified(eTag))
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(REVALIDATE).build();
+
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(REVALIDATE)
+                .body(friendService.listFriends(userId, sort, limit, cursor, includeTotal));
     }
 }
 
@@ -2,29 +2,45 @@ package nl.fhict.gamemate.userservice.controller;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import nl.fhict.gamemate.userservice.dto.AccountDeletionDto;
+import nl.fhict.gamemate.userservice.dto.AutocompleteDto;
+import nl.fhict.gamemate.userservice.dto.AvatarConfirmRequest;
+import nl.fhict.gamemate.userservice.dto.AvatarUploadDto;
+import nl.fhict.gamemate.userservice.dto.AvatarUploadRequest;
 import nl.fhict.gamemate.userservice.dto.GameProfileRequest;
 import nl.fhict.gamemate.userservice.dto.ProfileDto;
+import nl.fhict.gamemate.userservice.dto.ProfileField;
 import nl.fhict.gamemate.userservice.dto.ProfilePreviewDto;
+import nl.fhict.gamemate.userservice.dto.ProfilePreviewsRequest;
 import nl.fhict.gamemate.userservice.dto.ProfileRequest;
 import nl.fhict.gamemate.userservice.mapper.ProfileMapper;
+import nl.fhict.gamemate.userservice.ratelimit.RateLimit;
 import nl.fhict.gamemate.userservice.service.ProfileService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/user/profile")
 @RequiredArgsConstructor
 public class ProfileController {
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
     private final ProfileService service;
 
     @GetMapping("/check-nickname")
+    @RateLimit(name = "nickname-check", capacity = 60, refillPeriod = "PT1M")
     public ResponseEntity<?> checkNickname(@RequestParam String nickname) {
         boolean available = service.isNicknameAvailable(nickname);
         if (available) {
@@ -45,22 +61,62 @@ public class ProfileController {
 
 
     @PostMapping("/avatar")
-    public ResponseEntity<?> uploadAvatar(@AuthenticationPrincipal Jwt jwt,
-                                          @RequestParam("file") MultipartFile file) {
+    public CompletableFuture<ResponseEntity<Map<String, String>>> uploadAvatar(@AuthenticationPrincipal Jwt jwt,
+                                                                               @RequestParam("file") MultipartFile file) {
         String userId = jwt.getSubject();
-        String avatarUrl = service.uploadAvatar(userId, file);
-        return ResponseEntity.ok(Map.of("avatarUrl", avatarUrl));
+        return service.uploadAvatar(userId, file)
+                .thenApply(avatarUrl -> ResponseEntity.ok(Map.of("avatarUrl", avatarUrl)));
+    }
+
+    @PostMapping("/avatar/upload-url")
+    public ResponseEntity<AvatarUploadDto> createAvatarUpload(@AuthenticationPrincipal Jwt jwt,
+                                                              @Valid @RequestBody AvatarUploadRequest request) {
+        String userId = jwt.getSubject();
+        return ResponseEntity.ok(service.createAvatarUpload(userId, request));
+    }
+
+    @PostMapping("/avatar/confirm")
+    public CompletableFuture<ResponseEntity<Map<String, String>>> confirmAvatarUpload(@AuthenticationPrincipal Jwt jwt,
+                                                                                      @Valid @RequestBody AvatarConfirmRequest request) {
+        String userId = jwt.getSubject();
+        return service.confirmAvatarUpload(userId, request.getKey())
+                .thenApply(avatarUrl -> ResponseEntity.ok(Map.of("avatarUrl", avatarUrl)));
     }
 
     @GetMapping("/me")
-    public ResponseEntity<ProfileDto> getOwnProfile(@AuthenticationPrincipal Jwt jwt) {
+    public ResponseEntity<ProfileDto> getOwnProfile(@AuthenticationPrincipal Jwt jwt,
+                                                    @RequestParam(required = false) String fields,
+                                                    WebRequest request) {
         String userId = jwt.getSubject();
-        return ResponseEntity.ok(ProfileMapper.toDto(service.getOwnProfile(userId)));
+        Set<ProfileField> fieldSet = ProfileField.parse(fields);
+        String eTag = service.getOwnProfileETag(userId, fieldSet);
+        if (request.checkNotModified(eTag)) return notModified(eTag);
+
+        ProfileDto profile = service.getOwnProfileDto(userId, fieldSet);
+        return ResponseEntity.ok()
+                .eTag(ProfileService.eTag(profile, fieldSet))
+                .cacheControl(REVALIDATE)
+                .body(profile);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<ProfileDto> getProfile(@PathVariable UUID id) {
-        return ResponseEntity.ok(ProfileMapper.toDto(service.getProfile(id)));
+    public ResponseEntity<ProfileDto> getProfile(@PathVariable UUID id,
+                                                 @RequestParam(required = false) String fields,
+                                                 WebRequest request) {
+        Set<ProfileField> fieldSet = ProfileField.parse(fields);
+        String eTag = service.getProfileETag(id, fieldSet);
+        if (request.checkNotModified(eTag)) return notModified(eTag);
+
+        ProfileDto profile = service.getProfileDto(id, fieldSet);
+        return ResponseEntity.ok()
+                .eTag(ProfileService.eTag(profile, fieldSet))
+                .cacheControl(REVALIDATE)
+                .body(profile);
+    }
+
+    @PostMapping("/previews")
+    public ResponseEntity<Map<UUID, ProfilePreviewDto>> getPreviews(@RequestBody ProfilePreviewsRequest request) {
+        return ResponseEntity.ok(service.getPreviews(request.getIds()));
     }
 
     @PutMapping()
@@ -93,6 +149,7 @@ public class ProfileController {
     }
 
     @GetMapping("/search")
+    @RateLimit(name = "profile-search", capacity = 30, refillPeriod = "PT1M")
     public ResponseEntity<List<ProfilePreviewDto>> searchProfiles(
             @RequestParam String nickname,
             @AuthenticationPrincipal Jwt jwt
@@ -102,11 +159,29 @@ public class ProfileController {
         return ResponseEntity.ok(results);
     }
 
+    @GetMapping("/autocomplete")
+    @RateLimit(name = "profile-autocomplete", capacity = 120, refillPeriod = "PT1M")
+    public ResponseEntity<AutocompleteDto> autocomplete(
+            @RequestParam String prefix,
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(required = false) String cursor
+    ) {
+        return ResponseEntity.ok(service.autocomplete(prefix, limit, cursor));
+    }
+
     @DeleteMapping("/delete")
-    public ResponseEntity<Void> deleteAccount(@AuthenticationPrincipal Jwt jwt) {
+    public ResponseEntity<AccountDeletionDto> deleteAccount(@AuthenticationPrincipal Jwt jwt) {
         String userId = jwt.getSubject();
-        service.deleteOwnProfile(userId);
-        return ResponseEntity.noContent().build();
+        return ResponseEntity.accepted().body(service.deleteOwnProfile(userId));
     }
-}
 
+    @GetMapping("/delete/status")
+    public ResponseEntity<AccountDeletionDto> getDeletionStatus(@AuthenticationPrincipal Jwt jwt) {
+        String userId = jwt.getSubject();
+        return ResponseEntity.ok(service.getAccountDeletion(userId));
+    }
+
+    private static <T> ResponseEntity<T> notModified(String eTag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(REVALIDATE).build();
+    }
+}
@@ -0,0 +1,21 @@
+package nl.fhict.gamemate.userservice.dto;
+
+import lombok.*;
+import nl.fhict.gamemate.userservice.model.AccountDeletionStatus;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class AccountDeletionDto {
+    private UUID id;
+    private AccountDeletionStatus status;
+    private boolean avatarDeleted;
+    private boolean auth0Deleted;
+    private int attempts;
+    private LocalDateTime createdAt;
+    private LocalDateTime completedAt;
+}
@@ -0,0 +1,14 @@
+package nl.fhict.gamemate.userservice.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class AutocompleteDto {
+    private List<NicknameSuggestionDto> suggestions;
+    private String nextCursor;
+}
@@ -0,0 +1,13 @@
+package nl.fhict.gamemate.userservice.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.*;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class AvatarConfirmRequest {
+    @NotBlank
+    private String key;
+}
@@ -0,0 +1,21 @@
+package nl.fhict.gamemate.userservice.dto;
+
+import lombok.*;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Where and how the client PUTs the avatar bytes; every header listed is signed and must be sent as given.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class AvatarUploadDto {
+    private String key;
+    private String uploadUrl;
+    private String method;
+    private Map<String, String> headers;
+    private Instant expiresAt;
+}
@@ -0,0 +1,16 @@
+package nl.fhict.gamemate.userservice.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
+import lombok.*;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class AvatarUploadRequest {
+    @NotBlank
+    private String contentType;
+    @Positive
+    private long size;
+}
@@ -0,0 +1,18 @@
+package nl.fhict.gamemate.userservice.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class FriendPageDto {
+    private List<ProfilePreviewDto> friends;
+    private String nextCursor;
+    /**
+     * Number of friends in total; only filled in when asked for.
+     */
+    private Long total;
+}
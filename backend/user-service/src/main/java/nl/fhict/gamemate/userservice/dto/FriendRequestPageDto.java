@@ -0,0 +1,14 @@
+package nl.fhict.gamemate.userservice.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class FriendRequestPageDto {
+    private List<FriendRequestDto> requests;
+    private String nextCursor;
+}
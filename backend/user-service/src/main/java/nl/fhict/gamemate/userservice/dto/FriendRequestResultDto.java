@@ -0,0 +1,18 @@
+package nl.fhict.gamemate.userservice.dto;
+
+import lombok.*;
+import nl.fhict.gamemate.userservice.model.FriendRequestOutcome;
+
+import java.util.UUID;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class FriendRequestResultDto {
+    private FriendRequestOutcome outcome;
+    /**
+     * The request that was created, already pending or accepted; {@code null} when the profiles were already friends.
+     */
+    private UUID requestId;
+}
@@ -0,0 +1,14 @@
+package nl.fhict.gamemate.userservice.dto;
+
+import lombok.*;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class FriendStatusRequest {
+    private List<UUID> ids;
+}
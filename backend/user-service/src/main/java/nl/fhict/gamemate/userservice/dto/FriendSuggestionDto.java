@@ -0,0 +1,13 @@
+package nl.fhict.gamemate.userservice.dto;
+
+import lombok.*;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class FriendSuggestionDto {
+    private ProfilePreviewDto profile;
+    private int mutualFriends;
+    private int sharedGames;
+}
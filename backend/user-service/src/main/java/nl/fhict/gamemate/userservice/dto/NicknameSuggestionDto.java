@@ -0,0 +1,14 @@
+package nl.fhict.gamemate.userservice.dto;
+
+import lombok.*;
+
+import java.util.UUID;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class NicknameSuggestionDto {
+    private UUID id;
+    private String nickname;
+}
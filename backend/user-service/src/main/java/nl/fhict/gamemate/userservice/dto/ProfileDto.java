@@ -1,5 +1,6 @@
 package nl.fhict.gamemate.userservice.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 
 import java.time.LocalDateTime;
@@ -19,9 +20,8 @@ public class ProfileDto {
     private String avatarUrl;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+    @JsonIgnore
+    private long relationsVersion;
     private Set<ProfilePreviewDto> friends;
     private Set<GameProfileDto> gameProfiles;
-
-    private Set<FriendRequestDto> sentFriendRequests;
-    private Set<FriendRequestDto> receivedFriendRequests;
 }
\ No newline at end of file
@@ -0,0 +1,41 @@
+package nl.fhict.gamemate.userservice.dto;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Optional parts of {@link ProfileDto} that a client can ask for with {@code ?fields=}.
+ * The scalar profile fields are always included.
+ */
+public enum ProfileField {
+    FRIENDS("friends"),
+    GAME_PROFILES("gameProfiles");
+
+    private final String paramName;
+
+    ProfileField(String paramName) {
+        this.paramName = paramName;
+    }
+
+    public String getParamName() {
+        return paramName;
+    }
+
+    /**
+     * Parses a comma-separated field list; {@code null} means every field, blank means none.
+     */
+    public static Set<ProfileField> parse(String fields) {
+        if (fields == null) return EnumSet.allOf(ProfileField.class);
+        Set<ProfileField> result = EnumSet.noneOf(ProfileField.class);
+        for (String name : fields.split(",")) {
+            String trimmed = name.trim();
+            if (trimmed.isEmpty()) continue;
+            result.add(Arrays.stream(values())
+                    .filter(f -> f.paramName.equalsIgnoreCase(trimmed))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown profile field: " + trimmed)));
+        }
+        return result;
+    }
+}
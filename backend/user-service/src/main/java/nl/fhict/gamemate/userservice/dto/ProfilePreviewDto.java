@@ -12,4 +12,5 @@ public class ProfilePreviewDto {
     private UUID id;
     private String nickname;
     private String avatarUrl;
+    private String avatarThumbnailUrl;
 }
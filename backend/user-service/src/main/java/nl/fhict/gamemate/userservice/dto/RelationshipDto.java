@@ -0,0 +1,18 @@
+package nl.fhict.gamemate.userservice.dto;
+
+import lombok.*;
+import nl.fhict.gamemate.userservice.model.RelationshipStatus;
+
+import java.util.UUID;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class RelationshipDto {
+    private RelationshipStatus status;
+    /**
+     * The pending request between the two profiles; {@code null} unless the status is pending.
+     */
+    private UUID requestId;
+}
@@ -0,0 +1,25 @@
+package nl.fhict.gamemate.userservice.event;
+
+import lombok.*;
+
+import java.util.UUID;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class NicknameChangedEvent {
+    private String originInstanceId;
+    /**
+     * Nickname that became taken, or {@code null}.
+     */
+    private String added;
+    /**
+     * Nickname that became free, or {@code null}.
+     */
+    private String removed;
+    /**
+     * Profile whose nickname changed.
+     */
+    private UUID profileId;
+}
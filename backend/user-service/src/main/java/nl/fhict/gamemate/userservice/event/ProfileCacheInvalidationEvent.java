@@ -0,0 +1,16 @@
+package nl.fhict.gamemate.userservice.event;
+
+import lombok.*;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProfileCacheInvalidationEvent {
+    private String originInstanceId;
+    private List<UUID> profileIds;
+    private List<String> userIds;
+}
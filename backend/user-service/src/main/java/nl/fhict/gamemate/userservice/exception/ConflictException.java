@@ -0,0 +1,11 @@
+package nl.fhict.gamemate.userservice.exception;
+
+/**
+ * Thrown when a request lost a race with a concurrent one and can be sent again as is. Reported as 409 with the
+ * message, which must therefore be fit to show to the caller.
+ */
+public class ConflictException extends RuntimeException {
+    public ConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,25 @@
+package nl.fhict.gamemate.userservice.listener;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.fhict.gamemate.userservice.event.NicknameChangedEvent;
+import nl.fhict.gamemate.userservice.service.NicknameIndex;
+import nl.fhict.gamemate.userservice.service.NicknameTrie;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class NicknameChangeListener {
+    private final NicknameIndex nicknameIndex;
+    private final NicknameTrie nicknameTrie;
+
+    @RabbitListener(queues = "#{nicknameChangeQueue.name}")
+    public void handleChange(NicknameChangedEvent event) {
+        if (nicknameIndex.isLocal(event)) return;
+        nicknameIndex.onRemoteChange(event);
+        nicknameTrie.onRemoteChange(event);
+        log.debug("Nickname change: {}", event);
+    }
+}
@@ -0,0 +1,21 @@
+package nl.fhict.gamemate.userservice.listener;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.fhict.gamemate.userservice.event.ProfileCacheInvalidationEvent;
+import nl.fhict.gamemate.userservice.service.ProfileCache;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProfileCacheInvalidationListener {
+    private final ProfileCache profileCache;
+
+    @RabbitListener(queues = "#{profileCacheInvalidationQueue.name}")
+    public void handleInvalidation(ProfileCacheInvalidationEvent event) {
+        profileCache.onRemoteInvalidation(event);
+        log.debug("Profile cache invalidation: {}", event);
+    }
+}
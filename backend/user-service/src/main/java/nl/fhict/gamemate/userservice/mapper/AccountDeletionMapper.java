@@ -0,0 +1,20 @@
+package nl.fhict.gamemate.userservice.mapper;
+
+import nl.fhict.gamemate.userservice.dto.AccountDeletionDto;
+import nl.fhict.gamemate.userservice.model.AccountDeletion;
+
+public class AccountDeletionMapper {
+    public static AccountDeletionDto toDto(AccountDeletion deletion) {
+        if (deletion == null) return null;
+
+        return AccountDeletionDto.builder()
+                .id(deletion.getId())
+                .status(deletion.getStatus())
+                .avatarDeleted(deletion.isAvatarDeleted())
+                .auth0Deleted(deletion.isAuth0Deleted())
+                .attempts(deletion.getAttempts())
+                .createdAt(deletion.getCreatedAt())
+                .completedAt(deletion.getCompletedAt())
+                .build();
+    }
+}
@@ -1,12 +1,10 @@
 package nl.fhict.gamemate.userservice.mapper;
 
 import nl.fhict.gamemate.userservice.dto.FriendRequestDto;
+import nl.fhict.gamemate.userservice.dto.ProfilePreviewDto;
+import nl.fhict.gamemate.userservice.model.AvatarRendition;
 import nl.fhict.gamemate.userservice.model.FriendRequest;
-
-import java.util.Collection;
-import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
+import nl.fhict.gamemate.userservice.repository.projection.FriendRequestPreviewProjection;
 
 public class FriendRequestMapper {
     public static FriendRequestDto toDto(FriendRequest request) {
@@ -20,17 +18,38 @@ public class FriendRequestMapper {
                 .build();
     }
 
-    public static List<FriendRequestDto> toDtoList(Collection<FriendRequest> requests) {
-        if (requests == null) return List.of();
-        return requests.stream()
-                .map(FriendRequestMapper::toDto)
-                .toList();
+    /**
+     * Maps a request from the caller's inbox; only the sender is filled in, the receiver is the caller.
+     */
+    public static FriendRequestDto toReceivedDto(FriendRequestPreviewProjection projection) {
+        if (projection == null) return null;
+
+        return FriendRequestDto.builder()
+                .id(projection.getId())
+                .sender(toCounterpart(projection))
+                .createdAt(projection.getCreatedAt())
+                .build();
+    }
+
+    /**
+     * Maps a request from the caller's outbox; only the receiver is filled in, the sender is the caller.
+     */
+    public static FriendRequestDto toSentDto(FriendRequestPreviewProjection projection) {
+        if (projection == null) return null;
+
+        return FriendRequestDto.builder()
+                .id(projection.getId())
+                .receiver(toCounterpart(projection))
+                .createdAt(projection.getCreatedAt())
+                .build();
     }
 
-    public static Set<FriendRequestDto> toDtoSet(Collection<FriendRequest> requests) {
-        if (requests == null) return Set.of();
-        return requests.stream()
-                .map(FriendRequestMapper::toDto)
-                .collect(Collectors.toSet());
+    private static ProfilePreviewDto toCounterpart(FriendRequestPreviewProjection projection) {
+        return ProfilePreviewDto.builder()
+                .id(projection.getProfileId())
+                .nickname(projection.getNickname())
+                .avatarUrl(projection.getAvatarUrl())
+                .avatarThumbnailUrl(AvatarRendition.SMALL.urlFor(projection.getAvatarUrl()))
+                .build();
     }
 }
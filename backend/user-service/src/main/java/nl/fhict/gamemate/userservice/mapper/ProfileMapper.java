@@ -2,11 +2,13 @@ package nl.fhict.gamemate.userservice.mapper;
 
 import nl.fhict.gamemate.userservice.dto.ProfileDto;
 import nl.fhict.gamemate.userservice.dto.ProfilePreviewDto;
+import nl.fhict.gamemate.userservice.model.AvatarRendition;
 import nl.fhict.gamemate.userservice.model.Profile;
+import nl.fhict.gamemate.userservice.repository.projection.ProfilePreviewProjection;
+import nl.fhict.gamemate.userservice.repository.projection.ProfileSummaryProjection;
 
 import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class ProfileMapper {
     public static ProfilePreviewDto toPreview(Profile profile) {
@@ -16,9 +18,43 @@ public class ProfileMapper {
                 .id(profile.getId())
                 .nickname(profile.getNickname())
                 .avatarUrl(profile.getAvatarUrl())
+                .avatarThumbnailUrl(AvatarRendition.SMALL.urlFor(profile.getAvatarUrl()))
                 .build();
     }
 
+    public static ProfilePreviewDto toPreview(ProfilePreviewProjection projection) {
+        if (projection == null) return null;
+
+        return ProfilePreviewDto.builder()
+                .id(projection.getId())
+                .nickname(projection.getNickname())
+                .avatarUrl(projection.getAvatarUrl())
+                .avatarThumbnailUrl(AvatarRendition.SMALL.urlFor(projection.getAvatarUrl()))
+                .build();
+    }
+
+    /**
+     * Maps only the scalar fields; association fields are left {@code null} for the caller to fill in.
+     */
+    public static ProfileDto toDto(ProfileSummaryProjection summary) {
+        if (summary == null) return null;
+
+        return ProfileDto.builder()
+                .id(summary.getId())
+                .userId(summary.getUserId())
+                .nickname(summary.getNickname())
+                .bio(summary.getBio())
+                .location(summary.getLocation())
+                .avatarUrl(summary.getAvatarUrl())
+                .createdAt(summary.getCreatedAt())
+                .updatedAt(summary.getUpdatedAt())
+                .relationsVersion(summary.getRelationsVersion())
+                .build();
+    }
+
+    /**
+     * Friends are not part of the entity; {@code friends} is left {@code null}.
+     */
     public static ProfileDto toDto(Profile profile) {
         if (profile == null) return null;
 
@@ -31,12 +67,8 @@ public class ProfileMapper {
                 .avatarUrl(profile.getAvatarUrl())
                 .createdAt(profile.getCreatedAt())
                 .updatedAt(profile.getUpdatedAt())
-                .friends(profile.getFriends().stream()
-                        .map(ProfileMapper::toPreview)
-                        .collect(Collectors.toSet()))
+                .relationsVersion(profile.getRelationsVersion())
                 .gameProfiles(new HashSet<>(GameProfileMapper.toDtoList(profile.getGameProfiles())))
-                .sentFriendRequests(FriendRequestMapper.toDtoSet(profile.getSentFriendRequests()))
-                .receivedFriendRequests(FriendRequestMapper.toDtoSet(profile.getReceivedFriendRequests()))
                 .build();
     }
 
@@ -0,0 +1,70 @@
+package nl.fhict.gamemate.userservice.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Tracks the external cleanup of an account whose profile rows are already gone.
+ */
+@Entity
+@Table(name = "account_deletions")
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class AccountDeletion {
+
+    @Id
+    @GeneratedValue
+    @Column(columnDefinition = "uuid", updatable = false, nullable = false)
+    private UUID id;
+
+    @Column(nullable = false, updatable = false)
+    private String userId;
+
+    @Column(columnDefinition = "uuid", nullable = false, updatable = false)
+    private UUID profileId;
+
+    /**
+     * Custom avatar still to be removed from storage; {@code null} when the profile used the default avatar.
+     */
+    private String avatarUrl;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private AccountDeletionStatus status;
+
+    private boolean avatarDeleted;
+
+    private boolean auth0Deleted;
+
+    private int attempts;
+
+    @Column(length = 500)
+    private String lastError;
+
+    @Column(nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+    private LocalDateTime completedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = updatedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,7 @@
+package nl.fhict.gamemate.userservice.model;
+
+public enum AccountDeletionStatus {
+    PENDING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,45 @@
+package nl.fhict.gamemate.userservice.model;
+
+/**
+ * Fixed square sizes every uploaded avatar is re-encoded to. Renditions live next to each other under one
+ * base key ({@code <base>/<size>.jpg}); the profile stores the {@link #LARGE} URL and the others are derived from it.
+ */
+public enum AvatarRendition {
+    SMALL(64),
+    MEDIUM(128),
+    LARGE(512);
+
+    public static final String CONTENT_TYPE = "image/jpeg";
+    private static final String EXTENSION = ".jpg";
+
+    private final int size;
+
+    AvatarRendition(int size) {
+        this.size = size;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public String keyFor(String baseKey) {
+        return baseKey + "/" + size + EXTENSION;
+    }
+
+    /**
+     * Returns this rendition's URL for a stored avatar URL, or the URL unchanged when it is not a processed avatar
+     * (the default picture, or an upload from before renditions existed).
+     */
+    public String urlFor(String avatarUrl) {
+        String base = baseKeyOf(avatarUrl);
+        return base == null ? avatarUrl : keyFor(base);
+    }
+
+    /**
+     * Base key (or base URL) of a processed avatar, or {@code null} if it does not point at a {@link #LARGE} rendition.
+     */
+    public static String baseKeyOf(String key) {
+        String suffix = "/" + LARGE.size + EXTENSION;
+        return key != null && key.endsWith(suffix) ? key.substring(0, key.length() - suffix.length()) : null;
+    }
+}
@@ -29,7 +29,6 @@ public class FriendRequest {
             "updatedAt",
             "sentFriendRequests",
             "receivedFriendRequests",
-            "friends",
             "gameProfiles"
     })
     private Profile sender;
@@ -42,7 +41,6 @@ public class FriendRequest {
             "updatedAt",
             "sentFriendRequests",
             "receivedFriendRequests",
-            "friends",
             "gameProfiles"
     })
     private Profile receiver;
@@ -0,0 +1,20 @@
+package nl.fhict.gamemate.userservice.model;
+
+/**
+ * What sending a friend request did.
+ */
+public enum FriendRequestOutcome {
+    /**
+     * A new request was created.
+     */
+    CREATED,
+    /**
+     * The caller had already sent a request to this profile; it is left as it was.
+     */
+    ALREADY_SENT,
+    /**
+     * The other profile had already sent the caller a request, which was accepted instead.
+     */
+    ACCEPTED,
+    ALREADY_FRIENDS
+}
@@ -6,8 +6,6 @@ import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Pattern;
 import jakarta.validation.constraints.Size;
 import lombok.*;
-import org.hibernate.annotations.OnDelete;
-import org.hibernate.annotations.OnDeleteAction;
 
 import java.time.LocalDateTime;
 import java.util.HashSet;
@@ -67,6 +65,12 @@ public class Profile {
     @EqualsAndHashCode.Include
     private LocalDateTime updatedAt;
 
+    /**
+     * Only ever changed by a bulk increment in the repository, so entity flushes never overwrite it.
+     */
+    @Column(nullable = false, insertable = false, updatable = false, columnDefinition = "bigint not null default 0")
+    private long relationsVersion;
+
     @PrePersist
     protected void onCreate() {
         createdAt = updatedAt = LocalDateTime.now();
@@ -77,20 +81,6 @@ public class Profile {
         updatedAt = LocalDateTime.now();
     }
 
-    @ManyToMany(fetch = FetchType.LAZY)
-    @JoinTable(
-            name = "friends",
-            joinColumns = @JoinColumn(name = "profile_id"),
-            inverseJoinColumns = @JoinColumn(name = "friend_id")
-    )
-    @OnDelete(action = OnDeleteAction.CASCADE)
-    @JsonIgnoreProperties({
-            "createdAt", "updatedAt", "friends",
-            "gameProfiles", "sentFriendRequests", "receivedFriendRequests"
-    })
-    @Builder.Default
-    private Set<Profile> friends = new HashSet<>();
-
     @OneToMany(
             mappedBy = "profile",
             cascade = CascadeType.ALL,
@@ -103,7 +93,6 @@ public class Profile {
     @Builder.Default
     @JsonIgnoreProperties({
             "sender",
-            "receiver.friends",
             "receiver.gameProfiles",
             "receiver.sentFriendRequests",
             "receiver.receivedFriendRequests"
@@ -114,7 +103,6 @@ public class Profile {
     @Builder.Default
     @JsonIgnoreProperties({
             "receiver",
-            "sender.friends",
             "sender.gameProfiles",
             "sender.sentFriendRequests",
             "sender.receivedFriendRequests"
@@ -185,12 +173,8 @@ public class Profile {
         this.updatedAt = updatedAt;
     }
 
-    public Set<Profile> getFriends() {
-        return friends;
-    }
-
-    public void setFriends(Set<Profile> friends) {
-        this.friends = friends;
+    public long getRelationsVersion() {
+        return relationsVersion;
     }
 
     public Set<GameProfile> getGameProfiles() {
@@ -0,0 +1,11 @@
+package nl.fhict.gamemate.userservice.model;
+
+/**
+ * How another profile relates to the caller, strongest first.
+ */
+public enum RelationshipStatus {
+    FRIEND,
+    PENDING_SENT,
+    PENDING_RECEIVED,
+    STRANGER
+}
@@ -0,0 +1,69 @@
+package nl.fhict.gamemate.userservice.ratelimit;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Token buckets in the {@code rate_limit_buckets} table, shared by every instance. Refill and take happen in one
+ * upsert against the database clock, so concurrent requests on different instances cannot both spend the last token
+ * and instance clock skew does not matter. Only a rejection costs a second query, to work out the Retry-After.
+ */
+@Component
+@ConditionalOnProperty(name = "gamemate.rate-limit.store", havingValue = "postgres")
+@RequiredArgsConstructor
+@Slf4j
+public class PostgresRateLimitStore implements RateLimitStore {
+    private static final String AVAILABLE = """
+            LEAST(:capacity, b.tokens + EXTRACT(EPOCH FROM now() - b.updated_at)::double precision * :rate)""";
+
+    private static final String TAKE = """
+            INSERT INTO rate_limit_buckets AS b (bucket_key, tokens, updated_at, full_at)
+            VALUES (:key, :capacity - 1, now(), now() + make_interval(secs => 1 / :rate))
+            ON CONFLICT (bucket_key) DO UPDATE
+            SET tokens = %1$s - 1,
+                updated_at = now(),
+                full_at = now() + make_interval(secs => (:capacity - (%1$s - 1)) / :rate)
+            WHERE %1$s >= 1
+            RETURNING b.tokens
+            """.formatted(AVAILABLE);
+
+    private static final String WAIT = """
+            SELECT (1 - %s) / :rate FROM rate_limit_buckets b WHERE b.bucket_key = :key
+            """.formatted(AVAILABLE);
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Override
+    public long tryConsume(String key, long capacity, Duration refillPeriod) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("key", key)
+                .addValue("capacity", (double) capacity)
+                .addValue("rate", capacity / (refillPeriod.toMillis() / 1000.0));
+        if (!jdbcTemplate.queryForList(TAKE, params, Double.class).isEmpty()) return 0;
+
+        List<Double> wait = jdbcTemplate.queryForList(WAIT, params, Double.class);
+        double seconds = wait.isEmpty() || wait.get(0) == null ? 0 : wait.get(0);
+        return Math.max(1, (long) Math.ceil(seconds * 1000));
+    }
+
+    /**
+     * Full buckets behave exactly like missing ones, so they can be removed at any time.
+     */
+    @Scheduled(fixedDelayString = "${gamemate.rate-limit.cleanup-interval:PT10M}")
+    public void deleteFullBuckets() {
+        try {
+            int deleted = jdbcTemplate.update("DELETE FROM rate_limit_buckets WHERE full_at < now()", new MapSqlParameterSource());
+            if (deleted > 0) log.debug("Deleted {} full rate limit buckets", deleted);
+        } catch (Exception e) {
+            log.error("Failed to delete full rate limit buckets", e);
+        }
+    }
+}
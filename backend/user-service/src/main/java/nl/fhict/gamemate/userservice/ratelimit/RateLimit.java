@@ -0,0 +1,33 @@
+package nl.fhict.gamemate.userservice.ratelimit;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Puts a token bucket in front of a controller method. Each caller, as chosen by {@link #key()}, gets a bucket of
+ * {@link #capacity()} tokens that refills completely over {@link #refillPeriod()}; a request takes one token and is
+ * rejected with 429 when none is left.
+ * <p>
+ * Capacity and refill period can be overridden per {@link #name()} under {@code gamemate.rate-limit.limits}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RateLimit {
+    /**
+     * Bucket name, shared by every method that uses it. Also the {@code limit} tag on the metrics.
+     */
+    String name();
+
+    long capacity();
+
+    /**
+     * ISO-8601 duration for an empty bucket to fill up again, e.g. {@code PT1M}.
+     */
+    String refillPeriod();
+
+    RateLimitKey key() default RateLimitKey.SUBJECT;
+}
@@ -0,0 +1,37 @@
+package nl.fhict.gamemate.userservice.ratelimit;
+
+import java.time.Duration;
+
+/**
+ * Thrown when a {@link RateLimit} bucket is empty. Extends {@link IllegalStateException} so it is reported as 429
+ * like the other limits, with a Retry-After taken from {@link #getRetryAfterSeconds()}.
+ */
+public class RateLimitExceededException extends IllegalStateException {
+    private final String limit;
+    private final Duration retryAfter;
+
+    public RateLimitExceededException(String limit, Duration retryAfter) {
+        super("Too many requests, try again in " + seconds(retryAfter) + " seconds");
+        this.limit = limit;
+        this.retryAfter = retryAfter;
+    }
+
+    public String getLimit() {
+        return limit;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * Retry-After value: the wait rounded up to whole seconds, at least one.
+     */
+    public long getRetryAfterSeconds() {
+        return seconds(retryAfter);
+    }
+
+    private static long seconds(Duration wait) {
+        return Math.max(1, (wait.toMillis() + 999) / 1000);
+    }
+}
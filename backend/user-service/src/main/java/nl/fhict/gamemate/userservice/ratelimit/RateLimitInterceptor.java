@@ -0,0 +1,178 @@
+package nl.fhict.gamemate.userservice.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import nl.fhict.gamemate.userservice.config.RateLimitProperties;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Enforces {@link RateLimit} on handler methods before they run. Rejections are counted in
+ * {@code gamemate.rate_limit.rejected}, tagged with the limit name.
+ * <p>
+ * A failing store never blocks traffic: the request is let through and {@code gamemate.rate_limit.errors} is
+ * incremented instead.
+ * <p>
+ * Every mapped handler method is resolved once the singletons are created, before the server accepts requests, so an
+ * invalid limit stops startup instead of failing the requests that reach it.
+ */
+@Component
+@Slf4j
+public class RateLimitInterceptor implements HandlerInterceptor, ApplicationContextAware, SmartInitializingSingleton {
+    private static final Limit NONE = new Limit(null, 0, null, null, null);
+
+    private final RateLimitStore store;
+    private final RateLimitProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Counter errors;
+    private final Map<Method, Limit> limits = new ConcurrentHashMap<>();
+    private ApplicationContext applicationContext;
+
+    public RateLimitInterceptor(RateLimitStore store, RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this.store = store;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.errors = Counter.builder("gamemate.rate_limit.errors")
+                .description("Rate limit checks skipped because the store failed")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) {
+        this.applicationContext = applicationContext;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        validate(applicationContext.getBeansOfType(RequestMappingHandlerMapping.class).values().stream()
+                .flatMap(mapping -> mapping.getHandlerMethods().values().stream())
+                .map(HandlerMethod::getMethod)
+                .toList());
+    }
+
+    /**
+     * Resolves the limits of these handler methods and checks that methods sharing a bucket agree on it and that
+     * every configured override belongs to one of them.
+     *
+     * @throws IllegalStateException if a limit or override is invalid
+     */
+    public void validate(Collection<Method> methods) {
+        if (properties.getTrustedProxies() < 0) {
+            throw new IllegalStateException("gamemate.rate-limit.trusted-proxies must not be negative");
+        }
+        Map<String, Limit> byName = new HashMap<>();
+        for (Method method : methods) {
+            Limit limit = limits.computeIfAbsent(method, this::resolve);
+            if (limit == NONE) continue;
+            Limit other = byName.putIfAbsent(limit.name(), limit);
+            if (other != null && (other.capacity() != limit.capacity() || !other.refillPeriod().equals(limit.refillPeriod())
+                    || other.key() != limit.key())) {
+                throw new IllegalStateException("Rate limit " + limit.name() + " is declared differently on " + method);
+            }
+        }
+        for (String name : properties.getLimits().keySet()) {
+            if (!byName.containsKey(name)) {
+                throw new IllegalStateException("gamemate.rate-limit.limits." + name + " does not match any @RateLimit");
+            }
+        }
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // Async handlers are dispatched again to write the result; the token was taken on the first pass.
+        if (!properties.isEnabled() || request.getDispatcherType() == DispatcherType.ASYNC
+                || !(handler instanceof HandlerMethod handlerMethod)) {
+            return true;
+        }
+        Limit limit = limits.computeIfAbsent(handlerMethod.getMethod(), this::resolve);
+        if (limit == NONE) return true;
+
+        long waitMillis;
+        try {
+            waitMillis = store.tryConsume(limit.name() + ":" + identity(request, limit.key()),
+                    limit.capacity(), limit.refillPeriod());
+        } catch (Exception e) {
+            errors.increment();
+            log.warn("Rate limit store failed for {}, letting request through: {}", limit.name(), e.getMessage());
+            return true;
+        }
+        if (waitMillis <= 0) return true;
+
+        limit.rejected().increment();
+        throw new RateLimitExceededException(limit.name(), Duration.ofMillis(waitMillis));
+    }
+
+    private Limit resolve(Method method) {
+        RateLimit annotation = method.getAnnotation(RateLimit.class);
+        if (annotation == null) return NONE;
+        RateLimitProperties.Limit override = properties.getLimits().get(annotation.name());
+        long capacity = override != null && override.getCapacity() != null
+                ? override.getCapacity() : annotation.capacity();
+        Duration refillPeriod;
+        try {
+            refillPeriod = override != null && override.getRefillPeriod() != null
+                    ? override.getRefillPeriod() : Duration.parse(annotation.refillPeriod());
+        } catch (DateTimeParseException e) {
+            throw new IllegalStateException("Invalid refill period for rate limit " + annotation.name() + " on " + method, e);
+        }
+        if (capacity < 1 || refillPeriod.isNegative() || refillPeriod.isZero()) {
+            throw new IllegalStateException("Invalid rate limit " + annotation.name() + " on " + method
+                    + ": capacity must be at least 1 and the refill period positive");
+        }
+        Counter rejected = Counter.builder("gamemate.rate_limit.rejected")
+                .description("Requests rejected by a rate limit")
+                .tag("limit", annotation.name())
+                .register(meterRegistry);
+        return new Limit(annotation.name(), capacity, refillPeriod, annotation.key(), rejected);
+    }
+
+    private String identity(HttpServletRequest request, RateLimitKey key) {
+        return switch (key) {
+            case IP -> "ip:" + clientIp(request);
+            case SUBJECT -> {
+                String subject = subject();
+                yield subject != null ? "sub:" + subject : "ip:" + clientIp(request);
+            }
+            case SUBJECT_AND_IP -> "sub:" + subject() + "|ip:" + clientIp(request);
+        };
+    }
+
+    private static String subject() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication instanceof JwtAuthenticationToken jwt ? jwt.getName() : null;
+    }
+
+    /**
+     * Each trusted proxy appends the address it received the request from, so the client is the entry that many
+     * places from the end; anything before it was supplied by the client and can be spoofed.
+     */
+    private String clientIp(HttpServletRequest request) {
+        String forwarded = request.getHeader("X-Forwarded-For");
+        int hops = properties.getTrustedProxies();
+        if (hops <= 0 || forwarded == null || forwarded.isBlank()) return request.getRemoteAddr();
+        String[] addresses = forwarded.split(",");
+        return addresses[Math.max(0, addresses.length - hops)].trim();
+    }
+
+    private record Limit(String name, long capacity, Duration refillPeriod, RateLimitKey key, Counter rejected) {}
+}
@@ -0,0 +1,17 @@
+package nl.fhict.gamemate.userservice.ratelimit;
+
+import java.time.Duration;
+
+/**
+ * Keeps the token buckets behind {@link RateLimit}. The in-memory store limits each instance on its own; a shared
+ * store makes a limit hold across instances. Select one with {@code gamemate.rate-limit.store}, or set it to
+ * {@code custom} and register another implementation as a bean.
+ */
+public interface RateLimitStore {
+    /**
+     * Takes one token from the bucket for {@code key}, creating a full bucket when there is none.
+     *
+     * @return 0 if a token was taken, otherwise the milliseconds until one will be available
+     */
+    long tryConsume(String key, long capacity, Duration refillPeriod);
+}
@@ -0,0 +1,30 @@
+package nl.fhict.gamemate.userservice.repository;
+
+import nl.fhict.gamemate.userservice.model.AvatarDeletion;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface AvatarDeletionRepository extends JpaRepository<AvatarDeletion, UUID> {
+    @Query("SELECT d.id FROM AvatarDeletion d WHERE d.nextAttemptAt <= :now ORDER BY d.nextAttemptAt")
+    List<UUID> findDueIds(@Param("now") LocalDateTime now, Pageable pageable);
+    /**
+     * Leases a due deletion to the caller until {@code leaseUntil}; returns 0 when another instance got it first.
+     */
+    @Transactional
+    @Modifying
+    @Query("""
+            UPDATE AvatarDeletion d SET d.nextAttemptAt = :leaseUntil
+            WHERE d.id = :id AND d.nextAttemptAt <= :now
+            """)
+    int claim(@Param("id") UUID id, @Param("now") LocalDateTime now, @Param("leaseUntil") LocalDateTime leaseUntil);
+}
@@ -0,0 +1,76 @@
+package nl.fhict.gamemate.userservice.repository;
+
+import jakarta.persistence.LockModeType;
+import nl.fhict.gamemate.userservice.model.AvatarObject;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AvatarObjectRepository extends JpaRepository<AvatarObject, String> {
+    /**
+     * Takes a reference in a single statement. Waits behind a concurrent {@link #findForUpdate} so a reference is
+     * never taken on renditions that are in the middle of being deleted.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO avatar_objects (content_hash, ref_count, created_at) VALUES (:hash, 1, now())
+            ON CONFLICT (content_hash) DO UPDATE SET ref_count = avatar_objects.ref_count + 1
+            """, nativeQuery = true)
+    void acquire(@Param("hash") String hash);
+
+    /**
+     * Gives back a reference for a store that failed before any profile used it. Leaves the row at zero rather than
+     * deleting objects; a later {@link #acquire} reuses them or orphan collection cleans them up.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE AvatarObject a SET a.refCount = a.refCount - 1 WHERE a.contentHash = :hash AND a.refCount > 0")
+    int releaseUnused(@Param("hash") String hash);
+
+    /**
+     * Drops a reference a profile was using and returns how many are left; empty when the avatar has no row or none
+     * to give back. A row that reaches zero is kept, so its renditions are only removed under its lock by
+     * {@link #findForUpdate}.
+     */
+    @Transactional
+    @Query(value = """
+            UPDATE avatar_objects SET ref_count = ref_count - 1
+            WHERE content_hash = :hash AND ref_count > 0
+            RETURNING ref_count
+            """, nativeQuery = true)
+    Optional<Integer> release(@Param("hash") String hash);
+
+    /**
+     * Makes sure a row exists for {@code hash} without taking a reference, so renditions that were left without one
+     * can be locked through {@link #findForUpdate} before they are collected.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO avatar_objects (content_hash, ref_count, created_at) VALUES (:hash, 0, now())
+            ON CONFLICT (content_hash) DO NOTHING
+            """, nativeQuery = true)
+    void track(@Param("hash") String hash);
+
+    @Query("SELECT a.contentHash FROM AvatarObject a WHERE a.contentHash IN :hashes AND a.refCount > 0")
+    List<String> findReferencedHashes(@Param("hashes") Collection<String> hashes);
+
+    @Query("SELECT a.contentHash FROM AvatarObject a WHERE a.refCount = 0 AND a.createdAt < :before ORDER BY a.createdAt")
+    List<String> findUnusedHashes(@Param("before") LocalDateTime before, Pageable pageable);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM AvatarObject a WHERE a.contentHash = :hash")
+    Optional<AvatarObject> findForUpdate(@Param("hash") String hash);
+}
@@ -2,20 +2,141 @@ package nl.fhict.gamemate.userservice.repository;
 
 import nl.fhict.gamemate.userservice.model.FriendRequest;
 import nl.fhict.gamemate.userservice.model.Profile;
+import nl.fhict.gamemate.userservice.repository.projection.FriendRequestClaimProjection;
+import nl.fhict.gamemate.userservice.repository.projection.FriendRequestKeyProjection;
+import nl.fhict.gamemate.userservice.repository.projection.FriendRequestPreviewProjection;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface FriendRequestRepository extends JpaRepository<FriendRequest, UUID> {
-    Optional<FriendRequest> findBySenderAndReceiver(Profile sender, Profile receiver);
-    List<FriendRequest> findByReceiver(Profile receiver);
+    /**
+     * Inserts the request unless the pair are friends or a request between them already exists in either direction,
+     * and reports which of the three happened in the same statement; {@code NO_RECEIVER} when the receiver does not
+     * exist. The unique pair index turns a concurrent insert into a no-op, so no row comes back when the competing
+     * request is not yet visible; callers retry.
+     */
+    @Query(value = """
+            WITH receiver AS (
+                SELECT 1 FROM profiles WHERE id = :receiverId
+            ), friends AS (
+                SELECT 1 FROM friendships
+                WHERE low_id = LEAST(:senderId, :receiverId) AND high_id = GREATEST(:senderId, :receiverId)
+            ), inserted AS (
+                INSERT INTO friend_requests (id, sender_id, receiver_id, created_at)
+                SELECT :id, :senderId, :receiverId, :createdAt
+                WHERE EXISTS (SELECT 1 FROM receiver) AND NOT EXISTS (SELECT 1 FROM friends)
+                ON CONFLICT DO NOTHING
+                RETURNING id, sender_id
+            )
+            SELECT 'CREATED' AS "outcome", id AS "requestId", sender_id AS "senderId" FROM inserted
+            UNION ALL
+            SELECT 'NO_RECEIVER', CAST(NULL AS UUID), CAST(NULL AS UUID) WHERE NOT EXISTS (SELECT 1 FROM receiver)
+            UNION ALL
+            SELECT 'FRIENDS', CAST(NULL AS UUID), CAST(NULL AS UUID) FROM friends
+            UNION ALL
+            SELECT 'EXISTING', r.id, r.sender_id
+            FROM friend_requests r
+            WHERE LEAST(r.sender_id, r.receiver_id) = LEAST(:senderId, :receiverId)
+              AND GREATEST(r.sender_id, r.receiver_id) = GREATEST(:senderId, :receiverId)
+              AND NOT EXISTS (SELECT 1 FROM inserted)
+              AND NOT EXISTS (SELECT 1 FROM friends)
+            """, nativeQuery = true)
+    Optional<FriendRequestClaimProjection> claim(@Param("id") UUID id,
+                                                 @Param("senderId") UUID senderId,
+                                                 @Param("receiverId") UUID receiverId,
+                                                 @Param("createdAt") LocalDateTime createdAt);
+    /**
+     * Deletes the request only if it still exists, so of two callers racing to consume it only one sees {@code 1}.
+     */
+    @Modifying
+    @Query("DELETE FROM FriendRequest fr WHERE fr.id = :id")
+    int deleteIfPresent(@Param("id") UUID id);
+    @Query(value = """
+            SELECT receiver_id AS "receiverId", outcome AS "outcome", request_id AS "requestId"
+            FROM friend_request_keys
+            WHERE user_id = :userId AND idempotency_key = :key
+            """, nativeQuery = true)
+    Optional<FriendRequestKeyProjection> findRequestKey(@Param("userId") String userId, @Param("key") String key);
+    /**
+     * Claims an idempotency key for the calling transaction. While another transaction holds the same key this waits
+     * for it to finish: once it has committed no row comes back and its outcome can be read, and if it rolled back
+     * the key is claimed here instead.
+     */
+    @Query(value = """
+            INSERT INTO friend_request_keys (user_id, idempotency_key, receiver_id)
+            VALUES (:userId, :key, :receiverId)
+            ON CONFLICT DO NOTHING
+            RETURNING idempotency_key
+            """, nativeQuery = true)
+    Optional<String> claimRequestKey(@Param("userId") String userId,
+                                     @Param("key") String key,
+                                     @Param("receiverId") UUID receiverId);
+    @Modifying
+    @Query(value = """
+            UPDATE friend_request_keys SET outcome = :outcome, request_id = :requestId
+            WHERE user_id = :userId AND idempotency_key = :key
+            """, nativeQuery = true)
+    void saveRequestKeyOutcome(@Param("userId") String userId,
+                               @Param("key") String key,
+                               @Param("outcome") String outcome,
+                               @Param("requestId") UUID requestId);
+    @Modifying
+    @Query(value = "DELETE FROM friend_request_keys WHERE created_at < :cutoff", nativeQuery = true)
+    int deleteRequestKeysBefore(@Param("cutoff") Instant cutoff);
+    @Query(value = """
+            SELECT r.id AS "id", r.created_at AS "createdAt",
+                   p.id AS "profileId", p.nickname AS "nickname", p.avatar_url AS "avatarUrl"
+            FROM friend_requests r
+            JOIN profiles p ON p.id = r.sender_id
+            WHERE r.receiver_id = :profileId
+              AND (r.created_at, r.id) < (:before, :beforeId)
+            ORDER BY r.created_at DESC, r.id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<FriendRequestPreviewProjection> findReceivedPreviews(@Param("profileId") UUID profileId,
+                                                              @Param("before") LocalDateTime before,
+                                                              @Param("beforeId") UUID beforeId,
+                                                              @Param("limit") int limit);
+    @Query(value = """
+            SELECT r.id AS "id", r.created_at AS "createdAt",
+                   p.id AS "profileId", p.nickname AS "nickname", p.avatar_url AS "avatarUrl"
+            FROM friend_requests r
+            JOIN profiles p ON p.id = r.receiver_id
+            WHERE r.sender_id = :profileId
+              AND (r.created_at, r.id) < (:before, :beforeId)
+            ORDER BY r.created_at DESC, r.id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<FriendRequestPreviewProjection> findSentPreviews(@Param("profileId") UUID profileId,
+                                                          @Param("before") LocalDateTime before,
+                                                          @Param("beforeId") UUID beforeId,
+                                                          @Param("limit") int limit);
+    @Query(value = """
+            SELECT count(*)
+            FROM friend_requests r
+            JOIN profiles me ON me.id = r.receiver_id
+            WHERE r.receiver_id = :profileId
+              AND (me.friend_requests_seen_at IS NULL OR r.created_at > me.friend_requests_seen_at)
+            """, nativeQuery = true)
+    long countUnread(@Param("profileId") UUID profileId);
+    @Query("""
+            SELECT CASE WHEN fr.sender.id = :profileId THEN fr.receiver.id ELSE fr.sender.id END
+            FROM FriendRequest fr WHERE fr.sender.id = :profileId OR fr.receiver.id = :profileId
+            """)
+    List<UUID> findCounterpartIds(@Param("profileId") UUID profileId);
+    @Modifying
+    @Query("DELETE FROM FriendRequest fr WHERE fr.sender.id = :profileId OR fr.receiver.id = :profileId")
+    int deleteAllInvolving(@Param("profileId") UUID profileId);
     @Modifying
     @Query("DELETE FROM FriendRequest fr WHERE fr.sender = :profile OR fr.receiver = :profile")
     void deleteBySenderOrReceiver(@Param("profile") Profile profile, @Param("profile") Profile profile2);
@@ -2,8 +2,17 @@ package nl.fhict.gamemate.userservice.repository;
 
 import nl.fhict.gamemate.userservice.model.GameProfile;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.UUID;
 
 public interface GameProfileRepository extends JpaRepository<GameProfile, UUID> {
+    @Query("SELECT gp FROM GameProfile gp JOIN FETCH gp.game WHERE gp.profile.id = :profileId")
+    List<GameProfile> findWithGameByProfileId(@Param("profileId") UUID profileId);
+    @Modifying
+    @Query("DELETE FROM GameProfile gp WHERE gp.profile.id = :profileId")
+    int deleteByProfileId(@Param("profileId") UUID profileId);
 }
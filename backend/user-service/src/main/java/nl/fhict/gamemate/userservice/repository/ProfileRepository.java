@@ -1,13 +1,20 @@
 package nl.fhict.gamemate.userservice.repository;
 
 import nl.fhict.gamemate.userservice.model.Profile;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.jpa.repository.EntityGraph;
+import nl.fhict.gamemate.userservice.repository.projection.FriendPreviewProjection;
+import nl.fhict.gamemate.userservice.repository.projection.NicknameEntryProjection;
+import nl.fhict.gamemate.userservice.repository.projection.ProfilePreviewProjection;
+import nl.fhict.gamemate.userservice.repository.projection.ProfileSummaryProjection;
+import nl.fhict.gamemate.userservice.repository.projection.ProfileVersionProjection;
+import nl.fhict.gamemate.userservice.repository.projection.RelationshipProjection;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -15,9 +22,137 @@ import java.util.UUID;
 @Repository
 public interface ProfileRepository extends JpaRepository<Profile, UUID> {
     boolean existsByNicknameIgnoreCase(String nickname);
-    @EntityGraph(attributePaths = {"friends"})
+    @Query("SELECT p.nickname FROM Profile p")
+    List<String> findAllNicknames();
+    @Query("SELECT p.id AS id, p.nickname AS nickname FROM Profile p")
+    List<NicknameEntryProjection> findAllNicknameEntries();
     Optional<Profile> findByUserId(String userId);
-    @Query("SELECT p FROM Profile p WHERE LOWER(p.nickname) LIKE LOWER(CONCAT('%', :nickname, '%')) AND p.userId <> :currentUserId")
-    List<Profile> searchByNickname(@Param("nickname") String nickname, @Param("currentUserId") String currentUserId, Pageable pageable);
+    @Query("""
+            SELECT p.id AS id, p.userId AS userId, p.nickname AS nickname, p.bio AS bio, p.location AS location,
+                   p.avatarUrl AS avatarUrl, p.createdAt AS createdAt, p.updatedAt AS updatedAt,
+                   p.relationsVersion AS relationsVersion
+            FROM Profile p WHERE p.userId = :userId
+            """)
+    Optional<ProfileSummaryProjection> findSummaryByUserId(@Param("userId") String userId);
+    @Query("""
+            SELECT p.id AS id, p.userId AS userId, p.nickname AS nickname, p.bio AS bio, p.location AS location,
+                   p.avatarUrl AS avatarUrl, p.createdAt AS createdAt, p.updatedAt AS updatedAt,
+                   p.relationsVersion AS relationsVersion
+            FROM Profile p WHERE p.id = :id
+            """)
+    Optional<ProfileSummaryProjection> findSummaryById(@Param("id") UUID id);
+    @Query("SELECT p.id AS id, p.updatedAt AS updatedAt, p.relationsVersion AS relationsVersion FROM Profile p WHERE p.userId = :userId")
+    Optional<ProfileVersionProjection> findVersionByUserId(@Param("userId") String userId);
+    /**
+     * Returns those of the object {@code keys} that a profile's avatar URL points at, whatever host or bucket path
+     * the URL was built with: the key is everything from the first {@code /avatars/} segment on.
+     */
+    @Query(value = """
+            SELECT DISTINCT substring(avatar_url from '/(avatars/[^?#]+)') FROM profiles
+            WHERE substring(avatar_url from '/(avatars/[^?#]+)') IN (:keys)
+            """, nativeQuery = true)
+    List<String> findAvatarKeysIn(@Param("keys") Collection<String> keys);
+    @Query("SELECT p.id AS id, p.updatedAt AS updatedAt, p.relationsVersion AS relationsVersion FROM Profile p WHERE p.id = :id")
+    Optional<ProfileVersionProjection> findVersionById(@Param("id") UUID id);
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Profile p SET p.relationsVersion = p.relationsVersion + 1 WHERE p.id IN :ids")
+    int incrementRelationsVersion(@Param("ids") Collection<UUID> ids);
+    @Query(value = "SELECT friend_id FROM friend_edges WHERE profile_id = :profileId", nativeQuery = true)
+    List<UUID> findFriendIds(@Param("profileId") UUID profileId);
+    @Modifying
+    @Query(value = """
+            INSERT INTO friendships (low_id, high_id)
+            VALUES (LEAST(:a, :b), GREATEST(:a, :b))
+            ON CONFLICT DO NOTHING
+            """, nativeQuery = true)
+    int addFriendship(@Param("a") UUID a, @Param("b") UUID b);
+    @Modifying
+    @Query(value = "DELETE FROM friendships WHERE low_id = LEAST(:a, :b) AND high_id = GREATEST(:a, :b)", nativeQuery = true)
+    int removeFriendship(@Param("a") UUID a, @Param("b") UUID b);
+    @Modifying
+    @Query(value = "DELETE FROM friendships WHERE low_id = :profileId OR high_id = :profileId", nativeQuery = true)
+    int deleteFriendships(@Param("profileId") UUID profileId);
+    @Modifying
+    @Query(value = "UPDATE profiles SET friend_requests_seen_at = :seenAt WHERE id = :id", nativeQuery = true)
+    int markFriendRequestsSeen(@Param("id") UUID id, @Param("seenAt") LocalDateTime seenAt);
+    @Modifying
+    @Query("DELETE FROM Profile p WHERE p.id = :id")
+    int deleteProfileRow(@Param("id") UUID id);
+    @Query("SELECT p.id AS id, p.nickname AS nickname, p.avatarUrl AS avatarUrl FROM Profile p WHERE p.id IN :ids")
+    List<ProfilePreviewProjection> findPreviewsByIds(@Param("ids") Collection<UUID> ids);
+    @Query(value = """
+            SELECT p.id AS "id", p.nickname AS "nickname", p.avatar_url AS "avatarUrl"
+            FROM friend_edges f
+            JOIN profiles p ON p.id = f.friend_id
+            WHERE f.profile_id = :profileId
+            """, nativeQuery = true)
+    List<ProfilePreviewProjection> findFriendPreviews(@Param("profileId") UUID profileId);
+    @Query(value = """
+            SELECT p.id AS "id", p.nickname AS "nickname", p.avatar_url AS "avatarUrl", f.since AS "since"
+            FROM friend_edges f
+            JOIN profiles p ON p.id = f.friend_id
+            WHERE f.profile_id = :profileId
+              AND p.nickname > :after
+            ORDER BY p.nickname
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<FriendPreviewProjection> findFriendPreviewsByNickname(@Param("profileId") UUID profileId,
+                                                               @Param("after") String after,
+                                                               @Param("limit") int limit);
+    @Query(value = """
+            SELECT p.id AS "id", p.nickname AS "nickname", p.avatar_url AS "avatarUrl", f.since AS "since"
+            FROM friend_edges f
+            JOIN profiles p ON p.id = f.friend_id
+            WHERE f.profile_id = :profileId
+            ORDER BY f.since DESC, f.friend_id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<FriendPreviewProjection> findFriendPreviewsBySince(@Param("profileId") UUID profileId,
+                                                            @Param("limit") int limit);
+    @Query(value = """
+            SELECT p.id AS "id", p.nickname AS "nickname", p.avatar_url AS "avatarUrl", f.since AS "since"
+            FROM friend_edges f
+            JOIN profiles p ON p.id = f.friend_id
+            WHERE f.profile_id = :profileId
+              AND (f.since, f.friend_id) < (:since, :friendId)
+            ORDER BY f.since DESC, f.friend_id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<FriendPreviewProjection> findFriendPreviewsBySinceBefore(@Param("profileId") UUID profileId,
+                                                                  @Param("since") LocalDateTime since,
+                                                                  @Param("friendId") UUID friendId,
+                                                                  @Param("limit") int limit);
+    @Query(value = "SELECT count(*) FROM friend_edges WHERE profile_id = :profileId", nativeQuery = true)
+    long countFriends(@Param("profileId") UUID profileId);
+    @Query(value = """
+            SELECT f.friend_id AS "profileId", 'FRIEND' AS "status", CAST(NULL AS UUID) AS "requestId"
+            FROM friend_edges f
+            WHERE f.profile_id = :profileId AND f.friend_id IN (:ids)
+            UNION ALL
+            SELECT r.receiver_id, 'PENDING_SENT', r.id
+            FROM friend_requests r
+            WHERE r.sender_id = :profileId AND r.receiver_id IN (:ids)
+            UNION ALL
+            SELECT r.sender_id, 'PENDING_RECEIVED', r.id
+            FROM friend_requests r
+            WHERE r.receiver_id = :profileId AND r.sender_id IN (:ids)
+            """, nativeQuery = true)
+    List<RelationshipProjection> findRelationships(@Param("profileId") UUID profileId,
+                                                   @Param("ids") Collection<UUID> ids);
+    @Query(value = """
+            SELECT p.id AS "id", p.nickname AS "nickname", p.avatar_url AS "avatarUrl"
+            FROM profiles p
+            LEFT JOIN friend_edges f
+                   ON f.friend_id = p.id
+                  AND f.profile_id = (SELECT me.id FROM profiles me WHERE me.user_id = :currentUserId)
+            WHERE LOWER(p.nickname) LIKE :pattern ESCAPE '\\'
+              AND p.user_id <> :currentUserId
+            ORDER BY (f.friend_id IS NULL), similarity(LOWER(p.nickname), :term) DESC, p.nickname
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<ProfilePreviewProjection> searchByNickname(@Param("pattern") String pattern,
+                                                    @Param("term") String term,
+                                                    @Param("currentUserId") String currentUserId,
+                                                    @Param("limit") int limit);
 }
 
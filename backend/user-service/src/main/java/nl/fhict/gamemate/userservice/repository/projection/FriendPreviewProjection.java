@@ -0,0 +1,7 @@
+package nl.fhict.gamemate.userservice.repository.projection;
+
+import java.time.LocalDateTime;
+
+public interface FriendPreviewProjection extends ProfilePreviewProjection {
+    LocalDateTime getSince();
+}
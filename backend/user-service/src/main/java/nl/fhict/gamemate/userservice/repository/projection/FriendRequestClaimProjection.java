@@ -0,0 +1,13 @@
+package nl.fhict.gamemate.userservice.repository.projection;
+
+import java.util.UUID;
+
+/**
+ * Result of trying to insert a friend request: {@code CREATED}, {@code EXISTING} with the pending request between the
+ * pair (in either direction), {@code FRIENDS}, or {@code NO_RECEIVER} when the receiver does not exist.
+ */
+public interface FriendRequestClaimProjection {
+    String getOutcome();
+    UUID getRequestId();
+    UUID getSenderId();
+}
@@ -0,0 +1,9 @@
+package nl.fhict.gamemate.userservice.repository.projection;
+
+import java.util.UUID;
+
+public interface FriendRequestKeyProjection {
+    UUID getReceiverId();
+    String getOutcome();
+    UUID getRequestId();
+}
@@ -0,0 +1,15 @@
+package nl.fhict.gamemate.userservice.repository.projection;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A friend request together with the preview of the profile on the other side of it.
+ */
+public interface FriendRequestPreviewProjection {
+    UUID getId();
+    LocalDateTime getCreatedAt();
+    UUID getProfileId();
+    String getNickname();
+    String getAvatarUrl();
+}
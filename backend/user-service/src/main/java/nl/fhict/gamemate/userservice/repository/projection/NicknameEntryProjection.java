@@ -0,0 +1,8 @@
+package nl.fhict.gamemate.userservice.repository.projection;
+
+import java.util.UUID;
+
+public interface NicknameEntryProjection {
+    UUID getId();
+    String getNickname();
+}
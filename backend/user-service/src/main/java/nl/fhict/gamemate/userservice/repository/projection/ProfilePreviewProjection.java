@@ -0,0 +1,9 @@
+package nl.fhict.gamemate.userservice.repository.projection;
+
+import java.util.UUID;
+
+public interface ProfilePreviewProjection {
+    UUID getId();
+    String getNickname();
+    String getAvatarUrl();
+}
@@ -0,0 +1,16 @@
+package nl.fhict.gamemate.userservice.repository.projection;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public interface ProfileSummaryProjection {
+    UUID getId();
+    String getUserId();
+    String getNickname();
+    String getBio();
+    String getLocation();
+    String getAvatarUrl();
+    LocalDateTime getCreatedAt();
+    LocalDateTime getUpdatedAt();
+    long getRelationsVersion();
+}
@@ -0,0 +1,10 @@
+package nl.fhict.gamemate.userservice.repository.projection;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public interface ProfileVersionProjection {
+    UUID getId();
+    LocalDateTime getUpdatedAt();
+    long getRelationsVersion();
+}
@@ -0,0 +1,9 @@
+package nl.fhict.gamemate.userservice.repository.projection;
+
+import java.util.UUID;
+
+public interface RelationshipProjection {
+    UUID getProfileId();
+    String getStatus();
+    UUID getRequestId();
+}
@@ -0,0 +1,131 @@
+package nl.fhict.gamemate.userservice.resilience;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.function.BiConsumer;
+
+/**
+ * Count-based circuit breaker. While closed it keeps the outcomes of the last {@code windowSize} calls and opens once
+ * at least {@code minimumCalls} of them are in and the failure rate reaches the threshold. After {@code openDuration}
+ * it lets {@code halfOpenProbes} trial calls through: if all succeed it closes, the first failure opens it again.
+ * <p>
+ * {@link #tryAcquire()} hands out the generation the call belongs to. Outcomes from an earlier generation, e.g. a slow
+ * call that started before the circuit opened, are ignored so they cannot skew the probes.
+ */
+public class CircuitBreaker {
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    public static final long REJECTED = -1;
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long openMillis;
+    private final int halfOpenProbes;
+    private final Clock clock;
+    private final BiConsumer<State, State> onTransition;
+
+    private final boolean[] outcomes;
+    private int next;
+    private int calls;
+    private int failures;
+    private State state = State.CLOSED;
+    private long generation;
+    private long openUntil;
+    private int probesInFlight;
+    private int probeSuccesses;
+
+    public CircuitBreaker(int windowSize, int minimumCalls, int failureRateThreshold, Duration openDuration,
+                          int halfOpenProbes, Clock clock, BiConsumer<State, State> onTransition) {
+        if (windowSize < 1 || minimumCalls < 1 || halfOpenProbes < 1) {
+            throw new IllegalArgumentException("Circuit breaker sizes must be at least 1");
+        }
+        this.windowSize = windowSize;
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openMillis = openDuration.toMillis();
+        this.halfOpenProbes = halfOpenProbes;
+        this.clock = clock;
+        this.onTransition = onTransition;
+        this.outcomes = new boolean[windowSize];
+    }
+
+    /**
+     * @return the generation to report the outcome against, or {@link #REJECTED} if the call must not be made
+     */
+    public synchronized long tryAcquire() {
+        if (state == State.OPEN) {
+            if (clock.millis() < openUntil) return REJECTED;
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight + probeSuccesses >= halfOpenProbes) return REJECTED;
+            probesInFlight++;
+        }
+        return generation;
+    }
+
+    public synchronized void onSuccess(long permit) {
+        if (permit != generation) return;
+        if (state == State.HALF_OPEN) {
+            probesInFlight--;
+            if (++probeSuccesses >= halfOpenProbes) transition(State.CLOSED);
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    public synchronized void onFailure(long permit) {
+        if (permit != generation) return;
+        if (state == State.HALF_OPEN) {
+            transition(State.OPEN);
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (calls >= minimumCalls && failures * 100L >= (long) failureRateThreshold * calls) transition(State.OPEN);
+        }
+    }
+
+    /**
+     * Gives back a permit whose call was never made, e.g. because the bulkhead was full.
+     */
+    public synchronized void release(long permit) {
+        if (permit == generation && state == State.HALF_OPEN) probesInFlight--;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Time until an open circuit lets a probe through; zero otherwise.
+     */
+    public synchronized Duration remainingOpen() {
+        return state == State.OPEN ? Duration.ofMillis(Math.max(0, openUntil - clock.millis())) : Duration.ZERO;
+    }
+
+    private void record(boolean failed) {
+        if (calls == windowSize) {
+            if (outcomes[next]) failures--;
+        } else {
+            calls++;
+        }
+        outcomes[next] = failed;
+        if (failed) failures++;
+        next = (next + 1) % windowSize;
+    }
+
+    private void transition(State to) {
+        State from = state;
+        state = to;
+        generation++;
+        probesInFlight = 0;
+        probeSuccesses = 0;
+        if (to == State.OPEN) openUntil = clock.millis() + openMillis;
+        if (to == State.CLOSED) {
+            calls = 0;
+            failures = 0;
+            next = 0;
+        }
+        onTransition.accept(from, to);
+    }
+}
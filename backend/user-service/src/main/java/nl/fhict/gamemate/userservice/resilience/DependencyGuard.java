@@ -0,0 +1,258 @@
+package nl.fhict.gamemate.userservice.resilience;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import nl.fhict.gamemate.userservice.config.ResilienceProperties;
+import nl.fhict.gamemate.userservice.resilience.DependencyUnavailableException.Reason;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Isolates the calls to one outbound dependency so that a slow or failing provider cannot take request threads with
+ * it.
+ * <ul>
+ *     <li>Blocking calls run on the dependency's own bounded pool and the caller waits at most {@code timeout};
+ *     non-blocking calls are capped at {@code maxConcurrentCalls} in flight and fail after the same timeout.</li>
+ *     <li>A {@link CircuitBreaker} counts timeouts and the failures {@code transientFailure} accepts. Other errors,
+ *     such as a 404, are answers from a healthy provider and count as successes.</li>
+ *     <li>Idempotent calls are retried after a transient failure or timeout, with exponential backoff where each delay
+ *     is drawn between half and all of the step so that callers spread out. Rejections are never retried.</li>
+ * </ul>
+ * Metrics are tagged with the dependency: {@code gamemate.resilience.state} (0 closed, 1 open, 2 half-open),
+ * {@code gamemate.resilience.transitions} per from/to state, {@code gamemate.resilience.rejected} per reason and
+ * {@code gamemate.resilience.retries}.
+ */
+@Slf4j
+public class DependencyGuard {
+    private final String name;
+    private final ResilienceProperties.Policy policy;
+    private final Predicate<Throwable> transientFailure;
+    private final MeterRegistry meterRegistry;
+    private final CircuitBreaker breaker;
+    private final ThreadPoolExecutor executor;
+    private final Semaphore inFlight;
+    private final long timeoutMillis;
+    private final Counter retries;
+
+    public DependencyGuard(String name, ResilienceProperties.Policy policy, Predicate<Throwable> transientFailure,
+                           MeterRegistry meterRegistry) {
+        this(name, policy, transientFailure, meterRegistry, Clock.systemUTC());
+    }
+
+    public DependencyGuard(String name, ResilienceProperties.Policy policy, Predicate<Throwable> transientFailure,
+                           MeterRegistry meterRegistry, Clock clock) {
+        this.name = name;
+        this.policy = policy;
+        this.transientFailure = transientFailure;
+        this.meterRegistry = meterRegistry;
+        this.breaker = new CircuitBreaker(policy.getSlidingWindowSize(), policy.getMinimumCalls(),
+                policy.getFailureRateThreshold(), policy.getOpenDuration(), policy.getHalfOpenProbes(), clock,
+                this::onTransition);
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(policy.getThreads(), policy.getThreads(), 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(policy.getQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, name + "-call-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.inFlight = new Semaphore(policy.getMaxConcurrentCalls());
+        this.timeoutMillis = policy.getTimeout().toMillis();
+        this.retries = Counter.builder("gamemate.resilience.retries")
+                .tag("dependency", name)
+                .register(meterRegistry);
+        Gauge.builder("gamemate.resilience.state", breaker, b -> b.getState().ordinal())
+                .tag("dependency", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs a blocking call on the dependency's pool and waits for it.
+     *
+     * @throws DependencyUnavailableException if the call was rejected or timed out on its last attempt
+     */
+    public <T> T call(String operation, boolean idempotent, Supplier<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return attempt(operation, action);
+            } catch (RuntimeException e) {
+                if (!idempotent || attempt >= policy.getMaxAttempts() || !retryable(e)) throw e;
+                Duration delay = backoff(attempt);
+                log.debug("{} {} failed (attempt {}), retrying in {} ms: {}", name, operation, attempt, delay.toMillis(), e.getMessage());
+                retries.increment();
+                try {
+                    Thread.sleep(delay.toMillis());
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Guards a call that is already non-blocking. The future fails with {@link DependencyUnavailableException} on
+     * rejection or timeout; a call that times out is cancelled.
+     */
+    public <T> CompletableFuture<T> callAsync(String operation, boolean idempotent, Supplier<CompletableFuture<T>> action) {
+        return attemptAsync(operation, idempotent, action, 1);
+    }
+
+    public CircuitBreaker.State getState() {
+        return breaker.getState();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private <T> T attempt(String operation, Supplier<T> action) {
+        long permit = acquire(operation);
+        Future<T> future;
+        try {
+            future = executor.submit(action::get);
+        } catch (RejectedExecutionException e) {
+            breaker.release(permit);
+            throw rejected(operation, Reason.BULKHEAD_FULL, Duration.ofSeconds(1));
+        }
+        try {
+            T result = future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            breaker.onSuccess(permit);
+            return result;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            breaker.onFailure(permit);
+            throw rejected(operation, Reason.TIMEOUT, Duration.ofSeconds(1));
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            record(permit, cause);
+            if (cause instanceof RuntimeException runtime) throw runtime;
+            if (cause instanceof Error error) throw error;
+            throw new RuntimeException(cause);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            breaker.release(permit);
+            Thread.currentThread().interrupt();
+            throw rejected(operation, Reason.TIMEOUT, Duration.ofSeconds(1));
+        }
+    }
+
+    private <T> CompletableFuture<T> attemptAsync(String operation, boolean idempotent,
+                                                  Supplier<CompletableFuture<T>> action, int attempt) {
+        CompletableFuture<T> result;
+        try {
+            result = startAsync(operation, action);
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        if (!idempotent || attempt >= policy.getMaxAttempts()) return result;
+        return result.handle((value, error) -> {
+            if (error == null) return CompletableFuture.completedFuture(value);
+            Throwable cause = unwrap(error);
+            if (!retryable(cause)) return CompletableFuture.<T>failedFuture(cause);
+            Duration delay = backoff(attempt);
+            log.debug("{} {} failed (attempt {}), retrying in {} ms: {}", name, operation, attempt, delay.toMillis(), cause.getMessage());
+            retries.increment();
+            return CompletableFuture.runAsync(() -> {}, CompletableFuture.delayedExecutor(delay.toMillis(), TimeUnit.MILLISECONDS))
+                    .thenCompose(ignored -> attemptAsync(operation, true, action, attempt + 1));
+        }).thenCompose(Function.identity());
+    }
+
+    private <T> CompletableFuture<T> startAsync(String operation, Supplier<CompletableFuture<T>> action) {
+        long permit = acquire(operation);
+        if (!inFlight.tryAcquire()) {
+            breaker.release(permit);
+            throw rejected(operation, Reason.BULKHEAD_FULL, Duration.ofSeconds(1));
+        }
+        CompletableFuture<T> call;
+        try {
+            call = action.get();
+        } catch (RuntimeException e) {
+            inFlight.release();
+            record(permit, e);
+            throw e;
+        }
+        return call.copy().orTimeout(timeoutMillis, TimeUnit.MILLISECONDS).handle((value, error) -> {
+            inFlight.release();
+            if (error == null) {
+                breaker.onSuccess(permit);
+                return value;
+            }
+            Throwable cause = unwrap(error);
+            if (cause instanceof TimeoutException) {
+                call.cancel(true);
+                breaker.onFailure(permit);
+                throw rejected(operation, Reason.TIMEOUT, Duration.ofSeconds(1));
+            }
+            record(permit, cause);
+            throw cause instanceof CompletionException completion ? completion : new CompletionException(cause);
+        });
+    }
+
+    private long acquire(String operation) {
+        long permit = breaker.tryAcquire();
+        if (permit == CircuitBreaker.REJECTED) {
+            throw rejected(operation, Reason.CIRCUIT_OPEN, breaker.remainingOpen());
+        }
+        return permit;
+    }
+
+    private void record(long permit, Throwable error) {
+        if (transientFailure.test(error)) {
+            breaker.onFailure(permit);
+        } else {
+            breaker.onSuccess(permit);
+        }
+    }
+
+    private boolean retryable(Throwable error) {
+        if (error instanceof DependencyUnavailableException unavailable) return unavailable.getReason() == Reason.TIMEOUT;
+        return transientFailure.test(error);
+    }
+
+    private Duration backoff(int attempt) {
+        long step = Math.min(policy.getMaxBackoff().toMillis(),
+                policy.getInitialBackoff().toMillis() << Math.min(attempt - 1, 20));
+        return Duration.ofMillis(step / 2 + ThreadLocalRandom.current().nextLong(step / 2 + 1));
+    }
+
+    private DependencyUnavailableException rejected(String operation, Reason reason, Duration retryAfter) {
+        meterRegistry.counter("gamemate.resilience.rejected", "dependency", name, "reason", reason.name().toLowerCase(Locale.ROOT)).increment();
+        return new DependencyUnavailableException(name, operation, reason, retryAfter);
+    }
+
+    private void onTransition(CircuitBreaker.State from, CircuitBreaker.State to) {
+        if (to == CircuitBreaker.State.OPEN) {
+            log.warn("Circuit for {} opened after {}", name, from);
+        } else {
+            log.info("Circuit for {} moved from {} to {}", name, from, to);
+        }
+        meterRegistry.counter("gamemate.resilience.transitions", "dependency", name,
+                "from", from.name().toLowerCase(Locale.ROOT), "to", to.name().toLowerCase(Locale.ROOT)).increment();
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+}
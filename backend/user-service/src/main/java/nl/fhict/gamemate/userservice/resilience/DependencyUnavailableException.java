@@ -0,0 +1,43 @@
+package nl.fhict.gamemate.userservice.resilience;
+
+import java.time.Duration;
+
+/**
+ * Thrown when a {@link DependencyGuard} does not get a result from its dependency: the circuit is open, the bulkhead is
+ * full or the call timed out. Extends {@link IllegalStateException} so it passes through the services unchanged; it
+ * is reported as 503 with a Retry-After taken from {@link #getRetryAfterSeconds()}.
+ */
+public class DependencyUnavailableException extends IllegalStateException {
+    public enum Reason { CIRCUIT_OPEN, BULKHEAD_FULL, TIMEOUT }
+
+    private final String dependency;
+    private final Reason reason;
+    private final Duration retryAfter;
+
+    public DependencyUnavailableException(String dependency, String operation, Reason reason, Duration retryAfter) {
+        super(describe(dependency, reason) + " (" + operation + ")");
+        this.dependency = dependency;
+        this.reason = reason;
+        this.retryAfter = retryAfter;
+    }
+
+    public String getDependency() {
+        return dependency;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    public long getRetryAfterSeconds() {
+        return Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+    }
+
+    private static String describe(String dependency, Reason reason) {
+        return switch (reason) {
+            case CIRCUIT_OPEN -> dependency + " is unavailable";
+            case BULKHEAD_FULL -> dependency + " is busy";
+            case TIMEOUT -> dependency + " did not respond in time";
+        };
+    }
+}
@@ -0,0 +1,120 @@
+package nl.fhict.gamemate.userservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import nl.fhict.gamemate.userservice.model.AccountDeletion;
+import nl.fhict.gamemate.userservice.model.AccountDeletionStatus;
+import nl.fhict.gamemate.userservice.repository.AccountDeletionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Finishes account deletions after the profile rows are gone: removes the custom avatar from storage and
+ * the user from Auth0, retrying with exponential backoff.
+ * <p>
+ * Each due deletion is leased with a conditional update before it is worked on, so several instances can
+ * poll the same table. Completed steps are recorded individually and never repeated.
+ */
+@Service
+@Slf4j
+public class AccountDeletionWorker {
+    private static final Duration MAX_BACKOFF = Duration.ofHours(6);
+
+    private final AccountDeletionRepository accountDeletionRepository;
+    private final DOAvatarStorageService avatarStorageService;
+    private final Auth0Service auth0Service;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration lease;
+    private final int batchSize;
+    private final Clock clock;
+
+    @Autowired
+    public AccountDeletionWorker(AccountDeletionRepository accountDeletionRepository,
+                                 DOAvatarStorageService avatarStorageService,
+                                 Auth0Service auth0Service,
+                                 @Value("${gamemate.account-deletion.max-attempts:10}") int maxAttempts,
+                                 @Value("${gamemate.account-deletion.initial-backoff:PT30S}") Duration initialBackoff,
+                                 @Value("${gamemate.account-deletion.lease:PT5M}") Duration lease,
+                                 @Value("${gamemate.account-deletion.batch-size:20}") int batchSize) {
+        this(accountDeletionRepository, avatarStorageService, auth0Service, maxAttempts, initialBackoff, lease,
+                batchSize, Clock.systemDefaultZone());
+    }
+
+    public AccountDeletionWorker(AccountDeletionRepository accountDeletionRepository,
+                                 DOAvatarStorageService avatarStorageService,
+                                 Auth0Service auth0Service,
+                                 int maxAttempts, Duration initialBackoff, Duration lease, int batchSize,
+                                 Clock clock) {
+        this.accountDeletionRepository = accountDeletionRepository;
+        this.avatarStorageService = avatarStorageService;
+        this.auth0Service = auth0Service;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.lease = lease;
+        this.batchSize = batchSize;
+        this.clock = clock;
+    }
+
+    @Scheduled(fixedDelayString = "${gamemate.account-deletion.poll-interval:PT10S}")
+    public void processDue() {
+        try {
+            LocalDateTime now = LocalDateTime.now(clock);
+            for (UUID id : accountDeletionRepository.findDueIds(now, PageRequest.of(0, batchSize))) {
+                if (accountDeletionRepository.claim(id, now, now.plus(lease)) == 1) {
+                    accountDeletionRepository.findById(id).ifPresent(this::process);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to poll pending account deletions", e);
+        }
+    }
+
+    private void process(AccountDeletion deletion) {
+        try {
+            if (!deletion.isAvatarDeleted()) {
+                avatarStorageService.delete(deletion.getAvatarUrl());
+                deletion.setAvatarDeleted(true);
+                deletion = accountDeletionRepository.save(deletion);
+            }
+            if (!deletion.isAuth0Deleted()) {
+                auth0Service.deleteUser(deletion.getUserId());
+                deletion.setAuth0Deleted(true);
+            }
+            deletion.setStatus(AccountDeletionStatus.COMPLETED);
+            deletion.setCompletedAt(LocalDateTime.now(clock));
+            deletion.setLastError(null);
+            accountDeletionRepository.save(deletion);
+            log.info("Account deletion {} for userId={} completed", deletion.getId(), deletion.getUserId());
+        } catch (Exception e) {
+            int attempts = deletion.getAttempts() + 1;
+            deletion.setAttempts(attempts);
+            deletion.setLastError(truncate(e.getMessage()));
+            if (attempts >= maxAttempts) {
+                deletion.setStatus(AccountDeletionStatus.FAILED);
+                log.error("Account deletion {} for userId={} failed after {} attempts", deletion.getId(), deletion.getUserId(), attempts, e);
+            } else {
+                deletion.setNextAttemptAt(LocalDateTime.now(clock).plus(backoff(attempts)));
+                log.warn("Account deletion {} for userId={} failed (attempt {}), retrying: {}", deletion.getId(), deletion.getUserId(), attempts, e.getMessage());
+            }
+            accountDeletionRepository.save(deletion);
+        }
+    }
+
+    private Duration backoff(int attempts) {
+        Duration delay = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return delay.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : delay;
+    }
+
+    private static String truncate(String message) {
+        if (message == null) return null;
+        return message.length() <= 500 ? message : message.substring(0, 500);
+    }
+}
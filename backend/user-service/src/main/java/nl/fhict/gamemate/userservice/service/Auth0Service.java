@@ -1,7 +1,24 @@
 package nl.fhict.gamemate.userservice.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import nl.fhict.gamemate.userservice.config.ResilienceProperties;
+import nl.fhict.gamemate.userservice.resilience.DependencyGuard;
+import nl.fhict.gamemate.userservice.resilience.DependencyUnavailableException;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
@@ -9,34 +26,85 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Map;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Calls the Auth0 Management API through a pooled HTTP client with connect and read timeouts.
+ * <p>
+ * The management token is cached and renewed {@code token-refresh-skew} before it expires. Renewal is single-flight:
+ * one caller exchanges credentials while the others keep using the old token as long as it is still valid, or wait
+ * for the same exchange once it is not. A token the API rejects with 401 is dropped and the call retried once.
+ * <p>
+ * Both calls go through a {@link DependencyGuard} named {@code auth0}. Deleting a user and requesting a token can
+ * both be repeated safely, so transient failures are retried there instead of in the HTTP client.
+ */
 @Service
 @Slf4j
 public class Auth0Service {
+    private final String baseUrl;
+    private final String clientId;
+    private final String clientSecret;
+    private final Duration refreshSkew;
+    private final Clock clock;
+    private final CloseableHttpClient httpClient;
+    private final RestTemplate restTemplate;
+    private final DependencyGuard guard;
+    private final AtomicReference<CachedToken> token = new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<CachedToken>> refresh = new AtomicReference<>();
+
+    @Autowired
+    public Auth0Service(@Value("${auth0.domain}") String domain,
+                        @Value("${auth0.management.client-id}") String clientId,
+                        @Value("${auth0.management.client-secret}") String clientSecret,
+                        @Value("${gamemate.auth0.connect-timeout:PT2S}") Duration connectTimeout,
+                        @Value("${gamemate.auth0.read-timeout:PT5S}") Duration readTimeout,
+                        @Value("${gamemate.auth0.max-connections:20}") int maxConnections,
+                        @Value("${gamemate.auth0.token-refresh-skew:PT5M}") Duration refreshSkew,
+                        ResilienceProperties resilience, MeterRegistry meterRegistry) {
+        this("https://" + domain, clientId, clientSecret, connectTimeout, readTimeout, maxConnections, refreshSkew,
+                new DependencyGuard("auth0", resilience.policy("auth0"), Auth0Service::isTransient, meterRegistry),
+                Clock.systemUTC());
+    }
 
-    @Value("${auth0.domain}")
-    private String domain;
-
-    @Value("${auth0.management.client-id}")
-    private String clientId;
-
-    @Value("${auth0.management.client-secret}")
-    private String clientSecret;
+    /**
+     * Talks to {@code baseUrl} instead of the tenant domain, e.g. a local stub.
+     */
+    public Auth0Service(String baseUrl, String clientId, String clientSecret,
+                        Duration connectTimeout, Duration readTimeout, int maxConnections,
+                        Duration refreshSkew, DependencyGuard guard, Clock clock) {
+        this.baseUrl = baseUrl;
+        this.clientId = clientId;
+        this.clientSecret = clientSecret;
+        this.refreshSkew = refreshSkew;
+        this.guard = guard;
+        this.clock = clock;
+        this.httpClient = createHttpClient(connectTimeout, readTimeout, maxConnections);
+        this.restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+    }
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    @PreDestroy
+    public void close() throws IOException {
+        guard.shutdown();
+        httpClient.close();
+    }
 
     public void deleteUser(String userId) {
         try {
-            String accessToken = getManagementApiToken();
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setBearerAuth(accessToken);
-
-            HttpEntity<Void> entity = new HttpEntity<>(headers);
-            String url = String.format("https://%s/api/v2/users/%s", domain, userId);
-
-            restTemplate.exchange(url, HttpMethod.DELETE, entity, Void.class);
+            CachedToken current = currentToken();
+            try {
+                delete(userId, current.value());
+            } catch (HttpClientErrorException.Unauthorized e) {
+                log.info("Auth0 rejected the cached management token, requesting a new one");
+                token.compareAndSet(current, null);
+                delete(userId, currentToken().value());
+            }
             log.debug("Deleted Auth0 user: {}", userId);
         } catch (RuntimeException e) {
             log.warn("Failed to delete Auth0 user '{}': {}", userId, e.getMessage());
@@ -47,8 +115,51 @@ public class Auth0Service {
         }
     }
 
-    @SuppressWarnings("unchecked")
     public String getManagementApiToken() {
+        return currentToken().value();
+    }
+
+    private void delete(String userId, String accessToken) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(accessToken);
+
+        guard.call("deleteUser", true, () -> restTemplate.exchange(baseUrl + "/api/v2/users/{id}", HttpMethod.DELETE,
+                new HttpEntity<>(headers), Void.class, userId));
+    }
+
+    private CachedToken currentToken() {
+        Instant now = clock.instant();
+        CachedToken current = token.get();
+        if (current != null && now.isBefore(current.refreshAt())) return current;
+
+        CompletableFuture<CachedToken> mine = new CompletableFuture<>();
+        CompletableFuture<CachedToken> inFlight = refresh.compareAndExchange(null, mine);
+        if (inFlight == null) {
+            try {
+                // A renewal may have finished between reading the cache and claiming the slot.
+                CachedToken latest = token.get();
+                CachedToken fresh = latest != null && clock.instant().isBefore(latest.refreshAt()) ? latest : requestToken();
+                token.set(fresh);
+                mine.complete(fresh);
+                return fresh;
+            } catch (RuntimeException e) {
+                mine.completeExceptionally(e);
+                throw e;
+            } finally {
+                refresh.set(null);
+            }
+        }
+        // Someone else is renewing; no need to wait while the old token still works.
+        if (current != null && now.isBefore(current.expiresAt())) return current;
+        try {
+            return inFlight.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private CachedToken requestToken() {
         try {
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_JSON);
@@ -56,25 +167,64 @@ public class Auth0Service {
             Map<String, String> body = Map.of(
                     "client_id", clientId,
                     "client_secret", clientSecret,
-                    "audience", String.format("https://%s/api/v2/", domain),
+                    "audience", baseUrl + "/api/v2/",
                     "grant_type", "client_credentials"
             );
 
             HttpEntity<Map<String, String>> entity = new HttpEntity<>(body, headers);
-            String tokenUrl = String.format("https://%s/oauth/token", domain);
-
-            Map<String, Object> response = restTemplate.postForObject(tokenUrl, entity, Map.class);
+            Instant issuedAt = clock.instant();
+            Map<String, Object> response = guard.call("token", true,
+                    () -> restTemplate.postForObject(baseUrl + "/oauth/token", entity, Map.class));
 
             if (response == null || !response.containsKey("access_token")) {
                 log.error("Invalid response from Auth0 token endpoint: {}", response);
                 throw new RuntimeException("Failed to retrieve Auth0 access token");
             }
 
-            return (String) response.get("access_token");
+            Duration lifetime = response.get("expires_in") instanceof Number seconds
+                    ? Duration.ofSeconds(seconds.longValue()) : Duration.ZERO;
+            // Short-lived tokens are renewed halfway through instead of never being cached.
+            Duration early = refreshSkew.compareTo(lifetime.dividedBy(2)) < 0 ? refreshSkew : lifetime.dividedBy(2);
+            log.debug("Obtained Auth0 management token valid for {}", lifetime);
+            return new CachedToken((String) response.get("access_token"),
+                    issuedAt.plus(lifetime).minus(early), issuedAt.plus(lifetime));
+        } catch (DependencyUnavailableException e) {
+            log.warn("Could not obtain Auth0 management token: {}", e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.error("Failed to obtain Auth0 management token", e);
             throw new RuntimeException("Failed to retrieve Auth0 token", e);
         }
     }
-}
 
+    private static CloseableHttpClient createHttpClient(Duration connectTimeout, Duration readTimeout, int maxConnections) {
+        return HttpClients.custom()
+                .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                        .setMaxConnTotal(maxConnections)
+                        .setMaxConnPerRoute(maxConnections)
+                        .setDefaultConnectionConfig(ConnectionConfig.custom()
+                                .setConnectTimeout(Timeout.ofMilliseconds(connectTimeout.toMillis()))
+                                .setSocketTimeout(Timeout.ofMilliseconds(readTimeout.toMillis()))
+                                .setTimeToLive(TimeValue.ofMinutes(5))
+                                .build())
+                        .build())
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(connectTimeout.toMillis()))
+                        .setResponseTimeout(Timeout.ofMilliseconds(readTimeout.toMillis()))
+                        .build())
+                .disableAutomaticRetries()
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(30))
+                .build();
+    }
+
+    /**
+     * I/O errors, 5xx and 429; other 4xx responses are answers from a working Auth0.
+     */
+    static boolean isTransient(Throwable error) {
+        return error instanceof ResourceAccessException || error instanceof HttpServerErrorException
+                || error instanceof HttpClientErrorException.TooManyRequests;
+    }
+
+    private record CachedToken(String value, Instant refreshAt, Instant expiresAt) {}
+}
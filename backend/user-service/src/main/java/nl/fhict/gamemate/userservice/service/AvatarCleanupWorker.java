@@ -0,0 +1,228 @@
+package nl.fhict.gamemate.userservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import nl.fhict.gamemate.userservice.model.AvatarDeletion;
+import nl.fhict.gamemate.userservice.repository.AvatarDeletionRepository;
+import nl.fhict.gamemate.userservice.repository.AvatarObjectRepository;
+import nl.fhict.gamemate.userservice.repository.ProfileRepository;
+import nl.fhict.gamemate.userservice.service.DOAvatarStorageService.AvatarListing;
+import nl.fhict.gamemate.userservice.service.DOAvatarStorageService.ReleasedAvatars;
+import nl.fhict.gamemate.userservice.service.DOAvatarStorageService.StoredAvatar;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Hands released avatar references back to storage and removes stored avatars that nothing refers to.
+ * <p>
+ * Profile updates only record the old avatar in {@code avatar_deletions}. The sweeper leases due rows in batches and
+ * releases their references, removing the rows in the same transaction so a reference is never given back twice.
+ * When a batch fails its rows are retried one by one, so a single bad entry cannot hold back the rest. Storage is
+ * only called once that transaction has committed; objects a failed call leaves behind are found by reconciliation.
+ * <p>
+ * Reconciliation walks everything under {@code avatars/} and removes objects older than the grace period that no
+ * profile uses: content-addressed renditions without a live reference, and other objects (abandoned direct uploads,
+ * avatars stored before renditions) whose key no profile's avatar URL points at. Keys are compared rather than URLs,
+ * so an avatar stored under another endpoint or CDN host is still recognised as in use.
+ */
+@Service
+@Slf4j
+public class AvatarCleanupWorker {
+    private static final Duration MAX_BACKOFF = Duration.ofHours(6);
+
+    private final AvatarDeletionRepository avatarDeletionRepository;
+    private final AvatarObjectRepository avatarObjectRepository;
+    private final ProfileRepository profileRepository;
+    private final DOAvatarStorageService avatarStorageService;
+    private final TransactionOperations transactionOperations;
+    private final Duration initialBackoff;
+    private final Duration lease;
+    private final int batchSize;
+    private final Duration orphanGrace;
+    private final int pageSize;
+    private final Clock clock;
+
+    @Autowired
+    public AvatarCleanupWorker(AvatarDeletionRepository avatarDeletionRepository,
+                               AvatarObjectRepository avatarObjectRepository,
+                               ProfileRepository profileRepository,
+                               DOAvatarStorageService avatarStorageService,
+                               TransactionOperations transactionOperations,
+                               @Value("${gamemate.avatar-cleanup.initial-backoff:PT1M}") Duration initialBackoff,
+                               @Value("${gamemate.avatar-cleanup.lease:PT5M}") Duration lease,
+                               @Value("${gamemate.avatar-cleanup.batch-size:100}") int batchSize,
+                               @Value("${gamemate.avatar-cleanup.orphan-grace:PT24H}") Duration orphanGrace,
+                               @Value("${gamemate.avatar-cleanup.page-size:1000}") int pageSize) {
+        this(avatarDeletionRepository, avatarObjectRepository, profileRepository, avatarStorageService,
+                transactionOperations, initialBackoff, lease, batchSize, orphanGrace, pageSize,
+                Clock.systemDefaultZone());
+    }
+
+    public AvatarCleanupWorker(AvatarDeletionRepository avatarDeletionRepository,
+                               AvatarObjectRepository avatarObjectRepository,
+                               ProfileRepository profileRepository,
+                               DOAvatarStorageService avatarStorageService,
+                               TransactionOperations transactionOperations,
+                               Duration initialBackoff, Duration lease, int batchSize,
+                               Duration orphanGrace, int pageSize, Clock clock) {
+        this.avatarDeletionRepository = avatarDeletionRepository;
+        this.avatarObjectRepository = avatarObjectRepository;
+        this.profileRepository = profileRepository;
+        this.avatarStorageService = avatarStorageService;
+        this.transactionOperations = transactionOperations;
+        this.initialBackoff = initialBackoff;
+        this.lease = lease;
+        this.batchSize = batchSize;
+        this.orphanGrace = orphanGrace;
+        this.pageSize = pageSize;
+        this.clock = clock;
+    }
+
+    @Scheduled(fixedDelayString = "${gamemate.avatar-cleanup.sweep-interval:PT30S}")
+    public void sweep() {
+        try {
+            LocalDateTime now = LocalDateTime.now(clock);
+            List<AvatarDeletion> claimed = new ArrayList<>();
+            for (UUID id : avatarDeletionRepository.findDueIds(now, PageRequest.of(0, batchSize))) {
+                if (avatarDeletionRepository.claim(id, now, now.plus(lease)) == 1) {
+                    avatarDeletionRepository.findById(id).ifPresent(claimed::add);
+                }
+            }
+            if (claimed.isEmpty()) return;
+
+            ReleasedAvatars released;
+            try {
+                released = transactionOperations.execute(status -> {
+                    avatarDeletionRepository.deleteAll(claimed);
+                    return avatarStorageService.releaseAll(claimed.stream().map(AvatarDeletion::getAvatarUrl).toList());
+                });
+                log.info("Released {} replaced avatars", claimed.size());
+            } catch (Exception e) {
+                log.warn("Releasing {} replaced avatars failed, retrying one by one: {}", claimed.size(), e.getMessage());
+                claimed.forEach(this::process);
+                return;
+            }
+            purge(released);
+        } catch (Exception e) {
+            log.error("Failed to sweep pending avatar deletions", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${gamemate.avatar-cleanup.reconcile-interval:PT6H}",
+            initialDelayString = "${gamemate.avatar-cleanup.reconcile-initial-delay:PT10M}")
+    public void reconcile() {
+        try {
+            Instant cutoff = clock.instant().minus(orphanGrace);
+            int removed = 0;
+            String token = null;
+            do {
+                AvatarListing page = avatarStorageService.listAvatars(token, pageSize);
+                removed += removeOrphans(page.objects(), cutoff);
+                token = page.nextContinuationToken();
+            } while (token != null);
+
+            // Rows left at zero by failed uploads whose renditions were never written, or by releases whose removal failed.
+            LocalDateTime before = LocalDateTime.ofInstant(cutoff, clock.getZone());
+            for (String hash : avatarObjectRepository.findUnusedHashes(before, PageRequest.of(0, pageSize))) {
+                avatarStorageService.collectIfUnused(hash);
+            }
+            log.info("Avatar reconciliation removed {} orphaned objects", removed);
+        } catch (Exception e) {
+            log.error("Failed to reconcile stored avatars", e);
+        }
+    }
+
+    private int removeOrphans(List<StoredAvatar> objects, Instant cutoff) {
+        List<StoredAvatar> settled = objects.stream()
+                .filter(object -> object.lastModified() != null && object.lastModified().isBefore(cutoff))
+                .toList();
+        int removed = 0;
+
+        Set<String> hashes = settled.stream()
+                .map(StoredAvatar::contentHash)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(TreeSet::new));
+        if (!hashes.isEmpty()) {
+            avatarObjectRepository.findReferencedHashes(hashes).forEach(hashes::remove);
+            for (String hash : hashes) {
+                if (avatarStorageService.collectIfUnused(hash)) {
+                    removed += (int) settled.stream().filter(object -> hash.equals(object.contentHash())).count();
+                }
+            }
+        }
+
+        List<StoredAvatar> loose = settled.stream().filter(object -> object.contentHash() == null).toList();
+        if (!loose.isEmpty()) {
+            Set<String> referenced = new HashSet<>(profileRepository.findAvatarKeysIn(
+                    loose.stream().map(StoredAvatar::key).collect(Collectors.toSet())));
+            List<String> keys = loose.stream()
+                    .map(StoredAvatar::key)
+                    .filter(key -> !referenced.contains(key))
+                    .toList();
+            avatarStorageService.deleteObjects(keys);
+            removed += keys.size();
+        }
+        return removed;
+    }
+
+    private void process(AvatarDeletion deletion) {
+        ReleasedAvatars released;
+        try {
+            released = transactionOperations.execute(status -> {
+                avatarDeletionRepository.delete(deletion);
+                return avatarStorageService.releaseAll(List.of(deletion.getAvatarUrl()));
+            });
+        } catch (IllegalArgumentException e) {
+            log.warn("Dropping avatar deletion {} for unusable URL {}: {}", deletion.getId(), deletion.getAvatarUrl(), e.getMessage());
+            avatarDeletionRepository.delete(deletion);
+            return;
+        } catch (Exception e) {
+            int attempts = deletion.getAttempts() + 1;
+            deletion.setAttempts(attempts);
+            deletion.setLastError(truncate(e.getMessage()));
+            deletion.setNextAttemptAt(LocalDateTime.now(clock).plus(backoff(attempts)));
+            avatarDeletionRepository.save(deletion);
+            log.warn("Avatar deletion {} failed (attempt {}), retrying: {}", deletion.getId(), attempts, e.getMessage());
+            return;
+        }
+        purge(released);
+    }
+
+    /**
+     * Removes the objects of references released in a committed transaction. The release is never repeated, so a
+     * failure here leaves the objects to {@link #reconcile}.
+     */
+    private void purge(ReleasedAvatars released) {
+        try {
+            avatarStorageService.purge(released);
+        } catch (Exception e) {
+            log.warn("Could not remove {} released avatars, leaving them to reconciliation: {}", released.size(), e.getMessage());
+        }
+    }
+
+    private Duration backoff(int attempts) {
+        Duration delay = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return delay.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : delay;
+    }
+
+    private static String truncate(String message) {
+        if (message == null) return null;
+        return message.length() <= 500 ? message : message.substring(0, 500);
+    }
+}
@@ -0,0 +1,192 @@
+package nl.fhict.gamemate.userservice.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import nl.fhict.gamemate.userservice.model.AvatarRendition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decodes uploaded avatars and re-encodes them into the fixed {@link AvatarRendition} sizes.
+ * <p>
+ * Work runs on a small fixed pool with a bounded queue; when both are full new uploads are refused
+ * instead of piling up, so a burst of large images cannot tie up the CPU that request threads need.
+ * Output images are drawn onto a fresh canvas, which drops EXIF and any other embedded metadata.
+ */
+@Service
+@Slf4j
+public class AvatarProcessor {
+    private final ThreadPoolExecutor executor;
+    private final long maxPixels;
+    private final float quality;
+
+    @Autowired
+    public AvatarProcessor(@Value("${gamemate.avatar-processing.threads:2}") int threads,
+                           @Value("${gamemate.avatar-processing.queue-capacity:16}") int queueCapacity,
+                           @Value("${gamemate.avatar-processing.max-pixels:40000000}") long maxPixels,
+                           @Value("${gamemate.avatar-processing.jpeg-quality:0.85}") float quality) {
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "avatar-processor-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.maxPixels = maxPixels;
+        this.quality = quality;
+        ImageIO.setUseCache(false);
+    }
+
+    /**
+     * Queues rendering of {@code image} on the processing pool. The future fails with
+     * {@link IllegalArgumentException} if the bytes are not a decodable image or exceed the pixel limit.
+     *
+     * @throws IllegalStateException if the pool is saturated
+     */
+    public CompletableFuture<Map<AvatarRendition, byte[]>> renderAsync(byte[] image) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return renderNow(image);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            log.warn("Avatar processing queue is full ({} queued)", executor.getQueue().size());
+            throw new IllegalStateException("Avatar processing is busy, try again shortly");
+        }
+    }
+
+    /**
+     * Blocking form of {@link #renderAsync}.
+     */
+    public Map<AvatarRendition, byte[]> render(byte[] image) {
+        try {
+            return renderAsync(image).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IllegalArgumentException cause) throw cause;
+            throw new RuntimeException("Avatar processing failed", e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private Map<AvatarRendition, byte[]> renderNow(byte[] image) throws IOException {
+        BufferedImage current = squareCrop(decode(image));
+        List<AvatarRendition> largestFirst = new ArrayList<>(List.of(AvatarRendition.values()));
+        largestFirst.sort(Comparator.comparingInt(AvatarRendition::getSize).reversed());
+
+        Map<AvatarRendition, byte[]> out = new EnumMap<>(AvatarRendition.class);
+        for (AvatarRendition rendition : largestFirst) {
+            current = scale(current, rendition.getSize());
+            out.put(rendition, encode(current));
+        }
+        return out;
+    }
+
+    private BufferedImage decode(byte[] image) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(image))) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                throw new IllegalArgumentException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels <= 0 || pixels > maxPixels) {
+                    throw new IllegalArgumentException("Image dimensions are too large");
+                }
+                return reader.read(0);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Image could not be decoded", e);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private byte[] encode(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static BufferedImage squareCrop(BufferedImage source) {
+        int side = Math.min(source.getWidth(), source.getHeight());
+        return source.getSubimage((source.getWidth() - side) / 2, (source.getHeight() - side) / 2, side, side);
+    }
+
+    /**
+     * Halves repeatedly before the final step; a single bilinear pass from a much larger image skips pixels.
+     */
+    private static BufferedImage scale(BufferedImage source, int size) {
+        BufferedImage current = source;
+        int side = source.getWidth();
+        while (side / 2 >= size) {
+            side /= 2;
+            current = draw(current, side);
+        }
+        return side == size && current != source ? current : draw(current, size);
+    }
+
+    private static BufferedImage draw(BufferedImage source, int size) {
+        BufferedImage target = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, size, size);
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, size, size, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+}
@@ -0,0 +1,63 @@
+package nl.fhict.gamemate.userservice.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed-size pool for blocking database work started off the request thread. Every task may hold a pooled
+ * connection, so the thread count, not the number of callers, caps how many connections this work takes;
+ * keep it well below the Hikari pool size. The queue is bounded by the callers: request threads waiting for
+ * profile loads and avatar uploads, which are capped by their upload slots.
+ * <p>
+ * Not exposed as an {@link Executor} bean so Spring Boot's own task executor stays in place.
+ */
+@Component
+@Slf4j
+public class BlockingTaskPool {
+    private final ThreadPoolExecutor executor;
+
+    public BlockingTaskPool(@Value("${gamemate.blocking-pool.threads:4}") int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "blocking-pool-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public Executor executor() {
+        return executor;
+    }
+
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
+        return executor.invokeAll(tasks);
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Blocking task pool did not drain in time, {} tasks dropped", executor.shutdownNow().size());
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,42 +1,167 @@
 package nl.fhict.gamemate.userservice.service;
 
 import jakarta.annotation.PostConstruct;
-import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PreDestroy;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import nl.fhict.gamemate.userservice.config.DOStorageProperties;
+import nl.fhict.gamemate.userservice.config.ResilienceProperties;
+import nl.fhict.gamemate.userservice.dto.AvatarUploadDto;
+import nl.fhict.gamemate.userservice.model.AvatarObject;
+import nl.fhict.gamemate.userservice.model.AvatarRendition;
+import nl.fhict.gamemate.userservice.repository.AvatarObjectRepository;
+import nl.fhict.gamemate.userservice.resilience.DependencyGuard;
+import nl.fhict.gamemate.userservice.resilience.DependencyUnavailableException;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionOperations;
 import org.springframework.web.multipart.MultipartFile;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
-import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.model.Delete;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.ObjectCannedACL;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Error;
 import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+/**
+ * Stores avatars in DigitalOcean Spaces. Uploads are never kept as sent: each one is run through
+ * {@link AvatarProcessor} and only the resulting {@link AvatarRendition}s are written, with the
+ * {@link AvatarRendition#LARGE} URL handed back as the profile's avatar URL.
+ * <p>
+ * Renditions are content-addressed by the SHA-256 of the uploaded bytes ({@code avatars/<hash>/<size>.jpg}),
+ * so identical uploads share one set of objects. {@link AvatarObject} counts the profiles using each set;
+ * {@link #store} takes a reference and {@link #delete} drops one, removing the objects only at zero.
+ * <p>
+ * Every call to Spaces goes through a {@link DependencyGuard} named {@code spaces}; all of them are idempotent, so
+ * transient failures are retried.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class DOAvatarStorageService {
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    private static final Pattern CONTENT_KEY = Pattern.compile("avatars/([0-9a-f]{64})");
+    private static final int MAX_DELETE_BATCH = 1000;
+    private static final Duration UPLOAD_SLOT_RETRY_AFTER = Duration.ofSeconds(2);
+
     private final DOStorageProperties props;
     private S3Client client;
+    private S3Presigner presigner;
     private final UploadRateLimiter rateLimiter;
+    private final AvatarProcessor avatarProcessor;
+    private final AvatarObjectRepository avatarObjectRepository;
+    private final Semaphore uploadSlots;
+    private S3AsyncClient asyncClient;
+    private final DependencyGuard guard;
+    /**
+     * Runs the reference-count queries of an upload, so no JDBC call blocks an SDK completion thread.
+     */
+    private final Executor databaseExecutor;
+    private final TransactionOperations transactionOperations;
+
+    @Autowired
+    public DOAvatarStorageService(DOStorageProperties props, UploadRateLimiter rateLimiter,
+                                  AvatarProcessor avatarProcessor, AvatarObjectRepository avatarObjectRepository,
+                                  ResilienceProperties resilience, MeterRegistry meterRegistry,
+                                  BlockingTaskPool blockingTaskPool, TransactionOperations transactionOperations) {
+        this(props, rateLimiter, avatarProcessor, avatarObjectRepository,
+                new DependencyGuard("spaces", resilience.policy("spaces"), DOAvatarStorageService::isTransient, meterRegistry),
+                null, null, blockingTaskPool.executor(), transactionOperations);
+    }
+
+    /**
+     * Uses the given clients instead of building them from the properties, e.g. an in-process S3 stand-in.
+     */
+    public DOAvatarStorageService(DOStorageProperties props, UploadRateLimiter rateLimiter,
+                                  AvatarProcessor avatarProcessor, AvatarObjectRepository avatarObjectRepository,
+                                  DependencyGuard guard, S3Client client, S3AsyncClient asyncClient,
+                                  Executor databaseExecutor, TransactionOperations transactionOperations) {
+        this.props = props;
+        this.rateLimiter = rateLimiter;
+        this.avatarProcessor = avatarProcessor;
+        this.avatarObjectRepository = avatarObjectRepository;
+        this.uploadSlots = new Semaphore(props.getMaxConcurrentUploads());
+        this.client = client;
+        this.asyncClient = asyncClient;
+        this.guard = guard;
+        this.databaseExecutor = databaseExecutor;
+        this.transactionOperations = transactionOperations;
+    }
 
     @PostConstruct
     public void init() {
         AwsBasicCredentials credentials = AwsBasicCredentials.create(props.getKey(), props.getSecret());
 
-        this.client = S3Client.builder()
+        if (this.client == null) {
+            this.client = S3Client.builder()
+                    .endpointOverride(URI.create(props.getEndpoint()))
+                    .credentialsProvider(StaticCredentialsProvider.create(credentials))
+                    .region(Region.of(props.getRegion()))
+                    .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build())
+                    .build();
+        }
+        if (this.asyncClient == null) {
+            this.asyncClient = S3AsyncClient.builder()
+                    .endpointOverride(URI.create(props.getEndpoint()))
+                    .credentialsProvider(StaticCredentialsProvider.create(credentials))
+                    .region(Region.of(props.getRegion()))
+                    .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build())
+                    .httpClientBuilder(NettyNioAsyncHttpClient.builder()
+                            .maxConcurrency(props.getMaxConcurrentUploads() * AvatarRendition.values().length))
+                    .build();
+        }
+        this.presigner = S3Presigner.builder()
                 .endpointOverride(URI.create(props.getEndpoint()))
                 .credentialsProvider(StaticCredentialsProvider.create(credentials))
                 .region(Region.of(props.getRegion()))
@@ -44,41 +169,144 @@ public class DOAvatarStorageService {
                 .build();
     }
 
-    public String store(MultipartFile file, UUID profileId) {
+    @PreDestroy
+    public void close() {
+        asyncClient.close();
+        presigner.close();
+        guard.shutdown();
+    }
+
+    /**
+     * Issues a short-lived presigned PUT for a new avatar. Content type, exact length and ACL are part of the
+     * signature, so the client cannot upload anything other than what it declared here.
+     */
+    public AvatarUploadDto presignUpload(UUID profileId, String contentType, long size) {
         try {
-            if (file.isEmpty()) {
-                throw new IllegalArgumentException("File is empty");
-            }
-            String contentType = file.getContentType();
             if (contentType == null || !contentType.startsWith("image/")) {
                 throw new IllegalArgumentException("Only image uploads are allowed");
             }
-
-            rateLimiter.checkRate(profileId.toString());
-
-            String originalFilename = file.getOriginalFilename();
-            if (originalFilename == null || originalFilename.isBlank()) {
-                throw new IllegalArgumentException("File name is missing");
+            if (size <= 0 || size > props.getMaxAvatarBytes()) {
+                throw new IllegalArgumentException("Avatar must be between 1 and " + props.getMaxAvatarBytes() + " bytes");
             }
 
-            String safeProfileId = URLEncoder.encode(profileId.toString(), StandardCharsets.UTF_8);
-            String safeFilename = URLEncoder.encode(originalFilename, StandardCharsets.UTF_8);
-            String key = "avatars/" + safeProfileId + "-" + UUID.randomUUID() + "-" + safeFilename;
+            rateLimiter.checkRate(profileId.toString());
 
+            String key = uploadPrefix(profileId) + UUID.randomUUID();
             PutObjectRequest request = PutObjectRequest.builder()
                     .bucket(props.getBucket())
                     .key(key)
                     .acl(ObjectCannedACL.PUBLIC_READ)
                     .contentType(contentType)
+                    .contentLength(size)
                     .build();
+            PresignedPutObjectRequest presigned = presigner.presignPutObject(PutObjectPresignRequest.builder()
+                    .signatureDuration(props.getUploadUrlTtl())
+                    .putObjectRequest(request)
+                    .build());
 
-            client.putObject(request, RequestBody.fromInputStream(file.getInputStream(), file.getSize()));
+            Map<String, String> headers = new LinkedHashMap<>();
+            presigned.signedHeaders().forEach((name, values) -> {
+                if (!name.equalsIgnoreCase("host")) headers.put(name, String.join(",", values));
+            });
+            return AvatarUploadDto.builder()
+                    .key(key)
+                    .uploadUrl(presigned.url().toString())
+                    .method("PUT")
+                    .headers(headers)
+                    .expiresAt(presigned.expiration())
+                    .build();
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            log.warn("Presigned avatar upload rejected: {}", e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("Unexpected error presigning avatar upload for profileId={}", profileId, e);
+            throw new RuntimeException("Could not prepare avatar upload", e);
+        }
+    }
 
-            return String.format("https://%s/%s/%s",
-                    URI.create(props.getEndpoint()).getHost(),
-                    props.getBucket(),
-                    key);
-        } catch (IllegalArgumentException e) {
+    /**
+     * Checks that a presigned upload for this profile landed and is an acceptable image, replaces it with its
+     * renditions and completes with the avatar URL. The caller owns one reference on the result, as with
+     * {@link #store}. Only the key check runs on the calling thread.
+     */
+    public CompletableFuture<String> confirmUpload(UUID profileId, String key) {
+        try {
+            String prefix = uploadPrefix(profileId);
+            if (key == null || !key.startsWith(prefix) || key.indexOf('/', prefix.length()) >= 0) {
+                throw new IllegalArgumentException("Upload does not belong to this profile");
+            }
+            acquireUploadSlot();
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            log.warn("Avatar upload confirmation rejected: {}", e.getMessage());
+            throw e;
+        }
+
+        HeadObjectRequest headRequest = HeadObjectRequest.builder()
+                .bucket(props.getBucket())
+                .key(key)
+                .build();
+        CompletableFuture<String> result = guard.callAsync("headObject", true, () -> asyncClient.headObject(headRequest))
+                .exceptionally(error -> {
+                    if (isNotFound(error)) throw new IllegalArgumentException("Upload not found");
+                    throw new CompletionException(unwrap(error));
+                })
+                .thenCompose(head -> {
+                    String contentType = head.contentType();
+                    if (contentType == null || !contentType.startsWith("image/")) {
+                        throw new IllegalArgumentException("Only image uploads are allowed");
+                    }
+                    if (head.contentLength() == null || head.contentLength() > props.getMaxAvatarBytes()) {
+                        throw new IllegalArgumentException("Uploaded avatar is too large");
+                    }
+                    GetObjectRequest getRequest = GetObjectRequest.builder()
+                            .bucket(props.getBucket())
+                            .key(key)
+                            .build();
+                    return guard.callAsync("getObject", true,
+                            () -> asyncClient.getObject(getRequest, AsyncResponseTransformer.toPublisher()));
+                })
+                .thenCompose(this::readHashed)
+                .thenComposeAsync(this::storeContent, databaseExecutor)
+                .thenCompose(url -> guard.callAsync("deleteObject", true,
+                                () -> asyncClient.deleteObject(DeleteObjectRequest.builder()
+                                        .bucket(props.getBucket())
+                                        .key(key)
+                                        .build()))
+                        .thenApply(deleted -> url));
+        return releaseUploadSlot(result);
+    }
+
+    /**
+     * Stores an uploaded avatar and completes with its URL. The request body is read and hashed on the calling
+     * thread; talking to storage happens asynchronously and counts against {@code maxConcurrentUploads}. The slot is
+     * taken before the profile's rate-limit token, so an upload turned away for lack of slots costs no token.
+     * The caller owns one reference on the result and must hand it back through {@link #delete} when the avatar
+     * is replaced or not used after all.
+     */
+    public CompletableFuture<String> store(MultipartFile file, UUID profileId) {
+        HashedImage image;
+        try {
+            if (file.isEmpty()) {
+                throw new IllegalArgumentException("File is empty");
+            }
+            String contentType = file.getContentType();
+            if (contentType == null || !contentType.startsWith("image/")) {
+                throw new IllegalArgumentException("Only image uploads are allowed");
+            }
+
+            if (file.getSize() > props.getMaxAvatarBytes()) {
+                throw new IllegalArgumentException("Avatar must be at most " + props.getMaxAvatarBytes() + " bytes");
+            }
+
+            acquireUploadSlot();
+            try {
+                rateLimiter.checkRate(profileId.toString());
+                image = readHashed(file.getInputStream());
+            } catch (Exception e) {
+                uploadSlots.release();
+                throw e;
+            }
+        } catch (IllegalArgumentException | IllegalStateException e) {
             log.warn("Validation failed for avatar upload: {}", e.getMessage());
             throw e;
         } catch (IOException e) {
@@ -88,36 +316,354 @@ public class DOAvatarStorageService {
             log.error("Unexpected error while uploading avatar for profileId={}", profileId, e);
             throw new RuntimeException("Avatar upload failed unexpectedly", e);
         }
+
+        return releaseUploadSlot(CompletableFuture.completedFuture(image).thenCompose(this::storeContent));
     }
 
-    public void delete(String url) {
+    /**
+     * Takes a reference on the avatar with this content and writes its renditions unless they are stored
+     * already. The reference is taken first: once held, no concurrent {@link #delete} can remove the objects between
+     * the HEAD and the caller saving the URL. {@link AvatarRendition#LARGE} is written last, so once it exists the
+     * whole set does. If anything fails the reference is given back.
+     */
+    private CompletableFuture<String> storeContent(HashedImage image) {
+        String baseKey = "avatars/" + image.hash();
+        String avatarKey = AvatarRendition.LARGE.keyFor(baseKey);
+
+        avatarObjectRepository.acquire(image.hash());
+        return exists(avatarKey)
+                .thenCompose(exists -> {
+                    if (exists) {
+                        log.debug("Avatar {} already stored, skipping upload", image.hash());
+                        return CompletableFuture.<Void>completedFuture(null);
+                    }
+                    return avatarProcessor.renderAsync(image.bytes())
+                            .thenCompose(renditions -> putRenditions(baseKey, renditions));
+                })
+                .thenApply(stored -> publicUrl(avatarKey))
+                .whenCompleteAsync((url, error) -> {
+                    if (error != null) avatarObjectRepository.releaseUnused(image.hash());
+                }, databaseExecutor);
+    }
+
+    private CompletableFuture<Void> putRenditions(String baseKey, Map<AvatarRendition, byte[]> renditions) {
+        CompletableFuture<?>[] smaller = renditions.entrySet().stream()
+                .filter(entry -> entry.getKey() != AvatarRendition.LARGE)
+                .map(entry -> putRendition(baseKey, entry.getKey(), entry.getValue()))
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(smaller)
+                .thenCompose(done -> putRendition(baseKey, AvatarRendition.LARGE, renditions.get(AvatarRendition.LARGE)))
+                .thenApply(response -> null);
+    }
+
+    private CompletableFuture<PutObjectResponse> putRendition(String baseKey, AvatarRendition rendition, byte[] bytes) {
+        PutObjectRequest request = PutObjectRequest.builder()
+                .bucket(props.getBucket())
+                .key(rendition.keyFor(baseKey))
+                .acl(ObjectCannedACL.PUBLIC_READ)
+                .contentType(AvatarRendition.CONTENT_TYPE)
+                .cacheControl(IMMUTABLE)
+                .build();
+        // Keys are content-addressed, so writing the same rendition again is harmless.
+        return guard.callAsync("putObject", true, () -> asyncClient.putObject(request, AsyncRequestBody.fromBytes(bytes)));
+    }
+
+    private CompletableFuture<Boolean> exists(String key) {
+        HeadObjectRequest request = HeadObjectRequest.builder()
+                .bucket(props.getBucket())
+                .key(key)
+                .build();
+        return guard.callAsync("headObject", true, () -> asyncClient.headObject(request))
+                .handle((head, error) -> {
+                    if (error == null) return true;
+                    if (isNotFound(error)) return false;
+                    throw new CompletionException(unwrap(error));
+                });
+    }
+
+    /**
+     * Takes one of the {@code maxConcurrentUploads} slots, or rejects the upload as a full bulkhead (503 with a short
+     * Retry-After) instead of queueing it behind the uploads already in flight.
+     */
+    private void acquireUploadSlot() {
+        if (!uploadSlots.tryAcquire()) {
+            throw new DependencyUnavailableException("spaces", "upload", DependencyUnavailableException.Reason.BULKHEAD_FULL,
+                    UPLOAD_SLOT_RETRY_AFTER);
+        }
+    }
+
+    private <T> CompletableFuture<T> releaseUploadSlot(CompletableFuture<T> upload) {
+        return upload.whenComplete((result, error) -> uploadSlots.release());
+    }
+
+    /**
+     * Gives back the reference behind {@code url}: the object key itself when nothing else can be using it, the content
+     * hash of shared renditions once their last reference is gone. Nothing is deleted here.
+     */
+    private void releaseInto(String url, List<String> keys, List<String> unusedHashes) {
+        String path;
         try {
-            URI uri = new URI(url);
-            String path = uri.getPath();
-            String prefix = "/" + props.getBucket() + "/";
-            if (!path.startsWith(prefix)) {
-                throw new IllegalArgumentException("Unexpected URL path structure: " + path);
-            }
+            path = new URI(url).getPath();
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Invalid avatar URL: " + url, e);
+        }
+        String prefix = "/" + props.getBucket() + "/";
+        if (path == null || !path.startsWith(prefix)) {
+            throw new IllegalArgumentException("Unexpected URL path structure: " + path);
+        }
 
-            String objectKey = path.substring(prefix.length());
+        String objectKey = path.substring(prefix.length());
+        String baseKey = AvatarRendition.baseKeyOf(objectKey);
+        if (baseKey == null) {
+            keys.add(objectKey);
+            return;
+        }
 
-            client.deleteObject(DeleteObjectRequest.builder()
+        Matcher content = CONTENT_KEY.matcher(baseKey);
+        if (!content.matches()) {
+            keys.addAll(renditionKeys(baseKey));
+            return;
+        }
+        String hash = content.group(1);
+        Integer left = avatarObjectRepository.release(hash).orElse(null);
+        if (left == null) {
+            log.warn("No reference to give back for avatar {}, leaving its objects in place", hash);
+        } else if (left == 0) {
+            unusedHashes.add(hash);
+        }
+    }
+
+    private boolean collect(String hash) {
+        avatarObjectRepository.track(hash);
+        AvatarObject object = avatarObjectRepository.findForUpdate(hash).orElse(null);
+        if (object == null || object.getRefCount() > 0) return false;
+        deleteKeys(renditionKeys("avatars/" + hash));
+        avatarObjectRepository.delete(object);
+        return true;
+    }
+
+    private static String renditionBaseOf(String key) {
+        int slash = key.lastIndexOf('/');
+        if (slash < 0) return null;
+        String baseKey = key.substring(0, slash);
+        return renditionKeys(baseKey).contains(key) ? baseKey : null;
+    }
+
+    private static List<String> renditionKeys(String baseKey) {
+        return Arrays.stream(AvatarRendition.values()).map(rendition -> rendition.keyFor(baseKey)).toList();
+    }
+
+    /**
+     * Deletes {@code keys} with a single DeleteObject when there is one, otherwise in DeleteObjects batches.
+     */
+    private void deleteKeys(List<String> keys) {
+        if (keys.size() == 1) {
+            DeleteObjectRequest request = DeleteObjectRequest.builder()
                     .bucket(props.getBucket())
-                    .key(objectKey)
-                    .build());
+                    .key(keys.get(0))
+                    .build();
+            guard.call("deleteObject", true, () -> client.deleteObject(request));
+            return;
+        }
+        for (int from = 0; from < keys.size(); from += MAX_DELETE_BATCH) {
+            List<ObjectIdentifier> batch = keys.subList(from, Math.min(from + MAX_DELETE_BATCH, keys.size())).stream()
+                    .map(key -> ObjectIdentifier.builder().key(key).build())
+                    .toList();
+            DeleteObjectsRequest request = DeleteObjectsRequest.builder()
+                    .bucket(props.getBucket())
+                    .delete(Delete.builder().objects(batch).quiet(true).build())
+                    .build();
+            DeleteObjectsResponse response = guard.call("deleteObjects", true, () -> client.deleteObjects(request));
+            if (response.hasErrors() && !response.errors().isEmpty()) {
+                S3Error first = response.errors().get(0);
+                throw S3Exception.builder()
+                        .message("Could not delete " + response.errors().size() + " avatar objects, first "
+                                + first.key() + ": " + first.code())
+                        .build();
+            }
+        }
+    }
+
+    private static HashedImage readHashed(InputStream input) throws IOException {
+        MessageDigest digest = sha256();
+        try (DigestInputStream hashing = new DigestInputStream(input, digest)) {
+            byte[] bytes = hashing.readAllBytes();
+            return new HashedImage(HexFormat.of().formatHex(digest.digest()), bytes);
+        }
+    }
+
+    private CompletableFuture<HashedImage> readHashed(SdkPublisher<ByteBuffer> body) {
+        MessageDigest digest = sha256();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        return body.subscribe(buffer -> {
+            byte[] chunk = new byte[buffer.remaining()];
+            buffer.get(chunk);
+            digest.update(chunk);
+            bytes.writeBytes(chunk);
+        }).thenApply(done -> {
+            if (bytes.size() > props.getMaxAvatarBytes()) {
+                throw new IllegalArgumentException("Uploaded avatar is too large");
+            }
+            return new HashedImage(HexFormat.of().formatHex(digest.digest()), bytes.toByteArray());
+        });
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static boolean isNotFound(Throwable error) {
+        Throwable cause = unwrap(error);
+        return cause instanceof NoSuchKeyException || cause instanceof S3Exception s3 && s3.statusCode() == 404;
+    }
+
+    /**
+     * Network errors, throttling and 5xx responses; anything else is an answer from a working Spaces.
+     */
+    static boolean isTransient(Throwable error) {
+        if (error instanceof SdkServiceException service) {
+            return service.statusCode() >= 500 || service.statusCode() == 429 || service.isThrottlingException();
+        }
+        return error instanceof SdkClientException || error instanceof IOException || error instanceof UncheckedIOException;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private record HashedImage(String hash, byte[] bytes) {}
+
+    private String publicUrl(String key) {
+        return String.format("https://%s/%s/%s",
+                URI.create(props.getEndpoint()).getHost(),
+                props.getBucket(),
+                key);
+    }
+
+    private static String uploadPrefix(UUID profileId) {
+        return "avatars/" + profileId + "-";
+    }
+
+    /**
+     * Gives back references obtained from {@link #store} or {@link #confirmUpload} in the caller's transaction and
+     * returns what is no longer used. Storage is not called, so no row lock is held across a call to Spaces; hand the
+     * result to {@link #purge} once the transaction has committed. If that never happens, reconciliation removes the
+     * objects after its grace period. References are taken in URL order so that two batches sharing
+     * content-addressed avatars lock their rows in the same order.
+     */
+    @Transactional
+    public ReleasedAvatars releaseAll(Collection<String> urls) {
+        List<String> keys = new ArrayList<>();
+        List<String> unusedHashes = new ArrayList<>();
+        for (String url : urls.stream().sorted().toList()) {
+            releaseInto(url, keys, unusedHashes);
+        }
+        return new ReleasedAvatars(keys, unusedHashes);
+    }
+
+    /**
+     * Removes what {@link #releaseAll} gave back. Must run outside the releasing transaction: objects nothing else can
+     * use are deleted with as few calls as possible, shared renditions each in a short transaction of their own.
+     */
+    public void purge(ReleasedAvatars released) {
+        try {
+            if (!released.keys().isEmpty()) deleteKeys(released.keys());
+            for (String hash : released.unusedHashes()) {
+                transactionOperations.execute(status -> collect(hash));
+            }
+        } catch (DependencyUnavailableException e) {
+            log.warn("Could not remove {} released avatars: {}", released.size(), e.getMessage());
+            throw e;
+        } catch (S3Exception e) {
+            log.error("S3 error while removing {} released avatars from bucket={}", released.size(), props.getBucket(), e);
+            throw new RuntimeException("Failed to delete avatars from storage", e);
+        } catch (Exception e) {
+            log.error("Unexpected error removing {} released avatars", released.size(), e);
+            throw new RuntimeException("Unexpected error during avatar deletion", e);
+        }
+    }
+
+    /**
+     * Gives back a single reference from outside a transaction: the release commits first, then the objects no longer
+     * used are removed. The release must not be repeated once committed, so a storage failure after it is logged and
+     * left to reconciliation rather than thrown.
+     */
+    public void delete(String url) {
+        ReleasedAvatars released;
+        try {
+            released = transactionOperations.execute(status -> releaseAll(List.of(url)));
         } catch (IllegalArgumentException e) {
             log.warn("Validation error deleting avatar: {}", e.getMessage());
             throw e;
-        } catch (URISyntaxException e) {
-            log.error("Invalid URL during avatar deletion: {}", url, e);
-            throw new RuntimeException("Invalid avatar URL", e);
-        } catch (S3Exception e) {
-            log.error("S3 error while deleting avatar from bucket={}, url={}", props.getBucket(), url, e);
-            throw new RuntimeException("Failed to delete avatar from storage", e);
         } catch (Exception e) {
-            log.error("Unexpected error deleting avatar: {}", url, e);
+            log.error("Unexpected error releasing avatar: {}", url, e);
             throw new RuntimeException("Unexpected error during avatar deletion", e);
         }
+        try {
+            purge(released);
+        } catch (Exception e) {
+            log.warn("Avatar {} released but not removed from storage, leaving it to reconciliation: {}", url, e.getMessage());
+        }
     }
-}
 
+    /**
+     * Lists one page of the objects under {@code avatars/}. Content-addressed renditions carry their content hash.
+     */
+    public AvatarListing listAvatars(String continuationToken, int pageSize) {
+        ListObjectsV2Request request = ListObjectsV2Request.builder()
+                .bucket(props.getBucket())
+                .prefix("avatars/")
+                .maxKeys(pageSize)
+                .continuationToken(continuationToken)
+                .build();
+        ListObjectsV2Response response = guard.call("listObjects", true, () -> client.listObjectsV2(request));
+        List<StoredAvatar> objects = response.contents().stream()
+                .map(object -> {
+                    String baseKey = renditionBaseOf(object.key());
+                    Matcher content = baseKey == null ? null : CONTENT_KEY.matcher(baseKey);
+                    return new StoredAvatar(object.key(),
+                            content != null && content.matches() ? content.group(1) : null,
+                            object.lastModified());
+                })
+                .toList();
+        return new AvatarListing(objects, response.nextContinuationToken());
+    }
+
+    /**
+     * Removes the renditions of a content-addressed avatar if nothing references it. A row is created first when
+     * there is none, so the check and the delete happen under the same lock {@link #storeContent} waits on. That lock
+     * is held across the storage call so an upload of the same content never reuses renditions being deleted; it
+     * covers this one unused row only, and the guard's timeout bounds the call.
+     *
+     * @return whether the renditions were removed
+     */
+    @Transactional
+    public boolean collectIfUnused(String hash) {
+        return collect(hash);
+    }
+
+    /**
+     * Deletes objects that are not renditions of a content-addressed avatar, such as abandoned direct uploads.
+     */
+    public void deleteObjects(List<String> keys) {
+        if (!keys.isEmpty()) deleteKeys(keys);
+    }
+
+    /**
+     * Result of {@link #releaseAll}: object keys to delete outright and content hashes whose renditions lost their last
+     * reference.
+     */
+    public record ReleasedAvatars(List<String> keys, List<String> unusedHashes) {
+        public int size() {
+            return keys.size() + unusedHashes.size();
+        }
+    }
+
+    public record StoredAvatar(String key, String contentHash, Instant lastModified) {}
+
+    public record AvatarListing(List<StoredAvatar> objects, String nextContinuationToken) {}
+}
@@ -4,6 +4,8 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nl.fhict.gamemate.userservice.config.RabbitMQConfig;
 import nl.fhict.gamemate.userservice.event.FriendshipStatusChangedEvent;
+import nl.fhict.gamemate.userservice.event.NicknameChangedEvent;
+import nl.fhict.gamemate.userservice.event.ProfileCacheInvalidationEvent;
 import nl.fhict.gamemate.userservice.event.UserStatusChangedEvent;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Service;
@@ -40,4 +42,30 @@ public class EventPublisher {
             log.error("Failed to publish UserStatusChangedEvent for userId={}", event.getUserId(), e);
         }
     }
+
+    public void publishProfileCacheInvalidation(ProfileCacheInvalidationEvent event) {
+        try {
+            rabbitTemplate.convertAndSend(
+                    RabbitMQConfig.EXCHANGE,
+                    RabbitMQConfig.PROFILE_CACHE_ROUTING_KEY,
+                    event
+            );
+            log.debug("Published ProfileCacheInvalidationEvent: {}", event);
+        } catch (Exception e) {
+            log.error("Failed to publish ProfileCacheInvalidationEvent for profileIds={}", event.getProfileIds(), e);
+        }
+    }
+
+    public void publishNicknameChange(NicknameChangedEvent event) {
+        try {
+            rabbitTemplate.convertAndSend(
+                    RabbitMQConfig.EXCHANGE,
+                    RabbitMQConfig.NICKNAME_ROUTING_KEY,
+                    event
+            );
+            log.debug("Published NicknameChangedEvent: {}", event);
+        } catch (Exception e) {
+            log.error("Failed to publish NicknameChangedEvent (added={}, removed={})", event.getAdded(), event.getRemoved(), e);
+        }
+    }
 }
@@ -4,50 +4,120 @@ import jakarta.persistence.EntityNotFoundException;
 import org.springframework.transaction.annotation.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.fhict.gamemate.userservice.dto.FriendPageDto;
+import nl.fhict.gamemate.userservice.dto.FriendRequestDto;
+import nl.fhict.gamemate.userservice.dto.FriendRequestPageDto;
+import nl.fhict.gamemate.userservice.dto.FriendRequestResultDto;
+import nl.fhict.gamemate.userservice.dto.FriendSuggestionDto;
+import nl.fhict.gamemate.userservice.dto.RelationshipDto;
 import nl.fhict.gamemate.userservice.event.FriendshipStatusChangedEvent;
+import nl.fhict.gamemate.userservice.exception.ConflictException;
+import nl.fhict.gamemate.userservice.mapper.FriendRequestMapper;
+import nl.fhict.gamemate.userservice.mapper.ProfileMapper;
 import nl.fhict.gamemate.userservice.model.Profile;
 import nl.fhict.gamemate.userservice.model.FriendRequest;
+import nl.fhict.gamemate.userservice.model.FriendRequestOutcome;
+import nl.fhict.gamemate.userservice.model.RelationshipStatus;
 import nl.fhict.gamemate.userservice.repository.FriendRequestRepository;
 import nl.fhict.gamemate.userservice.repository.ProfileRepository;
+import nl.fhict.gamemate.userservice.repository.projection.FriendPreviewProjection;
+import nl.fhict.gamemate.userservice.repository.projection.FriendRequestClaimProjection;
+import nl.fhict.gamemate.userservice.repository.projection.FriendRequestKeyProjection;
+import nl.fhict.gamemate.userservice.repository.projection.FriendRequestPreviewProjection;
+import nl.fhict.gamemate.userservice.repository.projection.ProfilePreviewProjection;
+import nl.fhict.gamemate.userservice.repository.projection.ProfileVersionProjection;
+import nl.fhict.gamemate.userservice.repository.projection.RelationshipProjection;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class FriendService {
+    private static final int FRIEND_PAGE_MAX_LIMIT = 100;
+    private static final String NICKNAME_CURSOR = "n:";
+    private static final String SINCE_CURSOR = "s:";
+    private static final int MAX_STATUS_IDS = 500;
+    private static final int REQUEST_PAGE_MAX_LIMIT = 100;
+    private static final String REQUEST_CURSOR = "r:";
+    /**
+     * Upper bound for the first page of requests; later than any row the database can hold.
+     */
+    private static final TimeCursor FIRST_REQUEST_PAGE = new TimeCursor(LocalDateTime.of(9999, 12, 31, 0, 0), new UUID(-1L, -1L));
+    private static final int MAX_CLAIM_ATTEMPTS = 3;
+    private static final int SUGGESTION_MAX_LIMIT = 50;
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+    private static final Duration IDEMPOTENCY_KEY_TTL = Duration.ofHours(24);
+
     private final ProfileService profileService;
     private final ProfileRepository profileRepository;
     private final FriendRequestRepository friendRequestRepository;
     private final EventPublisher eventPublisher;
+    private final ProfileCache profileCache;
+    private final FriendSuggestionIndex friendSuggestionIndex;
 
+    /**
+     * Sends a friend request with a single insert-or-detect statement, so concurrent sends between the same pair
+     * cannot both create one. Sending again is harmless: an existing request from the caller is returned as is, and a
+     * pending request from the other profile is accepted instead of being mirrored. With an idempotency key, a retried
+     * call gets the result of the first one. The key is claimed before anything else, so a call racing the first one
+     * with the same key waits for it and then returns its result.
+     */
     @Transactional
-    public void sendFriendRequest(String senderUserId, UUID receiverProfileId) {
+    public FriendRequestResultDto sendFriendRequest(String senderUserId, UUID receiverProfileId, String idempotencyKey) {
         try {
-            Profile sender = profileService.getOwnProfile(senderUserId);
-            Profile receiver = profileService.getProfile(receiverProfileId);
-
-            if (sender.equals(receiver)) throw new IllegalArgumentException("Cannot friend yourself.");
+            if (idempotencyKey != null && (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH))
+                throw new IllegalArgumentException("Idempotency key must be 1 to " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+            if (idempotencyKey != null
+                    && friendRequestRepository.claimRequestKey(senderUserId, idempotencyKey, receiverProfileId).isEmpty()) {
+                // The claim waited for the call holding the key to commit, so its outcome is stored by now.
+                FriendRequestKeyProjection previous = friendRequestRepository.findRequestKey(senderUserId, idempotencyKey)
+                        .filter(key -> key.getOutcome() != null)
+                        .orElseThrow(() -> new ConflictException("Friend request with this idempotency key is still in progress, try again shortly"));
+                if (!previous.getReceiverId().equals(receiverProfileId))
+                    throw new IllegalArgumentException("Idempotency key was already used for another request");
+                return new FriendRequestResultDto(FriendRequestOutcome.valueOf(previous.getOutcome()), previous.getRequestId());
+            }
 
-            if (friendRequestRepository.findBySenderAndReceiver(sender, receiver).isPresent())
-                throw new IllegalStateException("Friend request already sent.");
-            if (friendRequestRepository.findBySenderAndReceiver(receiver, sender).isPresent())
-                throw new IllegalStateException("Friend request already received from this user.");
+            UUID senderId = ownProfileId(senderUserId);
+            if (senderId.equals(receiverProfileId)) throw new IllegalArgumentException("Cannot friend yourself.");
 
-            FriendRequest request = FriendRequest.builder()
-                    .sender(sender)
-                    .receiver(receiver)
-                    .build();
-
-            friendRequestRepository.save(request);
-        } catch (IllegalArgumentException | IllegalStateException e) {
+            FriendRequestResultDto result = claimFriendRequest(senderId, receiverProfileId);
+            if (idempotencyKey != null)
+                friendRequestRepository.saveRequestKeyOutcome(senderUserId, idempotencyKey,
+                        result.getOutcome().name(), result.getRequestId());
+            return result;
+        } catch (IllegalArgumentException e) {
             log.warn("Failed to send friend request: {}", e.getMessage());
             throw e;
         } catch (EntityNotFoundException e) {
             log.warn("Friend request failed due to missing profile: {}", e.getMessage());
             throw e;
+        } catch (ConflictException e) {
+            log.warn("Friend request conflicted with a concurrent one: {}", e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.error("Unexpected error sending friend request from userId={} to receiverProfileId={}", senderUserId, receiverProfileId, e);
             throw new RuntimeException("Could not send friend request", e);
@@ -66,10 +136,8 @@ public class FriendService {
 
             if (accept) {
                 Profile sender = request.getSender();
-                receiver.getFriends().add(sender);
-                sender.getFriends().add(receiver);
-                profileRepository.save(receiver);
-                profileRepository.save(sender);
+                profileRepository.addFriendship(sender.getId(), receiver.getId());
+                afterCommit(() -> friendSuggestionIndex.addFriendship(sender.getId(), receiver.getId()));
                 FriendshipStatusChangedEvent event = FriendshipStatusChangedEvent.builder()
                         .userId(sender.getId())
                         .friendId(receiver.getId())
@@ -79,6 +147,7 @@ public class FriendService {
             }
 
             friendRequestRepository.delete(request);
+            recordChange(request.getSender().getId(), receiver.getId());
         } catch (EntityNotFoundException | SecurityException e) {
             log.warn("Failed to respond to friend request: {}", e.getMessage());
             throw e;
@@ -99,6 +168,7 @@ public class FriendService {
                 throw new SecurityException("You are not the sender of this request.");
 
             friendRequestRepository.delete(request);
+            recordChange(sender.getId(), request.getReceiver().getId());
         } catch (EntityNotFoundException | SecurityException e) {
             log.warn("Failed to delete friend request: {}", e.getMessage());
             throw e;
@@ -114,11 +184,9 @@ public class FriendService {
             Profile user = profileService.getOwnProfile(userId);
             Profile friend = profileService.getProfile(friendProfileId);
 
-            user.getFriends().remove(friend);
-            friend.getFriends().remove(user);
-
-            profileRepository.save(user);
-            profileRepository.save(friend);
+            if (profileRepository.removeFriendship(user.getId(), friend.getId()) == 0) return;
+            afterCommit(() -> friendSuggestionIndex.removeFriendship(user.getId(), friend.getId()));
+            recordChange(user.getId(), friend.getId());
 
             FriendshipStatusChangedEvent event = FriendshipStatusChangedEvent.builder()
                     .userId(user.getId())
@@ -135,11 +203,41 @@ public class FriendService {
         }
     }
 
-    public List<Profile> listFriends(String userId) {
+    /**
+     * One page of the caller's friends, read as previews straight from the friendship rows. Pages are keyed on the last
+     * row returned, by nickname or by friendship time (newest first), so a deep page costs the same as the first one.
+     * The total is a separate count and only taken when asked for.
+     */
+    public FriendPageDto listFriends(String userId, String sort, int limit, String cursor, boolean includeTotal) {
         try {
-            Profile profile = profileService.getOwnProfile(userId);
-            return profile.getFriends().stream().toList();
-        } catch (EntityNotFoundException e) {
+            boolean bySince = parseSort(sort);
+            int size = Math.clamp(limit, 1, FRIEND_PAGE_MAX_LIMIT);
+            UUID profileId = ownProfileId(userId);
+
+            List<FriendPreviewProjection> rows;
+            if (bySince) {
+                TimeCursor after = decodeTimeCursor(cursor, SINCE_CURSOR);
+                rows = after == null
+                        ? profileRepository.findFriendPreviewsBySince(profileId, size + 1)
+                        : profileRepository.findFriendPreviewsBySinceBefore(profileId, after.at(), after.id(), size + 1);
+            } else {
+                rows = profileRepository.findFriendPreviewsByNickname(profileId, decodeNicknameCursor(cursor), size + 1);
+            }
+
+            String nextCursor = null;
+            if (rows.size() > size) {
+                rows = rows.subList(0, size);
+                FriendPreviewProjection last = rows.get(size - 1);
+                nextCursor = bySince
+                        ? encodeTimeCursor(SINCE_CURSOR, last.getSince(), last.getId())
+                        : encodeCursor(NICKNAME_CURSOR + last.getNickname());
+            }
+            return FriendPageDto.builder()
+                    .friends(rows.stream().map(ProfileMapper::toPreview).toList())
+                    .nextCursor(nextCursor)
+                    .total(includeTotal ? profileRepository.countFriends(profileId) : null)
+                    .build();
+        } catch (EntityNotFoundException | IllegalArgumentException e) {
             log.warn("Failed to list friends: {}", e.getMessage());
             throw e;
         } catch (Exception e) {
@@ -147,5 +245,301 @@ public class FriendService {
             throw new RuntimeException("Could not list friends", e);
         }
     }
-}
 
+    /**
+     * How each of the given profiles relates to the caller, answered by one query over friendships and pending
+     * requests in both directions. Profiles that appear in neither are strangers. Pending relations carry the id of
+     * the request so it can be answered or withdrawn.
+     */
+    public Map<UUID, RelationshipDto> getRelationshipStatuses(String userId, Collection<UUID> profileIds) {
+        try {
+            if (profileIds == null || profileIds.isEmpty()) return Map.of();
+            Set<UUID> unique = profileIds.stream().filter(Objects::nonNull).collect(Collectors.toCollection(LinkedHashSet::new));
+            if (unique.size() > MAX_STATUS_IDS)
+                throw new IllegalArgumentException("At most " + MAX_STATUS_IDS + " profile ids can be requested at once");
+            if (unique.isEmpty()) return Map.of();
+
+            UUID profileId = ownProfileId(userId);
+
+            Map<UUID, RelationshipDto> statuses = new LinkedHashMap<>();
+            unique.forEach(id -> statuses.put(id, new RelationshipDto(RelationshipStatus.STRANGER, null)));
+            for (RelationshipProjection row : profileRepository.findRelationships(profileId, unique)) {
+                RelationshipDto relationship = new RelationshipDto(RelationshipStatus.valueOf(row.getStatus()), row.getRequestId());
+                // Rows for a pair can overlap while a request is being accepted; the stronger relation wins.
+                statuses.merge(row.getProfileId(), relationship,
+                        (a, b) -> a.getStatus().compareTo(b.getStatus()) <= 0 ? a : b);
+            }
+            return statuses;
+        } catch (EntityNotFoundException | IllegalArgumentException e) {
+            log.warn("Relationship status lookup rejected: {}", e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("Unexpected error reading relationship statuses for userId={}", userId, e);
+            throw new RuntimeException("Could not read relationship statuses", e);
+        }
+    }
+
+    /**
+     * One page of the requests the caller has received, newest first, with the sender's preview joined in.
+     */
+    public FriendRequestPageDto listReceivedRequests(String userId, int limit, String cursor) {
+        try {
+            return pageRequests(userId, limit, cursor, true);
+        } catch (EntityNotFoundException | IllegalArgumentException e) {
+            log.warn("Failed to list received friend requests: {}", e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("Unexpected error listing received friend requests for userId={}", userId, e);
+            throw new RuntimeException("Could not list friend requests", e);
+        }
+    }
+
+    /**
+     * One page of the requests the caller has sent, newest first, with the receiver's preview joined in.
+     */
+    public FriendRequestPageDto listSentRequests(String userId, int limit, String cursor) {
+        try {
+            return pageRequests(userId, limit, cursor, false);
+        } catch (EntityNotFoundException | IllegalArgumentException e) {
+            log.warn("Failed to list sent friend requests: {}", e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("Unexpected error listing sent friend requests for userId={}", userId, e);
+            throw new RuntimeException("Could not list friend requests", e);
+        }
+    }
+
+    /**
+     * People the caller may know: friends of friends ranked by mutual friends and shared games, leaving out anyone the
+     * caller already has a pending request with. Empty until the suggestion index has loaded.
+     */
+    public List<FriendSuggestionDto> suggestFriends(String userId, int limit) {
+        try {
+            int size = Math.clamp(limit, 1, SUGGESTION_MAX_LIMIT);
+            UUID profileId = ownProfileId(userId);
+            if (!friendSuggestionIndex.isReady()) return List.of();
+
+            // The graph only learns of friendships accepted on other instances at its next rebuild, so current
+            // friends are excluded from the database just like pending requests.
+            Set<UUID> excluded = new HashSet<>(friendRequestRepository.findCounterpartIds(profileId));
+            excluded.addAll(profileRepository.findFriendIds(profileId));
+            List<FriendSuggestionIndex.Suggestion> suggestions = friendSuggestionIndex.suggest(profileId, excluded, size);
+            if (suggestions.isEmpty()) return List.of();
+
+            // Profiles deleted since the last rebuild have no preview and drop out here.
+            Map<UUID, ProfilePreviewProjection> previews = profileRepository
+                    .findPreviewsByIds(suggestions.stream().map(FriendSuggestionIndex.Suggestion::profileId).toList())
+                    .stream()
+                    .collect(Collectors.toMap(ProfilePreviewProjection::getId, Function.identity()));
+            return suggestions.stream()
+                    .filter(s -> previews.containsKey(s.profileId()))
+                    .map(s -> FriendSuggestionDto.builder()
+                            .profile(ProfileMapper.toPreview(previews.get(s.profileId())))
+                            .mutualFriends(s.mutualFriends())
+                            .sharedGames(s.sharedGames())
+                            .build())
+                    .toList();
+        } catch (EntityNotFoundException e) {
+            log.warn("Failed to suggest friends: {}", e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("Unexpected error suggesting friends for userId={}", userId, e);
+            throw new RuntimeException("Could not suggest friends", e);
+        }
+    }
+
+    /**
+     * Number of received requests that arrived after the caller last marked their inbox as seen.
+     */
+    public long countUnreadRequests(String userId) {
+        try {
+            return friendRequestRepository.countUnread(ownProfileId(userId));
+        } catch (EntityNotFoundException e) {
+            log.warn("Failed to count unread friend requests: {}", e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("Unexpected error counting unread friend requests for userId={}", userId, e);
+            throw new RuntimeException("Could not count friend requests", e);
+        }
+    }
+
+    @Transactional
+    public void markRequestsSeen(String userId) {
+        try {
+            profileRepository.markFriendRequestsSeen(ownProfileId(userId), LocalDateTime.now());
+        } catch (EntityNotFoundException e) {
+            log.warn("Failed to mark friend requests as seen: {}", e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("Unexpected error marking friend requests as seen for userId={}", userId, e);
+            throw new RuntimeException("Could not mark friend requests as seen", e);
+        }
+    }
+
+    /**
+     * Entity tag of the caller's friend list, answered from the version columns only.
+     */
+    public String getFriendsETag(String userId) {
+        try {
+            ProfileVersionProjection version = profileRepository.findVersionByUserId(userId)
+                    .orElseThrow(() -> new EntityNotFoundException("Profile not found"));
+            return "\"friends-" + version.getId() + "-" + version.getRelationsVersion() + "\"";
+        } catch (EntityNotFoundException e) {
+            log.warn("Failed to read friend list version: {}", e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("Unexpected error reading friend list version for userId={}", userId, e);
+            throw new RuntimeException("Could not list friends", e);
+        }
+    }
+
+    /**
+     * Idempotency keys only have to outlive client retries.
+     */
+    @Scheduled(fixedDelayString = "${gamemate.friend-requests.key-cleanup-interval:PT1H}")
+    @Transactional
+    public void deleteExpiredRequestKeys() {
+        try {
+            int deleted = friendRequestRepository.deleteRequestKeysBefore(Instant.now().minus(IDEMPOTENCY_KEY_TTL));
+            if (deleted > 0) log.debug("Deleted {} expired friend request idempotency keys", deleted);
+        } catch (Exception e) {
+            log.error("Failed to delete expired friend request idempotency keys", e);
+        }
+    }
+
+    private FriendRequestResultDto claimFriendRequest(UUID senderId, UUID receiverId) {
+        for (int attempt = 1; attempt <= MAX_CLAIM_ATTEMPTS; attempt++) {
+            Optional<FriendRequestClaimProjection> claim = friendRequestRepository.claim(
+                    UUID.randomUUID(), senderId, receiverId, LocalDateTime.now());
+            // Nothing comes back when a competing request for the pair was inserted but is not visible yet.
+            if (claim.isEmpty()) continue;
+
+            FriendRequestClaimProjection row = claim.get();
+            switch (row.getOutcome()) {
+                case "NO_RECEIVER" -> throw new EntityNotFoundException("Profile not found");
+                case "CREATED" -> {
+                    recordChange(senderId, receiverId);
+                    return new FriendRequestResultDto(FriendRequestOutcome.CREATED, row.getRequestId());
+                }
+                case "FRIENDS" -> {
+                    return new FriendRequestResultDto(FriendRequestOutcome.ALREADY_FRIENDS, null);
+                }
+                default -> {
+                    if (senderId.equals(row.getSenderId()))
+                        return new FriendRequestResultDto(FriendRequestOutcome.ALREADY_SENT, row.getRequestId());
+                    // The receiver asked first; both want the friendship. Lost races with a decline or withdrawal retry.
+                    if (friendRequestRepository.deleteIfPresent(row.getRequestId()) == 0) continue;
+                    profileRepository.addFriendship(receiverId, senderId);
+                    afterCommit(() -> friendSuggestionIndex.addFriendship(receiverId, senderId));
+                    eventPublisher.publishFriendshipEvent(FriendshipStatusChangedEvent.builder()
+                            .userId(receiverId)
+                            .friendId(senderId)
+                            .status("FRIEND")
+                            .build());
+                    recordChange(senderId, receiverId);
+                    return new FriendRequestResultDto(FriendRequestOutcome.ACCEPTED, row.getRequestId());
+                }
+            }
+        }
+        log.warn("Friend request between {} and {} kept changing", senderId, receiverId);
+        throw new ConflictException("Friend request changed while it was being sent, try again");
+    }
+
+    private void recordChange(UUID... profileIds) {
+        List<UUID> ids = Arrays.stream(profileIds).filter(Objects::nonNull).toList();
+        profileRepository.incrementRelationsVersion(ids);
+        // The userId alias of a profile never changes with its relations, so only the ids need dropping.
+        profileCache.invalidateAfterCommit(ids, List.of());
+    }
+
+    private FriendRequestPageDto pageRequests(String userId, int limit, String cursor, boolean received) {
+        int size = Math.clamp(limit, 1, REQUEST_PAGE_MAX_LIMIT);
+        TimeCursor before = Objects.requireNonNullElse(decodeTimeCursor(cursor, REQUEST_CURSOR), FIRST_REQUEST_PAGE);
+        UUID profileId = ownProfileId(userId);
+
+        List<FriendRequestPreviewProjection> rows = received
+                ? friendRequestRepository.findReceivedPreviews(profileId, before.at(), before.id(), size + 1)
+                : friendRequestRepository.findSentPreviews(profileId, before.at(), before.id(), size + 1);
+
+        String nextCursor = null;
+        if (rows.size() > size) {
+            rows = rows.subList(0, size);
+            FriendRequestPreviewProjection last = rows.get(size - 1);
+            nextCursor = encodeTimeCursor(REQUEST_CURSOR, last.getCreatedAt(), last.getId());
+        }
+        Function<FriendRequestPreviewProjection, FriendRequestDto> mapper = received
+                ? FriendRequestMapper::toReceivedDto
+                : FriendRequestMapper::toSentDto;
+        return FriendRequestPageDto.builder()
+                .requests(rows.stream().map(mapper).toList())
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    /**
+     * Runs {@code action} once the current transaction commits, so in-memory state never reflects a rolled-back change.
+     */
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private UUID ownProfileId(String userId) {
+        return profileRepository.findVersionByUserId(userId)
+                .orElseThrow(() -> new EntityNotFoundException("Profile not found"))
+                .getId();
+    }
+
+    private static boolean parseSort(String sort) {
+        if (sort == null || sort.isBlank() || sort.equalsIgnoreCase("nickname")) return false;
+        if (sort.equalsIgnoreCase("since")) return true;
+        throw new IllegalArgumentException("Unknown sort: " + sort);
+    }
+
+    private static String decodeNicknameCursor(String cursor) {
+        String value = decodeCursor(cursor);
+        if (value == null) return "";
+        if (!value.startsWith(NICKNAME_CURSOR)) throw new IllegalArgumentException("Invalid cursor");
+        return value.substring(NICKNAME_CURSOR.length());
+    }
+
+    private static String encodeTimeCursor(String prefix, LocalDateTime at, UUID id) {
+        return encodeCursor(prefix + at + "|" + id);
+    }
+
+    private static TimeCursor decodeTimeCursor(String cursor, String prefix) {
+        String value = decodeCursor(cursor);
+        if (value == null) return null;
+        int separator = value.indexOf('|');
+        if (!value.startsWith(prefix) || separator < 0) throw new IllegalArgumentException("Invalid cursor");
+        try {
+            return new TimeCursor(LocalDateTime.parse(value.substring(prefix.length(), separator)),
+                    UUID.fromString(value.substring(separator + 1)));
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    private static String encodeCursor(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) return null;
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    private record TimeCursor(LocalDateTime at, UUID id) {}
+}
@@ -0,0 +1,422 @@
+package nl.fhict.gamemate.userservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+/**
+ * In-memory friendship graph used to suggest friends of friends.
+ * <p>
+ * Profiles are numbered densely on load and friendships are held in compressed sparse row form: an offsets array and
+ * one array of neighbour numbers, sorted per profile. Games are stored the same way. A query concatenates the
+ * neighbour lists of the caller's friends and sorts them, so every run of equal numbers is a candidate and its length
+ * the number of mutual friends; the cost follows the number of two-step paths, not the size of the graph.
+ * <p>
+ * Friend changes made on this instance are applied after commit to a small overlay on top of the arrays. The arrays are
+ * rebuilt from the database periodically, which folds in the overlay, changes made on other instances and game changes.
+ */
+@Service
+@Slf4j
+public class FriendSuggestionIndex {
+    public record Suggestion(UUID profileId, int mutualFriends, int sharedGames) {}
+
+    private static final String FRIENDSHIPS = "SELECT low_id, high_id FROM friendships";
+    private static final String GAMES = "SELECT DISTINCT profile_id, game_id FROM game_profiles";
+    private static final int FETCH_SIZE = 10_000;
+    private static final int[] NONE = new int[0];
+
+    private final JdbcTemplate jdbcTemplate;
+    private final double sharedGameWeight;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object loadLock = new Object();
+    private Graph graph = new Builder().build();
+    private final Map<UUID, Integer> extraIndex = new HashMap<>();
+    private final List<UUID> extraIds = new ArrayList<>();
+    private final Map<Integer, Set<Integer>> added = new HashMap<>();
+    private final Map<Integer, Set<Integer>> removed = new HashMap<>();
+    /**
+     * Changes applied while a load is running, replayed on top of the loaded graph. {@code null} when not loading.
+     */
+    private List<Change> pending;
+    private volatile boolean ready;
+
+    @Autowired
+    public FriendSuggestionIndex(DataSource dataSource,
+                                 @Value("${gamemate.friend-suggestions.shared-game-weight:0.5}") double sharedGameWeight) {
+        this(streamingTemplate(dataSource), sharedGameWeight);
+    }
+
+    public FriendSuggestionIndex(JdbcTemplate jdbcTemplate, double sharedGameWeight) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.sharedGameWeight = sharedGameWeight;
+    }
+
+    /**
+     * Reads both tables in one read-only transaction so the driver streams rows instead of buffering them.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${gamemate.friend-suggestions.rebuild-interval:PT30M}",
+            fixedDelayString = "${gamemate.friend-suggestions.rebuild-interval:PT30M}")
+    @Transactional(readOnly = true)
+    public void load() {
+        synchronized (loadLock) {
+            try {
+                withWriteLock(() -> pending = new ArrayList<>());
+                Builder builder = new Builder();
+                jdbcTemplate.query(FRIENDSHIPS, (RowCallbackHandler) rs ->
+                        builder.friendship(rs.getObject(1, UUID.class), rs.getObject(2, UUID.class)));
+                jdbcTemplate.query(GAMES, (RowCallbackHandler) rs ->
+                        builder.game(rs.getObject(1, UUID.class), rs.getObject(2, UUID.class)));
+                Graph loaded = builder.build();
+
+                withWriteLock(() -> {
+                    graph = loaded;
+                    extraIndex.clear();
+                    extraIds.clear();
+                    added.clear();
+                    removed.clear();
+                    pending.forEach(this::applyLocked);
+                    pending = null;
+                });
+                ready = true;
+                log.info("Friend graph loaded with {} profiles and {} friendships", loaded.size(), loaded.neighbours.length / 2);
+            } catch (Exception e) {
+                withWriteLock(() -> pending = null);
+                log.error("Failed to load friend graph", e);
+            }
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Records a new friendship; inside a transaction it takes effect after commit.
+     */
+    public void addFriendship(UUID a, UUID b) {
+        afterCommit(new Change(a, b, true));
+    }
+
+    /**
+     * Records a removed friendship; inside a transaction it takes effect after commit.
+     */
+    public void removeFriendship(UUID a, UUID b) {
+        afterCommit(new Change(a, b, false));
+    }
+
+    /**
+     * Drops every friendship of a deleted profile; inside a transaction it takes effect after commit.
+     */
+    public void removeProfile(UUID profileId) {
+        afterCommit(new Change(profileId, null, false));
+    }
+
+    /**
+     * Up to {@code limit} friends of friends of the profile, best first. A candidate scores one point per mutual friend
+     * and {@code sharedGameWeight} per game both have a game profile for. The profile itself, its friends and the
+     * {@code excluded} profiles are never suggested.
+     */
+    public List<Suggestion> suggest(UUID profileId, Collection<UUID> excluded, int limit) {
+        if (limit <= 0) return List.of();
+        lock.readLock().lock();
+        try {
+            Integer self = nodeOf(profileId);
+            if (self == null) return List.of();
+
+            int[] friends = neighbours(self);
+            int[][] reachable = new int[friends.length][];
+            int paths = 0;
+            for (int i = 0; i < friends.length; i++) {
+                reachable[i] = neighbours(friends[i]);
+                paths += reachable[i].length;
+            }
+            int[] candidates = new int[paths];
+            int filled = 0;
+            for (int[] list : reachable) {
+                System.arraycopy(list, 0, candidates, filled, list.length);
+                filled += list.length;
+            }
+            Arrays.sort(candidates);
+
+            int[] skip = IntStream.concat(IntStream.concat(Arrays.stream(friends), IntStream.of(self)),
+                            excluded.stream().map(this::nodeOf).filter(Objects::nonNull).mapToInt(Integer::intValue))
+                    .sorted()
+                    .toArray();
+
+            Comparator<Scored> worstFirst = Comparator.comparingDouble(Scored::score)
+                    .thenComparingInt(Scored::mutualFriends)
+                    .thenComparing(Comparator.comparingInt(Scored::node).reversed());
+            PriorityQueue<Scored> best = new PriorityQueue<>(limit + 1, worstFirst);
+            for (int i = 0; i < candidates.length; ) {
+                int node = candidates[i];
+                int end = i;
+                while (end < candidates.length && candidates[end] == node) end++;
+                int mutual = end - i;
+                i = end;
+                if (Arrays.binarySearch(skip, node) >= 0) continue;
+
+                int shared = graph.sharedGames(self, node);
+                best.offer(new Scored(node, mutual, shared, mutual + shared * sharedGameWeight));
+                if (best.size() > limit) best.poll();
+            }
+
+            List<Scored> ranked = new ArrayList<>(best);
+            ranked.sort(worstFirst.reversed());
+            return ranked.stream()
+                    .map(s -> new Suggestion(idOf(s.node()), s.mutualFriends(), s.sharedGames()))
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void afterCommit(Change change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(change);
+                }
+            });
+        } else {
+            apply(change);
+        }
+    }
+
+    private void apply(Change change) {
+        withWriteLock(() -> {
+            applyLocked(change);
+            if (pending != null) pending.add(change);
+        });
+    }
+
+    private void applyLocked(Change change) {
+        if (change.b() == null) {
+            Integer node = nodeOf(change.a());
+            if (node == null) return;
+            for (int neighbour : neighbours(node)) setEdge(node, neighbour, false);
+            return;
+        }
+        if (change.a().equals(change.b())) return;
+        Integer a = change.friends() ? intern(change.a()) : nodeOf(change.a());
+        Integer b = change.friends() ? intern(change.b()) : nodeOf(change.b());
+        if (a == null || b == null) return;
+        setEdge(a, b, change.friends());
+    }
+
+    private void setEdge(int a, int b, boolean friends) {
+        unlink(added, a, b);
+        unlink(removed, a, b);
+        if (friends != graph.hasEdge(a, b)) {
+            Map<Integer, Set<Integer>> overlay = friends ? added : removed;
+            overlay.computeIfAbsent(a, k -> new HashSet<>()).add(b);
+            overlay.computeIfAbsent(b, k -> new HashSet<>()).add(a);
+        }
+    }
+
+    private static void unlink(Map<Integer, Set<Integer>> overlay, int a, int b) {
+        overlay.computeIfPresent(a, (k, set) -> set.remove(b) && set.isEmpty() ? null : set);
+        overlay.computeIfPresent(b, (k, set) -> set.remove(a) && set.isEmpty() ? null : set);
+    }
+
+    private int[] neighbours(int node) {
+        int[] base = graph.neighbours(node);
+        Set<Integer> gone = removed.get(node);
+        Set<Integer> extra = added.get(node);
+        if (gone == null && extra == null) return base;
+
+        IntStream merged = Arrays.stream(base);
+        if (gone != null) merged = merged.filter(n -> !gone.contains(n));
+        if (extra != null) merged = IntStream.concat(merged, extra.stream().mapToInt(Integer::intValue));
+        return merged.sorted().toArray();
+    }
+
+    private Integer nodeOf(UUID profileId) {
+        Integer node = graph.index.get(profileId);
+        return node != null ? node : extraIndex.get(profileId);
+    }
+
+    private int intern(UUID profileId) {
+        Integer node = nodeOf(profileId);
+        if (node != null) return node;
+        int next = graph.size() + extraIds.size();
+        extraIndex.put(profileId, next);
+        extraIds.add(profileId);
+        return next;
+    }
+
+    private UUID idOf(int node) {
+        return node < graph.size() ? graph.ids[node] : extraIds.get(node - graph.size());
+    }
+
+    private void withWriteLock(Runnable action) {
+        lock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static JdbcTemplate streamingTemplate(DataSource dataSource) {
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.setFetchSize(FETCH_SIZE);
+        return template;
+    }
+
+    /**
+     * A friendship set or cleared between {@code a} and {@code b}; without {@code b}, all friendships of {@code a} cleared.
+     */
+    private record Change(UUID a, UUID b, boolean friends) {}
+
+    private record Scored(int node, int mutualFriends, int sharedGames, double score) {}
+
+    /**
+     * Immutable snapshot: adjacency and game lists in compressed sparse row form, indexed by dense profile numbers.
+     */
+    private static final class Graph {
+        final Map<UUID, Integer> index;
+        final UUID[] ids;
+        final int[] offsets;
+        final int[] neighbours;
+        final int[] gameOffsets;
+        final int[] games;
+
+        Graph(Map<UUID, Integer> index, UUID[] ids, int[] offsets, int[] neighbours, int[] gameOffsets, int[] games) {
+            this.index = index;
+            this.ids = ids;
+            this.offsets = offsets;
+            this.neighbours = neighbours;
+            this.gameOffsets = gameOffsets;
+            this.games = games;
+        }
+
+        int size() {
+            return ids.length;
+        }
+
+        int[] neighbours(int node) {
+            return node < size() ? Arrays.copyOfRange(neighbours, offsets[node], offsets[node + 1]) : NONE;
+        }
+
+        boolean hasEdge(int a, int b) {
+            return a < size() && b < size() && Arrays.binarySearch(neighbours, offsets[a], offsets[a + 1], b) >= 0;
+        }
+
+        int sharedGames(int a, int b) {
+            if (a >= size() || b >= size()) return 0;
+            int i = gameOffsets[a], iEnd = gameOffsets[a + 1];
+            int j = gameOffsets[b], jEnd = gameOffsets[b + 1];
+            int shared = 0;
+            while (i < iEnd && j < jEnd) {
+                if (games[i] < games[j]) i++;
+                else if (games[i] > games[j]) j++;
+                else {
+                    shared++;
+                    i++;
+                    j++;
+                }
+            }
+            return shared;
+        }
+    }
+
+    private static final class Builder {
+        private final Map<UUID, Integer> index = new HashMap<>();
+        private final List<UUID> ids = new ArrayList<>();
+        private final Map<UUID, Integer> gameIndex = new HashMap<>();
+        private final IntList edgeFrom = new IntList();
+        private final IntList edgeTo = new IntList();
+        private final IntList gameFrom = new IntList();
+        private final IntList gameTo = new IntList();
+
+        void friendship(UUID a, UUID b) {
+            int x = node(a);
+            int y = node(b);
+            edgeFrom.add(x);
+            edgeTo.add(y);
+            edgeFrom.add(y);
+            edgeTo.add(x);
+        }
+
+        void game(UUID profileId, UUID gameId) {
+            gameFrom.add(node(profileId));
+            gameTo.add(gameIndex.computeIfAbsent(gameId, k -> gameIndex.size()));
+        }
+
+        Graph build() {
+            int nodes = ids.size();
+            int[][] adjacency = compress(nodes, edgeFrom, edgeTo);
+            int[][] gameLists = compress(nodes, gameFrom, gameTo);
+            return new Graph(index, ids.toArray(UUID[]::new), adjacency[0], adjacency[1], gameLists[0], gameLists[1]);
+        }
+
+        private int node(UUID id) {
+            return index.computeIfAbsent(id, k -> {
+                ids.add(k);
+                return ids.size() - 1;
+            });
+        }
+
+        /**
+         * Counting sort of (from, to) pairs into offsets and targets, each row sorted.
+         */
+        private static int[][] compress(int nodes, IntList from, IntList to) {
+            int[] offsets = new int[nodes + 1];
+            for (int i = 0; i < from.size(); i++) offsets[from.get(i) + 1]++;
+            for (int n = 0; n < nodes; n++) offsets[n + 1] += offsets[n];
+
+            int[] targets = new int[from.size()];
+            int[] cursor = Arrays.copyOf(offsets, nodes);
+            for (int i = 0; i < from.size(); i++) targets[cursor[from.get(i)]++] = to.get(i);
+            for (int n = 0; n < nodes; n++) Arrays.sort(targets, offsets[n], offsets[n + 1]);
+            return new int[][]{offsets, targets};
+        }
+    }
+
+    private static final class IntList {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        int get(int i) {
+            return values[i];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package nl.fhict.gamemate.userservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import nl.fhict.gamemate.userservice.event.NicknameChangedEvent;
+import nl.fhict.gamemate.userservice.repository.ProfileRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory, case-folded index of taken nicknames.
+ * <p>
+ * A Bloom filter answers "definitely free" without touching the database, an exact set confirms hits.
+ * Names that pass the Bloom filter but are not in the exact set are reported as {@link Answer#UNKNOWN}
+ * so the caller can fall back to the database.
+ * <p>
+ * Every instance keeps its own copy. Creates, renames and deletes are broadcast to the other instances
+ * after commit, and the whole index is reloaded periodically to repair anything a lost message left
+ * behind, so answers can lag another instance by the broadcast delay. They are therefore only advisory:
+ * claiming a name always asks the database.
+ * <p>
+ * Short-lived reservations close the check-then-insert window during signup and rename on this instance;
+ * the unique constraint on {@code profiles.nickname} stays the final guard across instances.
+ */
+@Service
+@Slf4j
+public class NicknameIndex {
+    public enum Answer { FREE, TAKEN, UNKNOWN }
+
+    private final ProfileRepository profileRepository;
+    private final EventPublisher eventPublisher;
+    private final int expectedInsertions;
+    private final double falsePositiveRate;
+    private final Duration reservationTtl;
+    private final Clock clock;
+
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Object writeLock = new Object();
+    private volatile Set<String> nicknames = ConcurrentHashMap.newKeySet();
+    /**
+     * Changes made while a load is reading the table, replayed onto the loaded set. {@code null} when not loading.
+     */
+    private List<Change> pending;
+    private final Map<String, Reservation> reservations = new ConcurrentHashMap<>();
+    private final AtomicInteger removalsSinceRebuild = new AtomicInteger();
+    private volatile BloomFilter bloom;
+    private volatile boolean ready;
+
+    @Autowired
+    public NicknameIndex(ProfileRepository profileRepository,
+                         EventPublisher eventPublisher,
+                         @Value("${gamemate.nickname-index.expected-insertions:100000}") int expectedInsertions,
+                         @Value("${gamemate.nickname-index.false-positive-rate:0.01}") double falsePositiveRate,
+                         @Value("${gamemate.nickname-index.reservation-ttl:PT30S}") Duration reservationTtl) {
+        this(profileRepository, eventPublisher, expectedInsertions, falsePositiveRate, reservationTtl, Clock.systemUTC());
+    }
+
+    public NicknameIndex(ProfileRepository profileRepository, EventPublisher eventPublisher, int expectedInsertions,
+                         double falsePositiveRate, Duration reservationTtl, Clock clock) {
+        this.profileRepository = profileRepository;
+        this.eventPublisher = eventPublisher;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.reservationTtl = reservationTtl;
+        this.clock = clock;
+        this.bloom = new BloomFilter(expectedInsertions, falsePositiveRate);
+    }
+
+    /**
+     * Replaces the index with the table contents. Changes made while the table is read are replayed on top,
+     * so they are neither lost nor undone by an older read.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${gamemate.nickname-index.reload-interval:PT10M}",
+            fixedDelayString = "${gamemate.nickname-index.reload-interval:PT10M}")
+    public void load() {
+        synchronized (writeLock) {
+            pending = new ArrayList<>();
+        }
+        try {
+            Set<String> loaded = ConcurrentHashMap.newKeySet();
+            profileRepository.findAllNicknames().forEach(n -> loaded.add(fold(n)));
+            synchronized (writeLock) {
+                pending.forEach(change -> change.applyTo(loaded));
+                nicknames = loaded;
+                rebuild();
+            }
+            ready = true;
+            log.info("Nickname index loaded with {} entries", loaded.size());
+        } catch (Exception e) {
+            log.error("Failed to load nickname index, falling back to database lookups", e);
+        } finally {
+            synchronized (writeLock) {
+                pending = null;
+            }
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public Answer lookup(String nickname) {
+        String key = fold(nickname);
+        if (isReserved(key)) return Answer.TAKEN;
+        if (!ready) return Answer.UNKNOWN;
+        if (!bloom.mightContain(key)) return Answer.FREE;
+        return nicknames.contains(key) ? Answer.TAKEN : Answer.UNKNOWN;
+    }
+
+    /**
+     * Records a name seen taken on this instance, without telling the others.
+     */
+    public void add(String nickname) {
+        if (nickname == null) return;
+        apply(new Change(fold(nickname), true));
+    }
+
+    public void remove(String nickname) {
+        if (nickname == null) return;
+        apply(new Change(fold(nickname), false));
+    }
+
+    /**
+     * Applies a committed create, rename or delete here and broadcasts it to the other instances.
+     * Either side may be {@code null}.
+     */
+    public void publishChange(String added, String removed, UUID profileId) {
+        remove(removed);
+        add(added);
+        eventPublisher.publishNicknameChange(NicknameChangedEvent.builder()
+                .originInstanceId(instanceId)
+                .added(added)
+                .removed(removed)
+                .profileId(profileId)
+                .build());
+    }
+
+    /**
+     * Whether this instance published the event, and has therefore applied it already.
+     */
+    public boolean isLocal(NicknameChangedEvent event) {
+        return instanceId.equals(event.getOriginInstanceId());
+    }
+
+    public void onRemoteChange(NicknameChangedEvent event) {
+        if (isLocal(event)) return;
+        remove(event.getRemoved());
+        add(event.getAdded());
+    }
+
+    private void apply(Change change) {
+        synchronized (writeLock) {
+            if (pending != null) pending.add(change);
+            change.applyTo(nicknames);
+            if (change.taken()) {
+                BloomFilter current = bloom;
+                current.put(change.key());
+                if (nicknames.size() > current.capacity()) rebuild();
+            } else if (removalsSinceRebuild.incrementAndGet() > bloom.capacity() / 4) {
+                rebuild();
+            }
+        }
+    }
+
+    /**
+     * Reserves a nickname for {@code owner} until {@link #release} or the TTL expires.
+     * Re-reserving by the same owner refreshes the reservation.
+     */
+    public boolean reserve(String nickname, String owner) {
+        String key = fold(nickname);
+        Instant now = clock.instant();
+        Reservation fresh = new Reservation(owner, now.plus(reservationTtl));
+        Reservation result = reservations.compute(key, (k, existing) ->
+                existing == null || existing.isExpired(now) || existing.owner().equals(owner) ? fresh : existing);
+        return result == fresh;
+    }
+
+    public void release(String nickname, String owner) {
+        if (nickname == null) return;
+        reservations.computeIfPresent(fold(nickname), (k, existing) ->
+                existing.owner().equals(owner) ? null : existing);
+    }
+
+    private boolean isReserved(String key) {
+        Reservation reservation = reservations.get(key);
+        if (reservation == null) return false;
+        if (reservation.isExpired(clock.instant())) {
+            reservations.remove(key, reservation);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Called with {@code writeLock} held, so no name can be added while the filter is copied.
+     */
+    private void rebuild() {
+        int capacity = Math.max(expectedInsertions, nicknames.size() * 2);
+        BloomFilter next = new BloomFilter(capacity, falsePositiveRate);
+        nicknames.forEach(next::put);
+        bloom = next;
+        removalsSinceRebuild.set(0);
+    }
+
+    static String fold(String nickname) {
+        return Objects.requireNonNull(nickname, "nickname").toLowerCase(Locale.ROOT);
+    }
+
+    private record Change(String key, boolean taken) {
+        void applyTo(Set<String> names) {
+            if (taken) names.add(key);
+            else names.remove(key);
+        }
+    }
+
+    private record Reservation(String owner, Instant expiresAt) {
+        boolean isExpired(Instant now) {
+            return !now.isBefore(expiresAt);
+        }
+    }
+
+    /**
+     * Lock-free Bloom filter using double hashing over two 64-bit FNV-1a variants.
+     */
+    static final class BloomFilter {
+        private final AtomicLongArray bits;
+        private final long bitCount;
+        private final int hashCount;
+        private final int capacity;
+
+        BloomFilter(int capacity, double falsePositiveRate) {
+            this.capacity = Math.max(capacity, 1);
+            long m = (long) Math.ceil(-this.capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            int words = (int) Math.max(1, (m + 63) / 64);
+            this.bits = new AtomicLongArray(words);
+            this.bitCount = (long) words * 64;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / this.capacity * Math.log(2)));
+        }
+
+        int capacity() {
+            return capacity;
+        }
+
+        void put(String key) {
+            long h1 = hash(key, 0xcbf29ce484222325L);
+            long h2 = hash(key, 0x84222325cbf29ce4L) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bitCount);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long current;
+                do {
+                    current = bits.get(word);
+                    if ((current & mask) != 0) break;
+                } while (!bits.compareAndSet(word, current, current | mask));
+            }
+        }
+
+        boolean mightContain(String key) {
+            long h1 = hash(key, 0xcbf29ce484222325L);
+            long h2 = hash(key, 0x84222325cbf29ce4L) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bitCount);
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+            }
+            return true;
+        }
+
+        private static long hash(String key, long seed) {
+            long h = seed;
+            for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+                h ^= b;
+                h *= 0x100000001b3L;
+            }
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
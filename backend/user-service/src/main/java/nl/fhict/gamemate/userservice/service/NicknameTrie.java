@@ -0,0 +1,269 @@
+package nl.fhict.gamemate.userservice.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.fhict.gamemate.userservice.event.NicknameChangedEvent;
+import nl.fhict.gamemate.userservice.repository.ProfileRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Prefix trie over case-folded nicknames used for autocomplete.
+ * <p>
+ * Nodes keep their children in sorted parallel arrays and terminal nodes hold the profile id and the nickname as
+ * stored, so lookups walk at most one node per character and results come back in lexicographic order of the
+ * folded keys, with their original casing.
+ * Paging continues after the last returned key; subtrees entirely before it are pruned.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class NicknameTrie {
+    public record Match(String nickname, UUID profileId) {}
+
+    private final ProfileRepository profileRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Node root = new Node();
+    private int size;
+    /**
+     * Changes made while a load is reading the table, replayed onto the loaded trie. {@code null} when not loading.
+     */
+    private List<Change> pending;
+    private volatile boolean ready;
+
+    /**
+     * Replaces the trie with the table contents. Puts and removes made while the table is read are replayed on top,
+     * so they are not lost when the loaded trie is swapped in. The periodic reload repairs changes whose broadcast
+     * never arrived.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${gamemate.nickname-trie.reload-interval:PT10M}",
+            fixedDelayString = "${gamemate.nickname-trie.reload-interval:PT10M}")
+    public void load() {
+        lock.writeLock().lock();
+        try {
+            pending = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            Node loaded = new Node();
+            int count = 0;
+            for (var entry : profileRepository.findAllNicknameEntries()) {
+                if (insert(loaded, entry.getNickname(), entry.getId())) count++;
+            }
+            lock.writeLock().lock();
+            try {
+                for (Change change : pending) count += change.applyTo(loaded);
+                root = loaded;
+                size = count;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            ready = true;
+            log.info("Nickname trie loaded with {} entries", count);
+        } catch (Exception e) {
+            log.error("Failed to load nickname trie", e);
+        } finally {
+            lock.writeLock().lock();
+            try {
+                pending = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void put(String nickname, UUID profileId) {
+        if (nickname == null || profileId == null) return;
+        apply(new Change(nickname, profileId));
+    }
+
+    public void remove(String nickname) {
+        if (nickname == null) return;
+        apply(new Change(nickname, null));
+    }
+
+    /**
+     * Applies a create, rename or delete committed on another instance.
+     */
+    public void onRemoteChange(NicknameChangedEvent event) {
+        remove(event.getRemoved());
+        put(event.getAdded(), event.getProfileId());
+    }
+
+    private void apply(Change change) {
+        lock.writeLock().lock();
+        try {
+            if (pending != null) pending.add(change);
+            size += change.applyTo(root);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} nicknames starting with {@code prefix}, strictly after {@code after}
+     * when a continuation key is given.
+     */
+    public List<Match> complete(String prefix, int limit, String after) {
+        String key = fold(prefix);
+        String from = after == null ? null : fold(after);
+        List<Match> out = new ArrayList<>(Math.min(limit, 64));
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.child(key.charAt(i));
+            }
+            if (node != null) {
+                collect(node, new StringBuilder(key), from, limit, out);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return out;
+    }
+
+    private static void collect(Node node, StringBuilder path, String after, int limit, List<Match> out) {
+        if (out.size() >= limit) return;
+        if (node.nickname != null && (after == null || path.toString().compareTo(after) > 0)) {
+            out.add(new Match(node.nickname, new UUID(node.idHigh, node.idLow)));
+        }
+        for (int i = 0; i < node.childCount && out.size() < limit; i++) {
+            path.append(node.keys[i]);
+            if (after == null || !isBeforeSubtree(path, after)) {
+                collect(node.children[i], path, after, limit, out);
+            }
+            path.setLength(path.length() - 1);
+        }
+    }
+
+    /**
+     * True when every key under {@code path} sorts at or before {@code after}.
+     */
+    private static boolean isBeforeSubtree(CharSequence path, String after) {
+        int n = Math.min(path.length(), after.length());
+        for (int i = 0; i < n; i++) {
+            char a = path.charAt(i);
+            char b = after.charAt(i);
+            if (a != b) return a < b;
+        }
+        return false;
+    }
+
+    private static boolean insert(Node root, String nickname, UUID id) {
+        String key = fold(nickname);
+        Node node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.getOrCreateChild(key.charAt(i));
+        }
+        boolean added = node.nickname == null;
+        node.nickname = nickname;
+        node.idHigh = id.getMostSignificantBits();
+        node.idLow = id.getLeastSignificantBits();
+        return added;
+    }
+
+    private static boolean remove(Node node, String key, int depth) {
+        if (depth == key.length()) {
+            boolean removed = node.nickname != null;
+            node.nickname = null;
+            return removed;
+        }
+        char c = key.charAt(depth);
+        Node child = node.child(c);
+        if (child == null) return false;
+        boolean removed = remove(child, key, depth + 1);
+        if (removed && child.nickname == null && child.childCount == 0) {
+            node.removeChild(c);
+        }
+        return removed;
+    }
+
+    private static String fold(String nickname) {
+        return nickname.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * A put, or a remove when {@code profileId} is {@code null}.
+     */
+    private record Change(String nickname, UUID profileId) {
+        /**
+         * Returns the change in entry count.
+         */
+        int applyTo(Node root) {
+            if (profileId != null) return insert(root, nickname, profileId) ? 1 : 0;
+            return remove(root, fold(nickname), 0) ? -1 : 0;
+        }
+    }
+
+    private static final class Node {
+        private static final char[] NO_KEYS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        char[] keys = NO_KEYS;
+        Node[] children = NO_CHILDREN;
+        int childCount;
+        /** The nickname as stored when this node ends one, otherwise {@code null}. */
+        String nickname;
+        long idHigh;
+        long idLow;
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(keys, 0, childCount, c);
+            return i >= 0 ? children[i] : null;
+        }
+
+        Node getOrCreateChild(char c) {
+            int i = Arrays.binarySearch(keys, 0, childCount, c);
+            if (i >= 0) return children[i];
+            int at = -i - 1;
+            if (childCount == keys.length) {
+                int capacity = Math.max(2, childCount * 2);
+                keys = Arrays.copyOf(keys, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            System.arraycopy(keys, at, keys, at + 1, childCount - at);
+            System.arraycopy(children, at, children, at + 1, childCount - at);
+            Node created = new Node();
+            keys[at] = c;
+            children[at] = created;
+            childCount++;
+            return created;
+        }
+
+        void removeChild(char c) {
+            int i = Arrays.binarySearch(keys, 0, childCount, c);
+            if (i < 0) return;
+            System.arraycopy(keys, i + 1, keys, i, childCount - i - 1);
+            System.arraycopy(children, i + 1, children, i, childCount - i - 1);
+            childCount--;
+            children[childCount] = null;
+        }
+    }
+}
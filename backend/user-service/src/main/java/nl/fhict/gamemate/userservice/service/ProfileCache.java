@@ -0,0 +1,180 @@
+package nl.fhict.gamemate.userservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import nl.fhict.gamemate.userservice.dto.ProfileDto;
+import nl.fhict.gamemate.userservice.dto.ProfilePreviewDto;
+import nl.fhict.gamemate.userservice.event.ProfileCacheInvalidationEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Read-through cache of {@link ProfileDto} snapshots keyed by profile id, with a userId → profile id alias,
+ * plus a separate cache of {@link ProfilePreviewDto}s for batch lookups.
+ * <p>
+ * Entries are bounded by an estimated byte weight and expire after a TTL as a safety net. Concurrent misses
+ * for the same key share a single load. Invalidations are applied after commit and broadcast so every
+ * instance drops its copy; a load that overlaps an invalidation is not kept. Cached DTOs are shared and
+ * must be treated as read-only.
+ */
+@Service
+@Slf4j
+public class ProfileCache {
+    private final Cache<UUID, ProfileDto> byId;
+    private final Cache<String, UUID> idByUserId;
+    private final Cache<UUID, ProfilePreviewDto> previews;
+    private final AtomicLong generation = new AtomicLong();
+    private final String instanceId = UUID.randomUUID().toString();
+    private final EventPublisher eventPublisher;
+
+    @Autowired
+    public ProfileCache(EventPublisher eventPublisher,
+                        MeterRegistry meterRegistry,
+                        @Value("${gamemate.profile-cache.max-weight-bytes:67108864}") long maxWeightBytes,
+                        @Value("${gamemate.profile-cache.ttl:PT10M}") Duration ttl) {
+        this.eventPublisher = eventPublisher;
+        this.byId = Caffeine.newBuilder()
+                .maximumWeight(maxWeightBytes)
+                .weigher((UUID id, ProfileDto dto) -> estimateSize(dto))
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.idByUserId = Caffeine.newBuilder()
+                .maximumSize(Math.max(1, maxWeightBytes / 1024))
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.previews = Caffeine.newBuilder()
+                .maximumSize(Math.max(1, maxWeightBytes / 256))
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, byId, "profiles.by-id");
+        CaffeineCacheMetrics.monitor(meterRegistry, idByUserId, "profiles.by-user-id");
+        CaffeineCacheMetrics.monitor(meterRegistry, previews, "profiles.previews");
+    }
+
+    public ProfileDto getById(UUID id, Function<UUID, ProfileDto> loader) {
+        long seen = generation.get();
+        ProfileDto dto = byId.get(id, loader);
+        if (generation.get() != seen) byId.asMap().remove(id, dto);
+        return dto;
+    }
+
+    public ProfileDto getByUserId(String userId,
+                                  Function<String, ProfileDto> loader,
+                                  Function<UUID, ProfileDto> idLoader) {
+        UUID cachedId = idByUserId.getIfPresent(userId);
+        if (cachedId != null) return getById(cachedId, idLoader);
+
+        long seen = generation.get();
+        ProfileDto[] loaded = new ProfileDto[1];
+        UUID id = idByUserId.get(userId, uid -> {
+            ProfileDto dto = loader.apply(uid);
+            byId.put(dto.getId(), dto);
+            loaded[0] = dto;
+            return dto.getId();
+        });
+        if (loaded[0] == null) return getById(id, idLoader);
+        if (generation.get() != seen) {
+            byId.asMap().remove(id, loaded[0]);
+            idByUserId.asMap().remove(userId, id);
+        }
+        return loaded[0];
+    }
+
+    /**
+     * Returns cached previews for {@code ids}, loading all missing ones with a single call to {@code loader}.
+     * Ids the loader does not return are absent from the result and are not cached.
+     */
+    public Map<UUID, ProfilePreviewDto> getPreviews(Collection<UUID> ids,
+                                                     Function<Set<UUID>, Map<UUID, ProfilePreviewDto>> loader) {
+        long seen = generation.get();
+        Map<UUID, ProfilePreviewDto> result = previews.getAll(ids, missing -> loader.apply(Set.copyOf(missing)));
+        if (generation.get() != seen) previews.invalidateAll(result.keySet());
+        return result;
+    }
+
+    /**
+     * Drops the given profiles here once the current transaction commits, and on every other instance.
+     */
+    public void invalidateAfterCommit(Collection<UUID> profileIds, Collection<String> userIds) {
+        List<UUID> ids = profileIds.stream().filter(Objects::nonNull).distinct().toList();
+        List<String> users = userIds.stream().filter(Objects::nonNull).distinct().toList();
+        if (ids.isEmpty() && users.isEmpty()) return;
+
+        invalidateLocally(ids, users);
+        Runnable afterCommit = () -> {
+            invalidateLocally(ids, users);
+            eventPublisher.publishProfileCacheInvalidation(ProfileCacheInvalidationEvent.builder()
+                    .originInstanceId(instanceId)
+                    .profileIds(ids)
+                    .userIds(users)
+                    .build());
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    afterCommit.run();
+                }
+            });
+        } else {
+            afterCommit.run();
+        }
+    }
+
+    public void onRemoteInvalidation(ProfileCacheInvalidationEvent event) {
+        if (instanceId.equals(event.getOriginInstanceId())) return;
+        invalidateLocally(
+                event.getProfileIds() == null ? List.of() : event.getProfileIds(),
+                event.getUserIds() == null ? List.of() : event.getUserIds());
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        byId.invalidateAll();
+        idByUserId.invalidateAll();
+        previews.invalidateAll();
+    }
+
+    private void invalidateLocally(Collection<UUID> profileIds, Collection<String> userIds) {
+        generation.incrementAndGet();
+        byId.invalidateAll(profileIds);
+        idByUserId.invalidateAll(userIds);
+        previews.invalidateAll(profileIds);
+    }
+
+    private static int estimateSize(ProfileDto dto) {
+        int size = 512;
+        size += length(dto.getUserId()) + length(dto.getNickname()) + length(dto.getBio())
+                + length(dto.getLocation()) + length(dto.getAvatarUrl());
+        size += count(dto.getFriends()) * 160;
+        size += count(dto.getGameProfiles()) * 320;
+        return size;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : 40 + value.length() * 2;
+    }
+
+    private static int count(Collection<?> values) {
+        return values == null ? 0 : values.size();
+    }
+}
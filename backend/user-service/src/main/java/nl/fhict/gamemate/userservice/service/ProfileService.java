@@ -4,27 +4,55 @@ import jakarta.persistence.EntityNotFoundException;
 import org.springframework.transaction.annotation.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.fhict.gamemate.userservice.dto.AccountDeletionDto;
+import nl.fhict.gamemate.userservice.dto.AutocompleteDto;
+import nl.fhict.gamemate.userservice.dto.AvatarUploadDto;
+import nl.fhict.gamemate.userservice.dto.AvatarUploadRequest;
+import nl.fhict.gamemate.userservice.dto.GameProfileDto;
 import nl.fhict.gamemate.userservice.dto.GameProfileRequest;
+import nl.fhict.gamemate.userservice.dto.NicknameSuggestionDto;
+import nl.fhict.gamemate.userservice.dto.ProfileDto;
+import nl.fhict.gamemate.userservice.dto.ProfileField;
 import nl.fhict.gamemate.userservice.dto.ProfilePreviewDto;
 import nl.fhict.gamemate.userservice.dto.ProfileRequest;
 import nl.fhict.gamemate.userservice.event.UserStatusChangedEvent;
+import nl.fhict.gamemate.userservice.mapper.AccountDeletionMapper;
+import nl.fhict.gamemate.userservice.mapper.GameProfileMapper;
+import nl.fhict.gamemate.userservice.mapper.ProfileMapper;
+import nl.fhict.gamemate.userservice.model.AccountDeletion;
+import nl.fhict.gamemate.userservice.model.AccountDeletionStatus;
+import nl.fhict.gamemate.userservice.model.AvatarDeletion;
 import nl.fhict.gamemate.userservice.model.Game;
 import nl.fhict.gamemate.userservice.model.GameProfile;
 import nl.fhict.gamemate.userservice.model.Profile;
+import nl.fhict.gamemate.userservice.repository.AccountDeletionRepository;
+import nl.fhict.gamemate.userservice.repository.AvatarDeletionRepository;
+import nl.fhict.gamemate.userservice.repository.FriendRequestRepository;
 import nl.fhict.gamemate.userservice.repository.GameProfileRepository;
 import nl.fhict.gamemate.userservice.repository.GameRepository;
 import nl.fhict.gamemate.userservice.repository.ProfileRepository;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import nl.fhict.gamemate.userservice.repository.projection.ProfilePreviewProjection;
+import nl.fhict.gamemate.userservice.repository.projection.ProfileSummaryProjection;
+import nl.fhict.gamemate.userservice.repository.projection.ProfileVersionProjection;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.support.TransactionSynchronization;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionOperations;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -33,15 +61,35 @@ public class ProfileService {
     private final ProfileRepository profileRepository;
     private final GameRepository gameRepository;
     private final GameProfileRepository gameProfileRepository;
+    private final FriendRequestRepository friendRequestRepository;
     private final DOAvatarStorageService avatarStorageService;
     private final EventPublisher eventPublisher;
-    private final Auth0Service auth0Service;
+    private final NicknameIndex nicknameIndex;
+    private final NicknameTrie nicknameTrie;
+    private final FriendSuggestionIndex friendSuggestionIndex;
+    private final ProfileCache profileCache;
+    private final AccountDeletionRepository accountDeletionRepository;
+    private final AvatarDeletionRepository avatarDeletionRepository;
+    private final TransactionOperations transactionOperations;
+    private final BlockingTaskPool blockingTaskPool;
+
+    private static final int SEARCH_LIMIT = 20;
+    private static final int AUTOCOMPLETE_MAX_LIMIT = 50;
+    private static final int MAX_PREVIEW_IDS = 500;
 
     public static final String DEFAULT_AVATAR_URL = "https://gamemate-assets.ams3.cdn.digitaloceanspaces.com/gamemate-assets/avatars/blank-profile-picture.png";
 
     public boolean isNicknameAvailable(String nickname) {
         try {
-            return !profileRepository.existsByNicknameIgnoreCase(nickname);
+            return switch (nicknameIndex.lookup(nickname)) {
+                case FREE -> true;
+                case TAKEN -> false;
+                case UNKNOWN -> {
+                    boolean taken = profileRepository.existsByNicknameIgnoreCase(nickname);
+                    if (taken) nicknameIndex.add(nickname);
+                    yield !taken;
+                }
+            };
         } catch (Exception e) {
             log.error("Error checking nickname availability for '{}'", nickname, e);
             throw new RuntimeException("Unable to check nickname availability", e);
@@ -50,9 +98,9 @@ public class ProfileService {
 
     @Transactional
     public Profile createProfile(String userId, ProfileRequest req) {
+        String nickname = req.getNickname();
         try {
-            if (profileRepository.existsByNicknameIgnoreCase(req.getNickname()))
-                throw new IllegalArgumentException("Nickname already taken");
+            claimNickname(nickname, userId);
 
             Profile profile = Profile.builder()
                     .userId(userId)
@@ -63,6 +111,15 @@ public class ProfileService {
                     .build();
 
             profile = profileRepository.save(profile);
+            flushNickname();
+            UUID profileId = profile.getId();
+            afterCompletion(committed -> {
+                if (committed) {
+                    nicknameIndex.publishChange(nickname, null, profileId);
+                    nicknameTrie.put(nickname, profileId);
+                }
+                nicknameIndex.release(nickname, userId);
+            });
 
             UserStatusChangedEvent event = UserStatusChangedEvent.builder()
                     .userId(profile.getUserId())
@@ -85,51 +142,29 @@ public class ProfileService {
 
             return profile;
         } catch (IllegalArgumentException e) {
+            nicknameIndex.release(nickname, userId);
             log.warn("Profile creation failed for userId={}: {}", userId, e.getMessage());
             throw e;
         } catch (Exception e) {
+            nicknameIndex.release(nickname, userId);
             log.error("Unexpected error creating profile for userId={}", userId, e);
             throw new RuntimeException("Could not create profile", e);
         }
     }
 
-    @Transactional
-    public String uploadAvatar(String userId, MultipartFile file) {
+    /**
+     * Stores the avatar without holding a request thread or a transaction for the transfer; the profile is
+     * updated in a short transaction once storage has the renditions.
+     */
+    public CompletableFuture<String> uploadAvatar(String userId, MultipartFile file) {
         try {
-            Profile profile = profileRepository.findByUserId(userId)
+            ProfileVersionProjection profile = profileRepository.findVersionByUserId(userId)
                     .orElseThrow(() -> new EntityNotFoundException("Profile not found"));
 
-            UUID profileId = profile.getId();
-            String oldAvatarUrl = profile.getAvatarUrl();
-
-            String url = avatarStorageService.store(file, profileId);
-            profile.setAvatarUrl(url);
-            profileRepository.save(profile);
-
-            if (!Objects.equals(oldAvatarUrl, DEFAULT_AVATAR_URL)) {
-                avatarStorageService.delete(oldAvatarUrl);
-            }
-
-            UserStatusChangedEvent event = UserStatusChangedEvent.builder()
-                    .userId(profile.getUserId())
-                    .profileId(profile.getId())
-                    .nickname(profile.getNickname())
-                    .avatarUrl(profile.getAvatarUrl())
-                    .status("UPDATED")
-                    .timestamp(LocalDateTime.now())
-                    .build();
-            if (TransactionSynchronizationManager.isSynchronizationActive()) {
-                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
-                    @Override
-                    public void afterCommit() {
-                        eventPublisher.publishUserEvent(event);
-                    }
-                });
-            } else {
-                eventPublisher.publishUserEvent(event);
-            }
-            return url;
-        } catch (EntityNotFoundException e) {
+            return avatarStorageService.store(file, profile.getId())
+                    .thenApplyAsync(url -> applyAvatar(userId, url), blockingTaskPool.executor())
+                    .handle((url, error) -> avatarResult(url, error, "Upload avatar", userId));
+        } catch (EntityNotFoundException | IllegalArgumentException | IllegalStateException e) {
             log.warn("Upload avatar failed: {}", e.getMessage());
             throw e;
         } catch (Exception e) {
@@ -138,6 +173,118 @@ public class ProfileService {
         }
     }
 
+    /**
+     * First step of a direct upload: returns a presigned PUT the client uses to send the image to storage.
+     */
+    public AvatarUploadDto createAvatarUpload(String userId, AvatarUploadRequest request) {
+        try {
+            ProfileVersionProjection profile = profileRepository.findVersionByUserId(userId)
+                    .orElseThrow(() -> new EntityNotFoundException("Profile not found"));
+            return avatarStorageService.presignUpload(profile.getId(), request.getContentType(), request.getSize());
+        } catch (EntityNotFoundException | IllegalArgumentException | IllegalStateException e) {
+            log.warn("Avatar upload request failed: {}", e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("Unexpected error preparing avatar upload for userId={}", userId, e);
+            throw new RuntimeException("Could not prepare avatar upload", e);
+        }
+    }
+
+    /**
+     * Second step of a direct upload: verifies the uploaded object and makes it the profile's avatar.
+     */
+    public CompletableFuture<String> confirmAvatarUpload(String userId, String key) {
+        try {
+            ProfileVersionProjection profile = profileRepository.findVersionByUserId(userId)
+                    .orElseThrow(() -> new EntityNotFoundException("Profile not found"));
+
+            return avatarStorageService.confirmUpload(profile.getId(), key)
+                    .thenApplyAsync(url -> applyAvatar(userId, url), blockingTaskPool.executor())
+                    .handle((url, error) -> avatarResult(url, error, "Confirm avatar upload", userId));
+        } catch (EntityNotFoundException | IllegalArgumentException | IllegalStateException e) {
+            log.warn("Confirm avatar upload failed: {}", e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("Unexpected error confirming avatar upload for userId={}", userId, e);
+            throw new RuntimeException("Could not confirm avatar upload", e);
+        }
+    }
+
+    /**
+     * Makes a freshly stored avatar the profile's avatar. The storage reference it came with is handed back when
+     * the picture is the current one already, when the profile was deleted while the upload was running, or when
+     * the update fails; storage itself is only touched later by {@link AvatarCleanupWorker}.
+     */
+    private String applyAvatar(String userId, String url) {
+        Boolean replaced;
+        try {
+            replaced = transactionOperations.execute(status -> {
+                Profile profile = profileRepository.findByUserId(userId).orElse(null);
+                if (profile != null && !url.equals(profile.getAvatarUrl())) {
+                    replaceAvatar(profile, url);
+                    return true;
+                }
+                scheduleAvatarDeletion(url);
+                return profile == null ? null : false;
+            });
+        } catch (RuntimeException e) {
+            try {
+                transactionOperations.executeWithoutResult(status -> scheduleAvatarDeletion(url));
+            } catch (RuntimeException nested) {
+                log.error("Could not record release of avatar {} after failed update", url, nested);
+            }
+            throw e;
+        }
+        if (replaced == null) throw new EntityNotFoundException("Profile not found");
+        return url;
+    }
+
+    private void scheduleAvatarDeletion(String url) {
+        avatarDeletionRepository.save(AvatarDeletion.builder().avatarUrl(url).build());
+    }
+
+    private String avatarResult(String url, Throwable error, String action, String userId) {
+        if (error == null) return url;
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof EntityNotFoundException || cause instanceof IllegalArgumentException
+                || cause instanceof IllegalStateException) {
+            log.warn("{} failed: {}", action, cause.getMessage());
+            throw (RuntimeException) cause;
+        }
+        log.error("{} failed unexpectedly for userId={}", action, userId, cause);
+        throw new RuntimeException("Could not " + action.toLowerCase(Locale.ROOT), cause);
+    }
+
+    private void replaceAvatar(Profile profile, String url) {
+        String oldAvatarUrl = profile.getAvatarUrl();
+        profile.setAvatarUrl(url);
+        profileRepository.save(profile);
+        recordChange(profile, true);
+
+        if (oldAvatarUrl != null && !Objects.equals(oldAvatarUrl, DEFAULT_AVATAR_URL)) {
+            scheduleAvatarDeletion(oldAvatarUrl);
+        }
+
+        UserStatusChangedEvent event = UserStatusChangedEvent.builder()
+                .userId(profile.getUserId())
+                .profileId(profile.getId())
+                .nickname(profile.getNickname())
+                .avatarUrl(profile.getAvatarUrl())
+                .status("UPDATED")
+                .timestamp(LocalDateTime.now())
+                .build();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    eventPublisher.publishUserEvent(event);
+                }
+            });
+        } else {
+            eventPublisher.publishUserEvent(event);
+        }
+    }
+
     public Profile getOwnProfile(String userId) {
         try {
             return profileRepository.findByUserId(userId)
@@ -151,6 +298,104 @@ public class ProfileService {
         }
     }
 
+    /**
+     * Cached read of the caller's full profile; the returned DTO is shared and must not be modified.
+     */
+    public ProfileDto getOwnProfileDto(String userId) {
+        return profileCache.getByUserId(userId,
+                uid -> readProfile(uid, EnumSet.allOf(ProfileField.class)),
+                id -> readProfile(id, EnumSet.allOf(ProfileField.class)));
+    }
+
+    /**
+     * Cached read of a full profile by id; the returned DTO is shared and must not be modified.
+     */
+    public ProfileDto getProfileDto(UUID id) {
+        return profileCache.getById(id, key -> readProfile(key, EnumSet.allOf(ProfileField.class)));
+    }
+
+    /**
+     * Reads only the requested parts of the caller's profile. Asking for every field goes through the cache;
+     * otherwise the scalar fields come from one projection query followed by the requested associations,
+     * which are loaded concurrently with one query each.
+     */
+    public ProfileDto getOwnProfileDto(String userId, Set<ProfileField> fields) {
+        if (fields.containsAll(EnumSet.allOf(ProfileField.class))) return getOwnProfileDto(userId);
+        return readProfile(userId, fields);
+    }
+
+    public ProfileDto getProfileDto(UUID id, Set<ProfileField> fields) {
+        if (fields.containsAll(EnumSet.allOf(ProfileField.class))) return getProfileDto(id);
+        return readProfile(id, fields);
+    }
+
+    private ProfileDto readProfile(String userId, Set<ProfileField> fields) {
+        try {
+            ProfileSummaryProjection summary = profileRepository.findSummaryByUserId(userId)
+                    .orElseThrow(() -> new EntityNotFoundException("Profile not found"));
+            return assembleProfile(summary, fields);
+        } catch (EntityNotFoundException e) {
+            log.warn("Profile not found: {}", e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("Error fetching own profile fields={} for userId={}", fields, userId, e);
+            throw new RuntimeException("Could not fetch profile", e);
+        }
+    }
+
+    private ProfileDto readProfile(UUID id, Set<ProfileField> fields) {
+        try {
+            ProfileSummaryProjection summary = profileRepository.findSummaryById(id)
+                    .orElseThrow(() -> new EntityNotFoundException("Profile not found"));
+            return assembleProfile(summary, fields);
+        } catch (EntityNotFoundException e) {
+            log.warn("Profile not found: {}", e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("Error fetching profile fields={} by id={}", fields, id, e);
+            throw new RuntimeException("Could not fetch profile", e);
+        }
+    }
+
+    /**
+     * Entity tag of the caller's profile in the given field set, answered from the version columns only.
+     */
+    public String getOwnProfileETag(String userId, Set<ProfileField> fields) {
+        try {
+            ProfileVersionProjection version = profileRepository.findVersionByUserId(userId)
+                    .orElseThrow(() -> new EntityNotFoundException("Profile not found"));
+            return profileETag(version.getId(), version.getUpdatedAt(), version.getRelationsVersion(), fields);
+        } catch (EntityNotFoundException e) {
+            log.warn("Profile not found: {}", e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("Error fetching profile version for userId={}", userId, e);
+            throw new RuntimeException("Could not fetch profile", e);
+        }
+    }
+
+    public String getProfileETag(UUID id, Set<ProfileField> fields) {
+        try {
+            ProfileVersionProjection version = profileRepository.findVersionById(id)
+                    .orElseThrow(() -> new EntityNotFoundException("Profile not found"));
+            return profileETag(version.getId(), version.getUpdatedAt(), version.getRelationsVersion(), fields);
+        } catch (EntityNotFoundException e) {
+            log.warn("Profile not found: {}", e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("Error fetching profile version by id={}", id, e);
+            throw new RuntimeException("Could not fetch profile", e);
+        }
+    }
+
+    /**
+     * Entity tag of an already loaded profile. Derived from the DTO itself so a stale cached copy is never
+     * labelled with the current version.
+     */
+    public static String eTag(ProfileDto dto, Set<ProfileField> fields) {
+        return profileETag(dto.getId(), dto.getUpdatedAt(), dto.getRelationsVersion(), fields);
+    }
+
     public Profile getProfile(UUID id) {
         try {
             return profileRepository.findById(id)
@@ -166,21 +411,40 @@ public class ProfileService {
 
     @Transactional
     public Profile updateProfile(String userId, ProfileRequest req) {
+        String newNickname = req.getNickname();
         try {
             Profile profile = profileRepository.findByUserId(userId)
                     .orElseThrow(() -> new EntityNotFoundException("Profile not found"));
 
-            if (req.getNickname() != null) {
-                if (profileRepository.existsByNicknameIgnoreCase(req.getNickname())) {
-                    throw new IllegalArgumentException("Nickname already taken");
-                }
-                profile.setNickname(req.getNickname());
+            String oldNickname = profile.getNickname();
+            boolean nicknameChanged = newNickname != null && !newNickname.equals(oldNickname);
+            boolean bioChanged = req.getBio() != null && !req.getBio().equals(profile.getBio());
+            boolean locationChanged = req.getLocation() != null && !req.getLocation().equals(profile.getLocation());
+            if (!nicknameChanged && !bioChanged && !locationChanged) return profile;
+
+            if (nicknameChanged) {
+                // A case-only change keeps the same case-folded key, so it cannot collide with anyone else; the
+                // indexes still need the new casing.
+                boolean claimed = !newNickname.equalsIgnoreCase(oldNickname);
+                if (claimed) claimNickname(newNickname, userId);
+                UUID profileId = profile.getId();
+                afterCompletion(committed -> {
+                    if (committed) {
+                        nicknameIndex.publishChange(newNickname, oldNickname, profileId);
+                        nicknameTrie.remove(oldNickname);
+                        nicknameTrie.put(newNickname, profileId);
+                    }
+                    if (claimed) nicknameIndex.release(newNickname, userId);
+                });
             }
 
-            Optional.ofNullable(req.getBio()).ifPresent(profile::setBio);
-            Optional.ofNullable(req.getLocation()).ifPresent(profile::setLocation);
+            if (nicknameChanged) profile.setNickname(newNickname);
+            if (bioChanged) profile.setBio(req.getBio());
+            if (locationChanged) profile.setLocation(req.getLocation());
 
             profile = profileRepository.save(profile);
+            if (nicknameChanged) flushNickname();
+            recordChange(profile, nicknameChanged);
 
             UserStatusChangedEvent event = UserStatusChangedEvent.builder()
                     .userId(profile.getUserId())
@@ -203,9 +467,11 @@ public class ProfileService {
 
             return profile;
         } catch (EntityNotFoundException | IllegalArgumentException e) {
+            if (newNickname != null) nicknameIndex.release(newNickname, userId);
             log.warn("Failed to update profile: {}", e.getMessage());
             throw e;
         } catch (Exception e) {
+            if (newNickname != null) nicknameIndex.release(newNickname, userId);
             log.error("Unexpected error updating profile for userId={}", userId, e);
             throw new RuntimeException("Could not update profile", e);
         }
@@ -234,6 +500,7 @@ public class ProfileService {
 
             gameProfileRepository.save(gameProfile);
             profile.getGameProfiles().add(gameProfile);
+            recordChange(profile, false);
             return profile;
         } catch (EntityNotFoundException | IllegalArgumentException e) {
             log.warn("Game profile creation failed: {}", e.getMessage());
@@ -260,6 +527,7 @@ public class ProfileService {
             gameProfile.setPlatforms(new HashSet<>(request.getPlatforms()));
 
             gameProfileRepository.save(gameProfile);
+            recordChange(profile, false);
             return profile;
         } catch (EntityNotFoundException e) {
             log.warn("Update game profile failed: {}", e.getMessage());
@@ -284,6 +552,7 @@ public class ProfileService {
             profile.getGameProfiles().remove(gameProfile);
             gameProfileRepository.delete(gameProfile);
             profileRepository.save(profile);
+            recordChange(profile, false);
         } catch (EntityNotFoundException | IllegalArgumentException e) {
             log.warn("Delete game profile failed: {}", e.getMessage());
             throw e;
@@ -293,39 +562,35 @@ public class ProfileService {
         }
     }
 
-    public List<ProfilePreviewDto> searchProfiles(String nickname, String currentUserId) {
+    public Map<UUID, ProfilePreviewDto> getPreviews(Collection<UUID> ids) {
         try {
-            Profile currentUser = profileRepository.findByUserId(currentUserId)
-                    .orElseThrow(() -> new EntityNotFoundException("User not found"));
-
-            Set<UUID> friendIds = currentUser.getFriends().stream()
-                    .map(Profile::getId)
-                    .collect(Collectors.toSet());
+            if (ids == null || ids.isEmpty()) return Map.of();
+            Set<UUID> unique = ids.stream().filter(Objects::nonNull).collect(Collectors.toSet());
+            if (unique.size() > MAX_PREVIEW_IDS)
+                throw new IllegalArgumentException("At most " + MAX_PREVIEW_IDS + " profile ids can be requested at once");
 
-            Pageable limit = PageRequest.of(0, 50);
-            List<Profile> matches = profileRepository.searchByNickname(nickname, currentUserId, limit);
-
-            List<ProfilePreviewDto> friends = new ArrayList<>();
-            List<ProfilePreviewDto> others = new ArrayList<>();
-
-            for (Profile profile : matches) {
-                if (profile.getId().equals(currentUser.getId())) continue;
+            return profileCache.getPreviews(unique, missing -> profileRepository.findPreviewsByIds(missing).stream()
+                    .collect(Collectors.toMap(ProfilePreviewProjection::getId, ProfileMapper::toPreview)));
+        } catch (IllegalArgumentException e) {
+            log.warn("Preview lookup rejected: {}", e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("Unexpected error fetching previews for {} ids", ids.size(), e);
+            throw new RuntimeException("Could not fetch profile previews", e);
+        }
+    }
 
-                ProfilePreviewDto dto = ProfilePreviewDto.builder()
-                        .id(profile.getId())
-                        .nickname(profile.getNickname())
-                        .avatarUrl(profile.getAvatarUrl())
-                        .build();
+    public List<ProfilePreviewDto> searchProfiles(String nickname, String currentUserId) {
+        try {
+            String term = nickname == null ? "" : nickname.trim().toLowerCase(Locale.ROOT);
+            if (term.isEmpty()) return List.of();
 
-                if (friendIds.contains(profile.getId())) {
-                    friends.add(dto);
-                } else {
-                    others.add(dto);
-                }
-            }
+            // Below trigram length only prefix patterns can use the index.
+            String escaped = escapeLike(term);
+            String pattern = term.length() < 3 ? escaped + "%" : "%" + escaped + "%";
 
-            return Stream.concat(friends.stream(), others.stream())
-                    .limit(20)
+            return profileRepository.searchByNickname(pattern, term, currentUserId, SEARCH_LIMIT).stream()
+                    .map(ProfileMapper::toPreview)
                     .toList();
         } catch (Exception e) {
             log.error("Unexpected error searching profiles for nickname='{}'", nickname, e);
@@ -333,31 +598,90 @@ public class ProfileService {
         }
     }
 
-    @Transactional
-    public void deleteOwnProfile(String userId) {
+    public AutocompleteDto autocomplete(String prefix, int limit, String cursor) {
         try {
-            Profile profile = profileRepository.findByUserId(userId)
-                    .orElseThrow(() -> new EntityNotFoundException("Profile not found for user: " + userId));
+            String term = prefix == null ? "" : prefix.trim();
+            int size = Math.clamp(limit, 1, AUTOCOMPLETE_MAX_LIMIT);
+            if (term.isEmpty()) return AutocompleteDto.builder().suggestions(List.of()).build();
+
+            List<NicknameSuggestionDto> suggestions;
+            if (nicknameTrie.isReady()) {
+                String after = decodeCursor(cursor);
+                suggestions = nicknameTrie.complete(term, size + 1, after).stream()
+                        .map(m -> new NicknameSuggestionDto(m.profileId(), m.nickname()))
+                        .toList();
+            } else {
+                // Trie still warming up: answer the first page from the database, without paging.
+                String pattern = escapeLike(term.toLowerCase(Locale.ROOT)) + "%";
+                suggestions = profileRepository.searchByNickname(pattern, term.toLowerCase(Locale.ROOT), "", size).stream()
+                        .map(p -> new NicknameSuggestionDto(p.getId(), p.getNickname()))
+                        .toList();
+            }
 
-            Set<Profile> friendsCopy = new HashSet<>(profile.getFriends());
-            for (Profile friend : friendsCopy) {
-                friend.getFriends().remove(profile);
-                profileRepository.save(friend);
+            String nextCursor = null;
+            if (suggestions.size() > size) {
+                suggestions = suggestions.subList(0, size);
+                nextCursor = encodeCursor(suggestions.get(size - 1).getNickname());
             }
+            return AutocompleteDto.builder()
+                    .suggestions(suggestions)
+                    .nextCursor(nextCursor)
+                    .build();
+        } catch (IllegalArgumentException e) {
+            log.warn("Autocomplete failed: {}", e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("Unexpected error autocompleting prefix='{}'", prefix, e);
+            throw new RuntimeException("Could not autocomplete nicknames", e);
+        }
+    }
 
-            profile.getFriends().clear();
-            profileRepository.save(profile);
+    /**
+     * Removes the profile and all of its friendship, request and game profile rows with a handful of bulk
+     * statements, and records the remaining external cleanup (avatar, Auth0 user) for
+     * {@link AccountDeletionWorker}. The {@code DELETED} event goes out once the rows are committed.
+     */
+    @Transactional
+    public AccountDeletionDto deleteOwnProfile(String userId) {
+        try {
+            ProfileSummaryProjection profile = profileRepository.findSummaryByUserId(userId)
+                    .orElseThrow(() -> new EntityNotFoundException("Profile not found for user: " + userId));
+            UUID profileId = profile.getId();
 
-            if (!Objects.equals(profile.getAvatarUrl(), DEFAULT_AVATAR_URL)) {
-                avatarStorageService.delete(profile.getAvatarUrl());
-            }
+            List<UUID> affectedIds = new ArrayList<>();
+            affectedIds.add(profileId);
+            affectedIds.addAll(profileRepository.findFriendIds(profileId));
+            affectedIds.addAll(friendRequestRepository.findCounterpartIds(profileId));
+
+            profileRepository.deleteFriendships(profileId);
+            friendRequestRepository.deleteAllInvolving(profileId);
+            gameProfileRepository.deleteByProfileId(profileId);
+            profileRepository.deleteProfileRow(profileId);
+            profileRepository.incrementRelationsVersion(affectedIds);
 
-            profileRepository.delete(profile);
-            auth0Service.deleteUser(userId);
+            boolean customAvatar = profile.getAvatarUrl() != null && !Objects.equals(profile.getAvatarUrl(), DEFAULT_AVATAR_URL);
+            AccountDeletion deletion = accountDeletionRepository.save(AccountDeletion.builder()
+                    .userId(userId)
+                    .profileId(profileId)
+                    .avatarUrl(customAvatar ? profile.getAvatarUrl() : null)
+                    .avatarDeleted(!customAvatar)
+                    .status(AccountDeletionStatus.PENDING)
+                    .nextAttemptAt(LocalDateTime.now())
+                    .build());
+
+            profileCache.invalidateAfterCommit(affectedIds, List.of(userId));
+            String nickname = profile.getNickname();
+            afterCompletion(committed -> {
+                if (committed) {
+                    nicknameIndex.publishChange(null, nickname, profileId);
+                    nicknameTrie.remove(nickname);
+                    friendSuggestionIndex.removeProfile(profileId);
+                }
+            });
 
             UserStatusChangedEvent event = UserStatusChangedEvent.builder()
-                    .userId(profile.getUserId())
-                    .profileId(profile.getId())
+                    .userId(userId)
+                    .profileId(profileId)
                     .status("DELETED")
                     .timestamp(LocalDateTime.now())
                     .build();
@@ -371,6 +695,8 @@ public class ProfileService {
             } else {
                 eventPublisher.publishUserEvent(event);
             }
+
+            return AccountDeletionMapper.toDto(deletion);
         } catch (EntityNotFoundException e) {
             log.warn("Delete own profile failed: {}", e.getMessage());
             throw e;
@@ -379,5 +705,136 @@ public class ProfileService {
             throw new RuntimeException("Could not delete profile", e);
         }
     }
-}
 
+    public AccountDeletionDto getAccountDeletion(String userId) {
+        try {
+            return accountDeletionRepository.findFirstByUserIdOrderByCreatedAtDesc(userId)
+                    .map(AccountDeletionMapper::toDto)
+                    .orElseThrow(() -> new EntityNotFoundException("No account deletion found for user: " + userId));
+        } catch (EntityNotFoundException e) {
+            log.warn("Account deletion lookup failed: {}", e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("Unexpected error fetching account deletion for userId={}", userId, e);
+            throw new RuntimeException("Could not fetch account deletion status", e);
+        }
+    }
+
+    /**
+     * Reserves the nickname for this user and verifies it is not taken. The index may lag other instances,
+     * so only the database decides. The reservation is released by the caller once the surrounding
+     * transaction completes.
+     */
+    private void claimNickname(String nickname, String userId) {
+        if (!nicknameIndex.reserve(nickname, userId))
+            throw new IllegalArgumentException("Nickname already taken");
+        if (profileRepository.existsByNicknameIgnoreCase(nickname))
+            throw new IllegalArgumentException("Nickname already taken");
+    }
+
+    /**
+     * Writes the pending nickname now, so a concurrent claim of the same nickname that got past
+     * {@link #claimNickname} on another instance is rejected by the unique index as "taken" instead of failing
+     * the commit.
+     */
+    private void flushNickname() {
+        try {
+            profileRepository.flush();
+        } catch (DataIntegrityViolationException e) {
+            if (e.getCause() instanceof ConstraintViolationException violation
+                    && violation.getConstraintName() != null
+                    && violation.getConstraintName().toLowerCase(Locale.ROOT).contains("nickname"))
+                throw new IllegalArgumentException("Nickname already taken");
+            throw e;
+        }
+    }
+
+    /**
+     * Fills in the requested associations with one query each, run concurrently on the bounded blocking pool.
+     * The summary is read first so the version it carries never runs ahead of the associations.
+     */
+    private ProfileDto assembleProfile(ProfileSummaryProjection summary, Set<ProfileField> fields) throws Exception {
+        ProfileDto dto = ProfileMapper.toDto(summary);
+        UUID id = summary.getId();
+        List<Callable<Consumer<ProfileDto>>> loads = new ArrayList<>();
+        if (fields.contains(ProfileField.FRIENDS)) {
+            loads.add(() -> {
+                Set<ProfilePreviewDto> friends = profileRepository.findFriendPreviews(id).stream()
+                        .map(ProfileMapper::toPreview)
+                        .collect(Collectors.toSet());
+                return target -> target.setFriends(friends);
+            });
+        }
+        if (fields.contains(ProfileField.GAME_PROFILES)) {
+            loads.add(() -> {
+                Set<GameProfileDto> gameProfiles = new HashSet<>(GameProfileMapper.toDtoList(gameProfileRepository.findWithGameByProfileId(id)));
+                return target -> target.setGameProfiles(gameProfiles);
+            });
+        }
+
+        if (loads.size() == 1) {
+            loads.getFirst().call().accept(dto);
+            return dto;
+        }
+        for (Future<Consumer<ProfileDto>> load : blockingTaskPool.invokeAll(loads)) {
+            try {
+                load.get().accept(dto);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception cause) throw cause;
+                throw e;
+            }
+        }
+        return dto;
+    }
+
+    /**
+     * Bumps the relations version and evicts the profile after commit; friends are included when the change
+     * shows up in their friend previews.
+     */
+    private void recordChange(Profile profile, boolean includeFriends) {
+        List<UUID> ids = new ArrayList<>();
+        ids.add(profile.getId());
+        if (includeFriends) ids.addAll(profileRepository.findFriendIds(profile.getId()));
+        profileRepository.incrementRelationsVersion(ids);
+        profileCache.invalidateAfterCommit(ids, Collections.singletonList(profile.getUserId()));
+    }
+
+    private static String profileETag(UUID id, LocalDateTime updatedAt, long relationsVersion, Set<ProfileField> fields) {
+        int mask = 0;
+        for (ProfileField field : fields) mask |= 1 << field.ordinal();
+        // The database keeps microseconds; freshly saved entities may carry nanoseconds.
+        long micros = updatedAt == null ? 0
+                : updatedAt.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + updatedAt.getNano() / 1_000;
+        return "\"" + id + "-" + Long.toHexString(micros) + "-" + relationsVersion + "-" + Integer.toHexString(mask) + "\"";
+    }
+
+    private static String encodeCursor(String nickname) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(nickname.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) return null;
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    private static String escapeLike(String term) {
+        return term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private void afterCompletion(Consumer<Boolean> callback) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    callback.accept(status == STATUS_COMMITTED);
+                }
+            });
+        } else {
+            callback.accept(true);
+        }
+    }
+}
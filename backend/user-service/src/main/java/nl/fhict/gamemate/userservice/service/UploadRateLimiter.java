@@ -1,36 +1,58 @@
 package nl.fhict.gamemate.userservice.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.time.Instant;
-import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
-import java.util.List;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
+/**
+ * Exact sliding-window limit on avatar uploads per key.
+ * <p>
+ * Each key owns a ring holding the times of its last {@code maxUploads} uploads. An upload is allowed when the
+ * oldest of them has left the window, and then overwrites it, so a check is constant-time and allocates nothing once
+ * the key has a ring. Rings are guarded by their own monitor, so only uploads for the same key contend.
+ * <p>
+ * A ring whose newest upload has left the window carries no state and is evicted periodically, which keeps memory
+ * proportional to the keys that uploaded within the last window.
+ */
 @Service
 @Slf4j
 public class UploadRateLimiter {
-    private final Map<String, List<Instant>> userUploadLog = new ConcurrentHashMap<>();
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+    private final Function<String, Window> newWindow;
+    private final long windowMillis;
+    private final String limitMessage;
+    private final Clock clock;
 
-    public void checkRate(String userId) {
-        try {
-            Instant now = Instant.now();
-
-            userUploadLog.putIfAbsent(userId, new ArrayList<>());
-            List<Instant> uploads = userUploadLog.get(userId);
+    @Autowired
+    public UploadRateLimiter(@Value("${gamemate.upload-rate.max-uploads:10}") int maxUploads,
+                             @Value("${gamemate.upload-rate.window:PT1H}") Duration window) {
+        this(maxUploads, window, Clock.systemUTC());
+    }
 
-            // Remove timestamps older than 1 hour
-            uploads.removeIf(t -> t.isBefore(now.minus(1, ChronoUnit.HOURS)));
+    public UploadRateLimiter(int maxUploads, Duration window, Clock clock) {
+        if (maxUploads < 1) throw new IllegalArgumentException("maxUploads must be at least 1");
+        if (window.isNegative() || window.isZero()) throw new IllegalArgumentException("window must be positive");
+        this.newWindow = key -> new Window(maxUploads);
+        this.windowMillis = window.toMillis();
+        this.limitMessage = "Upload limit exceeded. Max " + maxUploads + " avatars per " + describe(window) + ".";
+        this.clock = clock;
+    }
 
-            int maxUploadsPerHour = 10;
-            if (uploads.size() >= maxUploadsPerHour) {
-                throw new IllegalStateException("Upload limit exceeded. Max 10 avatars per hour.");
+    public void checkRate(String userId) {
+        try {
+            if (!tryAcquire(userId)) {
+                throw new IllegalStateException(limitMessage);
             }
-
-            uploads.add(now);
         } catch (IllegalStateException e) {
             log.warn("Rate limit exceeded for userId={}: {}", userId, e.getMessage());
             throw e;
@@ -39,5 +61,76 @@ public class UploadRateLimiter {
             throw new RuntimeException("Upload rate check failed", e);
         }
     }
-}
 
+    /**
+     * Records an upload for {@code key} if it is within the limit.
+     *
+     * @return {@code false} when the key has used up its window
+     */
+    public boolean tryAcquire(String key) {
+        while (true) {
+            Window window = windows.get(key);
+            if (window == null) window = windows.computeIfAbsent(key, newWindow);
+            synchronized (window) {
+                // Lost a race with eviction; the map no longer holds this ring.
+                if (window.evicted) continue;
+                return window.tryRecord(clock.millis(), windowMillis);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${gamemate.upload-rate.eviction-interval:PT5M}")
+    public void evictIdle() {
+        long now = clock.millis();
+        int evicted = 0;
+        for (Iterator<Window> it = windows.values().iterator(); it.hasNext(); ) {
+            Window window = it.next();
+            synchronized (window) {
+                if (window.isIdle(now, windowMillis)) {
+                    window.evicted = true;
+                    it.remove();
+                    evicted++;
+                }
+            }
+        }
+        if (evicted > 0) log.debug("Evicted {} idle upload windows, {} active", evicted, windows.size());
+    }
+
+    public int trackedKeys() {
+        return windows.size();
+    }
+
+    private static String describe(Duration window) {
+        if (window.equals(Duration.ofHours(1))) return "hour";
+        if (window.equals(Duration.ofMinutes(1))) return "minute";
+        if (window.equals(Duration.ofDays(1))) return "day";
+        return window.toString();
+    }
+
+    /**
+     * Ring of the most recent upload times; {@code next} points at the oldest. Unused slots hold
+     * {@link Long#MIN_VALUE} so they always count as outside the window.
+     */
+    private static final class Window {
+        private final long[] times;
+        private int next;
+        private boolean evicted;
+
+        Window(int capacity) {
+            times = new long[capacity];
+            Arrays.fill(times, Long.MIN_VALUE);
+        }
+
+        boolean tryRecord(long now, long windowMillis) {
+            if (times[next] > now - windowMillis) return false;
+            times[next] = now;
+            next = next + 1 == times.length ? 0 : next + 1;
+            return true;
+        }
+
+        boolean isIdle(long now, long windowMillis) {
+            int newest = next == 0 ? times.length - 1 : next - 1;
+            return times[newest] <= now - windowMillis;
+        }
+    }
+}
@@ -0,0 +1,6 @@
+-- Newest-first pages of a profile's received and sent requests.
+CREATE INDEX IF NOT EXISTS idx_friend_requests_receiver_created ON friend_requests (receiver_id, created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_friend_requests_sender_created ON friend_requests (sender_id, created_at DESC, id DESC);
+
+-- Received requests created after this moment count as unread.
+ALTER TABLE profiles ADD COLUMN IF NOT EXISTS friend_requests_seen_at TIMESTAMP(6);
@@ -0,0 +1,32 @@
+-- One row per friendship instead of one per direction. The pair is stored ordered (low_id < high_id, by uuid order)
+-- so that adding or removing a friendship is a single-row statement on the primary key.
+CREATE TABLE IF NOT EXISTS friendships (
+    low_id   UUID         NOT NULL REFERENCES profiles (id) ON DELETE CASCADE,
+    high_id  UUID         NOT NULL REFERENCES profiles (id) ON DELETE CASCADE,
+    since    TIMESTAMP(6) NOT NULL DEFAULT now(),
+    PRIMARY KEY (low_id, high_id),
+    CHECK (low_id < high_id)
+);
+
+-- Newest-first friends of a profile from either side of the pair; the primary key covers membership checks from
+-- the low side, the second index from the high side.
+CREATE INDEX IF NOT EXISTS idx_friendships_low_since ON friendships (low_id, since DESC, high_id DESC);
+CREATE INDEX IF NOT EXISTS idx_friendships_high_since ON friendships (high_id, since DESC, low_id DESC);
+CREATE INDEX IF NOT EXISTS idx_friendships_high ON friendships (high_id, low_id);
+
+-- Either direction of an old pair may be missing or carry its own timestamp; keep the earliest.
+INSERT INTO friendships (low_id, high_id, since)
+SELECT LEAST(profile_id, friend_id), GREATEST(profile_id, friend_id), MIN(created_at)
+FROM friends
+WHERE profile_id <> friend_id
+GROUP BY LEAST(profile_id, friend_id), GREATEST(profile_id, friend_id)
+ON CONFLICT DO NOTHING;
+
+DROP TABLE friends;
+
+-- Both directions of every friendship, for reads that start from one profile. Filters on profile_id are pushed into
+-- each branch, so they use the indexes above.
+CREATE OR REPLACE VIEW friend_edges AS
+SELECT low_id AS profile_id, high_id AS friend_id, since FROM friendships
+UNION ALL
+SELECT high_id AS profile_id, low_id AS friend_id, since FROM friendships;
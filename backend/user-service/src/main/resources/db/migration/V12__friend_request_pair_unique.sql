@@ -0,0 +1,46 @@
+-- At most one pending request per unordered pair, so concurrent sends in either direction cannot both insert.
+-- Existing data is brought in line first.
+
+-- Requests between profiles that are already friends are stale.
+DELETE FROM friend_requests r
+USING friendships f
+WHERE f.low_id = LEAST(r.sender_id, r.receiver_id)
+  AND f.high_id = GREATEST(r.sender_id, r.receiver_id);
+
+-- Requests crossed in both directions would now have been accepted on the second send.
+INSERT INTO friendships (low_id, high_id, since)
+SELECT LEAST(a.sender_id, a.receiver_id), GREATEST(a.sender_id, a.receiver_id), MAX(GREATEST(a.created_at, b.created_at))
+FROM friend_requests a
+JOIN friend_requests b ON b.sender_id = a.receiver_id AND b.receiver_id = a.sender_id
+WHERE a.sender_id <> a.receiver_id
+GROUP BY LEAST(a.sender_id, a.receiver_id), GREATEST(a.sender_id, a.receiver_id)
+ON CONFLICT DO NOTHING;
+
+DELETE FROM friend_requests r
+USING friendships f
+WHERE f.low_id = LEAST(r.sender_id, r.receiver_id)
+  AND f.high_id = GREATEST(r.sender_id, r.receiver_id);
+
+-- Of repeated requests in one direction, keep the first.
+DELETE FROM friend_requests r
+USING friend_requests keep
+WHERE keep.sender_id = r.sender_id
+  AND keep.receiver_id = r.receiver_id
+  AND (keep.created_at, keep.id) < (r.created_at, r.id);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uq_friend_requests_pair
+    ON friend_requests (LEAST(sender_id, receiver_id), GREATEST(sender_id, receiver_id));
+
+-- Outcomes of friend request sends by Idempotency-Key, so a retried call gets the original answer.
+CREATE TABLE IF NOT EXISTS friend_request_keys (
+    user_id          VARCHAR(255) NOT NULL,
+    idempotency_key  VARCHAR(255) NOT NULL,
+    receiver_id      UUID         NOT NULL,
+    outcome          VARCHAR(20)  NOT NULL,
+    request_id       UUID,
+    created_at       TIMESTAMPTZ  NOT NULL DEFAULT now(),
+    PRIMARY KEY (user_id, idempotency_key)
+);
+
+CREATE INDEX IF NOT EXISTS idx_friend_request_keys_created
+    ON friend_request_keys (created_at);
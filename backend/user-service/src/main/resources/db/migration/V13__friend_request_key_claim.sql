@@ -0,0 +1,3 @@
+-- Idempotency keys are claimed before the request is sent and get their outcome once it is known, in the same
+-- transaction, so a concurrent call with the same key waits on the row instead of racing past it.
+ALTER TABLE friend_request_keys ALTER COLUMN outcome DROP NOT NULL;
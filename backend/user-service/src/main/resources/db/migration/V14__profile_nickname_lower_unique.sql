@@ -0,0 +1,14 @@
+-- Nicknames are unique regardless of case. The service checks this before writing, but two instances can pass the
+-- check for the same nickname at once; this index is what finally rejects the second one.
+
+-- Profiles that already clash with an older one only by case get a suffix from their id, keeping the 20 characters.
+UPDATE profiles p
+SET nickname = LEFT(p.nickname, 11) || '_' || LEFT(REPLACE(CAST(p.id AS TEXT), '-', ''), 8)
+WHERE EXISTS (
+    SELECT 1 FROM profiles older
+    WHERE LOWER(older.nickname) = LOWER(p.nickname)
+      AND (older.created_at, older.id) < (p.created_at, p.id)
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uq_profiles_nickname_lower
+    ON profiles (LOWER(nickname));
@@ -0,0 +1,41 @@
+-- Baseline of the schema previously created by Hibernate (ddl-auto: update).
+-- Existing databases are baselined at version 0, so this still runs there; every statement is idempotent.
+
+CREATE TABLE IF NOT EXISTS profiles (
+    id          UUID         NOT NULL PRIMARY KEY,
+    user_id     VARCHAR(255) NOT NULL UNIQUE,
+    nickname    VARCHAR(20)  NOT NULL UNIQUE,
+    bio         VARCHAR(250),
+    location    VARCHAR(100),
+    avatar_url  VARCHAR(255),
+    created_at  TIMESTAMP(6) NOT NULL,
+    updated_at  TIMESTAMP(6) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS friends (
+    profile_id  UUID NOT NULL REFERENCES profiles (id) ON DELETE CASCADE,
+    friend_id   UUID NOT NULL REFERENCES profiles (id) ON DELETE CASCADE,
+    PRIMARY KEY (profile_id, friend_id)
+);
+
+CREATE TABLE IF NOT EXISTS games (
+    id            UUID           NOT NULL PRIMARY KEY,
+    name          VARCHAR(255)   NOT NULL UNIQUE,
+    skill_levels  VARCHAR(255)[] NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS game_profiles (
+    id           UUID         NOT NULL PRIMARY KEY,
+    game_id      UUID         NOT NULL REFERENCES games (id) ON DELETE CASCADE,
+    profile_id   UUID         NOT NULL REFERENCES profiles (id) ON DELETE CASCADE,
+    skill_level  VARCHAR(255) NOT NULL,
+    playstyles   SMALLINT[]   NOT NULL,
+    platforms    SMALLINT[]   NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS friend_requests (
+    id           UUID         NOT NULL PRIMARY KEY,
+    sender_id    UUID         NOT NULL REFERENCES profiles (id) ON DELETE CASCADE,
+    receiver_id  UUID         NOT NULL REFERENCES profiles (id) ON DELETE CASCADE,
+    created_at   TIMESTAMP(6) NOT NULL
+);
@@ -0,0 +1,6 @@
+-- Trigram index so nickname search (LIKE on LOWER(nickname)) no longer scans the whole table.
+-- Prefix patterns ('ab%') also use it through pg_trgm's word-start trigrams.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS idx_profiles_nickname_trgm
+    ON profiles USING gin (LOWER(nickname) gin_trgm_ops);
@@ -0,0 +1,3 @@
+-- Bumped in bulk whenever a profile's friends, friend requests, game profiles or friend previews change,
+-- so conditional GETs can be answered from this row alone.
+ALTER TABLE profiles ADD COLUMN IF NOT EXISTS relations_version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,22 @@
+-- External cleanup (avatar, Auth0 user) for accounts whose profile rows were already deleted.
+CREATE TABLE IF NOT EXISTS account_deletions (
+    id               UUID         NOT NULL PRIMARY KEY,
+    user_id          VARCHAR(255) NOT NULL,
+    profile_id       UUID         NOT NULL,
+    avatar_url       VARCHAR(255),
+    status           VARCHAR(16)  NOT NULL,
+    avatar_deleted   BOOLEAN      NOT NULL DEFAULT FALSE,
+    auth0_deleted    BOOLEAN      NOT NULL DEFAULT FALSE,
+    attempts         INTEGER      NOT NULL DEFAULT 0,
+    last_error       VARCHAR(500),
+    next_attempt_at  TIMESTAMP(6) NOT NULL,
+    created_at       TIMESTAMP(6) NOT NULL,
+    updated_at       TIMESTAMP(6) NOT NULL,
+    completed_at     TIMESTAMP(6)
+);
+
+CREATE INDEX IF NOT EXISTS idx_account_deletions_due
+    ON account_deletions (next_attempt_at) WHERE status = 'PENDING';
+
+CREATE INDEX IF NOT EXISTS idx_account_deletions_user
+    ON account_deletions (user_id, created_at DESC);
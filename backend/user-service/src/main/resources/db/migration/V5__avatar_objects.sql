@@ -0,0 +1,6 @@
+-- Reference counts for content-addressed avatars (avatars/<sha-256>/<size>.jpg), shared between profiles.
+CREATE TABLE IF NOT EXISTS avatar_objects (
+    content_hash VARCHAR(64)  NOT NULL PRIMARY KEY,
+    ref_count    INTEGER      NOT NULL CHECK (ref_count >= 0),
+    created_at   TIMESTAMP(6) NOT NULL DEFAULT now()
+);
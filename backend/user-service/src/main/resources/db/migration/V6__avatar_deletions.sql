@@ -0,0 +1,19 @@
+-- Avatar references released by profile updates, handed back to storage by a background sweeper
+-- so no transaction waits on object storage.
+CREATE TABLE IF NOT EXISTS avatar_deletions (
+    id               UUID         NOT NULL PRIMARY KEY,
+    avatar_url       VARCHAR(255) NOT NULL,
+    attempts         INTEGER      NOT NULL DEFAULT 0,
+    last_error       VARCHAR(500),
+    next_attempt_at  TIMESTAMP(6) NOT NULL,
+    created_at       TIMESTAMP(6) NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_avatar_deletions_due
+    ON avatar_deletions (next_attempt_at);
+
+CREATE INDEX IF NOT EXISTS idx_profiles_avatar_url
+    ON profiles (avatar_url);
+
+CREATE INDEX IF NOT EXISTS idx_avatar_objects_unused
+    ON avatar_objects (created_at) WHERE ref_count = 0;
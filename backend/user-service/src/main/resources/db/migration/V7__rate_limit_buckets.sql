@@ -0,0 +1,11 @@
+-- Token buckets shared by all instances when gamemate.rate-limit.store=postgres.
+-- Unlogged: losing the buckets on a crash only resets the limits.
+CREATE UNLOGGED TABLE IF NOT EXISTS rate_limit_buckets (
+    bucket_key  VARCHAR(255)     NOT NULL PRIMARY KEY,
+    tokens      DOUBLE PRECISION NOT NULL,
+    updated_at  TIMESTAMPTZ      NOT NULL,
+    full_at     TIMESTAMPTZ      NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_rate_limit_buckets_full
+    ON rate_limit_buckets (full_at);
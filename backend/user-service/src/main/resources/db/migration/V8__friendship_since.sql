@@ -0,0 +1,7 @@
+-- When a friendship was made, so the friend list can be paged by it. Existing rows predate the column and all get
+-- the migration time; the ordering between them falls back to the friend id.
+ALTER TABLE friends ADD COLUMN IF NOT EXISTS created_at TIMESTAMP(6) NOT NULL DEFAULT now();
+
+-- Serves both friend list orders: a range scan by time, and the probe for one profile's friends before they are
+-- sorted by nickname.
+CREATE INDEX IF NOT EXISTS idx_friends_profile_since ON friends (profile_id, created_at DESC, friend_id DESC);
@@ -0,0 +1,3 @@
+-- Lookups by one side of a request and a set of counterparts, in both directions (relationship status, request lists).
+CREATE INDEX IF NOT EXISTS idx_friend_requests_sender ON friend_requests (sender_id, receiver_id);
+CREATE INDEX IF NOT EXISTS idx_friend_requests_receiver ON friend_requests (receiver_id, sender_id);
@@ -0,0 +1,121 @@
+package nl.fhict.gamemate.userservice;
+
+import nl.fhict.gamemate.userservice.model.AccountDeletion;
+import nl.fhict.gamemate.userservice.model.AccountDeletionStatus;
+import nl.fhict.gamemate.userservice.repository.AccountDeletionRepository;
+import nl.fhict.gamemate.userservice.service.AccountDeletionWorker;
+import nl.fhict.gamemate.userservice.service.Auth0Service;
+import nl.fhict.gamemate.userservice.service.DOAvatarStorageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AccountDeletionWorkerTest {
+    private static final Instant NOW = Instant.parse("2025-06-01T12:00:00Z");
+
+    private AccountDeletionRepository repository;
+    private DOAvatarStorageService avatarStorageService;
+    private Auth0Service auth0Service;
+    private AccountDeletionWorker worker;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(AccountDeletionRepository.class);
+        avatarStorageService = mock(DOAvatarStorageService.class);
+        auth0Service = mock(Auth0Service.class);
+        worker = new AccountDeletionWorker(repository, avatarStorageService, auth0Service,
+                3, Duration.ofSeconds(30), Duration.ofMinutes(5), 20, Clock.fixed(NOW, ZoneOffset.UTC));
+        lenient().when(repository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+    }
+
+    @Test
+    void processDue_deletesAvatarAndAuth0UserThenCompletes() {
+        AccountDeletion deletion = due("https://cdn.example.com/gamemate/avatars/a.png");
+
+        worker.processDue();
+
+        verify(avatarStorageService).delete("https://cdn.example.com/gamemate/avatars/a.png");
+        verify(auth0Service).deleteUser("auth0|gone");
+        assertEquals(AccountDeletionStatus.COMPLETED, deletion.getStatus());
+        assertTrue(deletion.isAvatarDeleted());
+        assertTrue(deletion.isAuth0Deleted());
+        assertNotNull(deletion.getCompletedAt());
+    }
+
+    @Test
+    void processDue_skipsDeletionClaimedByAnotherInstance() {
+        UUID id = UUID.randomUUID();
+        when(repository.findDueIds(any(), any())).thenReturn(List.of(id));
+        when(repository.claim(eq(id), any(), any())).thenReturn(0);
+
+        worker.processDue();
+
+        verify(repository, never()).findById(any());
+        verifyNoInteractions(avatarStorageService, auth0Service);
+    }
+
+    @Test
+    void processDue_failureSchedulesRetryAndKeepsCompletedSteps() {
+        AccountDeletion deletion = due("https://cdn.example.com/gamemate/avatars/a.png");
+        doThrow(new RuntimeException("Auth0 unavailable")).when(auth0Service).deleteUser("auth0|gone");
+
+        worker.processDue();
+
+        assertEquals(AccountDeletionStatus.PENDING, deletion.getStatus());
+        assertTrue(deletion.isAvatarDeleted());
+        assertFalse(deletion.isAuth0Deleted());
+        assertEquals(1, deletion.getAttempts());
+        assertEquals("Auth0 unavailable", deletion.getLastError());
+        assertEquals(LocalDateTime.ofInstant(NOW, ZoneOffset.UTC).plusSeconds(30), deletion.getNextAttemptAt());
+
+        reset(auth0Service);
+        when(repository.findDueIds(any(), any())).thenReturn(List.of(deletion.getId()));
+        worker.processDue();
+
+        verify(avatarStorageService, times(1)).delete(any());
+        assertEquals(AccountDeletionStatus.COMPLETED, deletion.getStatus());
+    }
+
+    @Test
+    void processDue_marksFailedAfterMaxAttempts() {
+        AccountDeletion deletion = due(null);
+        deletion.setAvatarDeleted(true);
+        deletion.setAttempts(2);
+        doThrow(new RuntimeException("boom")).when(auth0Service).deleteUser(any());
+
+        worker.processDue();
+
+        assertEquals(AccountDeletionStatus.FAILED, deletion.getStatus());
+        assertEquals(3, deletion.getAttempts());
+        verifyNoInteractions(avatarStorageService);
+    }
+
+    private AccountDeletion due(String avatarUrl) {
+        AccountDeletion deletion = AccountDeletion.builder()
+                .id(UUID.randomUUID())
+                .userId("auth0|gone")
+                .profileId(UUID.randomUUID())
+                .avatarUrl(avatarUrl)
+                .status(AccountDeletionStatus.PENDING)
+                .nextAttemptAt(LocalDateTime.ofInstant(NOW, ZoneOffset.UTC))
+                .build();
+        when(repository.findDueIds(any(), any())).thenReturn(List.of(deletion.getId()));
+        when(repository.claim(eq(deletion.getId()), any(), any())).thenReturn(1);
+        when(repository.findById(deletion.getId())).thenReturn(Optional.of(deletion));
+        return deletion;
+    }
+}
@@ -1,241 +1,277 @@
 package nl.fhict.gamemate.userservice;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.fhict.gamemate.userservice.config.ResilienceProperties;
+import nl.fhict.gamemate.userservice.resilience.DependencyGuard;
 import nl.fhict.gamemate.userservice.service.Auth0Service;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
-import org.mockito.Mock;
-import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
-import org.springframework.test.util.ReflectionTestUtils;
-import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
-
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.ArgumentMatchers.*;
-import static org.mockito.Mockito.*;
 
-@ExtendWith(MockitoExtension.class)
 class Auth0ServiceTest {
 
-    @Mock
-    private RestTemplate restTemplate;
-
-    @InjectMocks
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private MutableClock clock;
     private Auth0Service auth0Service;
 
+    private final AtomicInteger tokenCalls = new AtomicInteger();
+    private final Queue<Map<String, Object>> tokenRequests = new ConcurrentLinkedQueue<>();
+    private final Queue<Recorded> deleteRequests = new ConcurrentLinkedQueue<>();
+    private volatile StubResponse tokenResponse;
+    private volatile StubResponse deleteResponse;
+    private volatile CountDownLatch tokenGate;
+
     @BeforeEach
-    void setUp() {
-        // Set up the private fields using ReflectionTestUtils
-        ReflectionTestUtils.setField(auth0Service, "domain", "test.auth0.com");
-        ReflectionTestUtils.setField(auth0Service, "clientId", "test-client-id");
-        ReflectionTestUtils.setField(auth0Service, "clientSecret", "test-client-secret");
-        ReflectionTestUtils.setField(auth0Service, "restTemplate", restTemplate);
+    void setUp() throws IOException {
+        tokenResponse = json(200, Map.of("access_token", "token-1", "expires_in", 3600));
+        deleteResponse = new StubResponse(204, "");
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.createContext("/oauth/token", this::handleToken);
+        server.createContext("/api/v2/users/", exchange -> {
+            deleteRequests.add(new Recorded(exchange.getRequestMethod(), exchange.getRequestURI().getPath(),
+                    exchange.getRequestHeaders().getFirst("Authorization")));
+            respond(exchange, deleteResponse);
+        });
+        server.start();
+
+        clock = new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+        auth0Service = service(Duration.ofSeconds(5));
     }
 
-    @Test
-    void deleteUser_deletesSuccessfully() {
-        String userId = "auth0|123456789";
-        String accessToken = "test-access-token";
-        Map<String, Object> tokenResponse = Map.of("access_token", accessToken);
-
-        when(restTemplate.postForObject(anyString(), any(HttpEntity.class), eq(Map.class)))
-                .thenReturn(tokenResponse);
-        when(restTemplate.exchange(anyString(), eq(HttpMethod.DELETE), any(HttpEntity.class), eq(Void.class)))
-                .thenReturn(ResponseEntity.ok().build());
-
-        assertDoesNotThrow(() -> auth0Service.deleteUser(userId));
-
-        verify(restTemplate).postForObject(
-                eq("https://test.auth0.com/oauth/token"),
-                any(HttpEntity.class),
-                eq(Map.class)
-        );
-        verify(restTemplate).exchange(
-                eq("https://test.auth0.com/api/v2/users/" + userId),
-                eq(HttpMethod.DELETE),
-                any(HttpEntity.class),
-                eq(Void.class)
-        );
+    @AfterEach
+    void tearDown() throws IOException {
+        auth0Service.close();
+        server.stop(0);
+        serverThreads.shutdownNow();
     }
 
     @Test
-    void deleteUser_throwsException_whenTokenRequestFails() {
-        String userId = "auth0|123456789";
+    void deleteUser_deletesWithBearerToken() {
+        auth0Service.deleteUser("auth0|user@example.com");
 
-        when(restTemplate.postForObject(anyString(), any(HttpEntity.class), eq(Map.class)))
-                .thenThrow(new RestClientException("Token request failed"));
-
-        RuntimeException exception = assertThrows(RuntimeException.class,
-                () -> auth0Service.deleteUser(userId));
+        Recorded delete = deleteRequests.remove();
+        assertEquals("DELETE", delete.method());
+        assertEquals("/api/v2/users/auth0|user@example.com", delete.path());
+        assertEquals("Bearer token-1", delete.authorization());
+    }
 
-        assertEquals("Failed to retrieve Auth0 token", exception.getMessage());
-        assertInstanceOf(RestClientException.class, exception.getCause());
-        verify(restTemplate, never()).exchange(anyString(), eq(HttpMethod.DELETE), any(), eq(Void.class));
+    @Test
+    void getManagementApiToken_sendsClientCredentials() {
+        assertEquals("token-1", auth0Service.getManagementApiToken());
+
+        Map<String, Object> body = tokenRequests.remove();
+        assertEquals(Map.of(
+                "client_id", "test-client-id",
+                "client_secret", "test-client-secret",
+                "audience", baseUrl() + "/api/v2/",
+                "grant_type", "client_credentials"), body);
     }
 
     @Test
-    void deleteUser_throwsException_whenDeleteRequestFails() {
-        String userId = "auth0|123456789";
-        String accessToken = "test-access-token";
-        Map<String, Object> tokenResponse = Map.of("access_token", accessToken);
+    void deleteUser_reusesCachedToken() {
+        auth0Service.deleteUser("auth0|1");
+        auth0Service.deleteUser("auth0|2");
+        auth0Service.deleteUser("auth0|3");
 
-        when(restTemplate.postForObject(anyString(), any(HttpEntity.class), eq(Map.class)))
-                .thenReturn(tokenResponse);
-        when(restTemplate.exchange(anyString(), eq(HttpMethod.DELETE), any(HttpEntity.class), eq(Void.class)))
-                .thenThrow(new RestClientException("Delete request failed"));
+        assertEquals(1, tokenCalls.get());
+        assertEquals(3, deleteRequests.size());
+    }
+
+    @Test
+    void getManagementApiToken_renewsShortlyBeforeExpiry() {
+        auth0Service.getManagementApiToken();
+        tokenResponse = json(200, Map.of("access_token", "token-2", "expires_in", 3600));
 
-        RuntimeException exception = assertThrows(RuntimeException.class,
-                () -> auth0Service.deleteUser(userId));
+        clock.advance(Duration.ofMinutes(54));
+        assertEquals("token-1", auth0Service.getManagementApiToken());
 
-        assertEquals("Delete request failed", exception.getMessage());
+        clock.advance(Duration.ofMinutes(2));
+        assertEquals("token-2", auth0Service.getManagementApiToken());
+        assertEquals(2, tokenCalls.get());
     }
 
     @Test
-    void deleteUser_throwsException_whenTokenResponseIsNull() {
-        String userId = "auth0|123456789";
+    void getManagementApiToken_concurrentCallersShareOneExchange() throws Exception {
+        tokenGate = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(callers.submit(auth0Service::getManagementApiToken));
+            }
+            Thread.sleep(200);
+            tokenGate.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("token-1", result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, tokenCalls.get());
+        } finally {
+            callers.shutdownNow();
+        }
+    }
 
-        when(restTemplate.postForObject(anyString(), any(HttpEntity.class), eq(Map.class)))
-                .thenReturn(null);
+    @Test
+    void deleteUser_unauthorizedRenewsTokenAndRetriesOnce() {
+        auth0Service.getManagementApiToken();
+        tokenResponse = json(200, Map.of("access_token", "token-2", "expires_in", 3600));
+        deleteResponse = new StubResponse(401, "");
 
-        RuntimeException exception = assertThrows(RuntimeException.class,
-                () -> auth0Service.deleteUser(userId));
+        assertThrows(RuntimeException.class, () -> auth0Service.deleteUser("auth0|1"));
 
-        assertEquals("Failed to retrieve Auth0 token", exception.getMessage());
-        verify(restTemplate, never()).exchange(anyString(), eq(HttpMethod.DELETE), any(), eq(Void.class));
+        assertEquals(2, tokenCalls.get());
+        assertEquals(List.of("Bearer token-1", "Bearer token-2"),
+                deleteRequests.stream().map(Recorded::authorization).toList());
     }
 
     @Test
-    void getManagementApiToken_returnsToken_onSuccess() {
-        String expectedToken = "test-access-token";
-        Map<String, Object> response = Map.of("access_token", expectedToken);
-
-        when(restTemplate.postForObject(anyString(), any(HttpEntity.class), eq(Map.class)))
-                .thenReturn(response);
-
-        String actualToken = ReflectionTestUtils.invokeMethod(auth0Service, "getManagementApiToken");
-
-        assertEquals(expectedToken, actualToken);
-        verify(restTemplate).postForObject(
-                eq("https://test.auth0.com/oauth/token"),
-                argThat(entity -> {
-                    HttpEntity<Map<String, String>> httpEntity = (HttpEntity<Map<String, String>>) entity;
-                    Map<String, String> body = httpEntity.getBody();
-                    return body != null &&
-                            "test-client-id".equals(body.get("client_id")) &&
-                            "test-client-secret".equals(body.get("client_secret")) &&
-                            "https://test.auth0.com/api/v2/".equals(body.get("audience")) &&
-                            "client_credentials".equals(body.get("grant_type"));
-                }),
-                eq(Map.class)
-        );
+    void deleteUser_throwsException_whenTokenRequestFails() {
+        tokenResponse = new StubResponse(500, "{}");
+
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> auth0Service.deleteUser("auth0|1"));
+
+        assertEquals("Failed to retrieve Auth0 token", exception.getMessage());
+        assertInstanceOf(HttpServerErrorException.class, exception.getCause());
+        assertEquals(3, tokenCalls.get());
+        assertTrue(deleteRequests.isEmpty());
     }
 
     @Test
-    void getManagementApiToken_throwsException_onNullResponse() {
-        when(restTemplate.postForObject(anyString(), any(HttpEntity.class), eq(Map.class)))
-                .thenReturn(null);
+    void deleteUser_throwsException_whenTokenResponseHasNoToken() {
+        tokenResponse = json(200, Map.of("error", "access_denied"));
 
-        RuntimeException exception = assertThrows(RuntimeException.class,
-                () -> ReflectionTestUtils.invokeMethod(auth0Service, "getManagementApiToken"));
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> auth0Service.deleteUser("auth0|1"));
 
         assertEquals("Failed to retrieve Auth0 token", exception.getMessage());
+        assertTrue(deleteRequests.isEmpty());
     }
 
     @Test
-    void getManagementApiToken_throwsException_onRestClientError() {
-        when(restTemplate.postForObject(anyString(), any(HttpEntity.class), eq(Map.class)))
-                .thenThrow(new RestClientException("Network error"));
+    void deleteUser_throwsException_whenDeleteRequestFails() {
+        deleteResponse = new StubResponse(500, "");
 
-        assertThrows(RuntimeException.class,
-                () -> ReflectionTestUtils.invokeMethod(auth0Service, "getManagementApiToken"));
+        assertThrows(HttpServerErrorException.class, () -> auth0Service.deleteUser("auth0|1"));
+        assertEquals(3, deleteRequests.size());
     }
 
     @Test
-    void getManagementApiToken_sendsCorrectRequestBody() {
-        String expectedToken = "test-access-token";
-        Map<String, Object> response = Map.of("access_token", expectedToken);
-
-        when(restTemplate.postForObject(anyString(), any(HttpEntity.class), eq(Map.class)))
-                .thenReturn(response);
-
-        ReflectionTestUtils.invokeMethod(auth0Service, "getManagementApiToken");
-
-        verify(restTemplate).postForObject(
-                eq("https://test.auth0.com/oauth/token"),
-                argThat(entity -> {
-                    HttpEntity<Map<String, String>> httpEntity = (HttpEntity<Map<String, String>>) entity;
-
-                    // Verify headers
-                    HttpHeaders headers = httpEntity.getHeaders();
-                    if (!headers.getContentType().toString().contains("application/json")) {
-                        return false;
-                    }
-
-                    // Verify body
-                    Map<String, String> body = httpEntity.getBody();
-                    return body != null &&
-                            body.size() == 4 &&
-                            "test-client-id".equals(body.get("client_id")) &&
-                            "test-client-secret".equals(body.get("client_secret")) &&
-                            "https://test.auth0.com/api/v2/".equals(body.get("audience")) &&
-                            "client_credentials".equals(body.get("grant_type"));
-                }),
-                eq(Map.class)
-        );
+    void deleteUser_timesOutOnSlowResponse() throws IOException {
+        auth0Service.close();
+        auth0Service = service(Duration.ofMillis(200));
+        tokenGate = new CountDownLatch(1);
+
+        long started = System.nanoTime();
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> auth0Service.deleteUser("auth0|1"));
+
+        assertInstanceOf(ResourceAccessException.class, exception.getCause());
+        assertTrue(Duration.ofNanos(System.nanoTime() - started).compareTo(Duration.ofSeconds(2)) < 0);
+        tokenGate.countDown();
     }
 
-    @Test
-    void deleteUser_sendsCorrectDeleteRequest() {
-        String userId = "auth0|123456789";
-        String accessToken = "test-access-token";
-        Map<String, Object> tokenResponse = Map.of("access_token", accessToken);
-
-        when(restTemplate.postForObject(anyString(), any(HttpEntity.class), eq(Map.class)))
-                .thenReturn(tokenResponse);
-        when(restTemplate.exchange(anyString(), eq(HttpMethod.DELETE), any(HttpEntity.class), eq(Void.class)))
-                .thenReturn(ResponseEntity.ok().build());
-
-        auth0Service.deleteUser(userId);
-
-        verify(restTemplate).exchange(
-                eq("https://test.auth0.com/api/v2/users/" + userId),
-                eq(HttpMethod.DELETE),
-                argThat(entity -> {
-                    HttpEntity<Void> httpEntity = (HttpEntity<Void>) entity;
-                    HttpHeaders headers = httpEntity.getHeaders();
-                    String authHeader = headers.getFirst("Authorization");
-                    return authHeader != null && authHeader.equals("Bearer " + accessToken);
-                }),
-                eq(Void.class)
-        );
+    private Auth0Service service(Duration readTimeout) {
+        ResilienceProperties.Policy policy = new ResilienceProperties.Policy();
+        policy.setInitialBackoff(Duration.ofMillis(10));
+        policy.setMaxBackoff(Duration.ofMillis(20));
+        DependencyGuard guard = new DependencyGuard("auth0", policy, error -> error instanceof HttpServerErrorException
+                || error instanceof ResourceAccessException, new SimpleMeterRegistry(), clock);
+        return new Auth0Service(baseUrl(), "test-client-id", "test-client-secret",
+                Duration.ofSeconds(1), readTimeout, 4, Duration.ofMinutes(5), guard, clock);
     }
 
-    @Test
-    void deleteUser_handlesSpecialCharactersInUserId() {
-        String userId = "auth0|user@example.com";
-        String accessToken = "test-access-token";
-        Map<String, Object> tokenResponse = Map.of("access_token", accessToken);
+    private String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
 
-        when(restTemplate.postForObject(anyString(), any(HttpEntity.class), eq(Map.class)))
-                .thenReturn(tokenResponse);
-        when(restTemplate.exchange(anyString(), eq(HttpMethod.DELETE), any(HttpEntity.class), eq(Void.class)))
-                .thenReturn(ResponseEntity.ok().build());
+    @SuppressWarnings("unchecked")
+    private void handleToken(HttpExchange exchange) throws IOException {
+        tokenCalls.incrementAndGet();
+        tokenRequests.add(objectMapper.readValue(exchange.getRequestBody(), Map.class));
+        CountDownLatch gate = tokenGate;
+        if (gate != null) {
+            try {
+                gate.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        respond(exchange, tokenResponse);
+    }
 
-        assertDoesNotThrow(() -> auth0Service.deleteUser(userId));
+    private StubResponse json(int status, Map<String, Object> body) {
+        try {
+            return new StubResponse(status, objectMapper.writeValueAsString(body));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
-        verify(restTemplate).exchange(
-                eq("https://test.auth0.com/api/v2/users/" + userId),
-                eq(HttpMethod.DELETE),
-                any(HttpEntity.class),
-                eq(Void.class)
-        );
+    private static void respond(HttpExchange exchange, StubResponse response) throws IOException {
+        byte[] body = response.body().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(response.status(), body.length == 0 ? -1 : body.length);
+        if (body.length > 0) exchange.getResponseBody().write(body);
+        exchange.close();
     }
-}
 
+    private record StubResponse(int status, String body) {}
+
+    private record Recorded(String method, String path, String authorization) {}
+
+    private static final class MutableClock extends Clock {
+        private volatile Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
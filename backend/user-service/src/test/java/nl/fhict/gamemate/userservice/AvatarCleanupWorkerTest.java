@@ -0,0 +1,174 @@
+package nl.fhict.gamemate.userservice;
+
+import nl.fhict.gamemate.userservice.model.AvatarDeletion;
+import nl.fhict.gamemate.userservice.repository.AvatarDeletionRepository;
+import nl.fhict.gamemate.userservice.repository.AvatarObjectRepository;
+import nl.fhict.gamemate.userservice.repository.ProfileRepository;
+import nl.fhict.gamemate.userservice.service.AvatarCleanupWorker;
+import nl.fhict.gamemate.userservice.service.DOAvatarStorageService;
+import nl.fhict.gamemate.userservice.service.DOAvatarStorageService.AvatarListing;
+import nl.fhict.gamemate.userservice.service.DOAvatarStorageService.ReleasedAvatars;
+import nl.fhict.gamemate.userservice.service.DOAvatarStorageService.StoredAvatar;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AvatarCleanupWorkerTest {
+    private static final Instant NOW = Instant.parse("2025-06-01T12:00:00Z");
+    private static final String BASE = "https://cdn.example.com/gamemate-assets/";
+
+    private AvatarDeletionRepository avatarDeletionRepository;
+    private AvatarObjectRepository avatarObjectRepository;
+    private ProfileRepository profileRepository;
+    private DOAvatarStorageService avatarStorageService;
+    private AvatarCleanupWorker worker;
+    private final List<UUID> dueIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        avatarDeletionRepository = mock(AvatarDeletionRepository.class);
+        avatarObjectRepository = mock(AvatarObjectRepository.class);
+        profileRepository = mock(ProfileRepository.class);
+        avatarStorageService = mock(DOAvatarStorageService.class);
+        worker = new AvatarCleanupWorker(avatarDeletionRepository, avatarObjectRepository, profileRepository,
+                avatarStorageService, TransactionOperations.withoutTransaction(), Duration.ofMinutes(1),
+                Duration.ofMinutes(5), 100, Duration.ofHours(24), 1000, Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @Test
+    void sweep_releasesClaimedDeletionsInOneBatch() {
+        AvatarDeletion first = due(BASE + "avatars/a.png");
+        AvatarDeletion second = due(BASE + "avatars/b.png");
+        ReleasedAvatars released = new ReleasedAvatars(List.of("avatars/a.png", "avatars/b.png"), List.of());
+        when(avatarStorageService.releaseAll(List.of(BASE + "avatars/a.png", BASE + "avatars/b.png"))).thenReturn(released);
+
+        worker.sweep();
+
+        InOrder order = inOrder(avatarDeletionRepository, avatarStorageService);
+        order.verify(avatarDeletionRepository).deleteAll(List.of(first, second));
+        order.verify(avatarStorageService).releaseAll(List.of(BASE + "avatars/a.png", BASE + "avatars/b.png"));
+        order.verify(avatarStorageService).purge(released);
+        verify(avatarStorageService, never()).delete(any());
+    }
+
+    @Test
+    void sweep_storageFailureAfterReleaseLeavesObjectsToReconciliation() {
+        AvatarDeletion deletion = due(BASE + "avatars/a.png");
+        ReleasedAvatars released = new ReleasedAvatars(List.of("avatars/a.png"), List.of());
+        when(avatarStorageService.releaseAll(any())).thenReturn(released);
+        doThrow(new RuntimeException("Spaces unavailable")).when(avatarStorageService).purge(released);
+
+        worker.sweep();
+
+        verify(avatarDeletionRepository).deleteAll(List.of(deletion));
+        verify(avatarStorageService, times(1)).releaseAll(any());
+        verify(avatarDeletionRepository, never()).save(any());
+    }
+
+    @Test
+    void sweep_skipsDeletionClaimedByAnotherInstance() {
+        UUID id = UUID.randomUUID();
+        when(avatarDeletionRepository.findDueIds(any(), any())).thenReturn(List.of(id));
+        when(avatarDeletionRepository.claim(eq(id), any(), any())).thenReturn(0);
+
+        worker.sweep();
+
+        verify(avatarDeletionRepository, never()).findById(any());
+        verifyNoInteractions(avatarStorageService);
+    }
+
+    @Test
+    void sweep_batchFailure_retriesOneByOneAndBacksOffFailures() {
+        AvatarDeletion good = due(BASE + "avatars/a.png");
+        AvatarDeletion bad = due(BASE + "avatars/b.png");
+        ReleasedAvatars released = new ReleasedAvatars(List.of("avatars/a.png"), List.of());
+        when(avatarStorageService.releaseAll(List.of(BASE + "avatars/a.png", BASE + "avatars/b.png")))
+                .thenThrow(new RuntimeException("Database unavailable"));
+        when(avatarStorageService.releaseAll(List.of(BASE + "avatars/a.png"))).thenReturn(released);
+        when(avatarStorageService.releaseAll(List.of(BASE + "avatars/b.png")))
+                .thenThrow(new RuntimeException("Database unavailable"));
+
+        worker.sweep();
+
+        verify(avatarStorageService).purge(released);
+        verify(avatarDeletionRepository).delete(good);
+        assertEquals(1, bad.getAttempts());
+        assertEquals("Database unavailable", bad.getLastError());
+        assertEquals(LocalDateTime.ofInstant(NOW, ZoneOffset.UTC).plusMinutes(1), bad.getNextAttemptAt());
+        verify(avatarDeletionRepository).save(bad);
+    }
+
+    @Test
+    void sweep_dropsDeletionWithUnusableUrl() {
+        AvatarDeletion deletion = due("not-a-storage-url");
+        when(avatarStorageService.releaseAll(any())).thenThrow(new IllegalArgumentException("bad"));
+
+        worker.sweep();
+
+        verify(avatarDeletionRepository, times(2)).delete(deletion);
+        verify(avatarDeletionRepository, never()).save(any());
+    }
+
+    @Test
+    void reconcile_removesOnlyUnreferencedObjectsPastGrace() {
+        Instant old = NOW.minus(Duration.ofDays(2));
+        Instant recent = NOW.minus(Duration.ofHours(1));
+        String used = "a".repeat(64);
+        String unused = "b".repeat(64);
+        when(avatarStorageService.listAvatars(null, 1000)).thenReturn(new AvatarListing(List.of(
+                rendition(used, 64, old),
+                rendition(unused, 64, old),
+                rendition(unused, 512, old),
+                new StoredAvatar("avatars/kept.png", null, old),
+                new StoredAvatar("avatars/orphan.png", null, old),
+                new StoredAvatar("avatars/p-upload", null, recent)), "next"));
+        when(avatarStorageService.listAvatars("next", 1000)).thenReturn(new AvatarListing(List.of(), null));
+        when(avatarObjectRepository.findReferencedHashes(Set.of(used, unused))).thenReturn(List.of(used));
+        when(avatarStorageService.collectIfUnused(unused)).thenReturn(true);
+        when(profileRepository.findAvatarKeysIn(Set.of("avatars/kept.png", "avatars/orphan.png")))
+                .thenReturn(List.of("avatars/kept.png"));
+        when(avatarObjectRepository.findUnusedHashes(any(), any())).thenReturn(List.of("c".repeat(64)));
+
+        worker.reconcile();
+
+        verify(avatarStorageService).collectIfUnused(unused);
+        verify(avatarStorageService, never()).collectIfUnused(used);
+        verify(avatarStorageService).deleteObjects(List.of("avatars/orphan.png"));
+        verify(avatarStorageService).collectIfUnused("c".repeat(64));
+    }
+
+    private static StoredAvatar rendition(String hash, int size, Instant lastModified) {
+        return new StoredAvatar("avatars/" + hash + "/" + size + ".jpg", hash, lastModified);
+    }
+
+    private AvatarDeletion due(String url) {
+        AvatarDeletion deletion = AvatarDeletion.builder()
+                .id(UUID.randomUUID())
+                .avatarUrl(url)
+                .nextAttemptAt(LocalDateTime.ofInstant(NOW, ZoneOffset.UTC))
+                .build();
+        dueIds.add(deletion.getId());
+        when(avatarDeletionRepository.findDueIds(any(), any())).thenReturn(dueIds);
+        when(avatarDeletionRepository.claim(eq(deletion.getId()), any(), any())).thenReturn(1);
+        when(avatarDeletionRepository.findById(deletion.getId())).thenReturn(Optional.of(deletion));
+        return deletion;
+    }
+}
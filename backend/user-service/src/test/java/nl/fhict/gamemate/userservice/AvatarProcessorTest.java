@@ -0,0 +1,73 @@
+package nl.fhict.gamemate.userservice;
+
+import nl.fhict.gamemate.userservice.model.AvatarRendition;
+import nl.fhict.gamemate.userservice.service.AvatarProcessor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AvatarProcessorTest {
+
+    private AvatarProcessor processor;
+
+    @BeforeEach
+    void setUp() {
+        processor = new AvatarProcessor(1, 2, 1_000_000, 0.85f);
+    }
+
+    @AfterEach
+    void tearDown() {
+        processor.shutdown();
+    }
+
+    @Test
+    void render_producesSquareJpegForEverySize() throws IOException {
+        Map<AvatarRendition, byte[]> renditions = processor.render(DOAvatarStorageServiceTest.png(800, 500));
+
+        assertEquals(AvatarRendition.values().length, renditions.size());
+        for (AvatarRendition rendition : AvatarRendition.values()) {
+            byte[] bytes = renditions.get(rendition);
+            assertEquals((byte) 0xFF, bytes[0]);
+            assertEquals((byte) 0xD8, bytes[1]);
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+            assertEquals(rendition.getSize(), image.getWidth());
+            assertEquals(rendition.getSize(), image.getHeight());
+        }
+    }
+
+    @Test
+    void render_upscalesSmallSources() throws IOException {
+        byte[] large = processor.render(DOAvatarStorageServiceTest.png(40, 40)).get(AvatarRendition.LARGE);
+
+        assertEquals(512, ImageIO.read(new ByteArrayInputStream(large)).getWidth());
+    }
+
+    @Test
+    void render_rejectsUndecodableBytes() {
+        assertThrows(IllegalArgumentException.class, () -> processor.render("GIF89a nope".getBytes()));
+        assertThrows(IllegalArgumentException.class, () -> processor.render(new byte[0]));
+    }
+
+    @Test
+    void render_rejectsImagesOverPixelLimit() {
+        assertThrows(IllegalArgumentException.class, () -> processor.render(DOAvatarStorageServiceTest.png(1200, 1000)));
+    }
+
+    @Test
+    void avatarRendition_derivesUrlsFromLargeRendition() {
+        String url = "https://cdn/gamemate-assets/avatars/p-u/512.jpg";
+
+        assertEquals("https://cdn/gamemate-assets/avatars/p-u/64.jpg", AvatarRendition.SMALL.urlFor(url));
+        assertEquals("avatars/p-u", AvatarRendition.baseKeyOf("avatars/p-u/512.jpg"));
+        assertEquals("https://cdn/legacy.png", AvatarRendition.SMALL.urlFor("https://cdn/legacy.png"));
+        assertNull(AvatarRendition.SMALL.urlFor(null));
+    }
+}
@@ -1,8 +1,21 @@
 package nl.fhict.gamemate.userservice;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import nl.fhict.gamemate.userservice.config.DOStorageProperties;
+import nl.fhict.gamemate.userservice.config.ResilienceProperties;
+import nl.fhict.gamemate.userservice.dto.AvatarUploadDto;
+import nl.fhict.gamemate.userservice.model.AvatarObject;
+import nl.fhict.gamemate.userservice.model.AvatarRendition;
+import nl.fhict.gamemate.userservice.repository.AvatarObjectRepository;
+import nl.fhict.gamemate.userservice.resilience.DependencyGuard;
+import nl.fhict.gamemate.userservice.resilience.DependencyUnavailableException;
+import nl.fhict.gamemate.userservice.service.AvatarProcessor;
 import nl.fhict.gamemate.userservice.service.DOAvatarStorageService;
+import nl.fhict.gamemate.userservice.service.DOAvatarStorageService.AvatarListing;
+import nl.fhict.gamemate.userservice.service.DOAvatarStorageService.ReleasedAvatars;
+import nl.fhict.gamemate.userservice.service.DOAvatarStorageService.StoredAvatar;
 import nl.fhict.gamemate.userservice.service.UploadRateLimiter;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -10,15 +23,32 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.support.TransactionOperations;
 import org.springframework.web.multipart.MultipartFile;
-import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
-import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 import software.amazon.awssdk.services.s3.model.S3Exception;
 
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -30,6 +60,11 @@ class DOAvatarStorageServiceTest {
     private UploadRateLimiter rateLimiter;
     private DOAvatarStorageService storageService;
     private S3Client mockS3Client;
+    private AvatarProcessor processor;
+    private InMemoryS3Client s3;
+    private DOAvatarStorageService inMemoryStorage;
+    private AvatarObjectRepository avatarObjectRepository;
+    private Map<String, Integer> refCounts;
 
     @Captor
     ArgumentCaptor<DeleteObjectRequest> requestCaptor;
@@ -44,7 +79,35 @@ class DOAvatarStorageServiceTest {
         props.setBucket("gamemate-assets");
 
         rateLimiter = mock(UploadRateLimiter.class);
-        storageService = new DOAvatarStorageService(props, rateLimiter);
+        processor = new AvatarProcessor(1, 4, 40_000_000, 0.85f);
+        avatarObjectRepository = mock(AvatarObjectRepository.class);
+        refCounts = new HashMap<>();
+        lenient().doAnswer(inv -> refCounts.merge(inv.getArgument(0), 1, Integer::sum))
+                .when(avatarObjectRepository).acquire(anyString());
+        lenient().when(avatarObjectRepository.releaseUnused(anyString()))
+                .thenAnswer(inv -> refCounts.merge(inv.getArgument(0), -1, Integer::sum) >= 0 ? 1 : 0);
+        lenient().when(avatarObjectRepository.release(anyString())).thenAnswer(inv -> {
+            Integer count = refCounts.get(inv.<String>getArgument(0));
+            if (count == null || count == 0) return Optional.empty();
+            refCounts.put(inv.getArgument(0), count - 1);
+            return Optional.of(count - 1);
+        });
+        lenient().when(avatarObjectRepository.findForUpdate(anyString())).thenAnswer(inv -> {
+            Integer count = refCounts.get(inv.<String>getArgument(0));
+            return Optional.ofNullable(count == null ? null
+                    : AvatarObject.builder().contentHash(inv.getArgument(0)).refCount(count).build());
+        });
+        lenient().when(avatarObjectRepository.save(any(AvatarObject.class))).thenAnswer(inv -> {
+            AvatarObject object = inv.getArgument(0);
+            refCounts.put(object.getContentHash(), object.getRefCount());
+            return object;
+        });
+        lenient().doAnswer(inv -> refCounts.putIfAbsent(inv.getArgument(0), 0))
+                .when(avatarObjectRepository).track(anyString());
+        lenient().doAnswer(inv -> refCounts.remove(inv.<AvatarObject>getArgument(0).getContentHash()))
+                .when(avatarObjectRepository).delete(any(AvatarObject.class));
+
+        storageService = new DOAvatarStorageService(props, rateLimiter, processor, avatarObjectRepository, guard(), null, null, Runnable::run, TransactionOperations.withoutTransaction());
 
         mockS3Client = mock(S3Client.class);
         storageService.init();
@@ -56,22 +119,129 @@ class DOAvatarStorageServiceTest {
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
+
+        s3 = new InMemoryS3Client();
+        inMemoryStorage = new DOAvatarStorageService(props, rateLimiter, processor, avatarObjectRepository, guard(), s3, s3.async(), Runnable::run, TransactionOperations.withoutTransaction());
+        inMemoryStorage.init();
     }
 
-    @Test
-    void store_validImage_succeeds() throws IOException {
-        MockMultipartFile file = new MockMultipartFile(
-                "avatar", "profile.jpg", "image/jpeg", "image content".getBytes());
+    @AfterEach
+    void tearDown() {
+        storageService.close();
+        processor.shutdown();
+    }
 
-        UUID profileId = UUID.randomUUID();
+    static DependencyGuard guard() {
+        return new DependencyGuard("spaces", new ResilienceProperties.Policy(), error -> false, new SimpleMeterRegistry());
+    }
 
-        String url = storageService.store(file, profileId);
+    static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
 
-        assertNotNull(url);
-        assertTrue(url.contains("https://nyc3.digitaloceanspaces.com/gamemate-assets/avatars/"));
+    static byte[] png(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, width / 2, height);
+        g.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "png", out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
 
+    @Test
+    void store_validImage_storesOnlyRenditions() throws IOException {
+        MockMultipartFile file = new MockMultipartFile("avatar", "profile.png", "image/png", png(900, 600));
+        UUID profileId = UUID.randomUUID();
+
+        String url = await(inMemoryStorage.store(file, profileId));
+
+        assertTrue(url.matches("https://nyc3\\.digitaloceanspaces\\.com/gamemate-assets/avatars/[0-9a-f]{64}/512\\.jpg"), url);
         verify(rateLimiter).checkRate(profileId.toString());
-        verify(mockS3Client).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+
+        Map<String, InMemoryS3Client.StoredObject> stored = s3.objects("gamemate-assets");
+        assertEquals(AvatarRendition.values().length, stored.size());
+        for (AvatarRendition rendition : AvatarRendition.values()) {
+            String key = rendition.urlFor(url).substring("https://nyc3.digitaloceanspaces.com/gamemate-assets/".length());
+            InMemoryS3Client.StoredObject object = stored.get(key);
+            assertNotNull(object, key);
+            assertEquals("image/jpeg", object.contentType());
+            BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(object.bytes()));
+            assertEquals(rendition.getSize(), decoded.getWidth());
+            assertEquals(rendition.getSize(), decoded.getHeight());
+        }
+    }
+
+    @Test
+    void store_undecodableImage_throwsIllegalArgument() {
+        MockMultipartFile file = new MockMultipartFile("avatar", "profile.png", "image/png", "not an image".getBytes());
+
+        assertThrows(IllegalArgumentException.class, () -> await(inMemoryStorage.store(file, UUID.randomUUID())));
+        assertTrue(s3.objects("gamemate-assets").isEmpty());
+        assertTrue(refCounts.values().stream().allMatch(count -> count == 0), "failed store must give its reference back");
+    }
+
+    @Test
+    void store_tooManyUploadsInFlight_rejectsWithoutBlocking() {
+        props.setMaxConcurrentUploads(1);
+        S3AsyncClient stalled = mock(S3AsyncClient.class);
+        CompletableFuture<HeadObjectResponse> pendingHead = new CompletableFuture<>();
+        when(stalled.headObject(any(HeadObjectRequest.class))).thenReturn(pendingHead);
+        DOAvatarStorageService limited = new DOAvatarStorageService(props, rateLimiter, processor, avatarObjectRepository, guard(), s3, stalled, Runnable::run, TransactionOperations.withoutTransaction());
+        limited.init();
+        MockMultipartFile file = new MockMultipartFile("avatar", "a.png", "image/png", png(64, 64));
+
+        CompletableFuture<String> first = limited.store(file, UUID.randomUUID());
+
+        assertFalse(first.isDone());
+        DependencyUnavailableException busy = assertThrows(DependencyUnavailableException.class,
+                () -> limited.store(file, UUID.randomUUID()));
+        assertEquals(DependencyUnavailableException.Reason.BULKHEAD_FULL, busy.getReason());
+        assertEquals(2, busy.getRetryAfterSeconds());
+        verify(rateLimiter, times(1)).checkRate(anyString());
+
+        pendingHead.completeExceptionally(new RuntimeException("connection reset"));
+        assertThrows(CompletionException.class, first::join);
+        assertDoesNotThrow(() -> limited.store(file, UUID.randomUUID()));
+    }
+
+    @Test
+    void store_sameContentTwice_sharesObjectsAndSkipsUpload() {
+        byte[] image = png(200, 200);
+        String first = await(inMemoryStorage.store(new MockMultipartFile("avatar", "a.png", "image/png", image), UUID.randomUUID()));
+        s3.objects("gamemate-assets").keySet().forEach(key -> s3.put("gamemate-assets", key, new byte[]{1}, "image/jpeg"));
+
+        String second = await(inMemoryStorage.store(new MockMultipartFile("avatar", "b.png", "image/png", image), UUID.randomUUID()));
+
+        assertEquals(first, second);
+        assertEquals(3, s3.objects("gamemate-assets").size());
+        assertTrue(s3.objects("gamemate-assets").values().stream().allMatch(o -> o.bytes().length == 1),
+                "existing renditions must not be uploaded again");
+        assertEquals(List.of(2), List.copyOf(refCounts.values()));
+    }
+
+    @Test
+    void delete_sharedAvatar_keepsObjectsUntilLastReference() {
+        byte[] image = png(200, 200);
+        String url = await(inMemoryStorage.store(new MockMultipartFile("avatar", "a.png", "image/png", image), UUID.randomUUID()));
+        await(inMemoryStorage.store(new MockMultipartFile("avatar", "a.png", "image/png", image), UUID.randomUUID()));
+
+        inMemoryStorage.delete(url);
+        assertEquals(3, s3.objects("gamemate-assets").size());
+
+        inMemoryStorage.delete(url);
+        assertTrue(s3.objects("gamemate-assets").isEmpty());
+        assertTrue(refCounts.isEmpty());
     }
 
     @Test
@@ -119,7 +289,6 @@ class DOAvatarStorageServiceTest {
 
         when(file.isEmpty()).thenReturn(false);
         when(file.getContentType()).thenReturn("image/png");
-        when(file.getOriginalFilename()).thenReturn("bad.png");
         when(file.getInputStream()).thenThrow(new IOException("Boom"));
 
         RuntimeException exception = assertThrows(RuntimeException.class, () ->
@@ -145,15 +314,25 @@ class DOAvatarStorageServiceTest {
     }
 
     @Test
-    void delete_throwsRuntimeException_onFailure() {
+    void delete_storageFailureAfterRelease_isLeftToReconciliation() {
         String url = "https://cdn.digitaloceanspaces.com/gamemate-assets/avatars/broken.png";
 
         doThrow(S3Exception.builder().message("boom").build())
                 .when(mockS3Client).deleteObject(any(DeleteObjectRequest.class));
 
-        RuntimeException exception = assertThrows(RuntimeException.class, () -> storageService.delete(url));
+        assertDoesNotThrow(() -> storageService.delete(url));
+        verify(mockS3Client).deleteObject(any(DeleteObjectRequest.class));
+    }
+
+    @Test
+    void purge_throwsRuntimeException_onFailure() {
+        doThrow(S3Exception.builder().message("boom").build())
+                .when(mockS3Client).deleteObject(any(DeleteObjectRequest.class));
+
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> storageService.purge(new ReleasedAvatars(List.of("avatars/broken.png"), List.of())));
 
-        assertTrue(exception.getMessage().contains("Failed to delete avatar"));
+        assertTrue(exception.getMessage().contains("Failed to delete avatars"));
     }
 
     @Test
@@ -162,5 +341,167 @@ class DOAvatarStorageServiceTest {
 
         assertThrows(RuntimeException.class, () -> storageService.delete(invalidUrl));
     }
-}
 
+    @Test
+    void presignUpload_signsContentTypeLengthAndAcl() {
+        UUID profileId = UUID.randomUUID();
+
+        AvatarUploadDto upload = storageService.presignUpload(profileId, "image/png", 2048);
+
+        assertTrue(upload.getKey().startsWith("avatars/" + profileId + "-"));
+        assertTrue(upload.getUploadUrl().startsWith("https://nyc3.digitaloceanspaces.com/gamemate-assets/" + upload.getKey()));
+        assertTrue(upload.getUploadUrl().contains("X-Amz-Signature="));
+        assertEquals("PUT", upload.getMethod());
+        assertEquals("image/png", upload.getHeaders().get("content-type"));
+        assertEquals("2048", upload.getHeaders().get("content-length"));
+        assertEquals("public-read", upload.getHeaders().get("x-amz-acl"));
+        assertFalse(upload.getHeaders().containsKey("host"));
+        verify(rateLimiter).checkRate(profileId.toString());
+        verifyNoInteractions(mockS3Client);
+    }
+
+    @Test
+    void presignUpload_rejectsNonImagesAndOversizedFiles() {
+        UUID profileId = UUID.randomUUID();
+
+        assertThrows(IllegalArgumentException.class, () -> storageService.presignUpload(profileId, "text/plain", 10));
+        assertThrows(IllegalArgumentException.class,
+                () -> storageService.presignUpload(profileId, "image/png", props.getMaxAvatarBytes() + 1));
+        verifyNoInteractions(rateLimiter);
+    }
+
+    @Test
+    void confirmUpload_replacesUploadWithRenditions() {
+        UUID profileId = UUID.randomUUID();
+        String key = "avatars/" + profileId + "-" + UUID.randomUUID();
+        s3.put("gamemate-assets", key, png(300, 300), "image/png");
+
+        String url = await(inMemoryStorage.confirmUpload(profileId, key));
+
+        String base = AvatarRendition.baseKeyOf(url).substring("https://nyc3.digitaloceanspaces.com/gamemate-assets/".length());
+        assertTrue(base.matches("avatars/[0-9a-f]{64}"), base);
+        assertEquals(Set.of(base + "/64.jpg", base + "/128.jpg", base + "/512.jpg"), s3.objects("gamemate-assets").keySet());
+        assertEquals(Map.of(base.substring("avatars/".length()), 1), refCounts);
+
+        assertThrows(IllegalArgumentException.class, () -> await(inMemoryStorage.confirmUpload(profileId, key)));
+    }
+
+    @Test
+    void delete_renditionUrl_removesEveryRendition() {
+        UUID profileId = UUID.randomUUID();
+        String url = await(inMemoryStorage.store(
+                new MockMultipartFile("avatar", "a.png", "image/png", png(128, 128)), profileId));
+        s3.put("gamemate-assets", "avatars/other.png", new byte[1], "image/png");
+
+        inMemoryStorage.delete(url);
+
+        assertEquals(Set.of("avatars/other.png"), s3.objects("gamemate-assets").keySet());
+    }
+
+    @Test
+    void confirmUpload_rejectsKeyOfAnotherProfile() {
+        String key = "avatars/" + UUID.randomUUID() + "-" + UUID.randomUUID();
+
+        assertThrows(IllegalArgumentException.class, () -> storageService.confirmUpload(UUID.randomUUID(), key));
+        verifyNoInteractions(mockS3Client);
+    }
+
+    @Test
+    void confirmUpload_missingObject_throwsIllegalArgument() {
+        UUID profileId = UUID.randomUUID();
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> await(inMemoryStorage.confirmUpload(profileId, "avatars/" + profileId + "-x")));
+
+        assertEquals("Upload not found", exception.getMessage());
+    }
+
+    @Test
+    void confirmUpload_rejectsNonImageObject() {
+        UUID profileId = UUID.randomUUID();
+        s3.put("gamemate-assets", "avatars/" + profileId + "-x", new byte[10], "application/zip");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> await(inMemoryStorage.confirmUpload(profileId, "avatars/" + profileId + "-x")));
+        assertTrue(refCounts.isEmpty());
+    }
+
+    @Test
+    void releaseAll_givesBackReferencesWithoutTouchingStorageUntilPurged() {
+        MockMultipartFile file = new MockMultipartFile("avatar", "a.png", "image/png", png(128, 128));
+        String url = await(inMemoryStorage.store(file, UUID.randomUUID()));
+        await(inMemoryStorage.store(file, UUID.randomUUID()));
+        String hash = refCounts.keySet().iterator().next();
+        s3.put("gamemate-assets", "avatars/legacy.png", new byte[1], "image/png");
+
+        ReleasedAvatars first = inMemoryStorage.releaseAll(
+                List.of("https://nyc3.digitaloceanspaces.com/gamemate-assets/avatars/legacy.png", url));
+
+        assertEquals(new ReleasedAvatars(List.of("avatars/legacy.png"), List.of()), first);
+        assertEquals(4, s3.objects("gamemate-assets").size());
+        inMemoryStorage.purge(first);
+        assertEquals(3, s3.objects("gamemate-assets").size());
+        assertEquals(Map.of(hash, 1), refCounts);
+
+        ReleasedAvatars last = inMemoryStorage.releaseAll(List.of(url));
+
+        assertEquals(new ReleasedAvatars(List.of(), List.of(hash)), last);
+        assertEquals(Map.of(hash, 0), refCounts);
+        assertEquals(3, s3.objects("gamemate-assets").size());
+        inMemoryStorage.purge(last);
+        assertTrue(s3.objects("gamemate-assets").isEmpty());
+        assertTrue(refCounts.isEmpty());
+    }
+
+    @Test
+    void purge_keepsRenditionsReferencedAgainSinceTheRelease() {
+        MockMultipartFile file = new MockMultipartFile("avatar", "a.png", "image/png", png(128, 128));
+        String url = await(inMemoryStorage.store(file, UUID.randomUUID()));
+        ReleasedAvatars released = inMemoryStorage.releaseAll(List.of(url));
+
+        await(inMemoryStorage.store(file, UUID.randomUUID()));
+        inMemoryStorage.purge(released);
+
+        assertEquals(3, s3.objects("gamemate-assets").size());
+        assertEquals(List.of(1), List.copyOf(refCounts.values()));
+    }
+
+    @Test
+    void listAvatars_reportsContentHashOfRenditions() {
+        UUID profileId = UUID.randomUUID();
+        await(inMemoryStorage.store(
+                new MockMultipartFile("avatar", "a.png", "image/png", png(128, 128)), profileId));
+        String hash = refCounts.keySet().iterator().next();
+        s3.put("gamemate-assets", "avatars/" + profileId + "-upload", new byte[1], "image/png");
+
+        AvatarListing first = inMemoryStorage.listAvatars(null, 3);
+        AvatarListing second = inMemoryStorage.listAvatars(first.nextContinuationToken(), 3);
+
+        assertEquals(3, first.objects().size());
+        assertNull(second.nextContinuationToken());
+        List<StoredAvatar> all = new ArrayList<>(first.objects());
+        all.addAll(second.objects());
+        assertEquals(4, all.size());
+        all.stream().filter(o -> o.contentHash() != null).forEach(o -> {
+            assertEquals(hash, o.contentHash());
+            assertTrue(o.key().startsWith("avatars/" + hash + "/"));
+        });
+        StoredAvatar upload = all.stream().filter(o -> o.contentHash() == null).findFirst().orElseThrow();
+        assertEquals("avatars/" + profileId + "-upload", upload.key());
+    }
+
+    @Test
+    void collectIfUnused_removesRenditionsOnlyWithoutReferences() {
+        await(inMemoryStorage.store(
+                new MockMultipartFile("avatar", "a.png", "image/png", png(128, 128)), UUID.randomUUID()));
+        String hash = refCounts.keySet().iterator().next();
+
+        assertFalse(inMemoryStorage.collectIfUnused(hash));
+        assertEquals(3, s3.objects("gamemate-assets").size());
+
+        refCounts.clear();
+        assertTrue(inMemoryStorage.collectIfUnused(hash));
+        assertTrue(s3.objects("gamemate-assets").isEmpty());
+        assertTrue(refCounts.isEmpty());
+    }
+}
@@ -0,0 +1,260 @@
+package nl.fhict.gamemate.userservice;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.fhict.gamemate.userservice.config.ResilienceProperties;
+import nl.fhict.gamemate.userservice.resilience.CircuitBreaker;
+import nl.fhict.gamemate.userservice.resilience.DependencyGuard;
+import nl.fhict.gamemate.userservice.resilience.DependencyUnavailableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DependencyGuardTest {
+
+    private MutableClock clock;
+    private SimpleMeterRegistry meterRegistry;
+    private ResilienceProperties.Policy policy;
+    private DependencyGuard guard;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+        meterRegistry = new SimpleMeterRegistry();
+        policy = new ResilienceProperties.Policy();
+        policy.setThreads(1);
+        policy.setQueueCapacity(1);
+        policy.setTimeout(Duration.ofMillis(200));
+        policy.setInitialBackoff(Duration.ofMillis(1));
+        policy.setMaxBackoff(Duration.ofMillis(2));
+        policy.setSlidingWindowSize(4);
+        policy.setMinimumCalls(4);
+        policy.setFailureRateThreshold(50);
+        policy.setOpenDuration(Duration.ofSeconds(30));
+        policy.setHalfOpenProbes(2);
+        guard = newGuard();
+    }
+
+    @AfterEach
+    void tearDown() {
+        guard.shutdown();
+    }
+
+    @Test
+    void call_retriesTransientFailuresOfIdempotentCalls() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = guard.call("get", true, () -> {
+            if (attempts.incrementAndGet() < 3) throw new UncheckedIOException(new IOException("reset"));
+            return "ok";
+        });
+
+        assertEquals("ok", result);
+        assertEquals(3, attempts.get());
+        assertEquals(2.0, meterRegistry.get("gamemate.resilience.retries").counter().count());
+    }
+
+    @Test
+    void call_doesNotRetryNonIdempotentOrPermanentFailures() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(UncheckedIOException.class, () -> guard.call("post", false, () -> {
+            attempts.incrementAndGet();
+            throw new UncheckedIOException(new IOException("reset"));
+        }));
+        assertThrows(IllegalArgumentException.class, () -> guard.call("get", true, () -> {
+            attempts.incrementAndGet();
+            throw new IllegalArgumentException("not found");
+        }));
+
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    void call_opensAfterFailureRateAndRejectsUntilProbesSucceed() {
+        policy.setMaxAttempts(1);
+        guard = newGuard();
+        guard.call("get", true, () -> "ok");
+        guard.call("get", true, () -> "ok");
+        failOnce();
+        failOnce();
+
+        assertEquals(CircuitBreaker.State.OPEN, guard.getState());
+        AtomicInteger attempts = new AtomicInteger();
+        DependencyUnavailableException rejected = assertThrows(DependencyUnavailableException.class,
+                () -> guard.call("get", true, attempts::incrementAndGet));
+        assertEquals(DependencyUnavailableException.Reason.CIRCUIT_OPEN, rejected.getReason());
+        assertEquals(30, rejected.getRetryAfterSeconds());
+        assertEquals(0, attempts.get());
+
+        clock.advance(Duration.ofSeconds(30));
+        guard.call("get", true, () -> "probe");
+        assertEquals(CircuitBreaker.State.HALF_OPEN, guard.getState());
+        guard.call("get", true, () -> "probe");
+        assertEquals(CircuitBreaker.State.CLOSED, guard.getState());
+
+        assertEquals(1.0, meterRegistry.get("gamemate.resilience.transitions")
+                .tags("dependency", "test", "from", "closed", "to", "open").counter().count());
+        assertEquals(1.0, meterRegistry.get("gamemate.resilience.transitions")
+                .tags("dependency", "test", "from", "half_open", "to", "closed").counter().count());
+        assertEquals(0.0, meterRegistry.get("gamemate.resilience.state").gauge().value());
+    }
+
+    @Test
+    void call_failedProbeReopensCircuit() {
+        policy.setMaxAttempts(1);
+        guard = newGuard();
+        for (int i = 0; i < 4; i++) failOnce();
+        clock.advance(Duration.ofSeconds(30));
+
+        failOnce();
+
+        assertEquals(CircuitBreaker.State.OPEN, guard.getState());
+        assertEquals(1.0, meterRegistry.get("gamemate.resilience.state").gauge().value());
+    }
+
+    @Test
+    void call_permanentFailuresDoNotOpenCircuit() {
+        for (int i = 0; i < 8; i++) {
+            assertThrows(IllegalArgumentException.class, () -> guard.call("get", true, () -> {
+                throw new IllegalArgumentException("not found");
+            }));
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, guard.getState());
+    }
+
+    @Test
+    void call_timesOutAndInterruptsSlowCall() throws InterruptedException {
+        policy.setMaxAttempts(1);
+        guard = newGuard();
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        DependencyUnavailableException timeout = assertThrows(DependencyUnavailableException.class,
+                () -> guard.call("get", true, () -> {
+                    try {
+                        Thread.sleep(5_000);
+                    } catch (InterruptedException e) {
+                        interrupted.countDown();
+                    }
+                    return "late";
+                }));
+
+        assertEquals(DependencyUnavailableException.Reason.TIMEOUT, timeout.getReason());
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void call_rejectsWhenPoolAndQueueAreFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        policy.setTimeout(Duration.ofSeconds(5));
+        guard = newGuard();
+        try {
+            for (int i = 0; i < 2; i++) {
+                callers.submit(() -> guard.call("get", true, () -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "ok";
+                }));
+            }
+            Thread.sleep(200);
+
+            DependencyUnavailableException full = assertThrows(DependencyUnavailableException.class,
+                    () -> guard.call("get", true, () -> "ok"));
+            assertEquals(DependencyUnavailableException.Reason.BULKHEAD_FULL, full.getReason());
+            assertEquals(1.0, meterRegistry.get("gamemate.resilience.rejected")
+                    .tags("dependency", "test", "reason", "bulkhead_full").counter().count());
+        } finally {
+            release.countDown();
+            callers.shutdown();
+        }
+    }
+
+    @Test
+    void callAsync_timesOutCancelsAndRetries() {
+        AtomicInteger attempts = new AtomicInteger();
+        CompletableFuture<String> stalled = new CompletableFuture<>();
+
+        CompletableFuture<String> result = guard.callAsync("head", true, () ->
+                attempts.incrementAndGet() == 1 ? stalled : CompletableFuture.completedFuture("ok"));
+
+        assertEquals("ok", result.join());
+        assertEquals(2, attempts.get());
+        assertTrue(stalled.isCancelled());
+    }
+
+    @Test
+    void callAsync_capsCallsInFlight() {
+        policy.setMaxConcurrentCalls(1);
+        policy.setTimeout(Duration.ofSeconds(5));
+        guard = newGuard();
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        CompletableFuture<String> first = guard.callAsync("head", false, () -> pending);
+
+        CompletionException full = assertThrows(CompletionException.class,
+                () -> guard.callAsync("head", false, () -> CompletableFuture.completedFuture("ok")).join());
+        assertInstanceOf(DependencyUnavailableException.class, full.getCause());
+
+        pending.complete("done");
+        assertEquals("done", first.join());
+        assertEquals("ok", guard.callAsync("head", false, () -> CompletableFuture.completedFuture("ok")).join());
+    }
+
+    private void failOnce() {
+        assertThrows(RuntimeException.class, () -> guard.call("get", true, () -> {
+            throw new UncheckedIOException(new IOException("reset"));
+        }));
+    }
+
+    private DependencyGuard newGuard() {
+        if (guard != null) guard.shutdown();
+        meterRegistry = new SimpleMeterRegistry();
+        return new DependencyGuard("test", policy, error -> error instanceof UncheckedIOException, meterRegistry, clock);
+    }
+
+    private static final class MutableClock extends Clock {
+        private volatile Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -1,18 +1,40 @@
 package nl.fhict.gamemate.userservice;
 
 import jakarta.persistence.EntityNotFoundException;
+import nl.fhict.gamemate.userservice.dto.FriendPageDto;
+import nl.fhict.gamemate.userservice.dto.FriendRequestDto;
+import nl.fhict.gamemate.userservice.dto.FriendRequestPageDto;
+import nl.fhict.gamemate.userservice.dto.FriendRequestResultDto;
+import nl.fhict.gamemate.userservice.dto.FriendSuggestionDto;
+import nl.fhict.gamemate.userservice.dto.ProfilePreviewDto;
+import nl.fhict.gamemate.userservice.dto.RelationshipDto;
+import nl.fhict.gamemate.userservice.exception.ConflictException;
 import nl.fhict.gamemate.userservice.model.FriendRequest;
+import nl.fhict.gamemate.userservice.model.FriendRequestOutcome;
 import nl.fhict.gamemate.userservice.model.Profile;
+import nl.fhict.gamemate.userservice.model.RelationshipStatus;
 import nl.fhict.gamemate.userservice.repository.FriendRequestRepository;
 import nl.fhict.gamemate.userservice.repository.ProfileRepository;
+import nl.fhict.gamemate.userservice.repository.projection.FriendPreviewProjection;
+import nl.fhict.gamemate.userservice.repository.projection.FriendRequestClaimProjection;
+import nl.fhict.gamemate.userservice.repository.projection.FriendRequestKeyProjection;
+import nl.fhict.gamemate.userservice.repository.projection.FriendRequestPreviewProjection;
+import nl.fhict.gamemate.userservice.repository.projection.ProfileVersionProjection;
+import nl.fhict.gamemate.userservice.repository.projection.RelationshipProjection;
 import nl.fhict.gamemate.userservice.service.EventPublisher;
 import nl.fhict.gamemate.userservice.service.FriendService;
+import nl.fhict.gamemate.userservice.service.FriendSuggestionIndex;
+import nl.fhict.gamemate.userservice.service.ProfileCache;
 import nl.fhict.gamemate.userservice.service.ProfileService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.LocalDateTime;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -25,6 +47,8 @@ class FriendServiceTest {
     private FriendRequestRepository friendRequestRepository;
     private FriendService friendService;
     private EventPublisher eventPublisher;
+    private ProfileCache profileCache;
+    private FriendSuggestionIndex friendSuggestionIndex;
 
     @BeforeEach
     void setUp() {
@@ -32,41 +56,204 @@ class FriendServiceTest {
         profileRepository = mock(ProfileRepository.class);
         friendRequestRepository = mock(FriendRequestRepository.class);
         eventPublisher = mock(EventPublisher.class);
-        friendService = new FriendService(profileService, profileRepository, friendRequestRepository, eventPublisher);
+        profileCache = mock(ProfileCache.class);
+        friendSuggestionIndex = mock(FriendSuggestionIndex.class);
+        friendService = new FriendService(profileService, profileRepository, friendRequestRepository, eventPublisher, profileCache, friendSuggestionIndex);
     }
 
     @Test
-    void sendFriendRequest_savesRequest() {
-        Profile sender = Profile.builder().userId("sender").build();
+    void sendFriendRequest_createsRequest() {
+        Profile sender = Profile.builder().id(UUID.randomUUID()).userId("sender").build();
         Profile receiver = Profile.builder().id(UUID.randomUUID()).build();
-        when(profileService.getOwnProfile(sender.getUserId())).thenReturn(sender);
-        when(profileService.getProfile(receiver.getId())).thenReturn(receiver);
-        when(friendRequestRepository.findBySenderAndReceiver(sender, receiver)).thenReturn(Optional.empty());
+        UUID requestId = UUID.randomUUID();
+        stubSender(sender);
+        when(friendRequestRepository.claim(any(), eq(sender.getId()), eq(receiver.getId()), any()))
+                .thenReturn(Optional.of(claim("CREATED", requestId, sender.getId())));
 
-        friendService.sendFriendRequest(sender.getUserId(), receiver.getId());
+        FriendRequestResultDto result = friendService.sendFriendRequest(sender.getUserId(), receiver.getId(), null);
 
-        verify(friendRequestRepository).save(any(FriendRequest.class));
+        assertEquals(FriendRequestOutcome.CREATED, result.getOutcome());
+        assertEquals(requestId, result.getRequestId());
+        verify(profileRepository).incrementRelationsVersion(List.of(sender.getId(), receiver.getId()));
+        verify(friendRequestRepository, never()).claimRequestKey(any(), any(), any());
+        verify(friendRequestRepository, never()).saveRequestKeyOutcome(any(), any(), any(), any());
     }
 
     @Test
     void sendFriendRequest_throwsIfSelfFriend() {
-        Profile user = Profile.builder().build();
-        when(profileService.getOwnProfile("user")).thenReturn(user);
-        when(profileService.getProfile(user.getId())).thenReturn(user);
+        UUID profileId = stubProfileId("user");
+
+        assertThrows(IllegalArgumentException.class, () -> friendService.sendFriendRequest("user", profileId, null));
+        verifyNoInteractions(friendRequestRepository);
+    }
+
+    @Test
+    void sendFriendRequest_throwsIfReceiverMissing() {
+        Profile sender = Profile.builder().id(UUID.randomUUID()).userId("sender").build();
+        stubSender(sender);
+        when(friendRequestRepository.claim(any(), any(), any(), any()))
+                .thenReturn(Optional.of(claim("NO_RECEIVER", null, null)));
+
+        assertThrows(EntityNotFoundException.class,
+                () -> friendService.sendFriendRequest("sender", UUID.randomUUID(), null));
+        verify(profileRepository, never()).incrementRelationsVersion(any());
+        verifyNoInteractions(profileService);
+    }
+
+    @Test
+    void sendFriendRequest_returnsExistingRequestFromCaller() {
+        Profile sender = Profile.builder().id(UUID.randomUUID()).userId("sender").build();
+        Profile receiver = Profile.builder().id(UUID.randomUUID()).build();
+        UUID requestId = UUID.randomUUID();
+        stubSender(sender);
+        when(friendRequestRepository.claim(any(), any(), any(), any()))
+                .thenReturn(Optional.of(claim("EXISTING", requestId, sender.getId())));
+
+        FriendRequestResultDto result = friendService.sendFriendRequest("sender", receiver.getId(), null);
+
+        assertEquals(FriendRequestOutcome.ALREADY_SENT, result.getOutcome());
+        assertEquals(requestId, result.getRequestId());
+        verify(friendRequestRepository, never()).deleteIfPresent(any());
+        verify(profileRepository, never()).incrementRelationsVersion(any());
+    }
+
+    @Test
+    void sendFriendRequest_acceptsCrossedRequest() {
+        Profile sender = Profile.builder().id(UUID.randomUUID()).userId("sender").build();
+        Profile receiver = Profile.builder().id(UUID.randomUUID()).userId("receiver").build();
+        UUID requestId = UUID.randomUUID();
+        stubSender(sender);
+        when(friendRequestRepository.claim(any(), any(), any(), any()))
+                .thenReturn(Optional.of(claim("EXISTING", requestId, receiver.getId())));
+        when(friendRequestRepository.deleteIfPresent(requestId)).thenReturn(1);
+
+        FriendRequestResultDto result = friendService.sendFriendRequest("sender", receiver.getId(), null);
+
+        assertEquals(FriendRequestOutcome.ACCEPTED, result.getOutcome());
+        verify(profileRepository).addFriendship(receiver.getId(), sender.getId());
+        verify(eventPublisher).publishFriendshipEvent(argThat(e -> "FRIEND".equals(e.getStatus())));
+        verify(profileRepository).incrementRelationsVersion(List.of(sender.getId(), receiver.getId()));
+    }
+
+    @Test
+    void sendFriendRequest_retriesWhenCrossedRequestWasWithdrawn() {
+        Profile sender = Profile.builder().id(UUID.randomUUID()).userId("sender").build();
+        Profile receiver = Profile.builder().id(UUID.randomUUID()).build();
+        UUID withdrawnId = UUID.randomUUID();
+        UUID createdId = UUID.randomUUID();
+        stubSender(sender);
+        when(friendRequestRepository.claim(any(), any(), any(), any()))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(claim("EXISTING", withdrawnId, receiver.getId())))
+                .thenReturn(Optional.of(claim("CREATED", createdId, sender.getId())));
+        when(friendRequestRepository.deleteIfPresent(withdrawnId)).thenReturn(0);
+
+        FriendRequestResultDto result = friendService.sendFriendRequest("sender", receiver.getId(), null);
+
+        assertEquals(FriendRequestOutcome.CREATED, result.getOutcome());
+        assertEquals(createdId, result.getRequestId());
+        verify(profileRepository, never()).addFriendship(any(), any());
+    }
+
+    @Test
+    void sendFriendRequest_reportsExistingFriendship() {
+        Profile sender = Profile.builder().id(UUID.randomUUID()).userId("sender").build();
+        Profile receiver = Profile.builder().id(UUID.randomUUID()).build();
+        stubSender(sender);
+        when(friendRequestRepository.claimRequestKey("sender", "key-1", receiver.getId())).thenReturn(Optional.of("key-1"));
+        when(friendRequestRepository.claim(any(), any(), any(), any()))
+                .thenReturn(Optional.of(claim("FRIENDS", null, null)));
+
+        FriendRequestResultDto result = friendService.sendFriendRequest("sender", receiver.getId(), "key-1");
+
+        assertEquals(FriendRequestOutcome.ALREADY_FRIENDS, result.getOutcome());
+        assertNull(result.getRequestId());
+        InOrder order = inOrder(friendRequestRepository);
+        order.verify(friendRequestRepository).claimRequestKey("sender", "key-1", receiver.getId());
+        order.verify(friendRequestRepository).claim(any(), any(), any(), any());
+        order.verify(friendRequestRepository).saveRequestKeyOutcome("sender", "key-1", "ALREADY_FRIENDS", null);
+        verify(friendRequestRepository, never()).findRequestKey(any(), any());
+    }
+
+    @Test
+    void sendFriendRequest_replaysIdempotencyKeyClaimedByEarlierCall() {
+        UUID receiverId = UUID.randomUUID();
+        UUID requestId = UUID.randomUUID();
+        when(friendRequestRepository.claimRequestKey("sender", "key-1", receiverId)).thenReturn(Optional.empty());
+        when(friendRequestRepository.findRequestKey("sender", "key-1"))
+                .thenReturn(Optional.of(requestKey(receiverId, "CREATED", requestId)));
+
+        FriendRequestResultDto result = friendService.sendFriendRequest("sender", receiverId, "key-1");
+
+        assertEquals(FriendRequestOutcome.CREATED, result.getOutcome());
+        assertEquals(requestId, result.getRequestId());
+        verify(friendRequestRepository, never()).claim(any(), any(), any(), any());
+        verify(friendRequestRepository, never()).saveRequestKeyOutcome(any(), any(), any(), any());
+        verifyNoInteractions(profileService);
+    }
 
-        assertThrows(IllegalArgumentException.class, () -> friendService.sendFriendRequest("user", user.getId()));
+    @Test
+    void sendFriendRequest_conflictsWhileClaimedKeyIsInProgress() {
+        UUID receiverId = UUID.randomUUID();
+        when(friendRequestRepository.claimRequestKey("sender", "key-1", receiverId)).thenReturn(Optional.empty());
+        when(friendRequestRepository.findRequestKey("sender", "key-1"))
+                .thenReturn(Optional.of(requestKey(receiverId, null, null)));
+
+        assertThrows(ConflictException.class, () -> friendService.sendFriendRequest("sender", receiverId, "key-1"));
+        verify(friendRequestRepository, never()).claim(any(), any(), any(), any());
+        verifyNoInteractions(profileService);
     }
 
     @Test
-    void sendFriendRequest_throwsIfDuplicate() {
-        Profile sender = Profile.builder().userId("sender").build();
+    void sendFriendRequest_conflictsWhenPairKeepsChanging() {
+        Profile sender = Profile.builder().id(UUID.randomUUID()).userId("sender").build();
         Profile receiver = Profile.builder().id(UUID.randomUUID()).build();
-        when(profileService.getOwnProfile("sender")).thenReturn(sender);
-        when(profileService.getProfile(receiver.getId())).thenReturn(receiver);
-        when(friendRequestRepository.findBySenderAndReceiver(sender, receiver))
-                .thenReturn(Optional.of(new FriendRequest()));
+        stubSender(sender);
+        when(friendRequestRepository.claim(any(), any(), any(), any())).thenReturn(Optional.empty());
+
+        assertThrows(ConflictException.class, () -> friendService.sendFriendRequest("sender", receiver.getId(), null));
+        verify(friendRequestRepository, times(3)).claim(any(), any(), any(), any());
+    }
+
+    @Test
+    void sendFriendRequest_rejectsIdempotencyKeyReusedForOtherReceiver() {
+        when(friendRequestRepository.findRequestKey("sender", "key-1"))
+                .thenReturn(Optional.of(requestKey(UUID.randomUUID(), "CREATED", UUID.randomUUID())));
 
-        assertThrows(IllegalStateException.class, () -> friendService.sendFriendRequest("sender", receiver.getId()));
+        assertThrows(IllegalArgumentException.class,
+                () -> friendService.sendFriendRequest("sender", UUID.randomUUID(), "key-1"));
+        verify(friendRequestRepository, never()).claim(any(), any(), any(), any());
+    }
+
+    @Test
+    void suggestFriends_excludesPendingRequestsAndFriendsAndDropsDeletedProfiles() {
+        UUID profileId = stubProfileId("user");
+        UUID requested = UUID.randomUUID();
+        UUID acceptedElsewhere = UUID.randomUUID();
+        FriendPreviewProjection alice = friendRow("alice", null);
+        UUID deleted = UUID.randomUUID();
+        when(friendSuggestionIndex.isReady()).thenReturn(true);
+        when(friendRequestRepository.findCounterpartIds(profileId)).thenReturn(List.of(requested));
+        when(profileRepository.findFriendIds(profileId)).thenReturn(List.of(acceptedElsewhere));
+        when(friendSuggestionIndex.suggest(profileId, Set.of(requested, acceptedElsewhere), 10)).thenReturn(List.of(
+                new FriendSuggestionIndex.Suggestion(deleted, 3, 0),
+                new FriendSuggestionIndex.Suggestion(alice.getId(), 2, 1)));
+        when(profileRepository.findPreviewsByIds(List.of(deleted, alice.getId()))).thenReturn(List.of(alice));
+
+        List<FriendSuggestionDto> result = friendService.suggestFriends("user", 10);
+
+        assertEquals(1, result.size());
+        assertEquals("alice", result.get(0).getProfile().getNickname());
+        assertEquals(2, result.get(0).getMutualFriends());
+        assertEquals(1, result.get(0).getSharedGames());
+    }
+
+    @Test
+    void suggestFriends_emptyUntilIndexLoaded() {
+        stubProfileId("user");
+
+        assertTrue(friendService.suggestFriends("user", 10).isEmpty());
+        verify(friendSuggestionIndex, never()).suggest(any(), any(), anyInt());
     }
 
     @Test
@@ -74,9 +261,8 @@ class FriendServiceTest {
         UUID requestId = UUID.randomUUID();
         String receiverUserId = "receiverUserId";
 
-        Profile sender = Profile.builder().userId("senderUserId").build();
-        Profile receiver = Profile.builder().userId(receiverUserId).friends(new HashSet<>()).build();
-        sender.setFriends(new HashSet<>());
+        Profile sender = Profile.builder().id(UUID.randomUUID()).userId("senderUserId").build();
+        Profile receiver = Profile.builder().id(UUID.randomUUID()).userId(receiverUserId).build();
 
         FriendRequest request = FriendRequest.builder().sender(sender).receiver(receiver).build();
 
@@ -85,11 +271,10 @@ class FriendServiceTest {
 
         friendService.respondToFriendRequest(receiverUserId, requestId, true);
 
-        assertTrue(receiver.getFriends().contains(sender));
-        assertTrue(sender.getFriends().contains(receiver));
-        verify(profileRepository).save(receiver);
-        verify(profileRepository).save(sender);
+        verify(profileRepository).addFriendship(sender.getId(), receiver.getId());
+        verify(profileRepository, never()).save(any());
         verify(friendRequestRepository).delete(request);
+        verify(friendSuggestionIndex).addFriendship(sender.getId(), receiver.getId());
     }
 
     @Test
@@ -109,7 +294,7 @@ class FriendServiceTest {
         friendService.respondToFriendRequest(receiverUserId, requestId, false);
 
         verify(friendRequestRepository).delete(request);
-        verify(profileRepository, never()).save(any());
+        verify(profileRepository, never()).addFriendship(any(), any());
     }
 
     @Test
@@ -154,7 +339,7 @@ class FriendServiceTest {
         String userId = "user123";
         UUID requestId = UUID.randomUUID();
         Profile senderProfile = Profile.builder().userId(userId).build();
-        FriendRequest request = FriendRequest.builder().sender(senderProfile).build();
+        FriendRequest request = FriendRequest.builder().sender(senderProfile).receiver(Profile.builder().build()).build();
 
         when(profileService.getOwnProfile(userId)).thenReturn(senderProfile);
         when(friendRequestRepository.findById(requestId)).thenReturn(Optional.of(request));
@@ -191,55 +376,409 @@ class FriendServiceTest {
     }
 
     @Test
-    void unfriend_removesBidirectionalFriendship() {
-        Profile user = Profile.builder().userId("user").build();
-        Profile friend = Profile.builder().userId("friend").build();
-        user.setFriends(new HashSet<>(List.of(friend)));
-        friend.setFriends(new HashSet<>(List.of(user)));
+    void unfriend_removesFriendshipRow() {
+        Profile user = Profile.builder().id(UUID.randomUUID()).userId("user").build();
+        Profile friend = Profile.builder().id(UUID.randomUUID()).userId("friend").build();
 
         when(profileService.getOwnProfile("user")).thenReturn(user);
         when(profileService.getProfile(friend.getId())).thenReturn(friend);
+        when(profileRepository.removeFriendship(user.getId(), friend.getId())).thenReturn(1);
 
         friendService.unfriend("user", friend.getId());
 
-        assertFalse(user.getFriends().contains(friend));
-        assertFalse(friend.getFriends().contains(user));
-        verify(profileRepository).save(user);
-        verify(profileRepository).save(friend);
+        verify(profileRepository).incrementRelationsVersion(List.of(user.getId(), friend.getId()));
+        verify(eventPublisher).publishFriendshipEvent(any());
+        verify(friendSuggestionIndex).removeFriendship(user.getId(), friend.getId());
+        verify(profileRepository, never()).save(any());
     }
 
     @Test
-    void listFriends_returnsMappedFriends() {
-        Profile friend1 = Profile.builder()
-                .id(UUID.randomUUID())
-                .nickname("Friend1")
-                .avatarUrl("url1")
-                .build();
+    void unfriend_updatesSuggestionIndexOnlyAfterCommit() {
+        Profile user = Profile.builder().id(UUID.randomUUID()).userId("user").build();
+        Profile friend = Profile.builder().id(UUID.randomUUID()).userId("friend").build();
+        when(profileService.getOwnProfile("user")).thenReturn(user);
+        when(profileService.getProfile(friend.getId())).thenReturn(friend);
+        when(profileRepository.removeFriendship(user.getId(), friend.getId())).thenReturn(1);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            friendService.unfriend("user", friend.getId());
+            verifyNoInteractions(friendSuggestionIndex);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            verify(friendSuggestionIndex).removeFriendship(user.getId(), friend.getId());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
 
-        Profile friend2 = Profile.builder()
-                .id(UUID.randomUUID())
-                .nickname("Friend2")
-                .avatarUrl("url2")
-                .build();
+    @Test
+    void unfriend_notFriendsChangesNothing() {
+        Profile user = Profile.builder().id(UUID.randomUUID()).userId("user").build();
+        Profile stranger = Profile.builder().id(UUID.randomUUID()).userId("stranger").build();
 
-        Profile userProfile = Profile.builder()
-                .userId("userId")
-                .friends(Set.of(friend1, friend2))
-                .build();
+        when(profileService.getOwnProfile("user")).thenReturn(user);
+        when(profileService.getProfile(stranger.getId())).thenReturn(stranger);
+
+        friendService.unfriend("user", stranger.getId());
+
+        verify(profileRepository, never()).incrementRelationsVersion(any());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void listFriends_pagesByNickname() {
+        UUID profileId = stubProfileId("userId");
+        when(profileRepository.findFriendPreviewsByNickname(profileId, "", 3)).thenReturn(List.of(
+                friendRow("Alpha", LocalDateTime.of(2025, 1, 3, 0, 0)),
+                friendRow("Bravo", LocalDateTime.of(2025, 1, 2, 0, 0)),
+                friendRow("Charlie", LocalDateTime.of(2025, 1, 1, 0, 0))));
+
+        FriendPageDto first = friendService.listFriends("userId", "nickname", 2, null, false);
+
+        assertEquals(List.of("Alpha", "Bravo"), first.getFriends().stream().map(ProfilePreviewDto::getNickname).toList());
+        assertNotNull(first.getNextCursor());
+        assertNull(first.getTotal());
+
+        when(profileRepository.findFriendPreviewsByNickname(profileId, "Bravo", 3)).thenReturn(List.of(
+                friendRow("Charlie", LocalDateTime.of(2025, 1, 1, 0, 0))));
+
+        FriendPageDto second = friendService.listFriends("userId", "nickname", 2, first.getNextCursor(), false);
+
+        assertEquals(List.of("Charlie"), second.getFriends().stream().map(ProfilePreviewDto::getNickname).toList());
+        assertNull(second.getNextCursor());
+        verify(profileService, never()).getOwnProfile(any());
+    }
 
-        when(profileService.getOwnProfile("userId")).thenReturn(userProfile);
+    @Test
+    void listFriends_pagesBySinceFromLastRow() {
+        UUID profileId = stubProfileId("userId");
+        FriendPreviewProjection newest = friendRow("Newest", LocalDateTime.of(2025, 1, 2, 12, 30, 15, 123456000));
+        FriendPreviewProjection older = friendRow("Older", LocalDateTime.of(2025, 1, 1, 0, 0));
+        when(profileRepository.findFriendPreviewsBySince(profileId, 2)).thenReturn(List.of(newest, older));
+
+        FriendPageDto first = friendService.listFriends("userId", "since", 1, null, false);
+
+        assertEquals(List.of("Newest"), first.getFriends().stream().map(ProfilePreviewDto::getNickname).toList());
+        when(profileRepository.findFriendPreviewsBySinceBefore(profileId, newest.getSince(), newest.getId(), 2))
+                .thenReturn(List.of(older));
 
-        List<Profile> result = friendService.listFriends("userId");
+        FriendPageDto second = friendService.listFriends("userId", "since", 1, first.getNextCursor(), false);
 
-        assertEquals(2, result.size());
-        assertTrue(result.stream().anyMatch(f -> f.getNickname().equals("Friend1")));
-        assertTrue(result.stream().anyMatch(f -> f.getNickname().equals("Friend2")));
+        assertEquals(List.of("Older"), second.getFriends().stream().map(ProfilePreviewDto::getNickname).toList());
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    void listFriends_countsOnlyWhenAsked() {
+        UUID profileId = stubProfileId("userId");
+        when(profileRepository.findFriendPreviewsByNickname(profileId, "", 51)).thenReturn(List.of());
+        when(profileRepository.countFriends(profileId)).thenReturn(7L);
+
+        assertEquals(7L, friendService.listFriends("userId", "nickname", 50, null, true).getTotal());
+        assertNull(friendService.listFriends("userId", "nickname", 50, null, false).getTotal());
+        verify(profileRepository, times(1)).countFriends(profileId);
+    }
+
+    @Test
+    void listFriends_clampsLimit() {
+        UUID profileId = stubProfileId("userId");
+
+        friendService.listFriends("userId", "nickname", 10_000, null, false);
+
+        verify(profileRepository).findFriendPreviewsByNickname(profileId, "", 101);
+    }
+
+    @Test
+    void listFriends_rejectsCursorOfOtherSort() {
+        UUID profileId = stubProfileId("userId");
+        when(profileRepository.findFriendPreviewsByNickname(profileId, "", 2)).thenReturn(List.of(
+                friendRow("Alpha", LocalDateTime.of(2025, 1, 1, 0, 0)),
+                friendRow("Bravo", LocalDateTime.of(2025, 1, 1, 0, 0))));
+        String cursor = friendService.listFriends("userId", "nickname", 1, null, false).getNextCursor();
+
+        assertThrows(IllegalArgumentException.class, () -> friendService.listFriends("userId", "since", 1, cursor, false));
+        assertThrows(IllegalArgumentException.class, () -> friendService.listFriends("userId", "nickname", 1, "%%%", false));
+        assertThrows(IllegalArgumentException.class, () -> friendService.listFriends("userId", "age", 1, null, false));
     }
 
     @Test
     void listFriends_throwsIfProfileNotFound() {
-        when(profileService.getOwnProfile("userId")).thenThrow(new EntityNotFoundException());
+        when(profileRepository.findVersionByUserId("userId")).thenReturn(Optional.empty());
+
+        assertThrows(EntityNotFoundException.class, () -> friendService.listFriends("userId", "nickname", 50, null, false));
+    }
+
+    @Test
+    void getRelationshipStatuses_mapsRowsAndDefaultsToStranger() {
+        UUID profileId = stubProfileId("user");
+        UUID friend = UUID.randomUUID();
+        UUID sent = UUID.randomUUID();
+        UUID received = UUID.randomUUID();
+        UUID stranger = UUID.randomUUID();
+        List<UUID> ids = List.of(friend, sent, received, stranger, friend);
+        UUID sentRequest = UUID.randomUUID();
+        UUID receivedRequest = UUID.randomUUID();
+        when(profileRepository.findRelationships(eq(profileId), any())).thenReturn(List.of(
+                relationship(friend, "FRIEND", null),
+                relationship(sent, "PENDING_SENT", sentRequest),
+                relationship(received, "PENDING_RECEIVED", receivedRequest)));
+
+        Map<UUID, RelationshipDto> statuses = friendService.getRelationshipStatuses("user", ids);
+
+        assertEquals(List.of(friend, sent, received, stranger), List.copyOf(statuses.keySet()));
+        assertEquals(new RelationshipDto(RelationshipStatus.FRIEND, null), statuses.get(friend));
+        assertEquals(new RelationshipDto(RelationshipStatus.PENDING_SENT, sentRequest), statuses.get(sent));
+        assertEquals(new RelationshipDto(RelationshipStatus.PENDING_RECEIVED, receivedRequest), statuses.get(received));
+        assertEquals(new RelationshipDto(RelationshipStatus.STRANGER, null), statuses.get(stranger));
+        verify(profileRepository, times(1)).findRelationships(eq(profileId), any());
+    }
+
+    @Test
+    void getRelationshipStatuses_friendWinsOverLeftoverRequest() {
+        UUID profileId = stubProfileId("user");
+        UUID other = UUID.randomUUID();
+        when(profileRepository.findRelationships(eq(profileId), any())).thenReturn(List.of(
+                relationship(other, "PENDING_RECEIVED", UUID.randomUUID()),
+                relationship(other, "FRIEND", null)));
+
+        assertEquals(RelationshipStatus.FRIEND, friendService.getRelationshipStatuses("user", List.of(other)).get(other).getStatus());
+    }
+
+    @Test
+    void getRelationshipStatuses_emptyInputSkipsDatabase() {
+        assertTrue(friendService.getRelationshipStatuses("user", List.of()).isEmpty());
+        assertTrue(friendService.getRelationshipStatuses("user", null).isEmpty());
+        verifyNoInteractions(profileRepository);
+    }
+
+    @Test
+    void getRelationshipStatuses_rejectsTooManyIds() {
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 501; i++) ids.add(UUID.randomUUID());
+
+        assertThrows(IllegalArgumentException.class, () -> friendService.getRelationshipStatuses("user", ids));
+        verifyNoInteractions(profileRepository);
+    }
+
+    @Test
+    void listReceivedRequests_pagesNewestFirstWithSenderPreview() {
+        UUID profileId = stubProfileId("user");
+        FriendRequestPreviewProjection newest = requestRow("Newest", LocalDateTime.of(2025, 3, 2, 10, 0));
+        FriendRequestPreviewProjection older = requestRow("Older", LocalDateTime.of(2025, 3, 1, 10, 0));
+        when(friendRequestRepository.findReceivedPreviews(eq(profileId), any(), any(), eq(2))).thenReturn(List.of(newest, older));
+
+        FriendRequestPageDto first = friendService.listReceivedRequests("user", 1, null);
+
+        assertEquals(1, first.getRequests().size());
+        FriendRequestDto request = first.getRequests().getFirst();
+        assertEquals(newest.getId(), request.getId());
+        assertEquals("Newest", request.getSender().getNickname());
+        assertEquals(newest.getProfileId(), request.getSender().getId());
+        assertNull(request.getReceiver());
+        assertNotNull(first.getNextCursor());
+
+        when(friendRequestRepository.findReceivedPreviews(profileId, newest.getCreatedAt(), newest.getId(), 2))
+                .thenReturn(List.of(older));
+
+        FriendRequestPageDto second = friendService.listReceivedRequests("user", 1, first.getNextCursor());
+
+        assertEquals("Older", second.getRequests().getFirst().getSender().getNickname());
+        assertNull(second.getNextCursor());
+        verify(profileService, never()).getOwnProfile(any());
+    }
+
+    @Test
+    void listSentRequests_fillsReceiverPreview() {
+        UUID profileId = stubProfileId("user");
+        FriendRequestPreviewProjection row = requestRow("Target", LocalDateTime.of(2025, 3, 1, 10, 0));
+        when(friendRequestRepository.findSentPreviews(eq(profileId), any(), any(), eq(21))).thenReturn(List.of(row));
+
+        FriendRequestPageDto page = friendService.listSentRequests("user", 20, null);
+
+        FriendRequestDto request = page.getRequests().getFirst();
+        assertEquals("Target", request.getReceiver().getNickname());
+        assertNull(request.getSender());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void listReceivedRequests_rejectsForeignCursor() {
+        UUID profileId = stubProfileId("user");
+        when(profileRepository.findFriendPreviewsByNickname(profileId, "", 2)).thenReturn(List.of(
+                friendRow("Alpha", LocalDateTime.of(2025, 1, 1, 0, 0)),
+                friendRow("Bravo", LocalDateTime.of(2025, 1, 1, 0, 0))));
+        String friendCursor = friendService.listFriends("user", "nickname", 1, null, false).getNextCursor();
+
+        assertThrows(IllegalArgumentException.class, () -> friendService.listReceivedRequests("user", 20, friendCursor));
+    }
+
+    @Test
+    void countUnreadRequests_usesOwnProfileId() {
+        UUID profileId = stubProfileId("user");
+        when(friendRequestRepository.countUnread(profileId)).thenReturn(3L);
+
+        assertEquals(3L, friendService.countUnreadRequests("user"));
+    }
+
+    @Test
+    void markRequestsSeen_updatesOwnProfile() {
+        UUID profileId = stubProfileId("user");
+
+        friendService.markRequestsSeen("user");
+
+        verify(profileRepository).markFriendRequestsSeen(eq(profileId), any());
+    }
+
+    @Test
+    void getFriendsETag_changesWithRelationsVersion() {
+        UUID id = UUID.randomUUID();
+        ProfileVersionProjection v1 = mock(ProfileVersionProjection.class);
+        when(v1.getId()).thenReturn(id);
+        when(v1.getRelationsVersion()).thenReturn(1L);
+        ProfileVersionProjection v2 = mock(ProfileVersionProjection.class);
+        when(v2.getId()).thenReturn(id);
+        when(v2.getRelationsVersion()).thenReturn(2L);
+        when(profileRepository.findVersionByUserId("user")).thenReturn(Optional.of(v1)).thenReturn(Optional.of(v2));
+
+        String first = friendService.getFriendsETag("user");
+        String second = friendService.getFriendsETag("user");
+
+        assertTrue(first.startsWith("\"") && first.endsWith("\""));
+        assertNotEquals(first, second);
+    }
+
+    @Test
+    void getFriendsETag_profileNotFound() {
+        when(profileRepository.findVersionByUserId("missing")).thenReturn(Optional.empty());
+
+        assertThrows(EntityNotFoundException.class, () -> friendService.getFriendsETag("missing"));
+    }
+
+    private UUID stubProfileId(String userId) {
+        UUID id = UUID.randomUUID();
+        ProfileVersionProjection version = mock(ProfileVersionProjection.class);
+        when(version.getId()).thenReturn(id);
+        when(profileRepository.findVersionByUserId(userId)).thenReturn(Optional.of(version));
+        return id;
+    }
+
+    private static FriendPreviewProjection friendRow(String nickname, LocalDateTime since) {
+        UUID id = UUID.randomUUID();
+        return new FriendPreviewProjection() {
+            @Override
+            public LocalDateTime getSince() {
+                return since;
+            }
+
+            @Override
+            public UUID getId() {
+                return id;
+            }
+
+            @Override
+            public String getNickname() {
+                return nickname;
+            }
+
+            @Override
+            public String getAvatarUrl() {
+                return null;
+            }
+        };
+    }
+
+    private static RelationshipProjection relationship(UUID profileId, String status, UUID requestId) {
+        return new RelationshipProjection() {
+            @Override
+            public UUID getProfileId() {
+                return profileId;
+            }
+
+            @Override
+            public String getStatus() {
+                return status;
+            }
+
+            @Override
+            public UUID getRequestId() {
+                return requestId;
+            }
+        };
+    }
+
+    private static FriendRequestPreviewProjection requestRow(String nickname, LocalDateTime createdAt) {
+        UUID id = UUID.randomUUID();
+        UUID profileId = UUID.randomUUID();
+        return new FriendRequestPreviewProjection() {
+            @Override
+            public UUID getId() {
+                return id;
+            }
+
+            @Override
+            public LocalDateTime getCreatedAt() {
+                return createdAt;
+            }
+
+            @Override
+            public UUID getProfileId() {
+                return profileId;
+            }
+
+            @Override
+            public String getNickname() {
+                return nickname;
+            }
+
+            @Override
+            public String getAvatarUrl() {
+                return null;
+            }
+        };
+    }
+
+    private void stubSender(Profile sender) {
+        ProfileVersionProjection version = mock(ProfileVersionProjection.class);
+        when(version.getId()).thenReturn(sender.getId());
+        when(profileRepository.findVersionByUserId(sender.getUserId())).thenReturn(Optional.of(version));
+    }
+
+    private static FriendRequestClaimProjection claim(String outcome, UUID requestId, UUID senderId) {
+        return new FriendRequestClaimProjection() {
+            @Override
+            public String getOutcome() {
+                return outcome;
+            }
+
+            @Override
+            public UUID getRequestId() {
+                return requestId;
+            }
+
+            @Override
+            public UUID getSenderId() {
+                return senderId;
+            }
+        };
+    }
 
-        assertThrows(EntityNotFoundException.class, () -> friendService.listFriends("userId"));
+    private static FriendRequestKeyProjection requestKey(UUID receiverId, String outcome, UUID requestId) {
+        return new FriendRequestKeyProjection() {
+            @Override
+            public UUID getReceiverId() {
+                return receiverId;
+            }
+
+            @Override
+            public String getOutcome() {
+                return outcome;
+            }
+
+            @Override
+            public UUID getRequestId() {
+                return requestId;
+            }
+        };
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,188 @@
+package nl.fhict.gamemate.userservice;
+
+import nl.fhict.gamemate.userservice.service.FriendSuggestionIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FriendSuggestionIndexTest {
+    private final UUID me = UUID.randomUUID();
+    private final UUID alice = UUID.randomUUID();
+    private final UUID bob = UUID.randomUUID();
+    private final UUID carol = UUID.randomUUID();
+    private final UUID dave = UUID.randomUUID();
+    private final UUID erin = UUID.randomUUID();
+    private final UUID chess = UUID.randomUUID();
+    private final UUID go = UUID.randomUUID();
+
+    private JdbcTemplate jdbcTemplate;
+    private FriendSuggestionIndex index;
+    private final List<UUID[]> friendships = new ArrayList<>();
+    private final List<UUID[]> games = new ArrayList<>();
+    private Runnable whileReading = () -> {};
+
+    @BeforeEach
+    void setUp() throws Exception {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        index = new FriendSuggestionIndex(jdbcTemplate, 0.5);
+        doAnswer(inv -> {
+            whileReading.run();
+            return stream(friendships, inv.getArgument(1));
+        }).when(jdbcTemplate).query(contains("friendships"), any(RowCallbackHandler.class));
+        doAnswer(inv -> stream(games, inv.getArgument(1)))
+                .when(jdbcTemplate).query(contains("game_profiles"), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    void load_ranksFriendsOfFriendsByMutualFriends() {
+        friend(me, alice);
+        friend(me, bob);
+        friend(alice, carol);
+        friend(bob, carol);
+        friend(alice, dave);
+
+        index.load();
+
+        assertTrue(index.isReady());
+        assertEquals(List.of(
+                new FriendSuggestionIndex.Suggestion(carol, 2, 0),
+                new FriendSuggestionIndex.Suggestion(dave, 1, 0)
+        ), index.suggest(me, List.of(), 10));
+    }
+
+    @Test
+    void suggest_breaksTiesWithSharedGames() {
+        friend(me, alice);
+        friend(alice, carol);
+        friend(alice, dave);
+        plays(me, chess);
+        plays(me, go);
+        plays(dave, chess);
+        plays(dave, go);
+        plays(carol, go);
+
+        index.load();
+
+        assertEquals(List.of(
+                new FriendSuggestionIndex.Suggestion(dave, 1, 2),
+                new FriendSuggestionIndex.Suggestion(carol, 1, 1)
+        ), index.suggest(me, List.of(), 10));
+    }
+
+    @Test
+    void suggest_skipsFriendsSelfAndExcludedProfiles() {
+        friend(me, alice);
+        friend(me, bob);
+        friend(alice, bob);
+        friend(alice, carol);
+        friend(alice, dave);
+
+        index.load();
+
+        List<UUID> suggested = ids(index.suggest(me, List.of(dave), 10));
+        assertEquals(List.of(carol), suggested);
+    }
+
+    @Test
+    void suggest_respectsLimit() {
+        friend(me, alice);
+        friend(alice, bob);
+        friend(alice, carol);
+        friend(alice, dave);
+
+        index.load();
+
+        assertEquals(2, index.suggest(me, List.of(), 2).size());
+        assertTrue(index.suggest(me, List.of(), 0).isEmpty());
+        assertTrue(index.suggest(UUID.randomUUID(), List.of(), 5).isEmpty());
+    }
+
+    @Test
+    void addFriendship_appliesOnTopOfLoadedGraph() {
+        friend(me, alice);
+        friend(alice, carol);
+        index.load();
+
+        index.addFriendship(me, bob);
+        index.addFriendship(bob, erin);
+        index.addFriendship(erin, dave);
+
+        assertEquals(List.of(carol, erin), ids(index.suggest(me, List.of(), 10)));
+        assertEquals(List.of(bob), ids(index.suggest(dave, List.of(), 10)));
+    }
+
+    @Test
+    void removeFriendship_hidesLoadedEdge() {
+        friend(me, alice);
+        friend(alice, carol);
+        index.load();
+
+        index.removeFriendship(alice, carol);
+
+        assertTrue(index.suggest(me, List.of(), 10).isEmpty());
+
+        index.addFriendship(carol, alice);
+
+        assertEquals(List.of(carol), ids(index.suggest(me, List.of(), 10)));
+    }
+
+    @Test
+    void removeProfile_dropsAllItsFriendships() {
+        friend(me, alice);
+        friend(me, bob);
+        friend(alice, carol);
+        friend(bob, carol);
+        index.load();
+
+        index.removeProfile(alice);
+
+        assertEquals(List.of(new FriendSuggestionIndex.Suggestion(carol, 1, 0)), index.suggest(me, List.of(), 10));
+    }
+
+    @Test
+    void load_keepsChangesMadeWhileLoading() {
+        friend(me, alice);
+        friend(alice, carol);
+        // Lands while the rows are being read, so only the replay brings it into the new graph.
+        whileReading = () -> index.addFriendship(alice, dave);
+
+        index.load();
+
+        assertEquals(List.of(carol, dave), ids(index.suggest(me, List.of(), 10)));
+    }
+
+    private void friend(UUID a, UUID b) {
+        friendships.add(new UUID[]{a, b});
+    }
+
+    private void plays(UUID profile, UUID game) {
+        games.add(new UUID[]{profile, game});
+    }
+
+    private static Void stream(List<UUID[]> rows, RowCallbackHandler handler) throws Exception {
+        for (UUID[] row : rows) {
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getObject(1, UUID.class)).thenReturn(row[0]);
+            when(rs.getObject(2, UUID.class)).thenReturn(row[1]);
+            handler.processRow(rs);
+        }
+        return null;
+    }
+
+    private static List<UUID> ids(List<FriendSuggestionIndex.Suggestion> suggestions) {
+        return suggestions.stream().map(FriendSuggestionIndex.Suggestion::profileId).toList();
+    }
+}
@@ -0,0 +1,230 @@
+package nl.fhict.gamemate.userservice;
+
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.DeletedObject;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+
+/**
+ * In-process stand-in for the handful of S3 calls the user service makes. Objects live in a sorted map keyed by
+ * {@code bucket/key}; anything not implemented falls through to the SDK default and throws.
+ * {@link #async()} exposes the same objects through {@link S3AsyncClient}.
+ */
+public class InMemoryS3Client implements S3Client {
+    public record StoredObject(byte[] bytes, String contentType, String cacheControl, Instant lastModified) {}
+
+    private final NavigableMap<String, StoredObject> objects = new ConcurrentSkipListMap<>();
+    private final Async async = new Async();
+
+    public S3AsyncClient async() {
+        return async;
+    }
+
+    public Map<String, StoredObject> objects(String bucket) {
+        String prefix = bucket + "/";
+        return objects.subMap(prefix, prefix + Character.MAX_VALUE).entrySet().stream()
+                .collect(Collectors.toMap(e -> e.getKey().substring(prefix.length()), Map.Entry::getValue));
+    }
+
+    public void put(String bucket, String key, byte[] bytes, String contentType) {
+        objects.put(bucket + "/" + key, new StoredObject(bytes, contentType, null, Instant.now()));
+    }
+
+    /**
+     * Backdates an object, e.g. to make it older than a grace period.
+     */
+    public void age(String bucket, String key, Instant lastModified) {
+        objects.computeIfPresent(bucket + "/" + key, (k, object) ->
+                new StoredObject(object.bytes(), object.contentType(), object.cacheControl(), lastModified));
+    }
+
+    @Override
+    public PutObjectResponse putObject(PutObjectRequest request, RequestBody body) {
+        try (InputStream input = body.contentStreamProvider().newStream()) {
+            objects.put(request.bucket() + "/" + request.key(),
+                    new StoredObject(input.readAllBytes(), request.contentType(), request.cacheControl(), Instant.now()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return PutObjectResponse.builder().build();
+    }
+
+    @Override
+    public HeadObjectResponse headObject(HeadObjectRequest request) {
+        StoredObject object = find(request.bucket(), request.key());
+        return HeadObjectResponse.builder()
+                .contentType(object.contentType())
+                .contentLength((long) object.bytes().length)
+                .cacheControl(object.cacheControl())
+                .build();
+    }
+
+    @Override
+    public ResponseInputStream<GetObjectResponse> getObject(GetObjectRequest request) {
+        StoredObject object = find(request.bucket(), request.key());
+        return new ResponseInputStream<>(GetObjectResponse.builder()
+                .contentType(object.contentType())
+                .contentLength((long) object.bytes().length)
+                .build(), AbortableInputStream.create(new ByteArrayInputStream(object.bytes())));
+    }
+
+    @Override
+    public ResponseBytes<GetObjectResponse> getObjectAsBytes(GetObjectRequest request) {
+        StoredObject object = find(request.bucket(), request.key());
+        return ResponseBytes.fromByteArray(GetObjectResponse.builder()
+                .contentType(object.contentType())
+                .contentLength((long) object.bytes().length)
+                .build(), object.bytes());
+    }
+
+    @Override
+    public DeleteObjectResponse deleteObject(DeleteObjectRequest request) {
+        objects.remove(request.bucket() + "/" + request.key());
+        return DeleteObjectResponse.builder().build();
+    }
+
+    @Override
+    public DeleteObjectsResponse deleteObjects(DeleteObjectsRequest request) {
+        List<DeletedObject> deleted = request.delete().objects().stream()
+                .map(id -> {
+                    objects.remove(request.bucket() + "/" + id.key());
+                    return DeletedObject.builder().key(id.key()).build();
+                })
+                .toList();
+        return DeleteObjectsResponse.builder().deleted(deleted).build();
+    }
+
+    /**
+     * Pages through keys in order; the continuation token is the last key returned.
+     */
+    @Override
+    public ListObjectsV2Response listObjectsV2(ListObjectsV2Request request) {
+        String bucketPrefix = request.bucket() + "/";
+        String from = bucketPrefix + (request.continuationToken() != null ? request.continuationToken()
+                : request.prefix() != null ? request.prefix() : "");
+        boolean inclusive = request.continuationToken() == null;
+        int limit = request.maxKeys() != null ? request.maxKeys() : 1000;
+        List<S3Object> contents = new ArrayList<>();
+        boolean truncated = false;
+        for (Map.Entry<String, StoredObject> entry : objects.tailMap(from, inclusive).entrySet()) {
+            String key = entry.getKey().substring(bucketPrefix.length());
+            if (!entry.getKey().startsWith(bucketPrefix) || request.prefix() != null && !key.startsWith(request.prefix())) break;
+            if (contents.size() == limit) {
+                truncated = true;
+                break;
+            }
+            contents.add(S3Object.builder()
+                    .key(key)
+                    .size((long) entry.getValue().bytes().length)
+                    .lastModified(entry.getValue().lastModified())
+                    .build());
+        }
+        return ListObjectsV2Response.builder()
+                .contents(contents)
+                .isTruncated(truncated)
+                .nextContinuationToken(truncated ? contents.get(contents.size() - 1).key() : null)
+                .build();
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+        objects.clear();
+    }
+
+    private final class Async implements S3AsyncClient {
+        @Override
+        public CompletableFuture<PutObjectResponse> putObject(PutObjectRequest request, AsyncRequestBody body) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            return body.subscribe(buffer -> {
+                byte[] chunk = new byte[buffer.remaining()];
+                buffer.get(chunk);
+                bytes.writeBytes(chunk);
+            }).thenApply(done -> {
+                objects.put(request.bucket() + "/" + request.key(),
+                        new StoredObject(bytes.toByteArray(), request.contentType(), request.cacheControl(), Instant.now()));
+                return PutObjectResponse.builder().build();
+            });
+        }
+
+        @Override
+        public CompletableFuture<HeadObjectResponse> headObject(HeadObjectRequest request) {
+            return CompletableFuture.supplyAsync(() -> InMemoryS3Client.this.headObject(request));
+        }
+
+        @Override
+        public <T> CompletableFuture<T> getObject(GetObjectRequest request,
+                                                  AsyncResponseTransformer<GetObjectResponse, T> transformer) {
+            StoredObject object;
+            try {
+                object = find(request.bucket(), request.key());
+            } catch (NoSuchKeyException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+            CompletableFuture<T> result = transformer.prepare();
+            transformer.onResponse(GetObjectResponse.builder()
+                    .contentType(object.contentType())
+                    .contentLength((long) object.bytes().length)
+                    .build());
+            transformer.onStream(AsyncRequestBody.fromBytes(object.bytes()));
+            return result;
+        }
+
+        @Override
+        public CompletableFuture<DeleteObjectResponse> deleteObject(DeleteObjectRequest request) {
+            return CompletableFuture.completedFuture(InMemoryS3Client.this.deleteObject(request));
+        }
+
+        @Override
+        public String serviceName() {
+            return SERVICE_NAME;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private StoredObject find(String bucket, String key) {
+        StoredObject object = objects.get(bucket + "/" + key);
+        if (object == null) throw NoSuchKeyException.builder().message("No such key: " + key).statusCode(404).build();
+        return object;
+    }
+}
@@ -0,0 +1,181 @@
+package nl.fhict.gamemate.userservice;
+
+import nl.fhict.gamemate.userservice.event.NicknameChangedEvent;
+import nl.fhict.gamemate.userservice.repository.ProfileRepository;
+import nl.fhict.gamemate.userservice.service.EventPublisher;
+import nl.fhict.gamemate.userservice.service.NicknameIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NicknameIndexTest {
+    private ProfileRepository profileRepository;
+    private EventPublisher eventPublisher;
+    private MutableClock clock;
+    private NicknameIndex index;
+
+    @BeforeEach
+    void setUp() {
+        profileRepository = mock(ProfileRepository.class);
+        eventPublisher = mock(EventPublisher.class);
+        clock = new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+        index = new NicknameIndex(profileRepository, eventPublisher, 100, 0.01, Duration.ofSeconds(30), clock);
+    }
+
+    @Test
+    void lookup_isUnknownUntilLoaded() {
+        assertFalse(index.isReady());
+        assertEquals(NicknameIndex.Answer.UNKNOWN, index.lookup("anyone"));
+    }
+
+    @Test
+    void lookup_answersFromIndexCaseInsensitively() {
+        when(profileRepository.findAllNicknames()).thenReturn(List.of("GamerNick", "other_one"));
+        index.load();
+
+        assertTrue(index.isReady());
+        assertEquals(NicknameIndex.Answer.TAKEN, index.lookup("gamernick"));
+        assertEquals(NicknameIndex.Answer.TAKEN, index.lookup("OTHER_ONE"));
+        assertEquals(NicknameIndex.Answer.FREE, index.lookup("FreshName"));
+    }
+
+    @Test
+    void addAndRemove_keepIndexCurrent() {
+        when(profileRepository.findAllNicknames()).thenReturn(List.of("OldNick"));
+        index.load();
+
+        index.remove("OldNick");
+        index.add("NewNick");
+
+        assertNotEquals(NicknameIndex.Answer.TAKEN, index.lookup("oldnick"));
+        assertEquals(NicknameIndex.Answer.TAKEN, index.lookup("newnick"));
+    }
+
+    @Test
+    void publishChange_appliesLocallyAndBroadcasts() {
+        when(profileRepository.findAllNicknames()).thenReturn(List.of("OldNick"));
+        index.load();
+
+        UUID profileId = UUID.randomUUID();
+        index.publishChange("NewNick", "OldNick", profileId);
+
+        assertEquals(NicknameIndex.Answer.TAKEN, index.lookup("newnick"));
+        assertNotEquals(NicknameIndex.Answer.TAKEN, index.lookup("oldnick"));
+        verify(eventPublisher).publishNicknameChange(argThat(e -> "NewNick".equals(e.getAdded()) && "OldNick".equals(e.getRemoved())
+                && profileId.equals(e.getProfileId())));
+    }
+
+    @Test
+    void onRemoteChange_appliesOtherInstancesChanges() {
+        when(profileRepository.findAllNicknames()).thenReturn(List.of("OldNick"));
+        index.load();
+
+        index.onRemoteChange(NicknameChangedEvent.builder()
+                .originInstanceId("other-instance")
+                .added("RemoteNick")
+                .removed("OldNick")
+                .build());
+
+        assertEquals(NicknameIndex.Answer.TAKEN, index.lookup("remotenick"));
+        assertNotEquals(NicknameIndex.Answer.TAKEN, index.lookup("oldnick"));
+    }
+
+    @Test
+    void load_keepsChangesMadeWhileReading() {
+        when(profileRepository.findAllNicknames()).thenAnswer(invocation -> {
+            index.add("AddedMeanwhile");
+            index.remove("RemovedMeanwhile");
+            return List.of("Existing", "RemovedMeanwhile");
+        });
+
+        index.load();
+
+        assertEquals(NicknameIndex.Answer.TAKEN, index.lookup("existing"));
+        assertEquals(NicknameIndex.Answer.TAKEN, index.lookup("addedmeanwhile"));
+        assertNotEquals(NicknameIndex.Answer.TAKEN, index.lookup("removedmeanwhile"));
+    }
+
+    @Test
+    void add_growsBeyondExpectedInsertions() {
+        when(profileRepository.findAllNicknames()).thenReturn(List.of());
+        index.load();
+
+        IntStream.range(0, 500).forEach(i -> index.add("player" + i));
+
+        IntStream.range(0, 500).forEach(i ->
+                assertEquals(NicknameIndex.Answer.TAKEN, index.lookup("PLAYER" + i)));
+    }
+
+    @Test
+    void reserve_blocksOtherOwnersUntilReleased() {
+        assertTrue(index.reserve("Nick", "user-a"));
+        assertFalse(index.reserve("nick", "user-b"));
+        assertTrue(index.reserve("NICK", "user-a"));
+        assertEquals(NicknameIndex.Answer.TAKEN, index.lookup("nick"));
+
+        index.release("nick", "user-b");
+        assertFalse(index.reserve("nick", "user-b"));
+
+        index.release("nick", "user-a");
+        assertTrue(index.reserve("nick", "user-b"));
+    }
+
+    @Test
+    void reserve_expiresAfterTtl() {
+        assertTrue(index.reserve("Nick", "user-a"));
+
+        clock.advance(Duration.ofSeconds(31));
+
+        assertEquals(NicknameIndex.Answer.UNKNOWN, index.lookup("nick"));
+        assertTrue(index.reserve("nick", "user-b"));
+    }
+
+    @Test
+    void load_keepsIndexNotReadyWhenRepositoryFails() {
+        when(profileRepository.findAllNicknames()).thenThrow(new RuntimeException("DB down"));
+
+        index.load();
+
+        assertFalse(index.isReady());
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
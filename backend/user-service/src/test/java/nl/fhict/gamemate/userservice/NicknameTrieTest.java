@@ -0,0 +1,160 @@
+package nl.fhict.gamemate.userservice;
+
+import nl.fhict.gamemate.userservice.event.NicknameChangedEvent;
+import nl.fhict.gamemate.userservice.repository.ProfileRepository;
+import nl.fhict.gamemate.userservice.repository.projection.NicknameEntryProjection;
+import nl.fhict.gamemate.userservice.service.NicknameTrie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NicknameTrieTest {
+    private ProfileRepository profileRepository;
+    private NicknameTrie trie;
+
+    @BeforeEach
+    void setUp() {
+        profileRepository = mock(ProfileRepository.class);
+        trie = new NicknameTrie(profileRepository);
+    }
+
+    @Test
+    void load_indexesAllNicknames() {
+        UUID id = UUID.randomUUID();
+        when(profileRepository.findAllNicknameEntries()).thenReturn(List.of(entry(id, "GamerNick")));
+
+        trie.load();
+
+        assertTrue(trie.isReady());
+        assertEquals(1, trie.size());
+        assertEquals(List.of(new NicknameTrie.Match("GamerNick", id)), trie.complete("GAMER", 10, null));
+    }
+
+    @Test
+    void complete_returnsMatchesInLexicographicOrder() {
+        List.of("bob", "alice", "al", "alfred", "alice_2").forEach(n -> trie.put(n, UUID.randomUUID()));
+
+        List<String> result = names(trie.complete("al", 10, null));
+
+        assertEquals(List.of("al", "alfred", "alice", "alice_2"), result);
+    }
+
+    @Test
+    void complete_respectsLimitAndContinuesAfterCursor() {
+        IntStream.range(0, 25).forEach(i -> trie.put(String.format("player%02d", i), UUID.randomUUID()));
+
+        List<String> all = new ArrayList<>();
+        String after = null;
+        List<NicknameTrie.Match> page;
+        do {
+            page = trie.complete("player", 10, after);
+            page.forEach(m -> all.add(m.nickname()));
+            after = page.isEmpty() ? null : page.get(page.size() - 1).nickname();
+        } while (page.size() == 10);
+
+        assertEquals(25, all.size());
+        assertEquals("player00", all.get(0));
+        assertEquals("player24", all.get(24));
+        assertEquals(all.stream().sorted().toList(), all);
+    }
+
+    @Test
+    void remove_dropsEntryAndPrunesEmptyBranches() {
+        trie.put("alpha", UUID.randomUUID());
+        trie.put("alp", UUID.randomUUID());
+
+        trie.remove("ALPHA");
+
+        assertEquals(List.of("alp"), names(trie.complete("al", 10, null)));
+        assertTrue(trie.complete("alph", 10, null).isEmpty());
+        assertEquals(1, trie.size());
+    }
+
+    @Test
+    void put_replacesIdForExistingNickname() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        trie.put("nick", first);
+        trie.put("Nick", second);
+
+        assertEquals(1, trie.size());
+        assertEquals(new NicknameTrie.Match("Nick", second), trie.complete("nick", 1, null).get(0));
+    }
+
+    @Test
+    void complete_keepsOriginalCasingAndPagesCaseInsensitively() {
+        List.of("JohnDoe", "johnny", "JOHN_X").forEach(n -> trie.put(n, UUID.randomUUID()));
+
+        assertEquals(List.of("JOHN_X", "JohnDoe"), names(trie.complete("john", 2, null)));
+        assertEquals(List.of("johnny"), names(trie.complete("JOHN", 2, "JohnDoe")));
+    }
+
+    @Test
+    void load_keepsChangesMadeWhileReading() {
+        UUID loadedId = UUID.randomUUID();
+        UUID addedId = UUID.randomUUID();
+        when(profileRepository.findAllNicknameEntries()).thenAnswer(inv -> {
+            // Committed while the rows are being read, so only the replay brings them into the new trie.
+            trie.put("Newcomer", addedId);
+            trie.remove("Leaving");
+            return List.of(entry(loadedId, "Leaving"), entry(UUID.randomUUID(), "Stays"));
+        });
+
+        trie.load();
+
+        assertEquals(2, trie.size());
+        assertEquals(List.of(new NicknameTrie.Match("Newcomer", addedId)), trie.complete("new", 10, null));
+        assertTrue(trie.complete("leav", 10, null).isEmpty());
+    }
+
+    @Test
+    void onRemoteChange_appliesRenameFromOtherInstance() {
+        UUID id = UUID.randomUUID();
+        trie.put("OldNick", id);
+
+        trie.onRemoteChange(NicknameChangedEvent.builder()
+                .originInstanceId("other-instance")
+                .added("NewNick")
+                .removed("OldNick")
+                .profileId(id)
+                .build());
+
+        assertTrue(trie.complete("old", 10, null).isEmpty());
+        assertEquals(List.of(new NicknameTrie.Match("NewNick", id)), trie.complete("new", 10, null));
+    }
+
+    @Test
+    void complete_returnsEmptyForUnknownPrefix() {
+        trie.put("alpha", UUID.randomUUID());
+
+        assertTrue(trie.complete("zz", 10, null).isEmpty());
+    }
+
+    private static List<String> names(List<NicknameTrie.Match> matches) {
+        return matches.stream().map(NicknameTrie.Match::nickname).toList();
+    }
+
+    private static NicknameEntryProjection entry(UUID id, String nickname) {
+        return new NicknameEntryProjection() {
+            @Override
+            public UUID getId() {
+                return id;
+            }
+
+            @Override
+            public String getNickname() {
+                return nickname;
+            }
+        };
+    }
+}
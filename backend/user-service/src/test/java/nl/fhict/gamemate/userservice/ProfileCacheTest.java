@@ -0,0 +1,172 @@
+package nl.fhict.gamemate.userservice;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.fhict.gamemate.userservice.dto.ProfileDto;
+import nl.fhict.gamemate.userservice.dto.ProfilePreviewDto;
+import nl.fhict.gamemate.userservice.event.ProfileCacheInvalidationEvent;
+import nl.fhict.gamemate.userservice.service.EventPublisher;
+import nl.fhict.gamemate.userservice.service.ProfileCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProfileCacheTest {
+    private EventPublisher eventPublisher;
+    private SimpleMeterRegistry meterRegistry;
+    private ProfileCache cache;
+
+    @BeforeEach
+    void setUp() {
+        eventPublisher = mock(EventPublisher.class);
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new ProfileCache(eventPublisher, meterRegistry, 1_000_000, Duration.ofMinutes(10));
+    }
+
+    @Test
+    void getById_loadsOnceAndRecordsHits() {
+        UUID id = UUID.randomUUID();
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.getById(id, key -> { loads.incrementAndGet(); return dto(key, "user"); });
+        cache.getById(id, key -> { loads.incrementAndGet(); return dto(key, "user"); });
+
+        assertEquals(1, loads.get());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "profiles.by-id").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "profiles.by-id").tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    void getByUserId_sharesEntryWithIdLookup() {
+        UUID id = UUID.randomUUID();
+        ProfileDto loaded = cache.getByUserId("auth0|a", uid -> dto(id, uid), key -> fail("should not load by id"));
+
+        assertSame(loaded, cache.getById(id, key -> fail("should be cached")));
+        assertSame(loaded, cache.getByUserId("auth0|a", uid -> fail("should be cached"), key -> fail("should be cached")));
+    }
+
+    @Test
+    void getByUserId_concurrentMissesShareOneLoad() throws Exception {
+        UUID id = UUID.randomUUID();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<ProfileDto>> results = new java.util.ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return cache.getByUserId("auth0|hot", uid -> {
+                        loads.incrementAndGet();
+                        sleep(50);
+                        return dto(id, uid);
+                    }, key -> dto(key, "auth0|hot"));
+                }));
+            }
+            start.countDown();
+            for (Future<ProfileDto> result : results) {
+                assertEquals(id, result.get(5, TimeUnit.SECONDS).getId());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void invalidateAfterCommit_evictsAndBroadcasts() {
+        UUID id = UUID.randomUUID();
+        cache.getByUserId("auth0|a", uid -> dto(id, uid), key -> dto(key, "auth0|a"));
+
+        cache.invalidateAfterCommit(List.of(id), List.of("auth0|a"));
+
+        AtomicInteger loads = new AtomicInteger();
+        cache.getById(id, key -> { loads.incrementAndGet(); return dto(key, "auth0|a"); });
+        assertEquals(1, loads.get());
+
+        ArgumentCaptor<ProfileCacheInvalidationEvent> captor = ArgumentCaptor.forClass(ProfileCacheInvalidationEvent.class);
+        verify(eventPublisher).publishProfileCacheInvalidation(captor.capture());
+        assertEquals(List.of(id), captor.getValue().getProfileIds());
+        assertEquals(List.of("auth0|a"), captor.getValue().getUserIds());
+    }
+
+    @Test
+    void onRemoteInvalidation_evictsEntriesFromOtherInstances() {
+        UUID id = UUID.randomUUID();
+        cache.getById(id, key -> dto(key, "auth0|a"));
+
+        cache.onRemoteInvalidation(ProfileCacheInvalidationEvent.builder()
+                .originInstanceId("other-instance")
+                .profileIds(List.of(id))
+                .build());
+
+        AtomicInteger loads = new AtomicInteger();
+        cache.getById(id, key -> { loads.incrementAndGet(); return dto(key, "auth0|a"); });
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void getById_discardsLoadThatOverlapsInvalidation() {
+        UUID id = UUID.randomUUID();
+
+        cache.getById(id, key -> {
+            // An invalidation landing while this load is in flight.
+            cache.onRemoteInvalidation(ProfileCacheInvalidationEvent.builder()
+                    .originInstanceId("other-instance")
+                    .profileIds(List.of(UUID.randomUUID()))
+                    .build());
+            return dto(key, "stale");
+        });
+
+        ProfileDto fresh = cache.getById(id, key -> dto(key, "fresh"));
+        assertEquals("fresh", fresh.getUserId());
+    }
+
+    @Test
+    void getPreviews_invalidatedWithProfile() {
+        UUID id = UUID.randomUUID();
+        AtomicInteger loads = new AtomicInteger();
+        Function<Set<UUID>, Map<UUID, ProfilePreviewDto>> loader = missing -> {
+            loads.incrementAndGet();
+            return Map.of(id, ProfilePreviewDto.builder().id(id).nickname("nick").build());
+        };
+
+        cache.getPreviews(List.of(id), loader);
+        cache.getPreviews(List.of(id), loader);
+        cache.invalidateAfterCommit(List.of(id), List.of());
+        cache.getPreviews(List.of(id), loader);
+
+        assertEquals(2, loads.get());
+    }
+
+    private static ProfileDto dto(UUID id, String userId) {
+        return ProfileDto.builder().id(id).userId(userId).nickname("nick").build();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
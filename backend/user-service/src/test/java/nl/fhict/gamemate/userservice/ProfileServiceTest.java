@@ -1,27 +1,49 @@
 package nl.fhict.gamemate.userservice;
 
 import jakarta.persistence.EntityNotFoundException;
+import nl.fhict.gamemate.userservice.dto.AccountDeletionDto;
+import nl.fhict.gamemate.userservice.dto.AutocompleteDto;
+import nl.fhict.gamemate.userservice.dto.AvatarUploadDto;
+import nl.fhict.gamemate.userservice.dto.AvatarUploadRequest;
+import nl.fhict.gamemate.userservice.dto.ProfileDto;
+import nl.fhict.gamemate.userservice.dto.ProfileField;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import nl.fhict.gamemate.userservice.dto.GameProfileRequest;
 import nl.fhict.gamemate.userservice.dto.ProfilePreviewDto;
 import nl.fhict.gamemate.userservice.dto.ProfileRequest;
 import nl.fhict.gamemate.userservice.event.UserStatusChangedEvent;
 import nl.fhict.gamemate.userservice.model.*;
+import nl.fhict.gamemate.userservice.repository.AccountDeletionRepository;
+import nl.fhict.gamemate.userservice.repository.AvatarDeletionRepository;
+import nl.fhict.gamemate.userservice.repository.FriendRequestRepository;
 import nl.fhict.gamemate.userservice.repository.GameProfileRepository;
 import nl.fhict.gamemate.userservice.repository.GameRepository;
 import nl.fhict.gamemate.userservice.repository.ProfileRepository;
-import nl.fhict.gamemate.userservice.service.Auth0Service;
+import nl.fhict.gamemate.userservice.repository.projection.ProfilePreviewProjection;
+import nl.fhict.gamemate.userservice.repository.projection.ProfileSummaryProjection;
+import nl.fhict.gamemate.userservice.repository.projection.ProfileVersionProjection;
 import nl.fhict.gamemate.userservice.service.DOAvatarStorageService;
 import nl.fhict.gamemate.userservice.service.EventPublisher;
+import nl.fhict.gamemate.userservice.service.NicknameIndex;
+import nl.fhict.gamemate.userservice.service.BlockingTaskPool;
+import nl.fhict.gamemate.userservice.service.FriendSuggestionIndex;
+import nl.fhict.gamemate.userservice.service.NicknameTrie;
+import nl.fhict.gamemate.userservice.service.ProfileCache;
 import nl.fhict.gamemate.userservice.service.ProfileService;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.Pageable;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionOperations;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Stream;
 
 import static nl.fhict.gamemate.userservice.service.ProfileService.DEFAULT_AVATAR_URL;
@@ -33,21 +55,31 @@ import static org.mockito.Mockito.*;
 class ProfileServiceTest {
     private ProfileRepository profileRepository;
     private GameProfileRepository gameProfileRepository;
+    private FriendRequestRepository friendRequestRepository;
     private GameRepository gameRepository;
     private DOAvatarStorageService avatarStorageService;
     private ProfileService profileService;
     private EventPublisher eventPublisher;
-    private Auth0Service auth0Service;
+    private NicknameIndex nicknameIndex;
+    private NicknameTrie nicknameTrie;
+    private ProfileCache profileCache;
+    private AccountDeletionRepository accountDeletionRepository;
+    private AvatarDeletionRepository avatarDeletionRepository;
 
     @BeforeEach
     void setUp() {
         profileRepository = mock(ProfileRepository.class);
         gameProfileRepository = mock(GameProfileRepository.class);
+        friendRequestRepository = mock(FriendRequestRepository.class);
         gameRepository = mock(GameRepository.class);
         avatarStorageService = mock(DOAvatarStorageService.class);
         eventPublisher = mock(EventPublisher.class);
-        auth0Service = mock(Auth0Service.class);
-        profileService = new ProfileService(profileRepository, gameRepository, gameProfileRepository, avatarStorageService, eventPublisher, auth0Service);
+        nicknameIndex = new NicknameIndex(profileRepository, eventPublisher, 1000, 0.01, Duration.ofSeconds(30));
+        nicknameTrie = new NicknameTrie(profileRepository);
+        profileCache = new ProfileCache(eventPublisher, new SimpleMeterRegistry(), 1_000_000, Duration.ofMinutes(10));
+        accountDeletionRepository = mock(AccountDeletionRepository.class);
+        avatarDeletionRepository = mock(AvatarDeletionRepository.class);
+        profileService = new ProfileService(profileRepository, gameRepository, gameProfileRepository, friendRequestRepository, avatarStorageService, eventPublisher, nicknameIndex, nicknameTrie, mock(FriendSuggestionIndex.class), profileCache, accountDeletionRepository, avatarDeletionRepository, TransactionOperations.withoutTransaction(), new BlockingTaskPool(4));
     }
 
     @Test
@@ -83,6 +115,20 @@ class ProfileServiceTest {
         assertThrows(IllegalArgumentException.class, () -> profileService.createProfile("uid", request));
     }
 
+    @Test
+    void createProfile_nicknameTakenConcurrentlyIsReportedAsTaken() {
+        when(profileRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        doThrow(new DataIntegrityViolationException("duplicate key",
+                new ConstraintViolationException("duplicate key", new SQLException(), "uq_profiles_nickname_lower")))
+                .when(profileRepository).flush();
+
+        ProfileRequest request = new ProfileRequest("RaceNick", null, null);
+        assertThatThrownBy(() -> profileService.createProfile("uid", request))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Nickname already taken");
+        assertTrue(nicknameIndex.reserve("RaceNick", "other"));
+    }
+
     @Test
     void createProfile_throwsWhenUnexpectedErrorOccurs() {
         String userId = "auth0|boom";
@@ -93,6 +139,43 @@ class ProfileServiceTest {
         assertThrows(RuntimeException.class, () -> profileService.createProfile(userId, request));
     }
 
+    private void stubVersion(String userId, UUID profileId) {
+        ProfileVersionProjection version = mock(ProfileVersionProjection.class);
+        lenient().when(version.getId()).thenReturn(profileId);
+        when(profileRepository.findVersionByUserId(userId)).thenReturn(Optional.of(version));
+    }
+
+    @Test
+    void uploadAvatar_profileDeletedDuringUpload_releasesReference() {
+        MultipartFile mockFile = mock(MultipartFile.class);
+        UUID profileId = UUID.randomUUID();
+        String url = "https://cdn.space/gamemate-assets/avatars/abc/512.jpg";
+        ProfileVersionProjection version = mock(ProfileVersionProjection.class);
+        when(version.getId()).thenReturn(profileId);
+        when(profileRepository.findVersionByUserId("user123")).thenReturn(Optional.of(version));
+        when(avatarStorageService.store(mockFile, profileId)).thenReturn(CompletableFuture.completedFuture(url));
+        when(profileRepository.findByUserId("user123")).thenReturn(Optional.empty());
+
+        CompletableFuture<String> result = profileService.uploadAvatar("user123", mockFile);
+
+        assertThatThrownBy(result::join).hasCauseInstanceOf(EntityNotFoundException.class);
+        verify(avatarDeletionRepository).save(argThat(d -> url.equals(d.getAvatarUrl())));
+        verify(profileRepository, never()).save(any());
+    }
+
+    @Test
+    void uploadAvatar_storageFailure_isWrapped() {
+        MultipartFile mockFile = mock(MultipartFile.class);
+        UUID profileId = UUID.randomUUID();
+        stubVersion("user123", profileId);
+        when(avatarStorageService.store(mockFile, profileId))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("Too many avatar uploads in progress")));
+
+        assertThatThrownBy(() -> profileService.uploadAvatar("user123", mockFile).join())
+                .hasCauseInstanceOf(IllegalStateException.class);
+        verify(profileRepository, never()).findByUserId(any());
+    }
+
     @Test
     void uploadAvatar_successfulUpload_updatesProfile() {
         MultipartFile mockFile = mock(MultipartFile.class);
@@ -104,9 +187,10 @@ class ProfileServiceTest {
         String uploadedUrl = "https://cdn.space/avatar/" + profileId + ".jpg";
 
         when(profileRepository.findByUserId(userId)).thenReturn(Optional.of(profile));
-        when(avatarStorageService.store(mockFile, profileId)).thenReturn(uploadedUrl);
+        stubVersion(userId, profileId);
+        when(avatarStorageService.store(mockFile, profileId)).thenReturn(CompletableFuture.completedFuture(uploadedUrl));
 
-        String result = profileService.uploadAvatar(userId, mockFile);
+        String result = profileService.uploadAvatar(userId, mockFile).join();
 
         assertEquals(uploadedUrl, result);
         assertEquals(uploadedUrl, profile.getAvatarUrl());
@@ -114,7 +198,25 @@ class ProfileServiceTest {
     }
 
     @Test
-    void uploadAvatar_deletesOldAvatar_ifNotDefault() {
+    void uploadAvatar_sameContent_releasesReferenceWithoutSaving() {
+        MultipartFile mockFile = mock(MultipartFile.class);
+        UUID profileId = UUID.randomUUID();
+        String url = "https://cdn.space/gamemate-assets/avatars/abc/512.jpg";
+        Profile profile = Profile.builder().id(profileId).userId("user123").avatarUrl(url).build();
+
+        when(profileRepository.findByUserId("user123")).thenReturn(Optional.of(profile));
+        stubVersion("user123", profileId);
+        when(avatarStorageService.store(mockFile, profileId)).thenReturn(CompletableFuture.completedFuture(url));
+
+        assertEquals(url, profileService.uploadAvatar("user123", mockFile).join());
+
+        verify(avatarDeletionRepository).save(argThat(d -> url.equals(d.getAvatarUrl())));
+        verify(profileRepository, never()).save(any());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void uploadAvatar_schedulesOldAvatarDeletion_ifNotDefault() {
         MultipartFile mockFile = mock(MultipartFile.class);
         Profile profile = new Profile();
         UUID profileId = UUID.randomUUID();
@@ -124,13 +226,86 @@ class ProfileServiceTest {
         String newUrl = "https://cdn.space/avatar/new-" + profileId + ".jpg";
 
         when(profileRepository.findByUserId(userId)).thenReturn(Optional.of(profile));
-        when(avatarStorageService.store(mockFile, profileId)).thenReturn(newUrl);
+        stubVersion(userId, profileId);
+        when(avatarStorageService.store(mockFile, profileId)).thenReturn(CompletableFuture.completedFuture(newUrl));
 
-        String result = profileService.uploadAvatar(userId, mockFile);
+        String result = profileService.uploadAvatar(userId, mockFile).join();
 
-        verify(avatarStorageService).delete("https://cdn.space/avatar/old-" + profileId + ".jpg");
+        verify(avatarDeletionRepository).save(argThat(d -> ("https://cdn.space/avatar/old-" + profileId + ".jpg").equals(d.getAvatarUrl())));
         assertEquals(newUrl, result);
         verify(profileRepository).save(profile);
+        verify(avatarStorageService, never()).delete(any());
+    }
+
+    @Test
+    void uploadAvatar_failedProfileUpdate_releasesNewReference() {
+        MultipartFile mockFile = mock(MultipartFile.class);
+        UUID profileId = UUID.randomUUID();
+        Profile profile = Profile.builder().id(profileId).userId("user123").avatarUrl(DEFAULT_AVATAR_URL).build();
+        String url = "https://cdn.space/gamemate-assets/avatars/abc/512.jpg";
+
+        when(profileRepository.findByUserId("user123")).thenReturn(Optional.of(profile));
+        stubVersion("user123", profileId);
+        when(avatarStorageService.store(mockFile, profileId)).thenReturn(CompletableFuture.completedFuture(url));
+        when(profileRepository.save(profile)).thenThrow(new RuntimeException("connection reset"));
+
+        assertThatThrownBy(() -> profileService.uploadAvatar("user123", mockFile).join())
+                .hasCauseInstanceOf(RuntimeException.class);
+
+        verify(avatarDeletionRepository).save(argThat(d -> url.equals(d.getAvatarUrl())));
+        verify(avatarStorageService, never()).delete(any());
+    }
+
+    @Test
+    void confirmAvatarUpload_swapsAvatarAndDeletesOld() {
+        String userId = "user123";
+        UUID profileId = UUID.randomUUID();
+        Profile profile = Profile.builder().id(profileId).userId(userId).avatarUrl("https://cdn.space/avatar/old.jpg").build();
+        String key = "avatars/" + profileId + "-upload";
+        String newUrl = "https://cdn.space/gamemate-assets/" + key;
+        when(profileRepository.findByUserId(userId)).thenReturn(Optional.of(profile));
+        stubVersion(userId, profileId);
+        when(avatarStorageService.confirmUpload(profileId, key)).thenReturn(CompletableFuture.completedFuture(newUrl));
+
+        String result = profileService.confirmAvatarUpload(userId, key).join();
+
+        assertEquals(newUrl, result);
+        assertEquals(newUrl, profile.getAvatarUrl());
+        verify(avatarDeletionRepository).save(argThat(d -> "https://cdn.space/avatar/old.jpg".equals(d.getAvatarUrl())));
+        verify(eventPublisher).publishUserEvent(any(UserStatusChangedEvent.class));
+        verify(avatarStorageService, never()).store(any(), any());
+    }
+
+    @Test
+    void confirmAvatarUpload_sameContentReleasesExtraReference() {
+        String userId = "user123";
+        UUID profileId = UUID.randomUUID();
+        String key = "avatars/" + profileId + "-upload";
+        String url = "https://cdn.space/gamemate-assets/" + key;
+        Profile profile = Profile.builder().id(profileId).userId(userId).avatarUrl(url).build();
+        when(profileRepository.findByUserId(userId)).thenReturn(Optional.of(profile));
+        stubVersion(userId, profileId);
+        when(avatarStorageService.confirmUpload(profileId, key)).thenReturn(CompletableFuture.completedFuture(url));
+
+        assertEquals(url, profileService.confirmAvatarUpload(userId, key).join());
+
+        verify(profileRepository, never()).save(any());
+        verify(avatarDeletionRepository).save(argThat(d -> url.equals(d.getAvatarUrl())));
+    }
+
+    @Test
+    void createAvatarUpload_presignsForCallerProfile() {
+        UUID profileId = UUID.randomUUID();
+        ProfileVersionProjection version = mock(ProfileVersionProjection.class);
+        when(version.getId()).thenReturn(profileId);
+        when(profileRepository.findVersionByUserId("user123")).thenReturn(Optional.of(version));
+        AvatarUploadDto upload = AvatarUploadDto.builder().key("avatars/" + profileId + "-x").build();
+        when(avatarStorageService.presignUpload(profileId, "image/png", 100)).thenReturn(upload);
+
+        AvatarUploadDto result = profileService.createAvatarUpload("user123",
+                AvatarUploadRequest.builder().contentType("image/png").size(100).build());
+
+        assertSame(upload, result);
     }
 
     @Test
@@ -144,11 +319,12 @@ class ProfileServiceTest {
         String newUrl = "https://cdn.space/avatar/new-" + profileId + ".jpg";
 
         when(profileRepository.findByUserId(userId)).thenReturn(Optional.of(profile));
-        when(avatarStorageService.store(mockFile, profileId)).thenReturn(newUrl);
+        stubVersion(userId, profileId);
+        when(avatarStorageService.store(mockFile, profileId)).thenReturn(CompletableFuture.completedFuture(newUrl));
 
-        String result = profileService.uploadAvatar(userId, mockFile);
+        String result = profileService.uploadAvatar(userId, mockFile).join();
 
-        verify(avatarStorageService, never()).delete(any());
+        verify(avatarDeletionRepository, never()).save(any());
         assertEquals(newUrl, result);
         verify(profileRepository).save(profile);
     }
@@ -156,7 +332,7 @@ class ProfileServiceTest {
     @Test
     void uploadAvatar_throwsIfProfileNotFound() {
         MultipartFile mockFile = mock(MultipartFile.class);
-        when(profileRepository.findByUserId("missing")).thenReturn(Optional.empty());
+        when(profileRepository.findVersionByUserId("missing")).thenReturn(Optional.empty());
 
         assertThrows(EntityNotFoundException.class,
                 () -> profileService.uploadAvatar("missing", mockFile));
@@ -276,6 +452,66 @@ class ProfileServiceTest {
         assertThrows(EntityNotFoundException.class, () -> profileService.updateProfile(userId, req));
     }
 
+    @Test
+    void updateProfile_unchangedValuesSkipWriteAndEvent() {
+        String userId = "auth0|abc";
+        Profile profile = Profile.builder().userId(userId).nickname("SameNick").bio("bio").location("loc").build();
+        when(profileRepository.findByUserId(userId)).thenReturn(Optional.of(profile));
+
+        Profile result = profileService.updateProfile(userId, new ProfileRequest("SameNick", "bio", "loc"));
+
+        assertSame(profile, result);
+        verify(profileRepository, never()).existsByNicknameIgnoreCase(any());
+        verify(profileRepository, never()).save(any());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void updateProfile_caseOnlyNicknameChangeSkipsUniquenessCheck() {
+        String userId = "auth0|abc";
+        Profile profile = Profile.builder().userId(userId).nickname("samenick").build();
+        when(profileRepository.findByUserId(userId)).thenReturn(Optional.of(profile));
+        when(profileRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        Profile result = profileService.updateProfile(userId, ProfileRequest.builder().nickname("SameNick").build());
+
+        assertEquals("SameNick", result.getNickname());
+        verify(profileRepository, never()).existsByNicknameIgnoreCase(any());
+        verify(eventPublisher).publishUserEvent(any());
+    }
+
+    @Test
+    void updateProfile_caseOnlyNicknameChangeUpdatesTrieCasing() {
+        when(profileRepository.findAllNicknameEntries()).thenReturn(List.of());
+        nicknameTrie.load();
+        String userId = "auth0|abc";
+        UUID id = UUID.randomUUID();
+        Profile profile = Profile.builder().id(id).userId(userId).nickname("samenick").build();
+        nicknameTrie.put("samenick", id);
+        when(profileRepository.findByUserId(userId)).thenReturn(Optional.of(profile));
+        when(profileRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        profileService.updateProfile(userId, ProfileRequest.builder().nickname("SameNick").build());
+
+        assertEquals(List.of(new NicknameTrie.Match("SameNick", id)), nicknameTrie.complete("same", 5, null));
+        verify(eventPublisher).publishNicknameChange(argThat(e -> "SameNick".equals(e.getAdded())));
+    }
+
+    @Test
+    void updateProfile_resubmittingOwnNicknameIsNotRejected() {
+        String userId = "auth0|abc";
+        Profile profile = Profile.builder().userId(userId).nickname("MyNick").bio("old").build();
+        nicknameIndex.add("MyNick");
+        when(profileRepository.findByUserId(userId)).thenReturn(Optional.of(profile));
+        when(profileRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        Profile result = profileService.updateProfile(userId, new ProfileRequest("MyNick", "new", null));
+
+        assertEquals("new", result.getBio());
+        verify(profileRepository, never()).existsByNicknameIgnoreCase(any());
+        verify(profileRepository).save(profile);
+    }
+
     @Test
     void createGameProfile_success() {
         String userId = "auth0|abc";
@@ -401,6 +637,7 @@ class ProfileServiceTest {
         assertEquals(Set.of(Playstyle.AGGRESSIVE, Playstyle.TANK), gameProfile.getPlaystyles());
         assertEquals(Set.of(Platform.PC), gameProfile.getPlatforms());
         verify(gameProfileRepository).save(gameProfile);
+        verify(profileRepository).incrementRelationsVersion(Collections.singletonList(null));
     }
 
     @Test
@@ -496,176 +733,156 @@ class ProfileServiceTest {
     }
 
     @Test
-    void searchProfiles_returnsFriendsFirst_thenOthers_limitedTo20() {
+    void searchProfiles_returnsRankedMatchesFromQuery() {
         String currentUserId = "auth0|abc";
-        UUID currentUserProfileId = UUID.randomUUID();
-        Profile currentUser = Profile.builder()
-                .id(currentUserProfileId)
-                .userId(currentUserId)
-                .nickname("CurrentUser")
-                .build();
+        ProfilePreviewProjection friend = preview("Friend0");
+        ProfilePreviewProjection other = preview("Other0");
 
-        List<Profile> friends = IntStream.range(0, 3)
-                .mapToObj(i -> Profile.builder()
-                        .id(UUID.randomUUID())
-                        .nickname("Friend" + i)
-                        .avatarUrl("url" + i)
-                        .build())
-                .toList();
+        when(profileRepository.searchByNickname("%abc%", "abc", currentUserId, 20))
+                .thenReturn(List.of(friend, other));
 
-        currentUser.setFriends(new HashSet<>(friends));
+        List<ProfilePreviewDto> results = profileService.searchProfiles(" ABC ", currentUserId);
 
-        List<Profile> others = IntStream.range(0, 30)
-                .mapToObj(i -> Profile.builder()
-                        .id(UUID.randomUUID())
-                        .nickname("Other" + i)
-                        .avatarUrl("urlO" + i)
-                        .build())
-                .toList();
-
-        List<Profile> combined = Stream.concat(friends.stream(), others.stream()).collect(Collectors.toList());
-
-        when(profileRepository.findByUserId(currentUserId)).thenReturn(Optional.of(currentUser));
-        when(profileRepository.searchByNickname(anyString(), eq(currentUserId), any(Pageable.class)))
-                .thenReturn(combined);
-
-        List<ProfilePreviewDto> results = profileService.searchProfiles("abc", currentUserId);
-
-        assertEquals(20, results.size());
-        assertEquals("Friend0", results.get(0).getNickname());
+        assertEquals(List.of("Friend0", "Other0"), results.stream().map(ProfilePreviewDto::getNickname).toList());
+        assertEquals(friend.getId(), results.get(0).getId());
+        verify(profileRepository, never()).findByUserId(any());
     }
 
     @Test
-    void searchProfiles_excludesSelfFromResults() {
-        String userId = "auth0|me";
-        UUID profileId = UUID.randomUUID();
-        Profile me = Profile.builder()
-                .id(profileId)
-                .userId(userId)
-                .nickname("Self")
-                .build();
-        me.setFriends(Set.of());
+    void searchProfiles_usesPrefixPatternForShortTerms() {
+        when(profileRepository.searchByNickname("ab%", "ab", "auth0|me", 20)).thenReturn(List.of());
 
-        Profile selfInSearch = Profile.builder()
-                .id(profileId) // same UUID as self
-                .nickname("Self")
-                .userId(userId)
-                .build();
+        assertTrue(profileService.searchProfiles("Ab", "auth0|me").isEmpty());
+        verify(profileRepository).searchByNickname("ab%", "ab", "auth0|me", 20);
+    }
 
-        when(profileRepository.findByUserId(userId)).thenReturn(Optional.of(me));
-        when(profileRepository.searchByNickname(anyString(), eq(userId), any(Pageable.class)))
-                .thenReturn(List.of(selfInSearch));
+    @Test
+    void searchProfiles_escapesLikeWildcards() {
+        when(profileRepository.searchByNickname(anyString(), anyString(), anyString(), anyInt())).thenReturn(List.of());
 
-        List<ProfilePreviewDto> results = profileService.searchProfiles("Self", userId);
+        profileService.searchProfiles("a_b%", "auth0|me");
 
-        assertTrue(results.isEmpty());
+        verify(profileRepository).searchByNickname("%a\\_b\\%%", "a_b%", "auth0|me", 20);
     }
 
     @Test
-    void searchProfiles_throwsWhenUserNotFound() {
-        when(profileRepository.findByUserId("missing")).thenReturn(Optional.empty());
-
-        assertThrows(RuntimeException.class, () ->
-                profileService.searchProfiles("nick", "missing")
-        );
+    void searchProfiles_returnsEmptyForBlankTerm() {
+        assertTrue(profileService.searchProfiles("   ", "auth0|me").isEmpty());
+        verifyNoInteractions(profileRepository);
     }
 
     @Test
     void searchProfiles_throwsIfSearchFails() {
         String userId = "auth0|user";
-        Profile me = Profile.builder().id(UUID.randomUUID()).userId(userId).friends(Set.of()).build();
-
-        when(profileRepository.findByUserId(userId)).thenReturn(Optional.of(me));
-        when(profileRepository.searchByNickname(anyString(), eq(userId), any()))
+        when(profileRepository.searchByNickname(anyString(), anyString(), eq(userId), anyInt()))
                 .thenThrow(new RuntimeException("Search failed"));
 
         assertThrows(RuntimeException.class, () -> profileService.searchProfiles("term", userId));
     }
 
     @Test
-    void deleteOwnProfile_deletesProfileSuccessfully() {
+    void deleteOwnProfile_deletesRowsInBulkAndQueuesExternalCleanup() {
         String userId = "auth0|123456789";
-        Profile testProfile = Profile.builder()
-                .id(UUID.randomUUID())
-                .userId(userId)
-                .avatarUrl("https://example.com/custom-avatar.png")
-                .friends(new HashSet<>())
-                .build();
-
-        when(profileRepository.findByUserId(userId)).thenReturn(Optional.of(testProfile));
-
-        profileService.deleteOwnProfile(userId);
-
-        verify(avatarStorageService).delete(testProfile.getAvatarUrl());
+        UUID profileId = UUID.randomUUID();
+        ProfileSummaryProjection profile = summary(profileId, userId, "Leaving");
+        when(profile.getAvatarUrl()).thenReturn("https://example.com/custom-avatar.png");
+        when(profileRepository.findSummaryByUserId(userId)).thenReturn(Optional.of(profile));
+        when(accountDeletionRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        AccountDeletionDto result = profileService.deleteOwnProfile(userId);
+
+        ArgumentCaptor<AccountDeletion> captor = ArgumentCaptor.forClass(AccountDeletion.class);
+        verify(accountDeletionRepository).save(captor.capture());
+        assertEquals(AccountDeletionStatus.PENDING, captor.getValue().getStatus());
+        assertEquals("https://example.com/custom-avatar.png", captor.getValue().getAvatarUrl());
+        assertFalse(captor.getValue().isAvatarDeleted());
+        assertEquals(AccountDeletionStatus.PENDING, result.getStatus());
+        assertFalse(result.isAuth0Deleted());
+
+        verify(profileRepository).deleteFriendships(profileId);
+        verify(friendRequestRepository).deleteAllInvolving(profileId);
+        verify(gameProfileRepository).deleteByProfileId(profileId);
+        verify(profileRepository).deleteProfileRow(profileId);
         verify(eventPublisher).publishUserEvent(any(UserStatusChangedEvent.class));
-        verify(profileRepository).delete(testProfile);
-        verify(auth0Service).deleteUser(userId);
+        verifyNoInteractions(avatarStorageService);
+        verify(profileRepository, never()).findByUserId(any());
     }
 
     @Test
     void deleteOwnProfile_throwsException_whenProfileNotFound() {
         String userId = "auth0|123456789";
 
-        when(profileRepository.findByUserId(userId)).thenReturn(Optional.empty());
+        when(profileRepository.findSummaryByUserId(userId)).thenReturn(Optional.empty());
 
         EntityNotFoundException exception = assertThrows(EntityNotFoundException.class,
                 () -> profileService.deleteOwnProfile(userId));
 
         assertEquals("Profile not found for user: " + userId, exception.getMessage());
-        verify(avatarStorageService, never()).delete(anyString());
-        verify(profileRepository, never()).delete(any());
-        verify(auth0Service, never()).deleteUser(anyString());
+        verify(profileRepository, never()).deleteProfileRow(any());
+        verifyNoInteractions(accountDeletionRepository, avatarStorageService);
     }
 
     @Test
-    void deleteOwnProfile_skipsAvatarDeletion_whenDefaultAvatar() {
+    void deleteOwnProfile_skipsAvatarCleanup_whenDefaultAvatar() {
         String userId = "auth0|123456789";
-        Profile testProfile = Profile.builder()
-                .id(UUID.randomUUID())
-                .userId(userId)
-                .avatarUrl(DEFAULT_AVATAR_URL)
-                .friends(new HashSet<>())
-                .build();
-
-        when(profileRepository.findByUserId(userId)).thenReturn(Optional.of(testProfile));
+        ProfileSummaryProjection profile = summary(UUID.randomUUID(), userId, "Leaving");
+        when(profile.getAvatarUrl()).thenReturn(DEFAULT_AVATAR_URL);
+        when(profileRepository.findSummaryByUserId(userId)).thenReturn(Optional.of(profile));
+        when(accountDeletionRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
 
-        profileService.deleteOwnProfile(userId);
+        AccountDeletionDto result = profileService.deleteOwnProfile(userId);
 
-        verify(avatarStorageService, never()).delete(anyString());
-        verify(profileRepository).delete(testProfile);
-        verify(auth0Service).deleteUser(userId);
+        assertTrue(result.isAvatarDeleted());
+        verify(accountDeletionRepository).save(argThat(d -> d.getAvatarUrl() == null));
     }
 
     @Test
-    void deleteOwnProfile_removesFromFriends() {
+    void deleteOwnProfile_bumpsFriendsAndRequestCounterparts() {
         String userId = "auth0|123";
-        Profile target = Profile.builder()
-                .id(UUID.randomUUID())
-                .userId(userId)
-                .avatarUrl(DEFAULT_AVATAR_URL)
-                .friends(new HashSet<>())
-                .build();
+        UUID profileId = UUID.randomUUID();
+        UUID friendId = UUID.randomUUID();
+        UUID requesterId = UUID.randomUUID();
+        ProfileSummaryProjection profile = summary(profileId, userId, "Leaving");
+        when(profileRepository.findSummaryByUserId(userId)).thenReturn(Optional.of(profile));
+        when(profileRepository.findFriendIds(profileId)).thenReturn(List.of(friendId));
+        when(friendRequestRepository.findCounterpartIds(profileId)).thenReturn(List.of(requesterId));
+        when(accountDeletionRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        profileService.deleteOwnProfile(userId);
+
+        verify(profileRepository).incrementRelationsVersion(List.of(profileId, friendId, requesterId));
+        verify(profileRepository, never()).save(any());
+    }
 
-        Profile friend = Profile.builder()
+    @Test
+    void getAccountDeletion_returnsLatestForUser() {
+        AccountDeletion deletion = AccountDeletion.builder()
                 .id(UUID.randomUUID())
-                .friends(new HashSet<>(Set.of(target)))
+                .userId("auth0|gone")
+                .status(AccountDeletionStatus.COMPLETED)
+                .avatarDeleted(true)
+                .auth0Deleted(true)
                 .build();
+        when(accountDeletionRepository.findFirstByUserIdOrderByCreatedAtDesc("auth0|gone")).thenReturn(Optional.of(deletion));
 
-        target.getFriends().add(friend);
+        AccountDeletionDto dto = profileService.getAccountDeletion("auth0|gone");
 
-        when(profileRepository.findByUserId(userId)).thenReturn(Optional.of(target));
+        assertEquals(AccountDeletionStatus.COMPLETED, dto.getStatus());
+        assertTrue(dto.isAuth0Deleted());
+    }
 
-        profileService.deleteOwnProfile(userId);
+    @Test
+    void getAccountDeletion_notFound() {
+        when(accountDeletionRepository.findFirstByUserIdOrderByCreatedAtDesc("auth0|x")).thenReturn(Optional.empty());
 
-        assertFalse(friend.getFriends().contains(target));
-        verify(profileRepository).save(friend);  // Verify friend was saved after update
+        assertThrows(EntityNotFoundException.class, () -> profileService.getAccountDeletion("auth0|x"));
     }
 
     @Test
     void uploadAvatar_unexpectedException() {
         MultipartFile file = mock(MultipartFile.class);
         String userId = "user123";
-        when(profileRepository.findByUserId(userId)).thenThrow(new RuntimeException("DB error"));
+        when(profileRepository.findVersionByUserId(userId)).thenThrow(new RuntimeException("DB error"));
 
         assertThatThrownBy(() -> profileService.uploadAvatar(userId, file))
                 .isInstanceOf(RuntimeException.class)
@@ -749,13 +966,301 @@ class ProfileServiceTest {
     }
 
     @Test
-    void searchProfiles_unexpectedException() {
-        String userId = "user123";
-        when(profileRepository.findByUserId(userId)).thenThrow(new RuntimeException("Crash"));
+    void isNicknameAvailable_answersFromLoadedIndexWithoutQuery() {
+        when(profileRepository.findAllNicknames()).thenReturn(List.of("TakenNick"));
+        nicknameIndex.load();
+
+        assertFalse(profileService.isNicknameAvailable("takennick"));
+        assertTrue(profileService.isNicknameAvailable("FreeNick"));
+        verify(profileRepository, never()).existsByNicknameIgnoreCase(any());
+    }
+
+    @Test
+    void createProfile_rejectsNicknameReservedByConcurrentSignup() {
+        nicknameIndex.reserve("RacedNick", "auth0|other");
+
+        ProfileRequest request = new ProfileRequest("RacedNick", null, null);
+        assertThrows(IllegalArgumentException.class, () -> profileService.createProfile("auth0|me", request));
+        verify(profileRepository, never()).save(any());
+    }
+
+    @Test
+    void createProfile_addsNicknameToIndexAndReleasesReservation() {
+        when(profileRepository.findAllNicknames()).thenReturn(List.of());
+        nicknameIndex.load();
+        when(profileRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        profileService.createProfile("auth0|me", new ProfileRequest("NewNick", null, null));
+
+        assertEquals(NicknameIndex.Answer.TAKEN, nicknameIndex.lookup("newnick"));
+        assertTrue(nicknameIndex.reserve("newnick", "auth0|other"));
+        verify(eventPublisher).publishNicknameChange(argThat(e -> "NewNick".equals(e.getAdded()) && e.getRemoved() == null));
+    }
+
+    @Test
+    void createProfile_letsDatabaseDecideWhenIndexIsStale() {
+        when(profileRepository.findAllNicknames()).thenReturn(List.of("FreedNick"));
+        nicknameIndex.load();
+        when(profileRepository.existsByNicknameIgnoreCase("FreedNick")).thenReturn(false);
+        when(profileRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        profileService.createProfile("auth0|me", new ProfileRequest("FreedNick", null, null));
+
+        verify(profileRepository).save(any());
+    }
+
+    @Test
+    void autocomplete_pagesThroughTrieWithCursor() {
+        when(profileRepository.findAllNicknameEntries()).thenReturn(List.of());
+        nicknameTrie.load();
+        for (String nick : List.of("Alpha", "alps", "alpine", "beta")) {
+            nicknameTrie.put(nick, UUID.randomUUID());
+        }
+
+        AutocompleteDto first = profileService.autocomplete("AL", 2, null);
+        assertEquals(List.of("Alpha", "alpine"), first.getSuggestions().stream().map(s -> s.getNickname()).toList());
+        assertNotNull(first.getNextCursor());
+
+        AutocompleteDto second = profileService.autocomplete("al", 2, first.getNextCursor());
+        assertEquals(List.of("alps"), second.getSuggestions().stream().map(s -> s.getNickname()).toList());
+        assertNull(second.getNextCursor());
+        verify(profileRepository, never()).searchByNickname(any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void autocomplete_fallsBackToDatabaseBeforeTrieIsLoaded() {
+        ProfilePreviewProjection match = preview("Alpha");
+        when(profileRepository.searchByNickname("al%", "al", "", 10)).thenReturn(List.of(match));
 
-        assertThatThrownBy(() -> profileService.searchProfiles("nick", userId))
+        AutocompleteDto result = profileService.autocomplete("Al", 10, null);
+
+        assertEquals(1, result.getSuggestions().size());
+        assertEquals(match.getId(), result.getSuggestions().get(0).getId());
+    }
+
+    @Test
+    void autocomplete_rejectsMalformedCursor() {
+        when(profileRepository.findAllNicknameEntries()).thenReturn(List.of());
+        nicknameTrie.load();
+
+        assertThrows(IllegalArgumentException.class, () -> profileService.autocomplete("al", 5, "***"));
+    }
+
+    @Test
+    void createProfile_addsNicknameToTrieAfterCommit() {
+        when(profileRepository.findAllNicknameEntries()).thenReturn(List.of());
+        nicknameTrie.load();
+        UUID id = UUID.randomUUID();
+        when(profileRepository.save(any())).thenAnswer(invocation -> {
+            Profile saved = invocation.getArgument(0);
+            saved.setId(id);
+            return saved;
+        });
+
+        profileService.createProfile("auth0|me", new ProfileRequest("TrieNick", null, null));
+
+        assertEquals(List.of(new NicknameTrie.Match("TrieNick", id)), nicknameTrie.complete("trie", 5, null));
+    }
+
+    @Test
+    void getOwnProfileDto_servesRepeatedReadsFromCache() {
+        String userId = "auth0|cached";
+        UUID id = UUID.randomUUID();
+        ProfileSummaryProjection summary = summary(id, userId, "Cached");
+        when(profileRepository.findSummaryByUserId(userId)).thenReturn(Optional.of(summary));
+
+        ProfileDto first = profileService.getOwnProfileDto(userId);
+        ProfileDto second = profileService.getOwnProfileDto(userId);
+        ProfileDto byId = profileService.getProfileDto(id);
+
+        assertSame(first, second);
+        assertSame(first, byId);
+        verify(profileRepository, times(1)).findSummaryByUserId(userId);
+        verify(profileRepository, never()).findSummaryById(any());
+        verify(profileRepository, never()).findByUserId(any());
+    }
+
+    @Test
+    void updateProfile_invalidatesCachedProfile() {
+        String userId = "auth0|cached";
+        Profile profile = Profile.builder().id(UUID.randomUUID()).userId(userId).nickname("Cached").bio("old").build();
+        ProfileSummaryProjection summary = summary(profile.getId(), userId, "Cached");
+        when(summary.getBio()).thenReturn("old", "new");
+        when(profileRepository.findSummaryByUserId(userId)).thenReturn(Optional.of(summary));
+        when(profileRepository.findByUserId(userId)).thenReturn(Optional.of(profile));
+        when(profileRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        assertEquals("old", profileService.getOwnProfileDto(userId).getBio());
+        profileService.updateProfile(userId, ProfileRequest.builder().bio("new").build());
+
+        assertEquals("new", profileService.getOwnProfileDto(userId).getBio());
+        verify(eventPublisher).publishProfileCacheInvalidation(any());
+    }
+
+    @Test
+    void getOwnProfileDto_withNoFieldsRunsOnlyTheSummaryQuery() {
+        ProfileSummaryProjection summary = summary(UUID.randomUUID(), "auth0|me", "Header");
+        when(profileRepository.findSummaryByUserId("auth0|me")).thenReturn(Optional.of(summary));
+
+        ProfileDto dto = profileService.getOwnProfileDto("auth0|me", ProfileField.parse(""));
+
+        assertEquals("Header", dto.getNickname());
+        assertNull(dto.getFriends());
+        assertNull(dto.getGameProfiles());
+        verify(profileRepository, never()).findByUserId(any());
+        verifyNoInteractions(gameProfileRepository, friendRequestRepository);
+    }
+
+    @Test
+    void getProfileDto_loadsOnlyRequestedAssociations() {
+        UUID id = UUID.randomUUID();
+        ProfilePreviewProjection friend = preview("Buddy");
+        ProfileSummaryProjection summary = summary(id, "auth0|x", "Someone");
+        when(profileRepository.findSummaryById(id)).thenReturn(Optional.of(summary));
+        when(profileRepository.findFriendPreviews(id)).thenReturn(List.of(friend));
+
+        ProfileDto dto = profileService.getProfileDto(id, ProfileField.parse("friends"));
+
+        assertEquals(1, dto.getFriends().size());
+        assertEquals("Buddy", dto.getFriends().iterator().next().getNickname());
+        assertNull(dto.getGameProfiles());
+        verifyNoInteractions(gameProfileRepository, friendRequestRepository);
+    }
+
+    @Test
+    void getProfileDto_withoutFieldsParamLoadsEachAssociationOnceAndCaches() {
+        UUID id = UUID.randomUUID();
+        ProfileSummaryProjection summary = summary(id, "auth0|x", "Full");
+        ProfilePreviewProjection friend = preview("Buddy");
+        Game game = Game.builder().id(UUID.randomUUID()).name("Valorant").build();
+        GameProfile gameProfile = GameProfile.builder().id(UUID.randomUUID()).game(game).skillLevel("Gold").build();
+        when(profileRepository.findSummaryById(id)).thenReturn(Optional.of(summary));
+        when(profileRepository.findFriendPreviews(id)).thenReturn(List.of(friend));
+        when(gameProfileRepository.findWithGameByProfileId(id)).thenReturn(List.of(gameProfile));
+
+        ProfileDto dto = profileService.getProfileDto(id, ProfileField.parse(null));
+        profileService.getProfileDto(id, ProfileField.parse(null));
+
+        assertEquals("Buddy", dto.getFriends().iterator().next().getNickname());
+        assertEquals("Gold", dto.getGameProfiles().iterator().next().getSkillLevel());
+        verify(profileRepository, times(1)).findFriendPreviews(id);
+        verify(gameProfileRepository, times(1)).findWithGameByProfileId(id);
+        verifyNoInteractions(friendRequestRepository);
+        verify(profileRepository, never()).findById(any());
+    }
+
+    @Test
+    void getProfileDto_associationFailureSurfacesAsRuntimeException() {
+        UUID id = UUID.randomUUID();
+        ProfileSummaryProjection summary = summary(id, "auth0|x", "Full");
+        when(profileRepository.findSummaryById(id)).thenReturn(Optional.of(summary));
+        when(gameProfileRepository.findWithGameByProfileId(id)).thenThrow(new RuntimeException("DB down"));
+
+        assertThatThrownBy(() -> profileService.getProfileDto(id, ProfileField.parse("friends,gameProfiles")))
                 .isInstanceOf(RuntimeException.class)
-                .hasMessageContaining("Could not search profiles");
+                .hasMessageContaining("Could not fetch profile");
     }
-}
 
+    @Test
+    void getOwnProfileDto_summaryNotFound() {
+        when(profileRepository.findSummaryByUserId("missing")).thenReturn(Optional.empty());
+
+        assertThrows(EntityNotFoundException.class,
+                () -> profileService.getOwnProfileDto("missing", ProfileField.parse("friends")));
+    }
+
+    @Test
+    void profileFieldParse_rejectsUnknownField() {
+        assertThrows(IllegalArgumentException.class, () -> ProfileField.parse("friends,password"));
+    }
+
+    @Test
+    void getPreviews_deduplicatesAndLoadsMissesInOneQuery() {
+        ProfilePreviewProjection a = preview("Alpha");
+        ProfilePreviewProjection b = preview("Beta");
+        UUID unknown = UUID.randomUUID();
+        when(profileRepository.findPreviewsByIds(any())).thenReturn(List.of(a, b));
+
+        Map<UUID, ProfilePreviewDto> result = profileService.getPreviews(List.of(a.getId(), b.getId(), a.getId(), unknown));
+
+        assertEquals(Set.of(a.getId(), b.getId()), result.keySet());
+        assertEquals("Beta", result.get(b.getId()).getNickname());
+        verify(profileRepository).findPreviewsByIds(Set.of(a.getId(), b.getId(), unknown));
+    }
+
+    @Test
+    void getPreviews_servesCachedEntriesWithoutQuery() {
+        ProfilePreviewProjection a = preview("Alpha");
+        when(profileRepository.findPreviewsByIds(any())).thenReturn(List.of(a));
+        profileService.getPreviews(List.of(a.getId()));
+
+        Map<UUID, ProfilePreviewDto> result = profileService.getPreviews(List.of(a.getId()));
+
+        assertEquals("Alpha", result.get(a.getId()).getNickname());
+        verify(profileRepository, times(1)).findPreviewsByIds(any());
+    }
+
+    @Test
+    void getPreviews_rejectsTooManyIds() {
+        List<UUID> ids = Stream.generate(UUID::randomUUID).limit(501).toList();
+
+        assertThrows(IllegalArgumentException.class, () -> profileService.getPreviews(ids));
+        verify(profileRepository, never()).findPreviewsByIds(any());
+    }
+
+    @Test
+    void getProfileETag_matchesTagOfLoadedProfile() {
+        UUID id = UUID.randomUUID();
+        LocalDateTime updatedAt = LocalDateTime.of(2025, 1, 2, 3, 4, 5, 123_456_789);
+        ProfileVersionProjection version = mock(ProfileVersionProjection.class);
+        when(version.getId()).thenReturn(id);
+        when(version.getUpdatedAt()).thenReturn(updatedAt.withNano(123_456_000));
+        when(version.getRelationsVersion()).thenReturn(7L);
+        when(profileRepository.findVersionById(id)).thenReturn(Optional.of(version));
+        Set<ProfileField> fields = ProfileField.parse("friends");
+
+        ProfileDto loaded = ProfileDto.builder().id(id).updatedAt(updatedAt).relationsVersion(7).build();
+
+        assertEquals(ProfileService.eTag(loaded, fields), profileService.getProfileETag(id, fields));
+        assertNotEquals(ProfileService.eTag(loaded, fields), ProfileService.eTag(loaded, ProfileField.parse(null)));
+        loaded.setRelationsVersion(8);
+        assertNotEquals(ProfileService.eTag(loaded, fields), profileService.getProfileETag(id, fields));
+    }
+
+    @Test
+    void getOwnProfileETag_profileNotFound() {
+        when(profileRepository.findVersionByUserId("missing")).thenReturn(Optional.empty());
+
+        assertThrows(EntityNotFoundException.class,
+                () -> profileService.getOwnProfileETag("missing", ProfileField.parse(null)));
+        verify(profileRepository, never()).findByUserId(any());
+    }
+
+    private static ProfileSummaryProjection summary(UUID id, String userId, String nickname) {
+        ProfileSummaryProjection summary = mock(ProfileSummaryProjection.class);
+        when(summary.getId()).thenReturn(id);
+        lenient().when(summary.getUserId()).thenReturn(userId);
+        lenient().when(summary.getNickname()).thenReturn(nickname);
+        return summary;
+    }
+
+    private static ProfilePreviewProjection preview(String nickname) {
+        UUID id = UUID.randomUUID();
+        return new ProfilePreviewProjection() {
+            @Override
+            public UUID getId() {
+                return id;
+            }
+
+            @Override
+            public String getNickname() {
+                return nickname;
+            }
+
+            @Override
+            public String getAvatarUrl() {
+                return "url-" + nickname;
+            }
+        };
+    }
+}
@@ -0,0 +1,231 @@
+package nl.fhict.gamemate.userservice;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.DispatcherType;
+import nl.fhict.gamemate.userservice.config.RateLimitProperties;
+import nl.fhict.gamemate.userservice.ratelimit.InMemoryRateLimitStore;
+import nl.fhict.gamemate.userservice.ratelimit.RateLimit;
+import nl.fhict.gamemate.userservice.ratelimit.RateLimitExceededException;
+import nl.fhict.gamemate.userservice.ratelimit.RateLimitInterceptor;
+import nl.fhict.gamemate.userservice.ratelimit.RateLimitKey;
+import nl.fhict.gamemate.userservice.ratelimit.RateLimitStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.web.method.HandlerMethod;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RateLimitInterceptorTest {
+
+    private MutableClock clock;
+    private InMemoryRateLimitStore store;
+    private RateLimitProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private RateLimitInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+        store = new InMemoryRateLimitStore(clock);
+        properties = new RateLimitProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        interceptor = new RateLimitInterceptor(store, properties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void preHandle_rejectsOnceBucketIsEmptyAndCountsRejection() throws Exception {
+        authenticate("auth0|alice");
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(interceptor.preHandle(request(), new MockHttpServletResponse(), handler("limited")));
+        }
+        RateLimitExceededException exception = assertThrows(RateLimitExceededException.class,
+                () -> interceptor.preHandle(request(), new MockHttpServletResponse(), handler("limited")));
+
+        assertEquals("test-limit", exception.getLimit());
+        assertEquals(20, exception.getRetryAfterSeconds());
+        assertEquals(1.0, meterRegistry.get("gamemate.rate_limit.rejected").tag("limit", "test-limit").counter().count());
+    }
+
+    @Test
+    void preHandle_refillsGraduallyAndKeepsSubjectsApart() throws Exception {
+        authenticate("auth0|alice");
+        for (int i = 0; i < 3; i++) interceptor.preHandle(request(), new MockHttpServletResponse(), handler("limited"));
+
+        authenticate("auth0|bob");
+        assertTrue(interceptor.preHandle(request(), new MockHttpServletResponse(), handler("limited")));
+
+        authenticate("auth0|alice");
+        clock.advance(Duration.ofSeconds(20));
+        assertTrue(interceptor.preHandle(request(), new MockHttpServletResponse(), handler("limited")));
+        assertThrows(RateLimitExceededException.class,
+                () -> interceptor.preHandle(request(), new MockHttpServletResponse(), handler("limited")));
+    }
+
+    @Test
+    void preHandle_ipKeyUsesLastTrustedForwardedAddress() throws Exception {
+        properties.setTrustedProxies(1);
+
+        assertTrue(interceptor.preHandle(forwarded("6.6.6.6, 10.0.0.1"), new MockHttpServletResponse(), handler("byIp")));
+        assertThrows(RateLimitExceededException.class,
+                () -> interceptor.preHandle(forwarded("7.7.7.7, 10.0.0.1"), new MockHttpServletResponse(), handler("byIp")));
+        assertTrue(interceptor.preHandle(forwarded("10.0.0.2"), new MockHttpServletResponse(), handler("byIp")));
+    }
+
+    @Test
+    void preHandle_appliesConfiguredOverride() throws Exception {
+        RateLimitProperties.Limit override = new RateLimitProperties.Limit();
+        override.setCapacity(1L);
+        properties.getLimits().put("test-limit", override);
+        authenticate("auth0|alice");
+
+        assertTrue(interceptor.preHandle(request(), new MockHttpServletResponse(), handler("limited")));
+        assertThrows(RateLimitExceededException.class,
+                () -> interceptor.preHandle(request(), new MockHttpServletResponse(), handler("limited")));
+    }
+
+    @Test
+    void preHandle_ignoresUnannotatedMethodsAndAsyncDispatch() throws Exception {
+        RateLimitStore mockStore = mock(RateLimitStore.class);
+        interceptor = new RateLimitInterceptor(mockStore, properties, meterRegistry);
+        MockHttpServletRequest async = request();
+        async.setDispatcherType(DispatcherType.ASYNC);
+
+        assertTrue(interceptor.preHandle(request(), new MockHttpServletResponse(), handler("unlimited")));
+        assertTrue(interceptor.preHandle(async, new MockHttpServletResponse(), handler("limited")));
+        verifyNoInteractions(mockStore);
+    }
+
+    @Test
+    void preHandle_failingStoreLetsRequestThrough() throws Exception {
+        RateLimitStore mockStore = mock(RateLimitStore.class);
+        when(mockStore.tryConsume(anyString(), anyLong(), any())).thenThrow(new RuntimeException("connection refused"));
+        interceptor = new RateLimitInterceptor(mockStore, properties, meterRegistry);
+
+        assertTrue(interceptor.preHandle(request(), new MockHttpServletResponse(), handler("limited")));
+        assertEquals(1.0, meterRegistry.get("gamemate.rate_limit.errors").counter().count());
+    }
+
+    @Test
+    void validate_rejectsInvalidLimitsBeforeAnyRequest() throws Exception {
+        assertThrows(IllegalStateException.class, () -> interceptor.validate(List.of(Endpoints.class.getMethod("empty"))));
+        assertThrows(IllegalStateException.class, () -> interceptor.validate(List.of(Endpoints.class.getMethod("unparsable"))));
+
+        RateLimitProperties.Limit override = new RateLimitProperties.Limit();
+        override.setRefillPeriod(Duration.ZERO);
+        properties.getLimits().put("test-limit", override);
+        assertThrows(IllegalStateException.class, () -> interceptor.validate(List.of(Endpoints.class.getMethod("limited"))));
+    }
+
+    @Test
+    void validate_rejectsUnknownOverridesAndConflictingDeclarations() throws Exception {
+        interceptor.validate(List.of(Endpoints.class.getMethod("limited"), Endpoints.class.getMethod("unlimited")));
+
+        assertThrows(IllegalStateException.class, () -> interceptor.validate(
+                List.of(Endpoints.class.getMethod("limited"), Endpoints.class.getMethod("conflicting"))));
+
+        properties.getLimits().put("test-limti", new RateLimitProperties.Limit());
+        assertThrows(IllegalStateException.class, () -> interceptor.validate(List.of(Endpoints.class.getMethod("limited"))));
+    }
+
+    @Test
+    void inMemoryStore_evictsFullBuckets() {
+        store.tryConsume("a", 2, Duration.ofMinutes(1));
+        clock.advance(Duration.ofMinutes(2));
+        store.tryConsume("b", 2, Duration.ofMinutes(1));
+
+        assertEquals(1, store.size());
+    }
+
+    private static HandlerMethod handler(String name) throws NoSuchMethodException {
+        return new HandlerMethod(new Endpoints(), Endpoints.class.getMethod(name));
+    }
+
+    private static MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("10.0.0.1");
+        return request;
+    }
+
+    private static MockHttpServletRequest forwarded(String header) {
+        MockHttpServletRequest request = request();
+        request.addHeader("X-Forwarded-For", header);
+        return request;
+    }
+
+    private static void authenticate(String subject) {
+        Jwt jwt = Jwt.withTokenValue("token").header("alg", "none").subject(subject).build();
+        SecurityContextHolder.getContext().setAuthentication(new JwtAuthenticationToken(jwt));
+    }
+
+    static class Endpoints {
+        @RateLimit(name = "test-limit", capacity = 3, refillPeriod = "PT1M")
+        public void limited() {
+        }
+
+        @RateLimit(name = "test-ip", capacity = 1, refillPeriod = "PT1M", key = RateLimitKey.IP)
+        public void byIp() {
+        }
+
+        public void unlimited() {
+        }
+
+        @RateLimit(name = "test-limit", capacity = 5, refillPeriod = "PT1M")
+        public void conflicting() {
+        }
+
+        @RateLimit(name = "test-empty", capacity = 0, refillPeriod = "PT1M")
+        public void empty() {
+        }
+
+        @RateLimit(name = "test-unparsable", capacity = 1, refillPeriod = "1 minute")
+        public void unparsable() {
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
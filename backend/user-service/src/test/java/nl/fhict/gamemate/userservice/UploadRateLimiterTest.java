@@ -6,82 +6,143 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import java.lang.reflect.Field;
+import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.time.ZoneOffset;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 @ExtendWith(MockitoExtension.class)
 class UploadRateLimiterTest {
 
+    private MutableClock clock;
     private UploadRateLimiter rateLimiter;
 
     @BeforeEach
     void setUp() {
-        rateLimiter = new UploadRateLimiter();
+        clock = new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+        rateLimiter = new UploadRateLimiter(10, Duration.ofHours(1), clock);
     }
 
     @Test
     void checkRate_allowsUnderLimit() {
         String userId = "user1";
 
-        // Simulate 5 previous uploads
-        for (int i = 0; i < 5; i++) {
+        for (int i = 0; i < 9; i++) {
             rateLimiter.checkRate(userId);
         }
 
-        // Should not throw an exception
         assertDoesNotThrow(() -> rateLimiter.checkRate(userId));
     }
 
     @Test
-    void checkRate_blocksAfterLimit() throws Exception {
+    void checkRate_blocksAfterLimit() {
         String userId = "user2";
-
-        // Manually insert 10 timestamps into the user's upload log using reflection
-        Field logField = UploadRateLimiter.class.getDeclaredField("userUploadLog");
-        logField.setAccessible(true);
-        @SuppressWarnings("unchecked")
-        Map<String, List<Instant>> log = (Map<String, List<Instant>>) logField.get(rateLimiter);
-
-        List<Instant> uploads = new ArrayList<>();
         for (int i = 0; i < 10; i++) {
-            uploads.add(Instant.now());
+            rateLimiter.checkRate(userId);
         }
-        log.put(userId, uploads);
 
-        // The 11th call should throw an exception
         IllegalStateException exception = assertThrows(IllegalStateException.class, () -> rateLimiter.checkRate(userId));
         assertEquals("Upload limit exceeded. Max 10 avatars per hour.", exception.getMessage());
+        assertDoesNotThrow(() -> rateLimiter.checkRate("someone-else"));
     }
 
     @Test
-    void checkRate_removesOldUploads() throws Exception {
+    void checkRate_slotsFreeUpAsUploadsLeaveTheWindow() {
         String userId = "user3";
+        for (int i = 0; i < 9; i++) {
+            rateLimiter.checkRate(userId);
+        }
+        clock.advance(Duration.ofMinutes(30));
+        rateLimiter.checkRate(userId);
+        assertThrows(IllegalStateException.class, () -> rateLimiter.checkRate(userId));
 
-        // Add 9 old uploads (outside 1-hour window) and 1 recent
-        Field logField = UploadRateLimiter.class.getDeclaredField("userUploadLog");
-        logField.setAccessible(true);
-        @SuppressWarnings("unchecked")
-        Map<String, List<Instant>> log = (Map<String, List<Instant>>) logField.get(rateLimiter);
+        clock.advance(Duration.ofMinutes(30));
 
-        List<Instant> uploads = new ArrayList<>();
-        Instant old = Instant.now().minusSeconds(3700); // older than 1 hour
         for (int i = 0; i < 9; i++) {
-            uploads.add(old);
+            rateLimiter.checkRate(userId);
         }
-        uploads.add(Instant.now()); // recent
+        assertThrows(IllegalStateException.class, () -> rateLimiter.checkRate(userId));
+    }
 
-        log.put(userId, uploads);
+    @Test
+    void evictIdle_dropsOnlyKeysWithoutUploadsInTheWindow() {
+        rateLimiter.checkRate("idle");
+        clock.advance(Duration.ofMinutes(59));
+        rateLimiter.checkRate("active");
+        clock.advance(Duration.ofMinutes(1));
 
-        // This call should succeed since old entries will be cleaned up
-        assertDoesNotThrow(() -> rateLimiter.checkRate(userId));
+        rateLimiter.evictIdle();
 
-        // Validate that only 2 uploads are now tracked (the recent + the new one)
-        assertEquals(2, log.get(userId).size());
+        assertEquals(1, rateLimiter.trackedKeys());
+        for (int i = 0; i < 9; i++) {
+            rateLimiter.checkRate("active");
+        }
+        assertThrows(IllegalStateException.class, () -> rateLimiter.checkRate("active"));
     }
-}
 
+    @Test
+    void tryAcquire_neverExceedsLimitUnderContention() throws InterruptedException {
+        UploadRateLimiter limiter = new UploadRateLimiter(100, Duration.ofHours(1), clock);
+        AtomicInteger allowed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            pool.execute(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < 1000; i++) {
+                        if (limiter.tryAcquire("hot")) allowed.incrementAndGet();
+                        if (i % 100 == 0) limiter.evictIdle();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(100, allowed.get());
+    }
+
+    @Test
+    void constructor_rejectsInvalidLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new UploadRateLimiter(0, Duration.ofHours(1), clock));
+        assertThrows(IllegalArgumentException.class, () -> new UploadRateLimiter(10, Duration.ZERO, clock));
+    }
+
+    private static final class MutableClock extends Clock {
+        private volatile Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 import { useState } from "react";
 import { NavLink } from "react-router-dom";
+import { useQuery } from "@tanstack/react-query";
+import { useAxiosWithAuth } from "@/lib/utils";
 import { AuthButton } from "../auth/AuthButton";
 import ProfilePicture from "./ProfilePicture";
 import { useAuth } from "@/auth/useAuth";
@@ -8,6 +10,23 @@ import { SearchUsers } from "./SearchUsers";
 const NavBar = () => {
   const [isOpen, setIsOpen] = useState(false);
   const { hasRole } = useAuth();
+  const axios = useAxiosWithAuth();
+
+  const { data: unreadRequests = 0 } = useQuery({
+    queryKey: ["friendRequests", "unread"],
+    queryFn: async (): Promise<number> => {
+      const res = await axios.get(`/user/friends/requests/unread`);
+      return res.data.unread;
+    },
+    refetchInterval: 60_000,
+  });
+
+  const badgeFor = (to: string) =>
+    to === "/friends" && unreadRequests > 0 ? (
+      <span className="ml-1 rounded-full bg-primary px-1.5 text-xs text-primary-foreground">
+        {unreadRequests}
+      </span>
+    ) : null;
 
   const gamerLinks: { to: string; label: string }[] = [
     { to: "/", label: "My Feed" },
@@ -48,6 +67,7 @@ const NavBar = () => {
                   }
                 >
                   {label}
+                  {badgeFor(to)}
                 </NavLink>
               </li>
             ))}
@@ -85,6 +105,7 @@ const NavBar = () => {
                   onClick={() => setIsOpen(false)}
                 >
                   {label}
+                  {badgeFor(to)}
                 </NavLink>
               </li>
             ))}
@@ -4,7 +4,11 @@ import { useQuery, useMutation, useQueryClient } from "@tanstack/react-query";
 import { Input } from "@/components/ui/input";
 import { Button } from "@/components/ui/button";
 import { useProfile } from "@/hooks/useProfile";
-import { ProfilePreview } from "@/types/profile";
+import {
+  FriendRequestResult,
+  ProfilePreview,
+  Relationship,
+} from "@/types/profile";
 import { Link } from "react-router-dom";
 
 export function SearchUsers() {
@@ -16,7 +20,7 @@ export function SearchUsers() {
   const dropdownRef = useRef<HTMLDivElement>(null);
   const axios = useAxiosWithAuth();
   const queryClient = useQueryClient();
-  const { profile, refetch: refetchProfile } = useProfile();
+  const { refetch: refetchProfile } = useProfile();
 
   const fetchUsers = async (): Promise<ProfilePreview[]> => {
     if (!query) return [];
@@ -33,16 +37,39 @@ export function SearchUsers() {
     staleTime: 60_000,
   });
 
+  const userIds = users.map((u) => u.id);
+  const { data: relationships = {} } = useQuery({
+    queryKey: ["relationships", userIds],
+    queryFn: async (): Promise<Record<string, Relationship>> => {
+      const res = await axios.post(`/user/friends/status`, { ids: userIds });
+      return res.data;
+    },
+    enabled: userIds.length > 0,
+  });
+
   const invalidate = () => {
     queryClient.invalidateQueries({ queryKey: ["searchUsers", query] });
+    queryClient.invalidateQueries({ queryKey: ["relationships"] });
+    queryClient.invalidateQueries({ queryKey: ["friendRequests"] });
     refetchProfile();
   };
 
+  // The key is fixed per click, so a retried send is answered with the first result.
   const { mutate: sendRequest } = useMutation({
-    mutationFn: (id: string) =>
-      axios.post(`/user/friends/request`, null, {
+    mutationFn: async ({
+      id,
+      key,
+    }: {
+      id: string;
+      key: string;
+    }): Promise<FriendRequestResult> => {
+      const res = await axios.post(`/user/friends/request`, null, {
         params: { receiverProfileId: id },
-      }),
+        headers: { "Idempotency-Key": key },
+      });
+      return res.data;
+    },
+    retry: 2,
     onSuccess: invalidate,
   });
 
@@ -110,13 +137,16 @@ export function SearchUsers() {
           )}
         >
           {users.map((user) => {
-            const isFriend = profile?.friends.some((f) => f.id === user.id);
-            const sentRequest = profile?.sentFriendRequests.find(
-              (r) => r.receiver.id === user.id
-            );
-            const receivedRequest = profile?.receivedFriendRequests.find(
-              (r) => r.sender.id === user.id
-            );
+            const relationship = relationships[user.id];
+            const isFriend = relationship?.status === "FRIEND";
+            const sentRequestId =
+              relationship?.status === "PENDING_SENT"
+                ? relationship.requestId
+                : undefined;
+            const receivedRequestId =
+              relationship?.status === "PENDING_RECEIVED"
+                ? relationship.requestId
+                : undefined;
 
             return (
               <div
@@ -129,6 +159,7 @@ export function SearchUsers() {
                 >
                   <img
                     src={
+                      user.avatarThumbnailUrl ||
                       user.avatarUrl ||
                       "https://gamemate-assets.ams3.cdn.digitaloceanspaces.com/gamemate-assets/avatars/blank-profile-picture.png"
                     }
@@ -143,13 +174,13 @@ export function SearchUsers() {
                     <span className="text-sm text-muted-foreground">
                       Friend
                     </span>
-                  ) : receivedRequest ? (
+                  ) : receivedRequestId ? (
                     <>
                       <Button
                         size="sm"
                         onClick={() =>
                           respondToRequest({
-                            requestId: receivedRequest.id,
+                            requestId: receivedRequestId,
                             accept: true,
                           })
                         }
@@ -161,7 +192,7 @@ export function SearchUsers() {
                         variant="secondary"
                         onClick={() =>
                           respondToRequest({
-                            requestId: receivedRequest.id,
+                            requestId: receivedRequestId,
                             accept: false,
                           })
                         }
@@ -169,11 +200,11 @@ export function SearchUsers() {
                         Decline
                       </Button>
                     </>
-                  ) : sentRequest ? (
+                  ) : sentRequestId ? (
                     <Button
                       size="sm"
                       variant="destructive"
-                      onClick={() => cancelRequest(sentRequest.id)}
+                      onClick={() => cancelRequest(sentRequestId)}
                     >
                       Cancel
                     </Button>
@@ -181,7 +212,9 @@ export function SearchUsers() {
                     <Button
                       size="sm"
                       variant="secondary"
-                      onClick={() => sendRequest(user.id)}
+                      onClick={() =>
+                        sendRequest({ id: user.id, key: crypto.randomUUID() })
+                      }
                     >
                       Add
                     </Button>
@@ -89,10 +89,12 @@ export const ProfileProvider = ({
         headers: { "Content-Type": "application/json" },
       });
       const updatedProfile = res.data;
-      setProfile({
+      // The update response leaves out the friend list; keep the one already loaded.
+      setProfile((prev) => ({
         ...updatedProfile,
+        friends: updatedProfile.friends ?? prev?.friends ?? [],
         createdAt: new Date(updatedProfile.createdAt),
-      });
+      }));
     } catch (err) {
       setError((err as Error).message);
       throw new Error("Profile update failed");
@@ -106,7 +108,7 @@ export const ProfileProvider = ({
     setError(null);
     try {
       const response = await axiosInstance.delete("/user/profile/delete");
-      if (response.status !== 204) {
+      if (response.status !== 202) {
         throw new Error("Failed to delete account");
       }
     } catch (err) {
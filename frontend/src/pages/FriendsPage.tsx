@@ -1,20 +1,71 @@
+import { useEffect } from "react";
+import { useInfiniteQuery, useQuery, useQueryClient } from "@tanstack/react-query";
 import { useProfile } from "@/hooks/useProfile";
 import { Card, CardContent } from "@/components/ui/card";
 import { Button } from "@/components/ui/button";
 import { Separator } from "@/components/ui/separator";
 import Loading from "@/components/Loading";
 import { useAxiosWithAuth } from "@/lib/utils";
+import { FriendRequestPage, FriendSuggestion } from "@/types/profile";
 import { Link } from "react-router-dom";
+import { AxiosInstance } from "axios";
+
+const REQUEST_PAGE_SIZE = 20;
+const SUGGESTION_COUNT = 10;
+
+function useRequestPages(axios: AxiosInstance, box: "received" | "sent") {
+  return useInfiniteQuery({
+    queryKey: ["friendRequests", box],
+    queryFn: async ({ pageParam }): Promise<FriendRequestPage> => {
+      const res = await axios.get(`/user/friends/requests/${box}`, {
+        params: { limit: REQUEST_PAGE_SIZE, cursor: pageParam },
+      });
+      return res.data;
+    },
+    initialPageParam: undefined as string | undefined,
+    getNextPageParam: (lastPage) => lastPage.nextCursor ?? undefined,
+  });
+}
 
 export default function FriendsPage() {
   const axiosinstance = useAxiosWithAuth();
+  const queryClient = useQueryClient();
   const { profile, isLoading, error, refetch } = useProfile();
 
+  const received = useRequestPages(axiosinstance, "received");
+  const sent = useRequestPages(axiosinstance, "sent");
+  const receivedRequests = received.data?.pages.flatMap((p) => p.requests) ?? [];
+  const sentRequests = sent.data?.pages.flatMap((p) => p.requests) ?? [];
+
+  const { data: suggestions = [] } = useQuery({
+    queryKey: ["friendSuggestions"],
+    queryFn: async (): Promise<FriendSuggestion[]> => {
+      const res = await axiosinstance.get(`/user/friends/suggestions`, {
+        params: { limit: SUGGESTION_COUNT },
+      });
+      return res.data;
+    },
+    staleTime: 5 * 60_000,
+  });
+
+  useEffect(() => {
+    axiosinstance
+      .post(`/user/friends/requests/seen`)
+      .then(() =>
+        queryClient.invalidateQueries({ queryKey: ["friendRequests", "unread"] })
+      )
+      .catch((err) => console.error("Could not mark requests as seen:", err));
+  }, [axiosinstance, queryClient]);
+
+  const refreshRequests = async () => {
+    await queryClient.invalidateQueries({ queryKey: ["friendRequests"] });
+  };
+
   const respondToRequest = async (id: string, accept: boolean) => {
     await axiosinstance.post(`/user/friends/request/${id}/respond`, null, {
       params: { accept },
     });
-    await refetch();
+    await Promise.all([refetch(), refreshRequests()]);
   };
 
   const removeFriend = async (friendId: string) => {
@@ -24,9 +75,21 @@ export default function FriendsPage() {
     await refetch();
   };
 
+  const sendRequest = async (profileId: string) => {
+    await axiosinstance.post(`/user/friends/request`, null, {
+      params: { receiverProfileId: profileId },
+      headers: { "Idempotency-Key": crypto.randomUUID() },
+    });
+    await Promise.all([
+      refetch(),
+      refreshRequests(),
+      queryClient.invalidateQueries({ queryKey: ["friendSuggestions"] }),
+    ]);
+  };
+
   const deleteSentRequest = async (id: string) => {
     await axiosinstance.delete(`/user/friends/request/${id}`);
-    await refetch();
+    await refreshRequests();
   };
 
   if (isLoading) return <Loading />;
@@ -52,6 +115,7 @@ export default function FriendsPage() {
                   >
                     <img
                       src={
+                        friend.avatarThumbnailUrl ||
                         friend.avatarUrl ||
                         "https://gamemate-assets.ams3.cdn.digitaloceanspaces.com/gamemate-assets/avatars/blank-profile-picture.png"
                       }
@@ -78,27 +142,30 @@ export default function FriendsPage() {
 
       <h2 className="text-2xl font-bold">Incoming Friend Requests</h2>
       <div className="grid gap-4">
-        {profile.receivedFriendRequests.length === 0 ? (
+        {received.isLoading ? (
+          <Loading />
+        ) : receivedRequests.length === 0 ? (
           <p className="text-muted-foreground">No incoming requests.</p>
         ) : (
-          profile.receivedFriendRequests.map((req) => (
+          receivedRequests.map((req) => (
             <Card key={req.id}>
               <CardContent className="flex justify-between items-center p-4">
                 <div className="flex items-center space-x-3">
                   <Link
-                    to={`/profile/${req.sender.id}`}
+                    to={`/profile/${req.sender?.id}`}
                     className="flex items-center space-x-3"
                   >
                     <img
                       src={
-                        req.sender.avatarUrl ||
+                        req.sender?.avatarThumbnailUrl ||
+                        req.sender?.avatarUrl ||
                         "https://gamemate-assets.ams3.cdn.digitaloceanspaces.com/gamemate-assets/avatars/blank-profile-picture.png"
                       }
                       className="w-10 h-10 rounded-full object-cover"
-                      alt={`${req.sender.nickname}'s avatar`}
+                      alt={`${req.sender?.nickname}'s avatar`}
                     />
                     <div>
-                      <p className="font-medium">{req.sender.nickname}</p>
+                      <p className="font-medium">{req.sender?.nickname}</p>
                       <p className="text-xs text-muted-foreground">
                         Requested on {new Date(req.createdAt).toLocaleString()}
                       </p>
@@ -124,35 +191,47 @@ export default function FriendsPage() {
             </Card>
           ))
         )}
+        {received.hasNextPage && (
+          <Button
+            variant="secondary"
+            disabled={received.isFetchingNextPage}
+            onClick={() => received.fetchNextPage()}
+          >
+            Load more
+          </Button>
+        )}
       </div>
 
       <Separator />
 
       <h2 className="text-2xl font-bold">Outgoing Friend Requests</h2>
       <div className="grid gap-4">
-        {profile.sentFriendRequests.length === 0 ? (
+        {sent.isLoading ? (
+          <Loading />
+        ) : sentRequests.length === 0 ? (
           <p className="text-muted-foreground">
             You haven't sent any friend requests.
           </p>
         ) : (
-          profile.sentFriendRequests.map((req) => (
+          sentRequests.map((req) => (
             <Card key={req.id}>
               <CardContent className="flex justify-between items-center p-4">
                 <div className="flex items-center space-x-3">
                   <Link
-                    to={`/profile/${req.receiver.id}`}
+                    to={`/profile/${req.receiver?.id}`}
                     className="flex items-center space-x-3"
                   >
                     <img
                       src={
-                        req.receiver.avatarUrl ||
+                        req.receiver?.avatarThumbnailUrl ||
+                        req.receiver?.avatarUrl ||
                         "https://gamemate-assets.ams3.cdn.digitaloceanspaces.com/gamemate-assets/avatars/blank-profile-picture.png"
                       }
                       className="w-10 h-10 rounded-full object-cover"
-                      alt={`${req.receiver.nickname}'s avatar`}
+                      alt={`${req.receiver?.nickname}'s avatar`}
                     />
                     <div>
-                      <p className="font-medium">{req.receiver.nickname}</p>
+                      <p className="font-medium">{req.receiver?.nickname}</p>
                       <p className="text-xs text-muted-foreground">
                         Sent on {new Date(req.createdAt).toLocaleString()}
                       </p>
@@ -170,7 +249,62 @@ export default function FriendsPage() {
             </Card>
           ))
         )}
+        {sent.hasNextPage && (
+          <Button
+            variant="secondary"
+            disabled={sent.isFetchingNextPage}
+            onClick={() => sent.fetchNextPage()}
+          >
+            Load more
+          </Button>
+        )}
       </div>
+
+      {suggestions.length > 0 && (
+        <>
+          <Separator />
+
+          <h2 className="text-2xl font-bold">People You May Know</h2>
+          <div className="grid gap-4">
+            {suggestions.map(({ profile: person, mutualFriends, sharedGames }) => (
+              <Card key={person.id}>
+                <CardContent className="flex justify-between items-center p-4">
+                  <div className="flex items-center space-x-3">
+                    <Link
+                      to={`/profile/${person.id}`}
+                      className="flex items-center space-x-3"
+                    >
+                      <img
+                        src={
+                          person.avatarThumbnailUrl ||
+                          person.avatarUrl ||
+                          "https://gamemate-assets.ams3.cdn.digitaloceanspaces.com/gamemate-assets/avatars/blank-profile-picture.png"
+                        }
+                        className="w-10 h-10 rounded-full object-cover"
+                        alt={`${person.nickname}'s avatar`}
+                      />
+                      <div>
+                        <p className="font-medium">{person.nickname}</p>
+                        <p className="text-xs text-muted-foreground">
+                          {mutualFriends} mutual{" "}
+                          {mutualFriends === 1 ? "friend" : "friends"}
+                          {sharedGames > 0 &&
+                            ` · ${sharedGames} shared ${
+                              sharedGames === 1 ? "game" : "games"
+                            }`}
+                        </p>
+                      </div>
+                    </Link>
+                  </div>
+                  <Button size="sm" onClick={() => sendRequest(person.id)}>
+                    Add
+                  </Button>
+                </CardContent>
+              </Card>
+            ))}
+          </div>
+        </>
+      )}
     </div>
   );
 }
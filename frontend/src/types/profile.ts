@@ -4,19 +4,19 @@ export type Profile = {
   id: string;
   nickname: string;
   avatarUrl: string;
+  avatarThumbnailUrl?: string;
   bio?: string;
   location?: string;
   createdAt: Date;
   gameProfiles?: Array<GameProfile>;
   friends: Array<Profile>;
-  sentFriendRequests: Array<FriendRequest>;
-  receivedFriendRequests: Array<FriendRequest>;
 };
 
 export type ProfilePreview = {
   id: string;
   nickname: string;
   avatarUrl: string;
+  avatarThumbnailUrl?: string;
 };
 
 export type GameProfile = {
@@ -34,9 +34,37 @@ export type GameProfileRequest = {
   platforms: string[];
 };
 
-type FriendRequest = {
+// Only the other side of the request is filled in: the sender in the inbox, the receiver in the outbox.
+export type FriendRequest = {
   id: string;
   createdAt: string;
-  sender: Profile;
-  receiver: Profile;
+  sender?: ProfilePreview;
+  receiver?: ProfilePreview;
+};
+
+export type FriendRequestPage = {
+  requests: Array<FriendRequest>;
+  nextCursor?: string | null;
+};
+
+export type RelationshipStatus =
+  | "FRIEND"
+  | "PENDING_SENT"
+  | "PENDING_RECEIVED"
+  | "STRANGER";
+
+export type Relationship = {
+  status: RelationshipStatus;
+  requestId?: string | null;
+};
+
+export type FriendSuggestion = {
+  profile: ProfilePreview;
+  mutualFriends: number;
+  sharedGames: number;
+};
+
+export type FriendRequestResult = {
+  outcome: "CREATED" | "ALREADY_SENT" | "ACCEPTED" | "ALREADY_FRIENDS";
+  requestId?: string | null;
 };